@@ -0,0 +1,38 @@
+package com.producto_service.Config;
+
+import com.producto_service.Service.AlmacenamientoReportes;
+import com.producto_service.Service.AlmacenamientoReportesLocal;
+import com.producto_service.Service.AlmacenamientoReportesMedido;
+import com.producto_service.Service.AlmacenamientoReportesS3;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+@Configuration
+public class AlmacenamientoConfig {
+
+    // Destino de los reportes archivados: s3 | local. El cliente de S3 se crea una vez y se cierra con el contexto
+    @Bean
+    public AlmacenamientoReportes almacenamientoReportes(@Value("${reportes.almacenamiento.tipo:s3}") String tipo,
+                                                         @Value("${reportes.s3.bucket:arka-reportes}") String bucket,
+                                                         @Value("${reportes.s3.region:us-east-2}") String region,
+                                                         @Value("${reportes.s3.umbral-multipart-bytes:16777216}") long umbralMultipart,
+                                                         @Value("${reportes.s3.tamano-parte-bytes:8388608}") int tamanoParte,
+                                                         @Value("${reportes.almacenamiento.directorio:./data/reportes}") String directorio,
+                                                         MeterRegistry meterRegistry) throws IOException {
+        AlmacenamientoReportes almacenamiento = switch (tipo.toLowerCase()) {
+            case "s3" -> new AlmacenamientoReportesS3(
+                    S3Client.builder().region(Region.of(region)).build(), bucket, umbralMultipart, tamanoParte);
+            case "local" -> new AlmacenamientoReportesLocal(Path.of(directorio));
+            default -> throw new IllegalArgumentException("Almacenamiento de reportes no soportado: " + tipo
+                    + ". Use s3 o local.");
+        };
+        return new AlmacenamientoReportesMedido(almacenamiento, meterRegistry);
+    }
+}
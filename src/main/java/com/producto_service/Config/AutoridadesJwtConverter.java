@@ -0,0 +1,31 @@
+package com.producto_service.Config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Traduce el claim {@code rol} del token a la autoridad {@code ROLE_<ROL>}. Hay pocos roles distintos,
+ * así que la lista de autoridades de cada uno se crea una vez y se reutiliza en cada solicitud.
+ */
+public class AutoridadesJwtConverter implements Converter<Jwt, Collection<GrantedAuthority>> {
+
+    private static final int ROLES_MAXIMOS = 256;
+
+    private final Cache<String, List<GrantedAuthority>> porRol = Caffeine.newBuilder()
+            .maximumSize(ROLES_MAXIMOS)
+            .build();
+
+    @Override
+    public Collection<GrantedAuthority> convert(Jwt jwt) {
+        String rol = jwt.getClaimAsString("rol");
+        if (rol == null) return List.of();
+        return porRol.get(rol, r -> List.of(new SimpleGrantedAuthority("ROLE_" + r.toUpperCase())));
+    }
+}
@@ -0,0 +1,96 @@
+package com.producto_service.Config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * {@link JwtDecoder} que recuerda los tokens ya validados.
+ * <p>
+ * Los clientes servicio a servicio repiten el mismo token en miles de solicitudes; en vez de volver a
+ * parsearlo y verificar su firma cada vez, el {@link Jwt} validado se guarda con la huella SHA-256 del
+ * token como clave (no se conserva el token crudo como clave). Cada entrada vence con el {@code exp} del
+ * token, y como mucho a los {@code ttlMaximo}, y la caché está acotada en tamaño. Los tokens inválidos no
+ * se guardan: siempre pasan por el decodificador real.
+ */
+public class JwtDecoderConCache implements JwtDecoder {
+
+    private final JwtDecoder decodificador;
+    private final Cache<String, Jwt> validados;
+
+    public JwtDecoderConCache(JwtDecoder decodificador, long tamanoMaximo, Duration ttlMaximo, MeterRegistry meterRegistry) {
+        this.decodificador = decodificador;
+        this.validados = Caffeine.newBuilder()
+                .maximumSize(tamanoMaximo)
+                .expireAfter(new Expiry<String, Jwt>() {
+                    @Override
+                    public long expireAfterCreate(String huella, Jwt jwt, long ahora) {
+                        return vigencia(jwt, ttlMaximo);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String huella, Jwt jwt, long ahora, long restante) {
+                        return vigencia(jwt, ttlMaximo);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String huella, Jwt jwt, long ahora, long restante) {
+                        return restante;
+                    }
+                })
+                .recordStats()
+                .build();
+        if (meterRegistry != null) {
+            CaffeineCacheMetrics.monitor(meterRegistry, validados, "seguridad.jwt");
+        }
+    }
+
+    // Nanosegundos hasta el exp del token, sin pasar de ttlMaximo
+    private static long vigencia(Jwt jwt, Duration ttlMaximo) {
+        Instant expira = jwt.getExpiresAt();
+        if (expira == null) {
+            return ttlMaximo.toNanos();
+        }
+        long restante = Duration.between(Instant.now(), expira).toNanos();
+        return Math.max(0, Math.min(restante, ttlMaximo.toNanos()));
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        String huella = huella(token);
+        Jwt jwt = validados.getIfPresent(huella);
+        if (jwt != null) {
+            return jwt;
+        }
+        // Si falla, la excepción sale sin guardar nada
+        jwt = decodificador.decode(token);
+        validados.put(huella, jwt);
+        return jwt;
+    }
+
+    private static String huella(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    long tamano() {
+        validados.cleanUp();
+        return validados.estimatedSize();
+    }
+}
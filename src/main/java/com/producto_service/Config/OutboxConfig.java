@@ -0,0 +1,34 @@
+package com.producto_service.Config;
+
+import com.producto_service.Service.PublicadorEventos;
+import com.producto_service.Service.PublicadorEventosMemoria;
+import com.producto_service.Service.PublicadorEventosWebhook;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+
+@Configuration
+public class OutboxConfig {
+
+    // Destino de los eventos de stock del outbox: memoria | webhook
+    @Bean
+    public PublicadorEventos publicadorEventos(@Value("${productos.outbox.publicador:memoria}") String publicador,
+                                               @Value("${productos.outbox.webhook-url:}") String webhookUrl,
+                                               @Value("${productos.outbox.webhook-timeout-ms:5000}") long webhookTimeoutMs,
+                                               WebClient.Builder webClientBuilder) {
+        return switch (publicador.toLowerCase()) {
+            case "memoria" -> new PublicadorEventosMemoria(10_000);
+            case "webhook" -> {
+                if (webhookUrl.isBlank()) {
+                    throw new IllegalArgumentException("productos.outbox.webhook-url es obligatorio con el publicador webhook.");
+                }
+                yield new PublicadorEventosWebhook(webClientBuilder, webhookUrl, Duration.ofMillis(webhookTimeoutMs));
+            }
+            default -> throw new IllegalArgumentException("Publicador de outbox no soportado: " + publicador
+                    + ". Use memoria o webhook.");
+        };
+    }
+}
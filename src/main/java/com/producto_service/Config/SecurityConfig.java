@@ -1,5 +1,6 @@
 package com.producto_service.Config;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
 import org.springframework.beans.factory.annotation.Value;
@@ -10,13 +11,12 @@ import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
 import org.springframework.security.web.SecurityFilterChain;
+import java.time.Duration;
 import java.util.Base64;
-import java.util.List;
 
 @Configuration
 @EnableMethodSecurity   // 👈 habilita @PreAuthorize
@@ -52,7 +52,9 @@ public class SecurityConfig {
     // SecurityFilterChain para rutas protegidas - Con OAuth2 JWT
     @Bean
     @Order(2)
-    public SecurityFilterChain protectedSecurityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain protectedSecurityFilterChain(HttpSecurity http,
+                                                            JwtDecoder jwtDecoder,
+                                                            JwtAuthenticationConverter jwtAuthenticationConverter) throws Exception {
         http
                 .csrf(AbstractHttpConfigurer::disable)
                 .authorizeHttpRequests(auth -> auth
@@ -61,12 +63,18 @@ public class SecurityConfig {
                         // Endpoints públicos específicos (sin JWT)
                         .requestMatchers(
                                 "/productos/lista-ids",
+                                "/productos/disponibilidad",
                                 "/productos/reducir-stock",
                                 "/productos/reposicion-stock",
                                 "/reporte/inventario-bajo",
+                                "/reporte/descargas/**",
                                 "/productos/health"
                         ).permitAll()
 
+                        // Reservas: solo la disponibilidad es pública; crear, ver, confirmar y liberar requieren JWT
+                        .requestMatchers(HttpMethod.GET, "/productos/reservas/disponibilidad").permitAll()
+                        .requestMatchers("/productos/reservas", "/productos/reservas/**").authenticated()
+
                         // Todos los GET públicos (sin JWT)
                         .requestMatchers(HttpMethod.GET, "/productos/**").permitAll()
                         .requestMatchers(HttpMethod.GET, "/categorias/**").permitAll()
@@ -95,18 +103,25 @@ public class SecurityConfig {
                         .anyRequest().authenticated()
                 )
                 .oauth2ResourceServer(oauth2 -> oauth2.jwt(
-                        jwt -> jwt.decoder(jwtDecoder()).jwtAuthenticationConverter(jwtAuthenticationConverter())
+                        jwt -> jwt.decoder(jwtDecoder).jwtAuthenticationConverter(jwtAuthenticationConverter)
                 ));
 
         return http.build();
     }
 
 
+    // Los tokens ya validados se reutilizan hasta su exp (ver JwtDecoderConCache)
     @Bean
-    public JwtDecoder jwtDecoder() {
+    public JwtDecoder jwtDecoder(MeterRegistry meterRegistry,
+                                 @Value("${seguridad.jwt.cache.tamano-maximo:10000}") long tamanoMaximo,
+                                 @Value("${seguridad.jwt.cache.ttl-maximo-segundos:300}") long ttlMaximoSegundos) {
         byte[] keyBytes = Base64.getDecoder().decode(secret);
         SecretKey key = new SecretKeySpec(keyBytes, "HmacSHA256");
-        return NimbusJwtDecoder.withSecretKey(key).build();
+        JwtDecoder nimbus = NimbusJwtDecoder.withSecretKey(key).build();
+        if (tamanoMaximo <= 0) {
+            return nimbus;
+        }
+        return new JwtDecoderConCache(nimbus, tamanoMaximo, Duration.ofSeconds(ttlMaximoSegundos), meterRegistry);
     }
 
 
@@ -114,11 +129,7 @@ public class SecurityConfig {
     @Bean
     public JwtAuthenticationConverter jwtAuthenticationConverter() {
         JwtAuthenticationConverter converter = new JwtAuthenticationConverter();
-        converter.setJwtGrantedAuthoritiesConverter(jwt -> {
-            String rol = jwt.getClaimAsString("rol");
-            if (rol == null) return List.of();
-            return List.of(new SimpleGrantedAuthority("ROLE_" + rol.toUpperCase()));
-        });
+        converter.setJwtGrantedAuthoritiesConverter(new AutoridadesJwtConverter());
         return converter;
     }
 
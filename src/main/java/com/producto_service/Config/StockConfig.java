@@ -0,0 +1,45 @@
+package com.producto_service.Config;
+
+import com.producto_service.Repository.ProductoRepository;
+import com.producto_service.Service.EstrategiaStock;
+import com.producto_service.Service.EstrategiaStockAtomica;
+import com.producto_service.Service.EstrategiaStockOptimista;
+import com.producto_service.Service.EstrategiaStockPesimista;
+import com.producto_service.Service.HistorialService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@Configuration
+public class StockConfig {
+
+    // Estrategia de concurrencia para reducir/reponer stock: atomica | optimista | pesimista
+    @Bean
+    public EstrategiaStock estrategiaStock(@Value("${productos.stock.estrategia:atomica}") String estrategia,
+                                           @Value("${productos.stock.max-reintentos:5}") int maxReintentos,
+                                           @Value("${productos.stock.espera-reintento-ms:5}") long esperaReintentoMs,
+                                           @Value("${productos.stock.lock-timeout-ms:2000}") int lockTimeoutMs,
+                                           ProductoRepository productoRepository,
+                                           HistorialService historialService,
+                                           ApplicationEventPublisher eventPublisher,
+                                           PlatformTransactionManager transactionManager,
+                                           JdbcTemplate jdbcTemplate,
+                                           MeterRegistry meterRegistry) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        return switch (estrategia.toLowerCase()) {
+            case "atomica" -> new EstrategiaStockAtomica(productoRepository, historialService, eventPublisher,
+                    transactionTemplate, meterRegistry, jdbcTemplate);
+            case "optimista" -> new EstrategiaStockOptimista(productoRepository, historialService, eventPublisher,
+                    transactionTemplate, meterRegistry, maxReintentos, esperaReintentoMs);
+            case "pesimista" -> new EstrategiaStockPesimista(productoRepository, historialService, eventPublisher,
+                    transactionTemplate, meterRegistry, jdbcTemplate, lockTimeoutMs);
+            default -> throw new IllegalArgumentException("Estrategia de stock no soportada: " + estrategia
+                    + ". Use atomica, optimista o pesimista.");
+        };
+    }
+}
@@ -1,9 +1,20 @@
 package com.producto_service.Controller;
 
+import com.producto_service.DTO.DisponibilidadDto;
+import com.producto_service.DTO.PaginaCambiosDto;
+import com.producto_service.DTO.PaginaDto;
+import com.producto_service.DTO.ProductoFiltroDto;
 import com.producto_service.DTO.RequestProductoDto;
 import com.producto_service.DTO.ProductoResponseDto;
+import com.producto_service.DTO.ResultadoStockDto;
+import com.producto_service.DTO.StockEventoDto;
 import com.producto_service.Model.Producto;
+import com.producto_service.Service.CambiosCatalogoService;
+import com.producto_service.Service.CombinadorStockService;
+import com.producto_service.Service.ExportacionProductosService;
+import com.producto_service.Service.IdempotenciaService;
 import com.producto_service.Service.ProductoService;
+import com.producto_service.Service.StockEventosService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -12,13 +23,19 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Flux;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/productos")
@@ -26,9 +43,24 @@ import java.util.Map;
 public class ProductoController {
 
     private final ProductoService productoService;
+    private final ExportacionProductosService exportacionProductosService;
+    private final CambiosCatalogoService cambiosCatalogoService;
+    private final StockEventosService stockEventosService;
+    private final CombinadorStockService combinadorStockService;
+    private final IdempotenciaService idempotenciaService;
 
-    public ProductoController(ProductoService productoService) {
+    public ProductoController(ProductoService productoService,
+                              ExportacionProductosService exportacionProductosService,
+                              CambiosCatalogoService cambiosCatalogoService,
+                              StockEventosService stockEventosService,
+                              CombinadorStockService combinadorStockService,
+                              IdempotenciaService idempotenciaService) {
         this.productoService = productoService;
+        this.exportacionProductosService = exportacionProductosService;
+        this.cambiosCatalogoService = cambiosCatalogoService;
+        this.stockEventosService = stockEventosService;
+        this.combinadorStockService = combinadorStockService;
+        this.idempotenciaService = idempotenciaService;
     }
 
     // ────────────────────────────────────────────────
@@ -50,14 +82,84 @@ public class ProductoController {
     }
 
     @GetMapping
-    @Operation(summary = "Obtener todos los productos", description = "Retorna una lista de todos los productos disponibles")
+    @Operation(summary = "Listar productos paginados",
+            description = "Retorna una página de productos filtrada y ordenada. Para la página siguiente se envía en 'after' el 'siguienteCursor' de la respuesta anterior")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Lista de productos obtenida exitosamente"),
+            @ApiResponse(responseCode = "200", description = "Página de productos obtenida exitosamente"),
+            @ApiResponse(responseCode = "400", description = "Parámetros de paginación o filtros inválidos"),
             @ApiResponse(responseCode = "500", description = "Error interno del servidor")
     })
-    public ResponseEntity<List<Producto>> obtenerTodos() {
-        List<Producto> productos = productoService.obtenerTodosLosProductos();
-        return ResponseEntity.ok(productos);
+    public ResponseEntity<PaginaDto<ProductoResponseDto>> obtenerTodos(
+            @Parameter(description = "'siguienteCursor' de la página anterior", example = "precio:250.0:120")
+            @RequestParam(required = false) String after,
+            @Parameter(description = "Cantidad máxima de productos por página (1-200)", example = "50")
+            @RequestParam(defaultValue = "50") int limit,
+            @Parameter(description = "Campo de orden: id, precio o stock", example = "precio")
+            @RequestParam(defaultValue = "id") String orden,
+            @Parameter(description = "Dirección del orden: asc o desc", example = "asc")
+            @RequestParam(defaultValue = "asc") String direccion,
+            @Parameter(description = "Nombre de la categoría", example = "Electrónicos")
+            @RequestParam(required = false) String categoria,
+            @Parameter(description = "Nombre de la marca", example = "Samsung")
+            @RequestParam(required = false) String marca,
+            @RequestParam(required = false) Double precioMin,
+            @RequestParam(required = false) Double precioMax,
+            @RequestParam(required = false) Integer stockMin,
+            @RequestParam(required = false) Integer stockMax) {
+        ProductoFiltroDto filtro = new ProductoFiltroDto(categoria, marca, precioMin, precioMax, stockMin, stockMax,
+                parsearOrden(orden), parsearDescendente(direccion));
+        return ResponseEntity.ok(productoService.obtenerPaginaDeProductos(filtro, after, limit));
+    }
+
+    @GetMapping("/export")
+    @Operation(summary = "Exportar el catálogo completo",
+            description = "Descarga todos los productos en NDJSON (un objeto JSON por línea) o CSV. La respuesta se envía en streaming a medida que se leen las filas")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Catálogo exportado"),
+            @ApiResponse(responseCode = "400", description = "Formato no soportado"),
+            @ApiResponse(responseCode = "500", description = "Error interno del servidor")
+    })
+    public ResponseEntity<StreamingResponseBody> exportar(
+            @Parameter(description = "Formato de salida: ndjson o csv", example = "ndjson")
+            @RequestParam(defaultValue = "ndjson") String format) {
+        ExportacionProductosService.Formato formato = ExportacionProductosService.Formato.desde(format);
+        StreamingResponseBody cuerpo = salida -> exportacionProductosService.exportar(formato, salida);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(formato.getContentType() + ";charset=UTF-8"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"productos." + formato.getExtension() + "\"")
+                .body(cuerpo);
+    }
+
+    @GetMapping("/cambios")
+    @Operation(summary = "Obtener cambios del catálogo desde una versión",
+            description = "Retorna los productos creados, actualizados o eliminados después de la versión indicada, ordenados por (versión, id). "
+                    + "Para continuar se envían 'siguienteVersion' y 'siguienteId' de la respuesta como 'since' y 'despuesDe'. Sin 'since' se recorre todo el catálogo")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Cambios obtenidos exitosamente"),
+            @ApiResponse(responseCode = "400", description = "Parámetros inválidos"),
+            @ApiResponse(responseCode = "500", description = "Error interno del servidor")
+    })
+    public ResponseEntity<PaginaCambiosDto> obtenerCambios(
+            @Parameter(description = "Versión a partir de la cual se piden cambios", example = "1520")
+            @RequestParam(required = false) Long since,
+            @Parameter(description = "ID del último producto recibido con esa versión", example = "87")
+            @RequestParam(required = false) Long despuesDe,
+            @Parameter(description = "Cantidad máxima de cambios (1-500)", example = "100")
+            @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(cambiosCatalogoService.obtenerCambios(since, despuesDe, limit));
+    }
+
+    @GetMapping(value = "/stock/eventos", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Suscribirse a los cambios de stock (SSE)",
+            description = "Envía un evento 'stock' por cada cambio de stock. El id de cada evento es el id del historial; "
+                    + "al reconectar con la cabecera Last-Event-ID se reenvían los cambios perdidos antes de continuar en vivo")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Flujo de eventos abierto")
+    })
+    public Flux<ServerSentEvent<StockEventoDto>> eventosStock(
+            @Parameter(description = "Id del último evento recibido", example = "1520")
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        return stockEventosService.flujoSse(lastEventId);
     }
 
     @GetMapping("/categoria/{nombre}")
@@ -67,10 +169,10 @@ public class ProductoController {
             @ApiResponse(responseCode = "404", description = "Categoría no encontrada"),
             @ApiResponse(responseCode = "500", description = "Error interno del servidor")
     })
-    public ResponseEntity<List<Producto>> obtenerPorCategoria(
+    public ResponseEntity<List<ProductoResponseDto>> obtenerPorCategoria(
             @Parameter(description = "Nombre de la categoría", required = true, example = "Electrónicos")
             @PathVariable String nombre) {
-        List<Producto> productos = productoService.obtenerProductosPorCategoria(nombre);
+        List<ProductoResponseDto> productos = productoService.obtenerProductosPorCategoria(nombre);
         return ResponseEntity.ok(productos);
     }
 
@@ -95,13 +197,26 @@ public class ProductoController {
             @ApiResponse(responseCode = "400", description = "Lista de IDs inválida"),
             @ApiResponse(responseCode = "500", description = "Error interno del servidor")
     })
-    public ResponseEntity<List<Producto>> obtenerPorIds(
+    public ResponseEntity<List<ProductoResponseDto>> obtenerPorIds(
             @Parameter(description = "Lista de IDs de productos", required = true, example = "1,2,3")
             @RequestParam List<Long> ids) {
-        List<Producto> productos = productoService.obtenerProductosPorIds(ids);
+        List<ProductoResponseDto> productos = productoService.obtenerProductosPorIds(ids);
         return ResponseEntity.ok(productos);
     }
 
+    @PostMapping("/disponibilidad")
+    @Operation(summary = "Verificar disponibilidad de stock", description = "Indica si cada producto tiene stock para la cantidad pedida, sin modificar ni reservar nada. El cuerpo es un mapa de ID de producto -> cantidad (máximo 1000 productos)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Disponibilidad por línea; 'disponible' es verdadero si todas pueden surtirse"),
+            @ApiResponse(responseCode = "400", description = "Solicitud inválida"),
+            @ApiResponse(responseCode = "500", description = "Error interno del servidor")
+    })
+    public ResponseEntity<DisponibilidadDto> verificarDisponibilidad(
+            @Parameter(description = "Mapa de ID de producto a cantidad requerida", required = true, example = "{\"1\": 5, \"2\": 10}")
+            @RequestBody Map<Long, Integer> productos) {
+        return ResponseEntity.ok(productoService.verificarDisponibilidad(productos));
+    }
+
     @GetMapping("/{nombre}")
     @Operation(summary = "Obtener producto por nombre", description = "Retorna un producto específico por su nombre")
     @ApiResponses(value = {
@@ -112,7 +227,7 @@ public class ProductoController {
     public ResponseEntity<?> obtenerPorNombre(
             @Parameter(description = "Nombre del producto", required = true, example = "Laptop Dell")
             @PathVariable String nombre) {
-        Producto producto = productoService.obtenerProductoPorNombre(nombre);
+        ProductoResponseDto producto = productoService.obtenerVistaPorNombre(nombre);
         if (producto == null) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body("No se encontró un producto con nombre: " + nombre);
@@ -163,7 +278,7 @@ public class ProductoController {
                     .body("El producto con nombre '" + nombre + "' no existe.");
         }
 
-        Producto actualizado = productoService.actualizarProducto(nombre, productoDto);
+        ProductoResponseDto actualizado = productoService.actualizarProducto(nombre, productoDto);
         return ResponseEntity.ok(actualizado);
     }
 
@@ -193,17 +308,25 @@ public class ProductoController {
 
 
     @PostMapping("/reducir-stock")
-    @Operation(summary = "Reducir stock de productos", description = "Reduce el stock de múltiples productos. El cuerpo debe contener un mapa de ID de producto -> cantidad a reducir")
+    @Operation(summary = "Reducir stock de productos", description = "Reduce el stock de múltiples productos en una sola transacción. El cuerpo debe contener un mapa de ID de producto -> cantidad a reducir. Si alguna línea falla no se aplica ninguna")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "204", description = "Stock reducido exitosamente"),
-            @ApiResponse(responseCode = "400", description = "Solicitud inválida o stock insuficiente"),
+            @ApiResponse(responseCode = "200", description = "Stock reducido exitosamente, con el resultado por línea"),
+            @ApiResponse(responseCode = "400", description = "Solicitud inválida o stock insuficiente; ninguna línea fue aplicada"),
             @ApiResponse(responseCode = "500", description = "Error interno del servidor")
     })
-    public ResponseEntity<Void> reduccionStock(
+    public CompletableFuture<ResponseEntity<ResultadoStockDto>> reduccionStock(
             @Parameter(description = "Mapa de ID de producto a cantidad a reducir", required = true, example = "{\"1\": 5, \"2\": 10}")
-            @RequestBody Map<Long, Integer> productos) {
-        productoService.reduccionStock(productos);
-        return ResponseEntity.noContent().build();
+            @RequestBody Map<Long, Integer> productos,
+            @Parameter(description = "Clave única del pedido: los reintentos con la misma clave reciben la respuesta original sin volver a aplicarse", example = "pedido-1234")
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        if (idempotencyKey != null) {
+            // Sin combinar: la reducción debe ir en la misma transacción que guarda la respuesta de la clave
+            ResultadoStockDto resultado = idempotenciaService.ejecutar(idempotencyKey, "reducir-stock", productos,
+                    () -> productoService.reduccionStock(productos));
+            return CompletableFuture.completedFuture(ResponseEntity.ok(resultado));
+        }
+        // Con productos.stock.combinar.habilitado el pedido espera su lote sin ocupar el hilo del servidor
+        return combinadorStockService.reducir(productos).thenApply(ResponseEntity::ok);
     }
 
     @PostMapping("/reposicion-stock")
@@ -215,8 +338,28 @@ public class ProductoController {
     })
     public ResponseEntity<Void> reposicionStock(
             @Parameter(description = "Mapa de ID de producto a cantidad a reponer", required = true, example = "{\"1\": 5, \"2\": 10}")
-            @RequestBody Map<Long, Integer> productos) {
-        productoService.reposicionStock(productos);
+            @RequestBody Map<Long, Integer> productos,
+            @Parameter(description = "Clave única de la reposición: los reintentos con la misma clave no vuelven a sumar stock", example = "reposicion-1234")
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        idempotenciaService.ejecutar(idempotencyKey, "reposicion-stock", productos,
+                () -> productoService.reposicionStock(productos));
         return ResponseEntity.noContent().build();
     }
+
+    private static ProductoFiltroDto.Orden parsearOrden(String orden) {
+        return switch (orden.toLowerCase()) {
+            case "id" -> ProductoFiltroDto.Orden.ID;
+            case "precio" -> ProductoFiltroDto.Orden.PRECIO;
+            case "stock" -> ProductoFiltroDto.Orden.STOCK;
+            default -> throw new IllegalArgumentException("Orden no soportado: " + orden + ". Use id, precio o stock.");
+        };
+    }
+
+    private static boolean parsearDescendente(String direccion) {
+        return switch (direccion.toLowerCase()) {
+            case "asc" -> false;
+            case "desc" -> true;
+            default -> throw new IllegalArgumentException("Dirección no soportada: " + direccion + ". Use asc o desc.");
+        };
+    }
 }
@@ -1,7 +1,11 @@
 package com.producto_service.Controller;
 
 import com.producto_service.Config.JwtUtil;
-import com.producto_service.Service.NotificacionService;
+import com.producto_service.DTO.ReporteJobDto;
+import com.producto_service.DTO.TareaProgramadaDto;
+import com.producto_service.Service.BloqueoTareasService;
+import com.producto_service.Service.EntregaReportesService;
+import com.producto_service.Service.ReporteJobService;
 import com.producto_service.Service.ReporteService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -11,11 +15,20 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.List;
+
 @RestController
 @RequestMapping("/reporte")
 @RequiredArgsConstructor
@@ -23,7 +36,9 @@ import org.springframework.web.bind.annotation.*;
 public class ReporteController {
 
     private final ReporteService reporteService;
-    private final NotificacionService notificacionService;
+    private final ReporteJobService reporteJobService;
+    private final EntregaReportesService entregaReportesService;
+    private final BloqueoTareasService bloqueoTareasService;
     private final JwtUtil jwtUtil;
 
     @GetMapping("/inventario-bajo")
@@ -34,28 +49,117 @@ public class ReporteController {
             @ApiResponse(responseCode = "400", description = "Parámetro inválido"),
             @ApiResponse(responseCode = "500", description = "Error interno del servidor")
     })
-    public ResponseEntity<byte[]> generarReporte(
+    public ResponseEntity<Resource> generarReporte(
             @Parameter(description = "Límite de stock para considerar inventario bajo", required = true, example = "10")
             @RequestParam int limite) {
         String correoUsuario = jwtUtil.obtenerCorreoActual();
 
-        try {
-            byte[] pdf = reporteService.generarReporteInventarioBajo(limite);
-            notificacionService.enviarNotificacionConAdjunto(
-                    "EMAIL",
-                    correoUsuario,
-                    "Se ha generado el reporte de inventario bajo con límite: " + limite,
-                    pdf,
-                    "reporte_inventario_bajo.pdf"
-            );
+        try (ReporteService.Reporte reporte = reporteService.obtenerReporteInventarioBajo(limite)) {
+            // El correo (con enlace firmado o adjunto) sale en segundo plano: la respuesta no espera al servicio de notificaciones.
+            // La entrega lleva su propia referencia al archivo y la suelta al terminar, con reintentos incluidos
+            ReporteService.Reporte paraEntrega = reporte.retener();
+            try {
+                entregaReportesService.entregar(
+                        correoUsuario,
+                        "Se ha generado el reporte de inventario bajo con límite: " + limite,
+                        EntregaReportesService.claveInventarioBajo(paraEntrega),
+                        paraEntrega.archivo()
+                ).whenComplete((resultado, error) -> paraEntrega.close());
+            } catch (RuntimeException e) {
+                paraEntrega.close();
+                throw e;
+            }
+            // El archivo se copia a la respuesta por bloques, sin cargarlo en memoria; el flujo se abre
+            // aquí y conserva el archivo hasta que termine la copia
             return ResponseEntity.ok()
                     .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=reporte_inventario_bajo.pdf")
                     .contentType(MediaType.APPLICATION_PDF)
-                    .body(pdf);
+                    .contentLength(reporte.tamano())
+                    .body(new InputStreamResource(reporte.abrir()));
 
         } catch (Exception e) {
             return ResponseEntity.internalServerError()
                     .body(null);
         }
     }
+
+    @PostMapping("/jobs")
+    @Operation(summary = "Encolar reporte de inventario bajo", description = "Devuelve el id del trabajo al instante; el PDF se genera (y se envía por correo si se pide) en segundo plano. Los trabajos idénticos en curso se reutilizan")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Trabajo aceptado"),
+            @ApiResponse(responseCode = "400", description = "Parámetro inválido"),
+            @ApiResponse(responseCode = "503", description = "Cola de reportes llena")
+    })
+    public ResponseEntity<ReporteJobDto> encolarReporte(
+            @Parameter(description = "Límite de stock para considerar inventario bajo", required = true, example = "10")
+            @RequestParam int limite,
+            @Parameter(description = "Enviar el reporte por correo al usuario autenticado")
+            @RequestParam(defaultValue = "true") boolean enviarCorreo) {
+        String destinatario = enviarCorreo ? jwtUtil.obtenerCorreoActual() : null;
+        ReporteJobDto trabajo = reporteJobService.encolarInventarioBajo(limite, destinatario);
+        return ResponseEntity.accepted()
+                .location(URI.create("/reporte/jobs/" + trabajo.getId()))
+                .body(trabajo);
+    }
+
+    @GetMapping("/jobs/{id}")
+    @Operation(summary = "Consultar el estado de un trabajo de reporte")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Estado del trabajo"),
+            @ApiResponse(responseCode = "400", description = "Trabajo inexistente o vencido")
+    })
+    public ResponseEntity<ReporteJobDto> estadoReporte(@PathVariable String id) {
+        return ResponseEntity.ok(reporteJobService.obtener(id));
+    }
+
+    @GetMapping("/jobs/{id}/descarga")
+    @Operation(summary = "Descargar el PDF de un trabajo completado")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Reporte",
+                    content = @Content(mediaType = "application/pdf", schema = @Schema(type = "string", format = "binary"))),
+            @ApiResponse(responseCode = "400", description = "Trabajo inexistente, vencido o fallido"),
+            @ApiResponse(responseCode = "409", description = "El reporte todavía no está listo")
+    })
+    public ResponseEntity<Resource> descargarReporte(@PathVariable String id) throws IOException {
+        // El flujo conserva el archivo hasta terminar la copia aunque el trabajo venza mientras tanto
+        InputStream reporte = reporteJobService.abrir(id);
+        if (reporte == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=reporte_inventario_bajo.pdf")
+                .contentType(MediaType.APPLICATION_PDF)
+                .body(new InputStreamResource(reporte));
+    }
+
+    @GetMapping("/descargas/{*clave}")
+    @Operation(summary = "Descargar un reporte con un enlace firmado", description = "Enlace enviado por correo; no requiere JWT, la firma HMAC y el vencimiento autorizan la descarga")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Reporte",
+                    content = @Content(mediaType = "application/pdf", schema = @Schema(type = "string", format = "binary"))),
+            @ApiResponse(responseCode = "400", description = "El reporte ya no existe"),
+            @ApiResponse(responseCode = "403", description = "Firma inválida o enlace vencido")
+    })
+    public ResponseEntity<Resource> descargarConEnlace(@PathVariable String clave,
+                                                       @RequestParam long expira,
+                                                       @RequestParam String firma) throws IOException {
+        String claveReporte = clave.startsWith("/") ? clave.substring(1) : clave;
+        Resource reporte = entregaReportesService.abrir(claveReporte, expira, firma);
+        String nombre = claveReporte.substring(claveReporte.lastIndexOf('/') + 1);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + nombre)
+                .contentType(MediaType.APPLICATION_PDF)
+                .body(reporte);
+    }
+
+    @GetMapping("/tareas")
+    @PreAuthorize("hasRole('ADMINISTRADOR')")
+    @Operation(summary = "Estado de las tareas programadas", description = "Nodo que tiene o tuvo el turno, token de fencing y resultado y duración de la última ejecución")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Tareas registradas"),
+            @ApiResponse(responseCode = "403", description = "Requiere rol ADMINISTRADOR")
+    })
+    public ResponseEntity<List<TareaProgramadaDto>> listarTareas() {
+        return ResponseEntity.ok(bloqueoTareasService.listar());
+    }
 }
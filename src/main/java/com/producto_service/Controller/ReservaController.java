@@ -0,0 +1,92 @@
+package com.producto_service.Controller;
+
+import com.producto_service.Config.JwtUtil;
+import com.producto_service.DTO.ReservaDto;
+import com.producto_service.DTO.ReservaRequestDto;
+import com.producto_service.DTO.ResultadoStockDto;
+import com.producto_service.Service.ReservaStockService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/productos/reservas")
+@RequiredArgsConstructor
+@Tag(name = "Reservas", description = "API para reservas temporales de stock")
+public class ReservaController {
+
+    private static final String ROL_ADMINISTRADOR = "ADMINISTRADOR";
+
+    private final ReservaStockService reservaStockService;
+    private final JwtUtil jwtUtil;
+
+    @PostMapping
+    @Operation(summary = "Reservar stock", description = "Aparta stock de varios productos durante 'ttlSegundos'. Si alguna línea no tiene stock disponible no se reserva ninguna")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Reserva creada"),
+            @ApiResponse(responseCode = "400", description = "Solicitud inválida o stock disponible insuficiente"),
+            @ApiResponse(responseCode = "500", description = "Error interno del servidor")
+    })
+    public ResponseEntity<ReservaDto> reservar(@RequestBody ReservaRequestDto request) {
+        ReservaDto reserva = reservaStockService.reservar(request.getProductos(), request.getTtlSegundos(),
+                jwtUtil.obtenerCorreoActual());
+        return ResponseEntity.status(HttpStatus.CREATED).body(reserva);
+    }
+
+    @GetMapping("/disponibilidad")
+    @Operation(summary = "Consultar stock disponible para prometer", description = "Stock actual menos lo reservado, por producto. Los IDs inexistentes no aparecen en la respuesta")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Disponibilidad obtenida exitosamente")
+    })
+    public ResponseEntity<Map<Long, Integer>> disponibilidad(
+            @Parameter(description = "IDs de producto separados por coma", required = true, example = "1,2,3")
+            @RequestParam List<Long> ids) {
+        return ResponseEntity.ok(reservaStockService.disponibilidad(ids));
+    }
+
+    @GetMapping("/{id}")
+    @Operation(summary = "Obtener una reserva vigente")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Reserva encontrada"),
+            @ApiResponse(responseCode = "400", description = "Reserva inexistente, vencida o de otro usuario")
+    })
+    public ResponseEntity<ReservaDto> obtener(@PathVariable String id) {
+        return ResponseEntity.ok(reservaStockService.obtener(id, jwtUtil.obtenerCorreoActual(), esAdministrador()));
+    }
+
+    @PostMapping("/{id}/confirmar")
+    @Operation(summary = "Confirmar una reserva", description = "Descuenta del stock lo reservado y cierra la reserva")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Stock descontado, con el resultado por línea"),
+            @ApiResponse(responseCode = "400", description = "Reserva inexistente, vencida o de otro usuario, o stock insuficiente al confirmar"),
+            @ApiResponse(responseCode = "500", description = "Error interno del servidor")
+    })
+    public ResponseEntity<ResultadoStockDto> confirmar(@PathVariable String id) {
+        return ResponseEntity.ok(reservaStockService.confirmar(id, jwtUtil.obtenerCorreoActual(), esAdministrador()));
+    }
+
+    @DeleteMapping("/{id}")
+    @Operation(summary = "Liberar una reserva", description = "Devuelve al disponible el stock reservado sin modificar el stock")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Reserva liberada"),
+            @ApiResponse(responseCode = "400", description = "Reserva inexistente, vencida o de otro usuario")
+    })
+    public ResponseEntity<Void> liberar(@PathVariable String id) {
+        reservaStockService.liberar(id, jwtUtil.obtenerCorreoActual(), esAdministrador());
+        return ResponseEntity.noContent().build();
+    }
+
+    // Un administrador puede operar las reservas de cualquier usuario
+    private boolean esAdministrador() {
+        return ROL_ADMINISTRADOR.equalsIgnoreCase(jwtUtil.obtenerRolActual());
+    }
+}
@@ -0,0 +1,73 @@
+package com.producto_service.Controller;
+
+import com.producto_service.DTO.UmbralStockDto;
+import com.producto_service.Model.UmbralStock;
+import com.producto_service.Service.AlertaStockService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/productos/umbrales")
+@RequiredArgsConstructor
+@Tag(name = "Umbrales de stock", description = "Umbrales de stock bajo por producto y por categoría")
+public class UmbralStockController {
+
+    private final AlertaStockService alertaStockService;
+
+    @GetMapping
+    @Operation(summary = "Listar umbrales configurados", description = "Los productos sin umbral propio ni de su categoría usan el umbral por defecto")
+    @ApiResponse(responseCode = "200", description = "Umbrales obtenidos exitosamente")
+    public ResponseEntity<List<UmbralStockDto>> listar() {
+        return ResponseEntity.ok(alertaStockService.listarUmbrales());
+    }
+
+    @GetMapping("/producto/{id}")
+    @Operation(summary = "Consultar el umbral vigente de un producto", description = "Umbral propio, el de su categoría o el umbral por defecto")
+    @ApiResponse(responseCode = "200", description = "Umbral obtenido exitosamente")
+    public ResponseEntity<Integer> umbralVigente(@Parameter(description = "ID del producto", required = true) @PathVariable Long id) {
+        return ResponseEntity.ok(alertaStockService.umbralDe(id));
+    }
+
+    @PutMapping("/{tipo}/{id}")
+    @PreAuthorize("hasRole('ADMINISTRADOR')")
+    @Operation(summary = "Definir un umbral", description = "Crea o reemplaza el umbral de stock bajo de un producto o de una categoría")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Umbral guardado"),
+            @ApiResponse(responseCode = "400", description = "Umbral inválido o referencia inexistente")
+    })
+    public ResponseEntity<UmbralStockDto> guardar(
+            @Parameter(description = "producto o categoria", required = true) @PathVariable String tipo,
+            @Parameter(description = "ID del producto o de la categoría", required = true) @PathVariable Long id,
+            @RequestBody UmbralStockDto request) {
+        return ResponseEntity.ok(alertaStockService.guardarUmbral(tipo(tipo), id, request.getUmbral()));
+    }
+
+    @DeleteMapping("/{tipo}/{id}")
+    @PreAuthorize("hasRole('ADMINISTRADOR')")
+    @Operation(summary = "Eliminar un umbral")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Umbral eliminado"),
+            @ApiResponse(responseCode = "400", description = "No hay umbral configurado")
+    })
+    public ResponseEntity<Void> eliminar(@PathVariable String tipo, @PathVariable Long id) {
+        alertaStockService.eliminarUmbral(tipo(tipo), id);
+        return ResponseEntity.noContent().build();
+    }
+
+    private static UmbralStock.Tipo tipo(String tipo) {
+        return switch (tipo.toLowerCase()) {
+            case "producto" -> UmbralStock.Tipo.PRODUCTO;
+            case "categoria" -> UmbralStock.Tipo.CATEGORIA;
+            default -> throw new IllegalArgumentException("Tipo de umbral no soportado: " + tipo + " (producto | categoria)");
+        };
+    }
+}
@@ -0,0 +1,23 @@
+package com.producto_service.DTO;
+
+import lombok.*;
+
+/**
+ * Entrada del feed de cambios. {@code producto} viene con el estado actual para
+ * {@link Tipo#ACTUALIZADO} (altas y modificaciones) y es nulo para {@link Tipo#ELIMINADO}.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class CambioProductoDto {
+    private Long version;
+    private Long productoId;
+    private Tipo tipo;
+    private ProductoResponseDto producto;
+
+    public enum Tipo {
+        ACTUALIZADO,
+        ELIMINADO
+    }
+}
@@ -0,0 +1,63 @@
+package com.producto_service.DTO;
+
+import lombok.*;
+
+/**
+ * Posición de la paginación por keyset: el id del último producto entregado y, si la página se ordena
+ * por precio o stock, el valor que tenía en ese campo al entregarlo (nulo si no lo tenía). Viaja al
+ * cliente como un token opaco en {@code siguienteCursor}, así la página siguiente no depende del valor
+ * actual de ese producto, que puede haber cambiado entre una petición y otra.
+ * <p>
+ * Formato: {@code <id>} al ordenar por id y {@code precio:<valor>:<id>} o {@code stock:<valor>:<id>} en
+ * los otros órdenes, con el valor vacío si era nulo.
+ */
+@Getter
+@AllArgsConstructor
+public class CursorProductoDto {
+
+    private static final String SEPARADOR = ":";
+
+    private final ProductoFiltroDto.Orden orden;
+    private final Long id;
+    private final Number valor;
+
+    public static CursorProductoDto de(ProductoResponseDto producto, ProductoFiltroDto.Orden orden) {
+        Number valor = switch (orden) {
+            case ID -> null;
+            case PRECIO -> producto.getPrecio();
+            case STOCK -> producto.getCantidad();
+        };
+        return new CursorProductoDto(orden, producto.getId(), valor);
+    }
+
+    public String codificar() {
+        if (orden == ProductoFiltroDto.Orden.ID) {
+            return String.valueOf(id);
+        }
+        return prefijo(orden) + SEPARADOR + (valor == null ? "" : valor) + SEPARADOR + id;
+    }
+
+    /**
+     * @throws IllegalArgumentException si el token no es un cursor válido para {@code orden}
+     */
+    public static CursorProductoDto decodificar(String token, ProductoFiltroDto.Orden orden) {
+        try {
+            if (orden == ProductoFiltroDto.Orden.ID) {
+                return new CursorProductoDto(orden, Long.parseLong(token), null);
+            }
+            String[] partes = token.split(SEPARADOR, -1);
+            if (partes.length != 3 || !partes[0].equals(prefijo(orden))) {
+                throw new IllegalArgumentException("El cursor " + token + " no corresponde al orden pedido; reinicie la paginación.");
+            }
+            Number valor = partes[1].isEmpty() ? null
+                    : orden == ProductoFiltroDto.Orden.PRECIO ? (Number) Double.valueOf(partes[1]) : Integer.valueOf(partes[1]);
+            return new CursorProductoDto(orden, Long.parseLong(partes[2]), valor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("El cursor " + token + " no es válido; reinicie la paginación.");
+        }
+    }
+
+    private static String prefijo(ProductoFiltroDto.Orden orden) {
+        return orden == ProductoFiltroDto.Orden.PRECIO ? "precio" : "stock";
+    }
+}
@@ -0,0 +1,18 @@
+package com.producto_service.DTO;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * Respuesta de la consulta de disponibilidad: {@code disponible} es verdadero si todas las líneas
+ * pueden surtirse con el stock actual. No modifica ni reserva stock.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class DisponibilidadDto {
+    private boolean disponible;
+    private List<LineaStockDto> lineas;
+}
@@ -0,0 +1,27 @@
+package com.producto_service.DTO;
+
+import lombok.*;
+
+import java.util.Date;
+
+/**
+ * Cambio de stock publicado desde el outbox. {@code id} es único y sirve a los consumidores para
+ * descartar repetidos (la entrega es al menos una vez); no sigue el orden de commit entre transacciones
+ * concurrentes, así que no debe usarse como marca de "ya visto hasta aquí".
+ * {@code version} es el {@code producto.version} que dejó el cambio y ordena los eventos de un mismo
+ * producto: uno con versión menor que la última vista es viejo. La eliminación lleva la versión del
+ * último estado. Es nula si no se conoce.
+ * {@code stockAnterior} es nulo al crear el producto y {@code stockNuevo} es nulo al eliminarlo.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class EventoOutboxDto {
+    private Long id;
+    private Long productoId;
+    private Integer stockAnterior;
+    private Integer stockNuevo;
+    private Long version;
+    private Date fecha;
+}
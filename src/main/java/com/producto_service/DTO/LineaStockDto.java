@@ -0,0 +1,24 @@
+package com.producto_service.DTO;
+
+import lombok.*;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class LineaStockDto {
+
+    public enum Estado {
+        OK,
+        NO_ENCONTRADO,
+        CANTIDAD_INVALIDA,
+        STOCK_INSUFICIENTE
+    }
+
+    private Long productoId;
+    private Integer cantidadSolicitada;
+    private Integer stockAnterior;
+    private Integer stockResultante;
+    private Estado estado;
+    private String mensaje;
+}
@@ -0,0 +1,21 @@
+package com.producto_service.DTO;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * Página del feed de cambios ordenada por (versión, id de producto). La página siguiente, o el próximo
+ * sondeo si {@code hayMas} es falso, se pide con {@code since=siguienteVersion} y {@code despuesDe=siguienteId}.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class PaginaCambiosDto {
+    private List<CambioProductoDto> cambios;
+    private long siguienteVersion;
+    private long siguienteId;
+    private boolean hayMas;
+    private long versionActual;
+}
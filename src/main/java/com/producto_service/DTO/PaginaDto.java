@@ -0,0 +1,20 @@
+package com.producto_service.DTO;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * Página obtenida por keyset: {@code siguienteCursor} es un token opaco con la posición del último
+ * elemento ({@link CursorProductoDto}) y se envía como {@code after} para pedir la página siguiente.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class PaginaDto<T> {
+    private List<T> items;
+    private String siguienteCursor;
+    private boolean hayMas;
+    private int limite;
+}
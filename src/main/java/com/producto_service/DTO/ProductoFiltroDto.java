@@ -0,0 +1,25 @@
+package com.producto_service.DTO;
+
+import lombok.*;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductoFiltroDto {
+
+    public enum Orden {
+        ID,
+        PRECIO,
+        STOCK
+    }
+
+    private String categoria;
+    private String marca;
+    private Double precioMin;
+    private Double precioMax;
+    private Integer stockMin;
+    private Integer stockMax;
+    private Orden orden = Orden.ID;
+    private boolean descendente;
+}
@@ -4,17 +4,28 @@ import com.producto_service.Model.Categoria;
 import com.producto_service.Model.Marca;
 import lombok.*;
 
-import java.util.List;
-
+/**
+ * Vista de lectura de un producto. Las consultas de {@code ProductoRepository} la construyen
+ * directamente con las columnas necesarias, sin cargar la entidad ni su historial.
+ */
 @Getter
 @Setter
 @AllArgsConstructor
 @NoArgsConstructor
 public class ProductoResponseDto {
+    private Long id;
     private String nombre;
     private String descripcion;
     private Integer cantidad;
     private Double precio;
     private Categoria categoria;
     private Marca marca;
+
+    public ProductoResponseDto(Long id, String nombre, String descripcion, Integer cantidad, Double precio,
+                               Long categoriaId, String categoriaNombre, String categoriaDescripcion,
+                               Long marcaId, String marcaNombre) {
+        this(id, nombre, descripcion, cantidad, precio,
+                new Categoria(categoriaId, categoriaNombre, categoriaDescripcion, null),
+                new Marca(marcaId, marcaNombre, null));
+    }
 }
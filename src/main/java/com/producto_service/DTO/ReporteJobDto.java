@@ -0,0 +1,30 @@
+package com.producto_service.DTO;
+
+import lombok.*;
+
+import java.util.Date;
+
+/**
+ * Estado de un trabajo de generación de reporte. {@code tamano} solo se informa cuando el reporte
+ * está listo; {@code notificado} indica si se envió por correo.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReporteJobDto {
+
+    public enum Estado {
+        PENDIENTE, EN_CURSO, COMPLETADO, FALLIDO
+    }
+
+    private String id;
+    private String tipo;
+    private Integer limite;
+    private Estado estado;
+    private Date creado;
+    private Date terminado;
+    private Long tamano;
+    private boolean notificado;
+    private String error;
+}
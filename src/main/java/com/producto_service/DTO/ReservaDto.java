@@ -0,0 +1,16 @@
+package com.producto_service.DTO;
+
+import lombok.*;
+
+import java.util.Date;
+import java.util.Map;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReservaDto {
+    private String id;
+    private Map<Long, Integer> productos;
+    private Date expira;
+}
@@ -0,0 +1,17 @@
+package com.producto_service.DTO;
+
+import lombok.*;
+
+import java.util.Map;
+
+/**
+ * Solicitud de reserva: productos (ID -> cantidad) y duración opcional de la reserva.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReservaRequestDto {
+    private Map<Long, Integer> productos;
+    private Integer ttlSegundos;
+}
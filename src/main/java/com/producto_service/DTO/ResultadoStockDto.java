@@ -0,0 +1,14 @@
+package com.producto_service.DTO;
+
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class ResultadoStockDto {
+    private boolean aplicado;
+    private List<LineaStockDto> lineas;
+}
@@ -0,0 +1,20 @@
+package com.producto_service.DTO;
+
+import lombok.*;
+
+import java.util.Date;
+
+/**
+ * Cambio de stock enviado por SSE. {@code id} es el id del registro de historial
+ * y sirve como {@code Last-Event-ID} para reanudar la suscripción.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class StockEventoDto {
+    private Long id;
+    private Long productoId;
+    private Integer stock;
+    private Date fecha;
+}
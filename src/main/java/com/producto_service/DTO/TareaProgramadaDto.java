@@ -0,0 +1,25 @@
+package com.producto_service.DTO;
+
+import lombok.*;
+
+import java.util.Date;
+
+/**
+ * Estado de una tarea programada en el clúster: qué nodo tiene (o tuvo) el turno, su token de fencing
+ * y el resultado y la duración de la última ejecución terminada.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class TareaProgramadaDto {
+    private String nombre;
+    private String nodo;
+    private Long token;
+    private boolean enCurso;
+    private Date bloqueadoHasta;
+    private Date ultimoInicio;
+    private Date ultimoFin;
+    private Long ultimaDuracionMs;
+    private String ultimoResultado;
+}
@@ -0,0 +1,14 @@
+package com.producto_service.DTO;
+
+import com.producto_service.Model.UmbralStock;
+import lombok.*;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class UmbralStockDto {
+    private UmbralStock.Tipo tipo;
+    private Long referenciaId;
+    private Integer umbral;
+}
@@ -0,0 +1,8 @@
+package com.producto_service.Event;
+
+/**
+ * Evento publicado por {@code ProductoService} cuando cambian los datos de un producto
+ * (nombre, descripción, precio, categoría o marca).
+ */
+public record ProductoActualizadoEvent(Long productoId) {
+}
@@ -0,0 +1,14 @@
+package com.producto_service.Event;
+
+/**
+ * Evento publicado por {@code ProductoService} cada vez que cambia el stock de un producto.
+ * {@code stockAnterior} es nulo cuando el producto se crea y {@code stockNuevo} es nulo cuando se elimina.
+ * {@code version} es el {@code producto.version} que deja la transacción y permite a los consumidores
+ * descartar eventos que llegan después de uno más nuevo; es nula si no se conoce.
+ */
+public record StockCambiadoEvent(Long productoId, Integer stockAnterior, Integer stockNuevo, Long version) {
+
+    public StockCambiadoEvent(Long productoId, Integer stockAnterior, Integer stockNuevo) {
+        this(productoId, stockAnterior, stockNuevo, null);
+    }
+}
@@ -0,0 +1,13 @@
+package com.producto_service.Exception;
+
+/**
+ * Se lanza cuando una operación de stock no pudo completarse por concurrencia
+ * (reintentos optimistas agotados o tiempo de espera de bloqueo superado). No se aplicó nada
+ * y el cliente puede reintentar.
+ */
+public class ConflictoStockException extends RuntimeException {
+
+    public ConflictoStockException(String mensaje, Throwable causa) {
+        super(mensaje, causa);
+    }
+}
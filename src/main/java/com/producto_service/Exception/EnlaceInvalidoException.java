@@ -0,0 +1,11 @@
+package com.producto_service.Exception;
+
+/**
+ * Se lanza cuando un enlace de descarga de reporte tiene una firma que no corresponde o ya venció.
+ */
+public class EnlaceInvalidoException extends RuntimeException {
+
+    public EnlaceInvalidoException(String mensaje) {
+        super(mensaje);
+    }
+}
@@ -1,7 +1,9 @@
 package com.producto_service.Exception;
 
+import com.producto_service.DTO.LineaStockDto;
 import lombok.Builder;
 import lombok.Getter;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -10,7 +12,9 @@ import org.springframework.web.bind.annotation.RestControllerAdvice;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestControllerAdvice
 public class GlobalExceptionHandler {
@@ -48,6 +52,66 @@ public class GlobalExceptionHandler {
         return ResponseEntity.badRequest().body(response);
     }
 
+    @ExceptionHandler(StockOperacionException.class)
+    public ResponseEntity<ErrorResponse> handleStockOperacionException(StockOperacionException exception) {
+        Map<String, String> errorDetails = new LinkedHashMap<>();
+        for (LineaStockDto linea : exception.getResultado().getLineas()) {
+            if (linea.getEstado() != LineaStockDto.Estado.OK) {
+                errorDetails.put(String.valueOf(linea.getProductoId()), linea.getMensaje());
+            }
+        }
+        ErrorResponse response = ErrorResponse.builder()
+                .message(exception.getMessage())
+                .status(HttpStatus.BAD_REQUEST.value())
+                .timestamp(LocalDateTime.now())
+                .errors(errorDetails)
+                .build();
+
+        return ResponseEntity.badRequest().body(response);
+    }
+
+    @ExceptionHandler(ConflictoStockException.class)
+    public ResponseEntity<ErrorResponse> handleConflictoStockException(ConflictoStockException exception) {
+        Map<String, String> errorDetails = new HashMap<>();
+        errorDetails.put("message", exception.getMessage());
+        ErrorResponse response = ErrorResponse.builder()
+                .message("Conflicto de concurrencia, reintente la operación")
+                .status(HttpStatus.CONFLICT.value())
+                .timestamp(LocalDateTime.now())
+                .errors(errorDetails)
+                .build();
+
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+    }
+
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<ErrorResponse> handleRejectedExecutionException(RejectedExecutionException exception) {
+        Map<String, String> errorDetails = new HashMap<>();
+        errorDetails.put("message", exception.getMessage());
+        ErrorResponse response = ErrorResponse.builder()
+                .message("Servicio saturado, reintente más tarde")
+                .status(HttpStatus.SERVICE_UNAVAILABLE.value())
+                .timestamp(LocalDateTime.now())
+                .errors(errorDetails)
+                .build();
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "5").body(response);
+    }
+
+    @ExceptionHandler(EnlaceInvalidoException.class)
+    public ResponseEntity<ErrorResponse> handleEnlaceInvalidoException(EnlaceInvalidoException exception) {
+        Map<String, String> errorDetails = new HashMap<>();
+        errorDetails.put("message", exception.getMessage());
+        ErrorResponse response = ErrorResponse.builder()
+                .message("Enlace de descarga inválido o vencido")
+                .status(HttpStatus.FORBIDDEN.value())
+                .timestamp(LocalDateTime.now())
+                .errors(errorDetails)
+                .build();
+
+        return ResponseEntity.status(HttpStatus.FORBIDDEN).body(response);
+    }
+
     @Builder
     @Getter
     public static class ErrorResponse {
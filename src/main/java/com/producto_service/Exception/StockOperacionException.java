@@ -0,0 +1,19 @@
+package com.producto_service.Exception;
+
+import com.producto_service.DTO.ResultadoStockDto;
+import lombok.Getter;
+
+/**
+ * Se lanza cuando alguna línea de una operación de stock por lote no puede aplicarse.
+ * Ninguna línea queda aplicada y el resultado describe el estado de cada una.
+ */
+@Getter
+public class StockOperacionException extends IllegalArgumentException {
+
+    private final ResultadoStockDto resultado;
+
+    public StockOperacionException(String mensaje, ResultadoStockDto resultado) {
+        super(mensaje);
+        this.resultado = resultado;
+    }
+}
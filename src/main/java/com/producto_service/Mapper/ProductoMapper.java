@@ -10,6 +10,7 @@ public class ProductoMapper {
 
     public ProductoResponseDto toDto(Producto producto) {
         ProductoResponseDto dto = new ProductoResponseDto();
+        dto.setId(producto.getId());
         dto.setNombre(producto.getNombre());
         dto.setDescripcion(producto.getDescripcion());
         dto.setCantidad(producto.getCantidad());
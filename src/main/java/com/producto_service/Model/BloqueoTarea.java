@@ -0,0 +1,38 @@
+package com.producto_service.Model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Turno de una tarea programada compartido por todas las réplicas (una fila por tarea). Solo el nodo
+ * que toma el turno ejecuta la tarea hasta {@code bloqueadoHasta}; {@code token} crece con cada turno y
+ * sirve de token de fencing. Los tiempos se guardan en milisegundos epoch.
+ */
+@Entity
+@Table(name = "bloqueo_tarea")
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class BloqueoTarea {
+    @Id
+    @Column(length = 100)
+    private String nombre;
+    @Column(length = 200)
+    private String duenio;
+    @Column(nullable = false)
+    private Long token;
+    @Column(name = "bloqueado_hasta", nullable = false)
+    private Long bloqueadoHasta;
+    @Column(name = "ultimo_inicio")
+    private Long ultimoInicio;
+    @Column(name = "ultimo_fin")
+    private Long ultimoFin;
+    @Column(name = "ultima_duracion_ms")
+    private Long ultimaDuracionMs;
+    @Column(name = "ultimo_resultado", length = 500)
+    private String ultimoResultado;
+    // Valor que la tarea conserva entre ejecuciones, sea cual sea el nodo (p. ej. la huella del último reporte)
+    @Column(length = 200)
+    private String marca;
+}
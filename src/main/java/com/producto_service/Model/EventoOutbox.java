@@ -0,0 +1,32 @@
+package com.producto_service.Model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.util.Date;
+
+/**
+ * Cambio de stock pendiente de publicar. Se inserta en la misma transacción que el cambio y el
+ * relevo lo borra cuando el publicador lo confirma.
+ */
+@Entity
+@Table(name = "evento_outbox")
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class EventoOutbox {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    @Column(name = "producto_id", nullable = false)
+    private Long productoId;
+    @Column(name = "stock_anterior")
+    private Integer stockAnterior;
+    @Column(name = "stock_nuevo")
+    private Integer stockNuevo;
+    // producto.version que dejó el cambio: ordena los eventos de cada producto
+    private Long version;
+    @Column(nullable = false)
+    private Date creado;
+}
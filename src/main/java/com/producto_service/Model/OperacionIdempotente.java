@@ -0,0 +1,39 @@
+package com.producto_service.Model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.util.Date;
+
+/**
+ * Resultado guardado de una operación de stock enviada con {@code Idempotency-Key}.
+ * {@code estado} es 0 mientras la operación está en curso y el código HTTP de la respuesta al terminar.
+ * Mientras está en curso, {@code propietario} identifica la ejecución dueña y {@code vence} el momento
+ * a partir del cual un reintento puede tomarla.
+ */
+@Entity
+@Table(name = "operacion_idempotente", indexes = {
+        @Index(name = "idx_operacion_idempotente_creada", columnList = "creada")
+})
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class OperacionIdempotente {
+    @Id
+    @Column(length = 100)
+    private String clave;
+    @Column(nullable = false, length = 44)
+    private String huella;
+    @Column(nullable = false)
+    private Short estado;
+    @Column(length = 500)
+    private String mensaje;
+    @Column(columnDefinition = "TEXT")
+    private String resultado;
+    @Column(nullable = false)
+    private Date creada;
+    @Column(length = 36)
+    private String propietario;
+    private Date vence;
+}
@@ -3,10 +3,18 @@ package com.producto_service.Model;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.util.List;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_producto_stock", columnList = "stock, id"),
+        @Index(name = "idx_producto_precio", columnList = "precio, id"),
+        @Index(name = "idx_producto_categoria", columnList = "categoria_id, id"),
+        @Index(name = "idx_producto_marca", columnList = "marca_id, id"),
+        @Index(name = "idx_producto_version", columnList = "version_catalogo, id")
+})
 @Getter
 @Setter
 @AllArgsConstructor
@@ -27,6 +35,15 @@ public class Producto {
     @JoinColumn(name = "marca_id", nullable = false)
     private Marca marca;
     private Double precio;
+    // Versión del catálogo en la que se escribió por última vez; la asigna CambiosCatalogoService al confirmar
+    @Column(name = "version_catalogo", insertable = false, updatable = false)
+    @ColumnDefault("0")
+    private Long versionCatalogo;
+    // Control de concurrencia optimista; las estrategias de stock que escriben por SQL también lo incrementan
+    @Version
+    @Column(name = "version")
+    @ColumnDefault("0")
+    private Long version;
     @OneToMany(mappedBy = "producto", cascade = CascadeType.ALL, orphanRemoval = true)
     @JsonManagedReference
     private List<Historial> historiales;
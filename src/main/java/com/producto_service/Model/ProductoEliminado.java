@@ -0,0 +1,24 @@
+package com.producto_service.Model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Marca de borrado de un producto para el feed de cambios: permite a los clientes
+ * que sincronizan por versión enterarse de las eliminaciones.
+ */
+@Entity
+@Table(name = "producto_eliminado", indexes = {
+        @Index(name = "idx_producto_eliminado_version", columnList = "version_catalogo, producto_id")
+})
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductoEliminado {
+    @Id
+    @Column(name = "producto_id")
+    private Long productoId;
+    @Column(name = "version_catalogo", nullable = false)
+    private Long versionCatalogo;
+}
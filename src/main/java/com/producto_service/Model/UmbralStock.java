@@ -0,0 +1,34 @@
+package com.producto_service.Model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Umbral de stock bajo de un producto o de una categoría. El umbral de un producto tiene prioridad
+ * sobre el de su categoría; sin ninguno se usa {@code productos.alertas.umbral-por-defecto}.
+ */
+@Entity
+@Table(name = "umbral_stock", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_umbral_stock_tipo_referencia", columnNames = {"tipo", "referencia_id"})
+})
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class UmbralStock {
+
+    public enum Tipo {
+        PRODUCTO, CATEGORIA
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Tipo tipo;
+    @Column(name = "referencia_id", nullable = false)
+    private Long referenciaId;
+    @Column(nullable = false)
+    private Integer umbral;
+}
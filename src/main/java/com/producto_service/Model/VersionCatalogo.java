@@ -0,0 +1,22 @@
+package com.producto_service.Model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Marca de agua del feed de cambios (una sola fila): la mayor versión del catálogo tal que todas las
+ * anteriores están confirmadas o descartadas. La avanza una tarea programada sobre
+ * {@link VersionCatalogoConfirmada}; ni los escritores ni los lectores del feed la tocan.
+ */
+@Entity
+@Table(name = "version_catalogo")
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class VersionCatalogo {
+    @Id
+    private Integer id;
+    @Column(nullable = false)
+    private Long valor;
+}
@@ -0,0 +1,27 @@
+package com.producto_service.Model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Versión del catálogo confirmada. Cada transacción que modifica productos toma su versión de la
+ * secuencia {@code version_catalogo_seq} y la inserta aquí antes del commit; la fila solo es visible
+ * si la transacción se confirmó. Una versión tomada y aún sin fila es un hueco: la marca de agua
+ * ({@link VersionCatalogo}) no lo sobrepasa. {@code confirmadaEn} es la hora de la base, con zona.
+ */
+@Entity
+@Table(name = "version_catalogo_confirmada")
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class VersionCatalogoConfirmada {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "version_catalogo_seq")
+    @SequenceGenerator(name = "version_catalogo_seq", sequenceName = "version_catalogo_seq", allocationSize = 1)
+    private Long version;
+    @Column(name = "confirmada_en", nullable = false)
+    private Instant confirmadaEn;
+}
@@ -0,0 +1,9 @@
+package com.producto_service.Repository;
+
+import com.producto_service.Model.BloqueoTarea;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface BloqueoTareaRepository extends JpaRepository<BloqueoTarea, String> {
+}
@@ -0,0 +1,21 @@
+package com.producto_service.Repository;
+
+import com.producto_service.Model.ProductoEliminado;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ProductoEliminadoRepository extends JpaRepository<ProductoEliminado, Long> {
+
+    @Query("select e from ProductoEliminado e "
+            + "where e.versionCatalogo <= :hasta "
+            + "and (e.versionCatalogo > :version or (e.versionCatalogo = :version and e.productoId > :id)) "
+            + "order by e.versionCatalogo, e.productoId")
+    List<ProductoEliminado> findCambiosDesde(@Param("version") long version, @Param("id") long despuesDeId,
+                                             @Param("hasta") long hasta, Limit limite);
+}
@@ -1,22 +1,65 @@
 package com.producto_service.Repository;
 
+import com.producto_service.DTO.ProductoResponseDto;
 import com.producto_service.Model.Producto;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface ProductoRepository extends JpaRepository<Producto, Long> {
+public interface ProductoRepository extends JpaRepository<Producto, Long>, ProductoRepositoryCustom {
+
+    // Proyección de lectura: una sola sentencia con las columnas de la vista, sin historiales
+    String SELECT_VISTA = "select new com.producto_service.DTO.ProductoResponseDto("
+            + "p.id, p.nombre, p.descripcion, p.cantidad, p.precio, c.id, c.nombre, c.descripcion, m.id, m.nombre) "
+            + "from Producto p join p.categoria c join p.marca m ";
+
+    String FETCH_SIZE_EXPORTACION = "1000";
 
     List<Producto> findByCategoriaNombre(String categoriaNombre);
 
 
     List<Producto> findByMarcaNombre(String marcaNombre);
 
+    @Query(SELECT_VISTA + "where c.nombre = :categoria order by p.id")
+    List<ProductoResponseDto> findVistasByCategoriaNombre(@Param("categoria") String categoria);
+
+    @Query(SELECT_VISTA + "where p.id in :ids order by p.id")
+    List<ProductoResponseDto> findVistasByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query(SELECT_VISTA + "where p.nombre = :nombre")
+    Optional<ProductoResponseDto> findVistaByNombre(@Param("nombre") String nombre);
+
+    // Recorre el catálogo con un cursor JDBC: las filas se leen por bloques de FETCH_SIZE_EXPORTACION
+    // y, al ser una proyección, no se acumulan en el contexto de persistencia
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = FETCH_SIZE_EXPORTACION),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(SELECT_VISTA + "order by p.id")
+    Stream<ProductoResponseDto> streamVistas();
+
+    // Productos bajo un límite de stock en el orden del reporte, recorridos con cursor (índice stock, id)
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = FETCH_SIZE_EXPORTACION),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(SELECT_VISTA + "where p.cantidad < :limite order by p.cantidad, p.id")
+    Stream<ProductoResponseDto> streamVistasConStockMenorA(@Param("limite") int limite);
+
+    @Query("select p.nombre from Producto p join p.marca m where m.nombre = :marca order by p.id")
+    List<String> findNombresByMarcaNombre(@Param("marca") String marca);
+
 
     List<Producto> findAllById(Iterable<Long> ids);
 
@@ -24,6 +67,36 @@ public interface ProductoRepository extends JpaRepository<Producto, Long> {
 
     Optional<Producto> findByNombre(String nombre);
 
+    List<Producto> findByCantidadLessThanOrderByCantidadAscIdAsc(Integer limite);
+
+    @Query("select p.id as id, p.cantidad as cantidad, p.version as version from Producto p")
+    List<StockProducto> findAllStock();
+
+    @Query("select p.id as id, p.cantidad as cantidad, p.version as version from Producto p where p.id in :ids")
+    List<StockProducto> findStockByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select c.id from Producto p join p.categoria c where p.id = :id")
+    Optional<Long> findCategoriaIdById(@Param("id") Long id);
+
+    interface StockProducto {
+        Long getId();
+        Integer getCantidad();
+        Long getVersion();
+    }
+
+    // Keyset sobre (versionCatalogo, id) para el feed de cambios
+    @Query("select p.id as id, p.versionCatalogo as versionCatalogo from Producto p "
+            + "where p.versionCatalogo <= :hasta "
+            + "and (p.versionCatalogo > :version or (p.versionCatalogo = :version and p.id > :id)) "
+            + "order by p.versionCatalogo, p.id")
+    List<VersionProducto> findCambiosDesde(@Param("version") long version, @Param("id") long despuesDeId,
+                                           @Param("hasta") long hasta, Limit limite);
+
+    interface VersionProducto {
+        Long getId();
+        Long getVersionCatalogo();
+    }
+
 
 
 }
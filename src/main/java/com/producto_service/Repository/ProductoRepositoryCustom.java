@@ -0,0 +1,25 @@
+package com.producto_service.Repository;
+
+import com.producto_service.DTO.CursorProductoDto;
+import com.producto_service.DTO.ProductoFiltroDto;
+import com.producto_service.DTO.ProductoResponseDto;
+import com.producto_service.Model.Producto;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface ProductoRepositoryCustom {
+
+    /**
+     * Devuelve hasta {@code limite} productos que cumplen el filtro, en el orden indicado,
+     * posteriores al cursor {@code despuesDe} (null para la primera página).
+     */
+    List<ProductoResponseDto> buscarPagina(ProductoFiltroDto filtro, CursorProductoDto despuesDe, int limite);
+
+    /**
+     * Carga los productos con {@code SELECT ... FOR UPDATE} ordenado por id, de modo que dos
+     * operaciones sobre los mismos productos bloquean las filas en el mismo orden y no se interbloquean.
+     * {@code timeoutMs} es la espera máxima por cada bloqueo, en los dialectos que la soportan.
+     */
+    List<Producto> bloquearPorIds(Collection<Long> ids, int timeoutMs);
+}
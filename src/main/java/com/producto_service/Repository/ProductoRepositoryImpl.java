@@ -0,0 +1,128 @@
+package com.producto_service.Repository;
+
+import com.producto_service.DTO.CursorProductoDto;
+import com.producto_service.DTO.ProductoFiltroDto;
+import com.producto_service.DTO.ProductoResponseDto;
+import com.producto_service.Model.Categoria;
+import com.producto_service.Model.Marca;
+import com.producto_service.Model.Producto;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.*;
+import org.hibernate.jpa.SpecHints;
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Consulta paginada por keyset: en lugar de OFFSET se filtra por (campo de orden, id) del último
+ * elemento entregado, de modo que cada página usa los índices (stock, id) / (precio, id) / PK
+ * y su costo no crece con la posición en el catálogo. Se proyecta directamente a la vista de lectura
+ * en una sola sentencia con los joins de categoría y marca. El valor del campo de orden viaja en el
+ * cursor; los productos sin ese valor van al final en ambos sentidos.
+ */
+public class ProductoRepositoryImpl implements ProductoRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<ProductoResponseDto> buscarPagina(ProductoFiltroDto filtro, CursorProductoDto despuesDe, int limite) {
+        HibernateCriteriaBuilder cb = (HibernateCriteriaBuilder) entityManager.getCriteriaBuilder();
+        CriteriaQuery<ProductoResponseDto> query = cb.createQuery(ProductoResponseDto.class);
+        Root<Producto> producto = query.from(Producto.class);
+        Join<Producto, Categoria> categoria = producto.join("categoria");
+        Join<Producto, Marca> marca = producto.join("marca");
+
+        List<Predicate> condiciones = new ArrayList<>();
+        if (filtro.getCategoria() != null) {
+            condiciones.add(cb.equal(categoria.get("nombre"), filtro.getCategoria()));
+        }
+        if (filtro.getMarca() != null) {
+            condiciones.add(cb.equal(marca.get("nombre"), filtro.getMarca()));
+        }
+        if (filtro.getPrecioMin() != null) {
+            condiciones.add(cb.greaterThanOrEqualTo(producto.get("precio"), filtro.getPrecioMin()));
+        }
+        if (filtro.getPrecioMax() != null) {
+            condiciones.add(cb.lessThanOrEqualTo(producto.get("precio"), filtro.getPrecioMax()));
+        }
+        if (filtro.getStockMin() != null) {
+            condiciones.add(cb.greaterThanOrEqualTo(producto.get("cantidad"), filtro.getStockMin()));
+        }
+        if (filtro.getStockMax() != null) {
+            condiciones.add(cb.lessThanOrEqualTo(producto.get("cantidad"), filtro.getStockMax()));
+        }
+
+        Path<Long> id = producto.get("id");
+        boolean porId = filtro.getOrden() == ProductoFiltroDto.Orden.ID;
+        boolean descendente = filtro.isDescendente();
+        Path<?> campo;
+        if (porId) {
+            campo = id;
+            if (despuesDe != null) {
+                condiciones.add(despues(cb, id, despuesDe.getId(), descendente));
+            }
+        } else if (filtro.getOrden() == ProductoFiltroDto.Orden.PRECIO) {
+            Path<Double> precio = producto.get("precio");
+            campo = precio;
+            if (despuesDe != null) {
+                Double valor = despuesDe.getValor() == null ? null : despuesDe.getValor().doubleValue();
+                condiciones.add(despuesDelCursor(cb, precio, valor, id, despuesDe.getId(), descendente));
+            }
+        } else {
+            Path<Integer> cantidad = producto.get("cantidad");
+            campo = cantidad;
+            if (despuesDe != null) {
+                Integer valor = despuesDe.getValor() == null ? null : despuesDe.getValor().intValue();
+                condiciones.add(despuesDelCursor(cb, cantidad, valor, id, despuesDe.getId(), descendente));
+            }
+        }
+
+        query.select(cb.construct(ProductoResponseDto.class,
+                        id, producto.get("nombre"), producto.get("descripcion"), producto.get("cantidad"), producto.get("precio"),
+                        categoria.get("id"), categoria.get("nombre"), categoria.get("descripcion"),
+                        marca.get("id"), marca.get("nombre")))
+                .where(condiciones.toArray(new Predicate[0]));
+        if (porId) {
+            query.orderBy(descendente ? cb.desc(id) : cb.asc(id));
+        } else {
+            query.orderBy(descendente ? cb.desc(campo, false) : cb.asc(campo, false), descendente ? cb.desc(id) : cb.asc(id));
+        }
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limite)
+                .getResultList();
+    }
+
+    // (campo, id) estrictamente después del cursor, en el sentido del orden y con los nulos al final
+    private static <T extends Comparable<? super T>> Predicate despuesDelCursor(CriteriaBuilder cb, Path<T> campo, T valor,
+                                                                                Path<Long> id, Long despuesDeId,
+                                                                                boolean descendente) {
+        if (valor == null) {
+            return cb.and(cb.isNull(campo), despues(cb, id, despuesDeId, descendente));
+        }
+        return cb.or(
+                despues(cb, campo, valor, descendente),
+                cb.and(cb.equal(campo, valor), despues(cb, id, despuesDeId, descendente)),
+                cb.isNull(campo)
+        );
+    }
+
+    private static <T extends Comparable<? super T>> Predicate despues(CriteriaBuilder cb, Expression<? extends T> campo,
+                                                                       T valor, boolean descendente) {
+        return descendente ? cb.lessThan(campo, valor) : cb.greaterThan(campo, valor);
+    }
+
+    @Override
+    public List<Producto> bloquearPorIds(Collection<Long> ids, int timeoutMs) {
+        return entityManager.createQuery("select p from Producto p where p.id in :ids order by p.id", Producto.class)
+                .setParameter("ids", ids)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .setHint(SpecHints.HINT_SPEC_LOCK_TIMEOUT, timeoutMs)
+                .getResultList();
+    }
+}
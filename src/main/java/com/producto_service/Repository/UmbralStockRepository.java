@@ -0,0 +1,13 @@
+package com.producto_service.Repository;
+
+import com.producto_service.Model.UmbralStock;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface UmbralStockRepository extends JpaRepository<UmbralStock, Long> {
+
+    Optional<UmbralStock> findByTipoAndReferenciaId(UmbralStock.Tipo tipo, Long referenciaId);
+}
@@ -0,0 +1,311 @@
+package com.producto_service.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.producto_service.DTO.ProductoResponseDto;
+import com.producto_service.DTO.UmbralStockDto;
+import com.producto_service.Event.ProductoActualizadoEvent;
+import com.producto_service.Event.StockCambiadoEvent;
+import com.producto_service.Model.UmbralStock;
+import com.producto_service.Repository.CategoriaRepository;
+import com.producto_service.Repository.ProductoRepository;
+import com.producto_service.Repository.UmbralStockRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Alertas de stock bajo dirigidas por cambios, en lugar de recorrer el catálogo periódicamente.
+ * <p>
+ * Cada {@link StockCambiadoEvent} confirmado se compara con el umbral del producto (el propio, el de su
+ * categoría o el umbral por defecto): solo cuando el stock cruza el umbral hacia abajo se registra una
+ * alerta. Las alertas se acumulan durante {@code productos.alertas.ventana-ms} desde la primera y se envían
+ * en un único resumen por {@link NotificacionService}. Al enviar se vuelve a leer el stock y se descartan
+ * los productos que ya se repusieron dentro de la ventana.
+ * <p>
+ * Los umbrales se guardan en {@code umbral_stock} y se mantienen en memoria; la categoría de cada producto
+ * solo se consulta si hay umbrales por categoría y queda en caché hasta que el producto cambia.
+ */
+@Service
+public class AlertaStockService {
+
+    private static final long SIN_CATEGORIA = -1L;
+    // Tras fallos seguidos la espera se duplica hasta 2^5 ventanas
+    private static final int MAX_DUPLICACIONES = 5;
+
+    private final UmbralStockRepository umbralStockRepository;
+    private final ProductoRepository productoRepository;
+    private final CategoriaRepository categoriaRepository;
+    private final NotificacionService notificacionService;
+    private final boolean habilitado;
+    private final int umbralPorDefecto;
+    private final long ventanaMs;
+    private final String destinatario;
+
+    private volatile Map<Long, Integer> umbralPorProducto = Map.of();
+    private volatile Map<Long, Integer> umbralPorCategoria = Map.of();
+    private final Cache<Long, Long> categoriaPorProducto = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterWrite(Duration.ofHours(1))
+            .build();
+
+    // Alertas pendientes del resumen en curso: producto -> umbral cruzado
+    private final Map<Long, Integer> pendientes = new ConcurrentHashMap<>();
+    private final AtomicBoolean programado = new AtomicBoolean();
+    private final AtomicInteger fallosSeguidos = new AtomicInteger();
+    private final ScheduledExecutorService ejecutor;
+
+    private final Counter cruces;
+    private final Counter resumenes;
+    private final Counter fallos;
+
+    public AlertaStockService(UmbralStockRepository umbralStockRepository,
+                              ProductoRepository productoRepository,
+                              CategoriaRepository categoriaRepository,
+                              NotificacionService notificacionService,
+                              MeterRegistry meterRegistry,
+                              @Value("${productos.alertas.habilitado:true}") boolean habilitado,
+                              @Value("${productos.alertas.umbral-por-defecto:10}") int umbralPorDefecto,
+                              @Value("${productos.alertas.ventana-ms:60000}") long ventanaMs,
+                              @Value("${productos.alertas.destinatario:}") String destinatario) {
+        this.umbralStockRepository = umbralStockRepository;
+        this.productoRepository = productoRepository;
+        this.categoriaRepository = categoriaRepository;
+        this.notificacionService = notificacionService;
+        this.habilitado = habilitado;
+        this.umbralPorDefecto = umbralPorDefecto;
+        this.ventanaMs = ventanaMs;
+        this.destinatario = destinatario;
+        this.ejecutor = habilitado ? Executors.newSingleThreadScheduledExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, "alertas-stock");
+            hilo.setDaemon(true);
+            return hilo;
+        }) : null;
+        this.cruces = Counter.builder("productos.alertas.cruces")
+                .description("Productos que bajaron de su umbral de stock")
+                .register(meterRegistry);
+        this.resumenes = Counter.builder("productos.alertas.resumenes")
+                .description("Resúmenes de alertas enviados")
+                .register(meterRegistry);
+        this.fallos = Counter.builder("productos.alertas.fallos")
+                .description("Resúmenes de alertas que no se pudieron enviar")
+                .register(meterRegistry);
+        Gauge.builder("productos.alertas.pendientes", pendientes, Map::size)
+                .register(meterRegistry);
+    }
+
+    public int getUmbralPorDefecto() {
+        return umbralPorDefecto;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${productos.alertas.recarga-ms:300000}",
+            initialDelayString = "${productos.alertas.recarga-ms:300000}")
+    public void recargarUmbrales() {
+        Map<Long, Integer> porProducto = new HashMap<>();
+        Map<Long, Integer> porCategoria = new HashMap<>();
+        for (UmbralStock umbral : umbralStockRepository.findAll()) {
+            (umbral.getTipo() == UmbralStock.Tipo.PRODUCTO ? porProducto : porCategoria)
+                    .put(umbral.getReferenciaId(), umbral.getUmbral());
+        }
+        umbralPorProducto = Map.copyOf(porProducto);
+        umbralPorCategoria = Map.copyOf(porCategoria);
+    }
+
+    /**
+     * Umbral vigente de un producto: el propio, el de su categoría o el umbral por defecto.
+     */
+    public int umbralDe(Long productoId) {
+        Integer propio = umbralPorProducto.get(productoId);
+        if (propio != null) {
+            return propio;
+        }
+        Map<Long, Integer> porCategoria = umbralPorCategoria;
+        if (!porCategoria.isEmpty()) {
+            Long categoriaId = categoriaPorProducto.get(productoId,
+                    id -> productoRepository.findCategoriaIdById(id).orElse(SIN_CATEGORIA));
+            Integer deCategoria = porCategoria.get(categoriaId);
+            if (deCategoria != null) {
+                return deCategoria;
+            }
+        }
+        return umbralPorDefecto;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockCambiado(StockCambiadoEvent evento) {
+        if (!habilitado) {
+            return;
+        }
+        if (evento.stockNuevo() == null) {
+            pendientes.remove(evento.productoId());
+            return;
+        }
+        int umbral = umbralDe(evento.productoId());
+        boolean estabaPorEncima = evento.stockAnterior() == null || evento.stockAnterior() >= umbral;
+        if (estabaPorEncima && evento.stockNuevo() < umbral) {
+            registrar(evento.productoId(), umbral);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductoActualizado(ProductoActualizadoEvent evento) {
+        // Puede haber cambiado de categoría
+        categoriaPorProducto.invalidate(evento.productoId());
+    }
+
+    private void registrar(Long productoId, int umbral) {
+        cruces.increment();
+        pendientes.put(productoId, umbral);
+        if (programado.compareAndSet(false, true)) {
+            ejecutor.schedule(this::enviarResumen, ventanaMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Envía en un único mensaje las alertas acumuladas que siguen por debajo de su umbral.
+     * Si el envío falla, las alertas vuelven a quedar pendientes y se programa otro resumen con una
+     * espera que se duplica en cada fallo seguido, aunque no haya cruces nuevos.
+     */
+    void enviarResumen() {
+        programado.set(false);
+        Map<Long, Integer> alertas = new HashMap<>();
+        for (Long productoId : List.copyOf(pendientes.keySet())) {
+            Integer umbral = pendientes.remove(productoId);
+            if (umbral != null) {
+                alertas.put(productoId, umbral);
+            }
+        }
+        if (alertas.isEmpty()) {
+            return;
+        }
+
+        List<ProductoResponseDto> bajos = new ArrayList<>();
+        try {
+            for (ProductoResponseDto producto : productoRepository.findVistasByIdIn(alertas.keySet())) {
+                if (producto.getCantidad() < umbralDe(producto.getId())) {
+                    bajos.add(producto);
+                }
+            }
+        } catch (RuntimeException e) {
+            fallo(alertas, e);
+            return;
+        }
+        if (bajos.isEmpty()) {
+            return;
+        }
+        bajos.sort(Comparator.comparing(ProductoResponseDto::getCantidad).thenComparing(ProductoResponseDto::getId));
+        notificacionService.enviarNotificacion("EMAIL", destinatario, mensaje(bajos))
+                .whenComplete((ok, error) -> {
+                    if (error != null) {
+                        fallo(alertas, error);
+                        return;
+                    }
+                    fallosSeguidos.set(0);
+                    resumenes.increment();
+                    System.out.println("📨 Resumen de stock bajo enviado: " + bajos.size() + " productos");
+                });
+    }
+
+    private void fallo(Map<Long, Integer> alertas, Throwable error) {
+        fallos.increment();
+        alertas.forEach(pendientes::putIfAbsent);
+        long espera = ventanaMs << Math.min(fallosSeguidos.getAndIncrement(), MAX_DUPLICACIONES);
+        System.err.println("❌ Error al enviar el resumen de stock bajo, se reintenta en " + espera + " ms: " + error.getMessage());
+        if (programado.compareAndSet(false, true)) {
+            ejecutor.schedule(this::enviarResumen, espera, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private String mensaje(List<ProductoResponseDto> productos) {
+        StringBuilder mensaje = new StringBuilder("Productos por debajo de su umbral de stock (")
+                .append(productos.size()).append("):\n");
+        for (ProductoResponseDto producto : productos) {
+            mensaje.append("- ").append(producto.getNombre())
+                    .append(" (ID ").append(producto.getId()).append("): stock ")
+                    .append(producto.getCantidad()).append(", umbral ")
+                    .append(umbralDe(producto.getId())).append('\n');
+        }
+        return mensaje.toString();
+    }
+
+    // =========================================================================
+    // ADMINISTRACIÓN DE UMBRALES
+    // =========================================================================
+
+    public List<UmbralStockDto> listarUmbrales() {
+        return umbralStockRepository.findAll().stream()
+                .map(umbral -> new UmbralStockDto(umbral.getTipo(), umbral.getReferenciaId(), umbral.getUmbral()))
+                .toList();
+    }
+
+    @Transactional
+    public UmbralStockDto guardarUmbral(UmbralStock.Tipo tipo, Long referenciaId, Integer umbral) {
+        if (umbral == null || umbral < 0) {
+            throw new IllegalArgumentException("El umbral debe ser un número mayor o igual a 0");
+        }
+        validarReferencia(tipo, referenciaId);
+
+        UmbralStock registro = umbralStockRepository.findByTipoAndReferenciaId(tipo, referenciaId)
+                .orElseGet(() -> new UmbralStock(null, tipo, referenciaId, null));
+        registro.setUmbral(umbral);
+        umbralStockRepository.save(registro);
+        recargarUmbrales();
+        return new UmbralStockDto(tipo, referenciaId, umbral);
+    }
+
+    @Transactional
+    public void eliminarUmbral(UmbralStock.Tipo tipo, Long referenciaId) {
+        UmbralStock registro = umbralStockRepository.findByTipoAndReferenciaId(tipo, referenciaId)
+                .orElseThrow(() -> new IllegalArgumentException(
+                        "No hay un umbral de tipo " + tipo + " para el ID " + referenciaId));
+        umbralStockRepository.delete(registro);
+        recargarUmbrales();
+    }
+
+    private void validarReferencia(UmbralStock.Tipo tipo, Long referenciaId) {
+        if (referenciaId == null) {
+            throw new IllegalArgumentException("El ID de referencia del umbral es obligatorio");
+        }
+        switch (tipo) {
+            case PRODUCTO -> {
+                if (!productoRepository.existsById(referenciaId)) {
+                    throw new IllegalArgumentException("El producto con ID " + referenciaId + " no existe");
+                }
+            }
+            case CATEGORIA -> {
+                if (!categoriaRepository.existsById(referenciaId)) {
+                    throw new IllegalArgumentException("La categoría con ID " + referenciaId + " no existe");
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void detener() {
+        if (ejecutor != null) {
+            ejecutor.shutdownNow();
+        }
+    }
+}
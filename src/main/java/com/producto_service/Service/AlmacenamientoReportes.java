@@ -0,0 +1,23 @@
+package com.producto_service.Service;
+
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Destino donde se archivan los reportes generados. {@code clave} es una ruta relativa
+ * (p. ej. {@code reportes/reporte_inventario_2025-01-01_10-00.pdf}); devuelve la ubicación final.
+ */
+public interface AlmacenamientoReportes {
+
+    String guardar(String clave, Path archivo) throws IOException;
+
+    // Contenido de un reporte guardado; IllegalArgumentException si la clave no existe
+    Resource leer(String clave) throws IOException;
+
+    // true si ya hay un reporte guardado con esa clave
+    boolean existe(String clave) throws IOException;
+
+    String nombre();
+}
@@ -0,0 +1,63 @@
+package com.producto_service.Service;
+
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Guarda los reportes en un directorio local. Pensado para pruebas y para nodos sin acceso a S3.
+ */
+public class AlmacenamientoReportesLocal implements AlmacenamientoReportes {
+
+    private final Path base;
+
+    public AlmacenamientoReportesLocal(Path base) throws IOException {
+        this.base = Files.createDirectories(base).toAbsolutePath().normalize();
+    }
+
+    @Override
+    public String guardar(String clave, Path archivo) throws IOException {
+        Path destino = resolver(clave);
+        Files.createDirectories(destino.getParent());
+        // Se copia a un temporal y se renombra: nunca queda un reporte a medio escribir con su nombre final
+        Path temporal = Files.createTempFile(destino.getParent(), ".subida-", ".tmp");
+        try {
+            Files.copy(archivo, temporal, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+        return destino.toUri().toString();
+    }
+
+    @Override
+    public Resource leer(String clave) {
+        Path archivo = resolver(clave);
+        if (!Files.isRegularFile(archivo)) {
+            throw new IllegalArgumentException("El reporte " + clave + " no existe");
+        }
+        return new FileSystemResource(archivo);
+    }
+
+    @Override
+    public boolean existe(String clave) {
+        return Files.isRegularFile(resolver(clave));
+    }
+
+    private Path resolver(String clave) {
+        Path destino = base.resolve(clave).normalize();
+        if (!destino.startsWith(base)) {
+            throw new IllegalArgumentException("Clave de reporte fuera del directorio de almacenamiento: " + clave);
+        }
+        return destino;
+    }
+
+    @Override
+    public String nombre() {
+        return "local";
+    }
+}
@@ -0,0 +1,87 @@
+package com.producto_service.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registra la latencia, los bytes y el caudal de cada subida de reporte, etiquetados con el
+ * almacenamiento usado.
+ */
+public class AlmacenamientoReportesMedido implements AlmacenamientoReportes, AutoCloseable {
+
+    private final AlmacenamientoReportes destino;
+    private final Timer latencia;
+    private final DistributionSummary bytes;
+    private final DistributionSummary bytesPorSegundo;
+    private final Counter fallos;
+
+    public AlmacenamientoReportesMedido(AlmacenamientoReportes destino, MeterRegistry meterRegistry) {
+        this.destino = destino;
+        this.latencia = Timer.builder("reportes.almacenamiento.subida")
+                .tag("almacenamiento", destino.nombre())
+                .register(meterRegistry);
+        this.bytes = DistributionSummary.builder("reportes.almacenamiento.bytes")
+                .baseUnit("bytes")
+                .tag("almacenamiento", destino.nombre())
+                .register(meterRegistry);
+        this.bytesPorSegundo = DistributionSummary.builder("reportes.almacenamiento.caudal")
+                .baseUnit("bytes/s")
+                .tag("almacenamiento", destino.nombre())
+                .register(meterRegistry);
+        this.fallos = Counter.builder("reportes.almacenamiento.fallos")
+                .tag("almacenamiento", destino.nombre())
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String guardar(String clave, Path archivo) throws IOException {
+        long tamano = Files.size(archivo);
+        long inicio = System.nanoTime();
+        String ubicacion;
+        try {
+            ubicacion = destino.guardar(clave, archivo);
+        } catch (IOException | RuntimeException e) {
+            fallos.increment();
+            throw e;
+        }
+        long nanos = System.nanoTime() - inicio;
+        latencia.record(nanos, TimeUnit.NANOSECONDS);
+        bytes.record(tamano);
+        bytesPorSegundo.record(tamano * 1e9 / Math.max(nanos, 1));
+        return ubicacion;
+    }
+
+    @Override
+    public Resource leer(String clave) throws IOException {
+        return destino.leer(clave);
+    }
+
+    @Override
+    public boolean existe(String clave) throws IOException {
+        return destino.existe(clave);
+    }
+
+    @Override
+    public String nombre() {
+        return destino.nombre();
+    }
+
+    @Override
+    public void close() {
+        if (destino instanceof AutoCloseable cerrable) {
+            try {
+                cerrable.close();
+            } catch (Exception e) {
+                System.err.println("⚠️ No se pudo cerrar el almacenamiento " + destino.nombre() + ": " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.producto_service.Service;
+
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Guarda los reportes en un bucket de S3 con un único {@link S3Client} de larga vida (pool HTTP,
+ * credenciales y TLS se resuelven una vez).
+ * <p>
+ * Los archivos de hasta {@code umbralMultipart} bytes se suben con un solo PUT leyendo del disco. Los
+ * mayores se suben por partes de {@code tamanoParte} bytes: solo una parte está en memoria a la vez y,
+ * si alguna falla, se aborta la subida para no dejar partes huérfanas en el bucket.
+ */
+public class AlmacenamientoReportesS3 implements AlmacenamientoReportes, AutoCloseable {
+
+    private static final String CONTENT_TYPE = "application/pdf";
+
+    // Mínimo que S3 admite para todas las partes salvo la última
+    public static final int TAMANO_MINIMO_PARTE = 5 * 1024 * 1024;
+
+    private final S3Client s3;
+    private final String bucket;
+    private final long umbralMultipart;
+    private final int tamanoParte;
+
+    public AlmacenamientoReportesS3(S3Client s3, String bucket, long umbralMultipart, int tamanoParte) {
+        if (tamanoParte < TAMANO_MINIMO_PARTE) {
+            throw new IllegalArgumentException("El tamaño de parte de S3 debe ser al menos " + TAMANO_MINIMO_PARTE + " bytes");
+        }
+        this.s3 = s3;
+        this.bucket = bucket;
+        this.umbralMultipart = umbralMultipart;
+        this.tamanoParte = tamanoParte;
+    }
+
+    @Override
+    public String guardar(String clave, Path archivo) throws IOException {
+        if (Files.size(archivo) <= umbralMultipart) {
+            s3.putObject(PutObjectRequest.builder()
+                            .bucket(bucket)
+                            .key(clave)
+                            .contentType(CONTENT_TYPE)
+                            .build(),
+                    RequestBody.fromFile(archivo));
+        } else {
+            subirPorPartes(clave, archivo);
+        }
+        return "s3://" + bucket + "/" + clave;
+    }
+
+    private void subirPorPartes(String clave, Path archivo) throws IOException {
+        String uploadId = s3.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                .bucket(bucket)
+                .key(clave)
+                .contentType(CONTENT_TYPE)
+                .build()).uploadId();
+        try (InputStream entrada = Files.newInputStream(archivo)) {
+            List<CompletedPart> partes = new ArrayList<>();
+            byte[] buffer = new byte[tamanoParte];
+            int numero = 1;
+            int leidos;
+            while ((leidos = entrada.readNBytes(buffer, 0, tamanoParte)) > 0) {
+                String etag = s3.uploadPart(UploadPartRequest.builder()
+                                .bucket(bucket)
+                                .key(clave)
+                                .uploadId(uploadId)
+                                .partNumber(numero)
+                                .contentLength((long) leidos)
+                                .build(),
+                        RequestBody.fromByteBuffer(ByteBuffer.wrap(buffer, 0, leidos))).eTag();
+                partes.add(CompletedPart.builder().partNumber(numero).eTag(etag).build());
+                numero++;
+            }
+            s3.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(clave)
+                    .uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(partes).build())
+                    .build());
+        } catch (IOException | RuntimeException e) {
+            try {
+                s3.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                        .bucket(bucket)
+                        .key(clave)
+                        .uploadId(uploadId)
+                        .build());
+            } catch (RuntimeException abortError) {
+                e.addSuppressed(abortError);
+            }
+            throw e;
+        }
+    }
+
+    // El objeto se lee como flujo al copiarlo a la respuesta, sin pasar por memoria ni por disco
+    @Override
+    public Resource leer(String clave) {
+        try {
+            ResponseInputStream<GetObjectResponse> objeto = s3.getObject(GetObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(clave)
+                    .build());
+            long tamano = objeto.response().contentLength() != null ? objeto.response().contentLength() : -1;
+            return new InputStreamResource(objeto) {
+                @Override
+                public long contentLength() {
+                    return tamano;
+                }
+            };
+        } catch (NoSuchKeyException e) {
+            throw new IllegalArgumentException("El reporte " + clave + " no existe");
+        }
+    }
+
+    @Override
+    public boolean existe(String clave) {
+        // HEAD: solo metadatos, sin descargar el objeto
+        try {
+            s3.headObject(HeadObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(clave)
+                    .build());
+            return true;
+        } catch (NoSuchKeyException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public String nombre() {
+        return "s3";
+    }
+
+    @Override
+    public void close() {
+        s3.close();
+    }
+}
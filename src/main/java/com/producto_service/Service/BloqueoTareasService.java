@@ -0,0 +1,214 @@
+package com.producto_service.Service;
+
+import com.producto_service.DTO.TareaProgramadaDto;
+import com.producto_service.Model.BloqueoTarea;
+import com.producto_service.Repository.BloqueoTareaRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Reparte las ejecuciones de las tareas programadas entre réplicas con un bloqueo en base de datos.
+ * <p>
+ * Cada réplica dispara su {@code @Scheduled}, pero solo la que gana el UPDATE condicional sobre
+ * {@code bloqueo_tarea} (turno vencido) ejecuta; el resto lo omite. El turno dura siempre {@code duracion}:
+ * terminar antes no lo suelta, así una réplica cuyo disparo llega unos milisegundos tarde encuentra el
+ * turno tomado y no repite la ejecución. Por eso {@code duracion} debe cubrir la ejecución y ser menor
+ * que el periodo entre disparos. Al tomar el turno se incrementa el token de la fila. Ese token es el fencing: un nodo
+ * que se quedó sin turno (pausa larga, turno vencido y tomado por otro) ya no puede registrar el
+ * resultado ni la marca de la tarea, y puede comprobar con {@link #vigente} antes de cada efecto externo.
+ * <p>
+ * Los relojes de los nodos deben diferir bastante menos que la duración del turno.
+ */
+@Service
+public class BloqueoTareasService {
+
+    private static final String INSERTAR =
+            "INSERT INTO bloqueo_tarea (nombre, token, bloqueado_hasta) VALUES (?, 0, 0)";
+    private static final String TOMAR_TURNO =
+            "UPDATE bloqueo_tarea SET duenio = ?, token = token + 1, bloqueado_hasta = ?, ultimo_inicio = ? "
+                    + "WHERE nombre = ? AND bloqueado_hasta <= ?";
+    private static final String LEER_TOKEN = "SELECT token FROM bloqueo_tarea WHERE nombre = ? AND duenio = ?";
+    private static final String VIGENTE =
+            "SELECT COUNT(*) FROM bloqueo_tarea WHERE nombre = ? AND token = ? AND bloqueado_hasta > ?";
+    private static final String TERMINAR =
+            "UPDATE bloqueo_tarea SET ultimo_fin = ?, ultima_duracion_ms = ?, ultimo_resultado = ? "
+                    + "WHERE nombre = ? AND token = ?";
+    private static final String GUARDAR_MARCA = "UPDATE bloqueo_tarea SET marca = ? WHERE nombre = ? AND token = ?";
+    private static final String LEER_MARCA = "SELECT marca FROM bloqueo_tarea WHERE nombre = ?";
+
+    /**
+     * Turno tomado por este nodo. {@code token} identifica la ejecución en todo el clúster.
+     */
+    public record Turno(String tarea, long token, long inicio) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BloqueoTareaRepository bloqueoTareaRepository;
+    private final MeterRegistry meterRegistry;
+    private final String nodo;
+
+    public BloqueoTareasService(JdbcTemplate jdbcTemplate,
+                                BloqueoTareaRepository bloqueoTareaRepository,
+                                MeterRegistry meterRegistry,
+                                @Value("${productos.nodo.id:}") String nodo) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.bloqueoTareaRepository = bloqueoTareaRepository;
+        this.meterRegistry = meterRegistry;
+        this.nodo = nodo == null || nodo.isBlank() ? nodoPorDefecto() : nodo;
+    }
+
+    private static String nodoPorDefecto() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "desconocido";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    public String getNodo() {
+        return nodo;
+    }
+
+    /**
+     * Ejecuta {@code trabajo} si este nodo toma el turno de {@code tarea}; si otro nodo lo tiene no hace nada.
+     * El resultado y la duración quedan registrados en la fila de la tarea.
+     *
+     * @return si este nodo ejecutó la tarea
+     */
+    public boolean ejecutar(String tarea, Duration duracion, Consumer<Turno> trabajo) {
+        return ejecutarAsincrono(tarea, duracion, turno -> {
+            trabajo.accept(turno);
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    /**
+     * Como {@link #ejecutar}, para un trabajo que termina cuando se completa el futuro que devuelve (p. ej.
+     * una entrega en segundo plano): el resultado se registra entonces y no al volver de {@code trabajo}.
+     */
+    public boolean ejecutarAsincrono(String tarea, Duration duracion, Function<Turno, CompletableFuture<?>> trabajo) {
+        Optional<Turno> turno = adquirir(tarea, duracion);
+        if (turno.isEmpty()) {
+            meterRegistry.counter("tareas.turnos", "tarea", tarea, "resultado", "ocupado").increment();
+            System.out.println("⏭️ " + tarea + ": otro nodo tiene el turno, se omite");
+            return false;
+        }
+        meterRegistry.counter("tareas.turnos", "tarea", tarea, "resultado", "adquirido").increment();
+        CompletableFuture<?> fin;
+        try {
+            fin = trabajo.apply(turno.get());
+        } catch (RuntimeException e) {
+            fin = CompletableFuture.failedFuture(e);
+        }
+        fin.whenComplete((resultado, error) -> {
+            if (error == null) {
+                terminar(turno.get(), "OK");
+                return;
+            }
+            Throwable causa = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            terminar(turno.get(), "ERROR: " + causa.getMessage());
+            System.err.println("❌ Error en la tarea " + tarea + ": " + causa.getMessage());
+            causa.printStackTrace();
+        });
+        return true;
+    }
+
+    public Optional<Turno> adquirir(String tarea, Duration duracion) {
+        long ahora = System.currentTimeMillis();
+        int tomadas = jdbcTemplate.update(TOMAR_TURNO, nodo, ahora + duracion.toMillis(), ahora, tarea, ahora);
+        if (tomadas == 0 && !bloqueoTareaRepository.existsById(tarea)) {
+            try {
+                jdbcTemplate.update(INSERTAR, tarea);
+            } catch (DataIntegrityViolationException e) {
+                // Otro nodo creó la fila a la vez
+            }
+            tomadas = jdbcTemplate.update(TOMAR_TURNO, nodo, ahora + duracion.toMillis(), ahora, tarea, ahora);
+        }
+        if (tomadas == 0) {
+            return Optional.empty();
+        }
+        // Mientras el turno esté vigente nadie más cambia la fila, así que el token leído es el nuestro
+        Long token = jdbcTemplate.queryForObject(LEER_TOKEN, Long.class, tarea, nodo);
+        return Optional.of(new Turno(tarea, token, ahora));
+    }
+
+    // El turno sigue siendo de este nodo y no venció
+    public boolean vigente(Turno turno) {
+        Integer filas = jdbcTemplate.queryForObject(VIGENTE, Integer.class,
+                turno.tarea(), turno.token(), System.currentTimeMillis());
+        return filas != null && filas > 0;
+    }
+
+    /**
+     * Registra el fin de la ejecución. El turno sigue tomado hasta que vence; si otro nodo ya tomó uno
+     * posterior no cambia nada.
+     */
+    public void terminar(Turno turno, String resultado) {
+        long ahora = System.currentTimeMillis();
+        long duracionMs = ahora - turno.inicio();
+        String recortado = resultado != null && resultado.length() > 500 ? resultado.substring(0, 500) : resultado;
+        int filas = jdbcTemplate.update(TERMINAR, ahora, duracionMs, recortado, turno.tarea(), turno.token());
+        Timer.builder("tareas.duracion").tag("tarea", turno.tarea()).register(meterRegistry)
+                .record(duracionMs, TimeUnit.MILLISECONDS);
+        if (filas == 0) {
+            System.err.println("⚠️ " + turno.tarea() + ": el turno " + turno.token() + " venció y lo tomó otro nodo; no se registra el resultado");
+        }
+    }
+
+    /**
+     * Guarda la marca de la tarea solo si {@code turno} sigue siendo el último tomado (aunque ya esté liberado).
+     */
+    public boolean guardarMarca(Turno turno, String marca) {
+        return jdbcTemplate.update(GUARDAR_MARCA, marca, turno.tarea(), turno.token()) > 0;
+    }
+
+    public String marca(String tarea) {
+        List<String> marcas = jdbcTemplate.queryForList(LEER_MARCA, String.class, tarea);
+        return marcas.isEmpty() ? null : marcas.get(0);
+    }
+
+    public List<TareaProgramadaDto> listar() {
+        long ahora = System.currentTimeMillis();
+        return bloqueoTareaRepository.findAll().stream()
+                .map(b -> new TareaProgramadaDto(
+                        b.getNombre(),
+                        b.getDuenio(),
+                        b.getToken(),
+                        enCurso(b, ahora),
+                        fecha(b.getBloqueadoHasta()),
+                        fecha(b.getUltimoInicio()),
+                        fecha(b.getUltimoFin()),
+                        b.getUltimaDuracionMs(),
+                        b.getUltimoResultado()))
+                .toList();
+    }
+
+    // El turno se conserva hasta que vence, pero la ejecución terminó si ya registró su fin
+    private static boolean enCurso(BloqueoTarea bloqueo, long ahora) {
+        return bloqueo.getBloqueadoHasta() > ahora
+                && (bloqueo.getUltimoFin() == null || bloqueo.getUltimoFin() < bloqueo.getUltimoInicio());
+    }
+
+    private static Date fecha(Long epochMs) {
+        return epochMs == null || epochMs == 0 ? null : new Date(epochMs);
+    }
+}
@@ -0,0 +1,312 @@
+package com.producto_service.Service;
+
+import com.producto_service.DTO.CambioProductoDto;
+import com.producto_service.DTO.PaginaCambiosDto;
+import com.producto_service.DTO.ProductoResponseDto;
+import com.producto_service.Event.ProductoActualizadoEvent;
+import com.producto_service.Event.StockCambiadoEvent;
+import com.producto_service.Model.ProductoEliminado;
+import com.producto_service.Repository.ProductoEliminadoRepository;
+import com.producto_service.Repository.ProductoRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Asigna una versión de catálogo creciente a cada transacción que crea, modifica o elimina productos
+ * y sirve el feed de cambios a partir de una versión.
+ * <p>
+ * Los productos tocados durante la transacción se acumulan y, justo antes del commit, se toma una versión
+ * de la secuencia {@code version_catalogo_seq}, se marca con ella cada producto (o se inserta su marca de
+ * borrado) y se registra en {@code version_catalogo_confirmada}. Las escrituras no comparten ningún
+ * bloqueo, así que las versiones pueden confirmarse fuera de orden.
+ * <p>
+ * Por eso el feed solo sirve hasta la marca de agua: la mayor versión sin huecos por debajo. Un hueco es
+ * una versión tomada por una transacción que aún no confirmó; si la versión siguiente lleva confirmada
+ * más de {@code espera-huecos-ms}, el hueco se da por descartado (rollback) y la marca lo salta. Así un
+ * cliente que avanza por versión no se salta cambios. La hora de confirmación la pone la base y con su
+ * reloj se compara, así que el desfase entre los relojes de las réplicas no acorta la espera.
+ * <p>
+ * La marca la avanza (y purga las confirmaciones que deja atrás) una tarea programada cada
+ * {@code avance-marca-ms}; las lecturas del feed y de la caché de reportes solo la leen.
+ */
+@Service
+public class CambiosCatalogoService {
+
+    public static final int LIMITE_MAXIMO_CAMBIOS = 500;
+
+    private static final String SECUENCIA_VERSION = "version_catalogo_seq";
+    private static final String CONFIRMAR_VERSION = "INSERT INTO version_catalogo_confirmada (version, confirmada_en) VALUES (?, %s)";
+    private static final String LEER_CONFIRMADAS = "SELECT version, confirmada_en, %s AS ahora FROM version_catalogo_confirmada "
+            + "WHERE version > ? ORDER BY version LIMIT ?";
+    private static final String CONTAR_CONFIRMADAS = "SELECT COUNT(*) FROM version_catalogo_confirmada";
+    // Se conserva la fila de la marca: una tabla vacía indica una base anterior a la secuencia
+    private static final String PURGAR_CONFIRMADAS = "DELETE FROM version_catalogo_confirmada WHERE version < ?";
+    private static final String LEER_MARCA = "SELECT valor FROM version_catalogo WHERE id = 1";
+    private static final String INSERTAR_MARCA = "INSERT INTO version_catalogo (id, valor) VALUES (1, ?)";
+    private static final String AVANZAR_MARCA = "UPDATE version_catalogo SET valor = ? WHERE id = 1 AND valor < ?";
+    private static final int LOTE_CONFIRMADAS = 1000;
+    private static final String MARCAR_PRODUCTO = "UPDATE producto SET version_catalogo = ? WHERE id = ?";
+    private static final String INSERTAR_ELIMINADO =
+            "INSERT INTO producto_eliminado (producto_id, version_catalogo) VALUES (?, ?)";
+
+    // 'ahora' es la hora de la base al leer: la antigüedad se mide con el mismo reloj que puso la marca
+    private record Confirmada(long version, long confirmadaEn, long ahora) {
+    }
+
+    private static final RowMapper<Confirmada> MAPEO_CONFIRMADA = (rs, i) -> new Confirmada(rs.getLong("version"),
+            rs.getTimestamp("confirmada_en").getTime(), rs.getTimestamp("ahora").getTime());
+
+    private static class CambiosPendientes {
+        private final Set<Long> actualizados = new LinkedHashSet<>();
+        private final Set<Long> eliminados = new LinkedHashSet<>();
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ProductoRepository productoRepository;
+    private final ProductoEliminadoRepository productoEliminadoRepository;
+    private final String siguienteVersionSql;
+    private final String confirmarVersionSql;
+    private final String leerConfirmadasSql;
+    private final long esperaHuecosMs;
+
+    public CambiosCatalogoService(JdbcTemplate jdbcTemplate,
+                                  EntityManagerFactory entityManagerFactory,
+                                  ProductoRepository productoRepository,
+                                  ProductoEliminadoRepository productoEliminadoRepository,
+                                  @Value("${productos.catalogo.espera-huecos-ms:5000}") long esperaHuecosMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.productoRepository = productoRepository;
+        this.productoEliminadoRepository = productoEliminadoRepository;
+        Dialect dialecto = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+        this.siguienteVersionSql = dialecto.getSequenceSupport().getSequenceNextValString(SECUENCIA_VERSION);
+        // En PostgreSQL CURRENT_TIMESTAMP es el inicio de la transacción; la confirmación debe llevar la hora real
+        String ahora = dialecto instanceof PostgreSQLDialect ? "clock_timestamp()" : "CURRENT_TIMESTAMP";
+        this.confirmarVersionSql = CONFIRMAR_VERSION.formatted(ahora);
+        this.leerConfirmadasSql = LEER_CONFIRMADAS.formatted(ahora);
+        this.esperaHuecosMs = esperaHuecosMs;
+    }
+
+    @PostConstruct
+    void inicializar() {
+        List<Long> marca = jdbcTemplate.queryForList(LEER_MARCA, Long.class);
+        if (marca.isEmpty()) {
+            guardarMarca(0L);
+            return;
+        }
+        // Base que venía del contador por bloqueo: la secuencia debe continuar desde él
+        Long confirmadas = jdbcTemplate.queryForObject(CONTAR_CONFIRMADAS, Long.class);
+        if (marca.get(0) > 0 && confirmadas != null && confirmadas == 0) {
+            jdbcTemplate.execute("ALTER SEQUENCE " + SECUENCIA_VERSION + " RESTART WITH " + (marca.get(0) + 1));
+            System.out.println("🔢 Secuencia de versiones del catálogo iniciada en " + (marca.get(0) + 1));
+        }
+    }
+
+    // Se escuchan al publicarse (dentro de la transacción) para versionar antes del commit
+    @EventListener
+    public void onStockCambiado(StockCambiadoEvent evento) {
+        registrar(evento.productoId(), evento.stockNuevo() == null);
+    }
+
+    @EventListener
+    public void onProductoActualizado(ProductoActualizadoEvent evento) {
+        registrar(evento.productoId(), false);
+    }
+
+    private void registrar(Long productoId, boolean eliminado) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            CambiosPendientes cambios = new CambiosPendientes();
+            (eliminado ? cambios.eliminados : cambios.actualizados).add(productoId);
+            aplicar(cambios);
+            return;
+        }
+
+        CambiosPendientes pendientes = (CambiosPendientes) TransactionSynchronizationManager.getResource(this);
+        if (pendientes == null) {
+            CambiosPendientes nuevos = new CambiosPendientes();
+            TransactionSynchronizationManager.bindResource(this, nuevos);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    aplicar(nuevos);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(CambiosCatalogoService.this);
+                }
+            });
+            pendientes = nuevos;
+        }
+        if (eliminado) {
+            pendientes.actualizados.remove(productoId);
+            pendientes.eliminados.add(productoId);
+        } else if (!pendientes.eliminados.contains(productoId)) {
+            pendientes.actualizados.add(productoId);
+        }
+    }
+
+    private void aplicar(CambiosPendientes cambios) {
+        if (cambios.actualizados.isEmpty() && cambios.eliminados.isEmpty()) {
+            return;
+        }
+        long version = jdbcTemplate.queryForObject(siguienteVersionSql, Long.class);
+        if (!cambios.actualizados.isEmpty()) {
+            jdbcTemplate.batchUpdate(MARCAR_PRODUCTO, cambios.actualizados, cambios.actualizados.size(), (ps, id) -> {
+                ps.setLong(1, version);
+                ps.setLong(2, id);
+            });
+        }
+        if (!cambios.eliminados.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERTAR_ELIMINADO, cambios.eliminados, cambios.eliminados.size(), (ps, id) -> {
+                ps.setLong(1, id);
+                ps.setLong(2, version);
+            });
+        }
+        jdbcTemplate.update(confirmarVersionSql, version);
+    }
+
+    /**
+     * Marca de agua del feed: la mayor versión tal que todas las anteriores están confirmadas o descartadas.
+     */
+    public long versionActual() {
+        List<Long> guardada = jdbcTemplate.queryForList(LEER_MARCA, Long.class);
+        return guardada.isEmpty() ? 0L : guardada.get(0);
+    }
+
+    /**
+     * Avanza la marca de agua sobre las versiones confirmadas desde la última vez y purga las que deja
+     * atrás. Varias réplicas pueden ejecutarla a la vez: la marca solo sube.
+     */
+    @Scheduled(fixedDelayString = "${productos.catalogo.avance-marca-ms:1000}")
+    public void avanzarMarca() {
+        List<Long> guardada = jdbcTemplate.queryForList(LEER_MARCA, Long.class);
+        long marca = guardada.isEmpty() ? 0L : guardada.get(0);
+        long nueva = marca;
+        for (Confirmada confirmada : jdbcTemplate.query(leerConfirmadasSql, MAPEO_CONFIRMADA, marca, LOTE_CONFIRMADAS)) {
+            // Un hueco se espera mientras la versión que lo sigue sea reciente: su transacción puede estar confirmando
+            if (confirmada.version() != nueva + 1 && confirmada.ahora() - confirmada.confirmadaEn() < esperaHuecosMs) {
+                break;
+            }
+            nueva = confirmada.version();
+        }
+        if (nueva > marca) {
+            if (guardada.isEmpty()) {
+                guardarMarca(nueva);
+            } else {
+                jdbcTemplate.update(AVANZAR_MARCA, nueva, nueva);
+            }
+            jdbcTemplate.update(PURGAR_CONFIRMADAS, nueva);
+        }
+    }
+
+    private void guardarMarca(long valor) {
+        try {
+            jdbcTemplate.update(INSERTAR_MARCA, valor);
+        } catch (DuplicateKeyException e) {
+            // Otra réplica la creó a la vez
+            jdbcTemplate.update(AVANZAR_MARCA, valor, valor);
+        }
+    }
+
+    /**
+     * Devuelve hasta {@code limite} cambios posteriores a (since, despuesDeId), mezclando productos
+     * actualizados y eliminados en orden de (versión, id). Sin {@code since} se recorre todo el catálogo.
+     */
+    public PaginaCambiosDto obtenerCambios(Long since, Long despuesDeId, int limite) {
+        if (limite < 1 || limite > LIMITE_MAXIMO_CAMBIOS) {
+            throw new IllegalArgumentException("El límite debe estar entre 1 y " + LIMITE_MAXIMO_CAMBIOS);
+        }
+        long version = since == null ? -1L : since;
+        long hasta = versionActual();
+        // Sin despuesDe, "since" excluye la versión completa
+        long id = despuesDeId == null ? Long.MAX_VALUE : despuesDeId;
+        if (version < -1) {
+            throw new IllegalArgumentException("La versión no puede ser negativa");
+        }
+
+        // Cada origen aporta a lo sumo limite + 1 filas; la mezcla decide cuáles entran en la página
+        Limit consulta = Limit.of(limite + 1);
+        List<ProductoRepository.VersionProducto> actualizados = productoRepository.findCambiosDesde(version, id, hasta, consulta);
+        List<ProductoEliminado> eliminados = productoEliminadoRepository.findCambiosDesde(version, id, hasta, consulta);
+
+        List<CambioProductoDto> cambios = new ArrayList<>(limite);
+        int i = 0;
+        int j = 0;
+        while (cambios.size() < limite && (i < actualizados.size() || j < eliminados.size())) {
+            boolean tomarActualizado;
+            if (j >= eliminados.size()) {
+                tomarActualizado = true;
+            } else if (i >= actualizados.size()) {
+                tomarActualizado = false;
+            } else {
+                ProductoRepository.VersionProducto a = actualizados.get(i);
+                ProductoEliminado e = eliminados.get(j);
+                int comparacion = Long.compare(a.getVersionCatalogo(), e.getVersionCatalogo());
+                tomarActualizado = comparacion < 0 || (comparacion == 0 && a.getId() < e.getProductoId());
+            }
+            if (tomarActualizado) {
+                ProductoRepository.VersionProducto a = actualizados.get(i++);
+                cambios.add(new CambioProductoDto(a.getVersionCatalogo(), a.getId(), CambioProductoDto.Tipo.ACTUALIZADO, null));
+            } else {
+                ProductoEliminado e = eliminados.get(j++);
+                cambios.add(new CambioProductoDto(e.getVersionCatalogo(), e.getProductoId(), CambioProductoDto.Tipo.ELIMINADO, null));
+            }
+        }
+        boolean hayMas = i < actualizados.size() || j < eliminados.size();
+
+        long siguienteVersion = version;
+        long siguienteId = id;
+        if (!cambios.isEmpty()) {
+            CambioProductoDto ultimo = cambios.get(cambios.size() - 1);
+            siguienteVersion = ultimo.getVersion();
+            siguienteId = ultimo.getProductoId();
+        }
+        completarProductos(cambios);
+        return new PaginaCambiosDto(cambios, siguienteVersion, siguienteId, hayMas, hasta);
+    }
+
+    private void completarProductos(List<CambioProductoDto> cambios) {
+        List<Long> ids = new ArrayList<>();
+        for (CambioProductoDto cambio : cambios) {
+            if (cambio.getTipo() == CambioProductoDto.Tipo.ACTUALIZADO) {
+                ids.add(cambio.getProductoId());
+            }
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+        // Se lee de la base y no de la caché: el feed no debe devolver una vista anterior a su versión
+        Map<Long, ProductoResponseDto> vistas = new HashMap<>();
+        for (ProductoResponseDto vista : productoRepository.findVistasByIdIn(ids)) {
+            vistas.put(vista.getId(), vista);
+        }
+        // Un producto borrado entre ambas lecturas se omite; su marca de borrado llega con una versión mayor
+        cambios.removeIf(cambio -> cambio.getTipo() == CambioProductoDto.Tipo.ACTUALIZADO
+                && vistas.get(cambio.getProductoId()) == null);
+        for (CambioProductoDto cambio : cambios) {
+            if (cambio.getTipo() == CambioProductoDto.Tipo.ACTUALIZADO) {
+                cambio.setProducto(vistas.get(cambio.getProductoId()));
+            }
+        }
+    }
+}
@@ -6,8 +6,8 @@ import com.producto_service.Repository.CategoriaRepository;
 import lombok.AllArgsConstructor;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.List;
-import java.util.Optional;
 
 @Service
 @AllArgsConstructor
@@ -15,6 +15,9 @@ public class CategoriaService {
 
     private final CategoriaRepository categoriaRepository;
 
+    private final IndiceReferencia<Categoria> indiceCategorias =
+            new IndiceReferencia<>(this::cargarCategorias, Categoria::getId, Categoria::getNombre, Duration.ofMinutes(5));
+
     // =========================================================================
     // CONSULTAS
     // =========================================================================
@@ -54,7 +57,9 @@ public class CategoriaService {
         nuevaCategoria.setDescripcion(categoriaDto.getDescripcion());
         nuevaCategoria.setProductos(categoriaDto.getProductos());
 
-        return categoriaRepository.save(nuevaCategoria);
+        Categoria guardada = categoriaRepository.save(nuevaCategoria);
+        indiceCategorias.invalidar();
+        return guardada;
     }
 
     // =========================================================================
@@ -101,7 +106,9 @@ public class CategoriaService {
         }
 
         // 5. Guardar y retornar
-        return categoriaRepository.save(categoriaExistente);
+        Categoria guardada = categoriaRepository.save(categoriaExistente);
+        indiceCategorias.invalidar();
+        return guardada;
     }
 
     /**
@@ -112,7 +119,9 @@ public class CategoriaService {
         if (categoria.getId() == null || !categoriaRepository.existsById(categoria.getId())) {
             throw new IllegalArgumentException("La categoría con ID " + categoria.getId() + " no existe");
         }
-        return categoriaRepository.save(categoria);
+        Categoria guardada = categoriaRepository.save(categoria);
+        indiceCategorias.invalidar();
+        return guardada;
     }
 
     // =========================================================================
@@ -136,6 +145,7 @@ public class CategoriaService {
         }
 
         categoriaRepository.delete(categoria);
+        indiceCategorias.invalidar();
     }
 
     /**
@@ -158,24 +168,26 @@ public class CategoriaService {
         }
 
         categoriaRepository.delete(categoria);
+        indiceCategorias.invalidar();
     }
 
     // =========================================================================
     // VALIDACIONES
+    // Se resuelven con el índice en memoria de categorías, sin consultar la base de datos
     // =========================================================================
 
     /**
      * Valida si existe una categoría con el ID dado
      */
     public boolean existeCategoria(Long id) {
-        return categoriaRepository.existsById(id);
+        return indiceCategorias.existeId(id);
     }
 
     /**
      * Valida si existe una categoría con el nombre dado
      */
     public boolean existeCategoriaPorNombre(String nombre) {
-        return categoriaRepository.findByNombre(nombre) != null;
+        return indiceCategorias.existeNombre(nombre);
     }
 
     /**
@@ -186,6 +198,10 @@ public class CategoriaService {
         if (categoria == null || categoria.getId() == null) {
             return false;
         }
-        return categoriaRepository.existsById(categoria.getId());
+        return indiceCategorias.existeId(categoria.getId());
+    }
+
+    private List<Categoria> cargarCategorias() {
+        return categoriaRepository.findAll();
     }
 }
@@ -0,0 +1,78 @@
+package com.producto_service.Service;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Cortocircuito del cliente de notificaciones.
+ * <p>
+ * Cerrado deja pasar todo. Tras {@code fallosParaAbrir} fallos seguidos se abre y rechaza las llamadas
+ * durante {@code esperaMs}; pasado ese tiempo deja pasar una sola llamada de prueba (semiabierto): si
+ * sale bien se cierra y si falla vuelve a abrirse.
+ */
+class CircuitoNotificaciones {
+
+    enum Estado {
+        CERRADO, ABIERTO, SEMIABIERTO
+    }
+
+    private final int fallosParaAbrir;
+    private final long esperaMs;
+    private final LongSupplier reloj;
+
+    private Estado estado = Estado.CERRADO;
+    private int fallosSeguidos;
+    private long abiertoHasta;
+    private boolean pruebaEnCurso;
+
+    CircuitoNotificaciones(int fallosParaAbrir, long esperaMs, LongSupplier reloj) {
+        this.fallosParaAbrir = fallosParaAbrir;
+        this.esperaMs = esperaMs;
+        this.reloj = reloj;
+    }
+
+    synchronized boolean permitir() {
+        switch (estado) {
+            case CERRADO:
+                return true;
+            case ABIERTO:
+                if (reloj.getAsLong() < abiertoHasta) {
+                    return false;
+                }
+                estado = Estado.SEMIABIERTO;
+                pruebaEnCurso = true;
+                return true;
+            default:
+                if (pruebaEnCurso) {
+                    return false;
+                }
+                pruebaEnCurso = true;
+                return true;
+        }
+    }
+
+    synchronized void exito() {
+        estado = Estado.CERRADO;
+        fallosSeguidos = 0;
+        pruebaEnCurso = false;
+    }
+
+    synchronized void fallo() {
+        fallosSeguidos++;
+        if (estado == Estado.SEMIABIERTO || fallosSeguidos >= fallosParaAbrir) {
+            estado = Estado.ABIERTO;
+            abiertoHasta = reloj.getAsLong() + esperaMs;
+            pruebaEnCurso = false;
+        }
+    }
+
+    // Una llamada permitida que terminó sin decir nada del servicio (p. ej. un 4xx)
+    synchronized void neutro() {
+        if (estado == Estado.SEMIABIERTO) {
+            pruebaEnCurso = false;
+        }
+    }
+
+    synchronized Estado estado() {
+        return estado;
+    }
+}
@@ -0,0 +1,198 @@
+package com.producto_service.Service;
+
+import com.producto_service.DTO.LineaStockDto;
+import com.producto_service.DTO.ResultadoStockDto;
+import com.producto_service.Exception.ConflictoStockException;
+import com.producto_service.Exception.StockOperacionException;
+import com.producto_service.Model.Producto;
+import com.producto_service.Repository.ProductoRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Combina reducciones de stock concurrentes (group commit). Las solicitudes que llegan dentro de una
+ * ventana corta se procesan juntas: se lee una vez el stock de los productos implicados, se decide el
+ * resultado de cada solicitud en orden de llegada y se aplica la suma neta con una sola operación de la
+ * {@link EstrategiaStock}. Así un producto muy demandado recibe una escritura por lote en vez de una por
+ * pedido.
+ * <p>
+ * Si la aplicación neta falla (por ejemplo, el stock cambió desde otra réplica entre la lectura y la
+ * escritura), las solicitudes aceptadas se aplican de nuevo una a una, en el mismo orden. El historial y
+ * los eventos de stock reflejan el cambio neto de cada lote.
+ */
+@Service
+public class CombinadorStockService {
+
+    private record Solicitud(Map<Long, Integer> cambios, CompletableFuture<ResultadoStockDto> futuro) {
+    }
+
+    private final ProductoService productoService;
+    private final EstrategiaStock estrategiaStock;
+    private final ProductoRepository productoRepository;
+    private final boolean habilitado;
+    private final long ventanaMicros;
+    private final int maxLote;
+    private final DistributionSummary tamanoLotes;
+    private final Queue<Solicitud> pendientes = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean programado = new AtomicBoolean();
+    private final ScheduledExecutorService ejecutor;
+
+    public CombinadorStockService(ProductoService productoService,
+                                  EstrategiaStock estrategiaStock,
+                                  ProductoRepository productoRepository,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${productos.stock.combinar.habilitado:false}") boolean habilitado,
+                                  @Value("${productos.stock.combinar.ventana-ms:2}") double ventanaMs,
+                                  @Value("${productos.stock.combinar.max-lote:256}") int maxLote) {
+        this.productoService = productoService;
+        this.estrategiaStock = estrategiaStock;
+        this.productoRepository = productoRepository;
+        this.habilitado = habilitado;
+        this.ventanaMicros = Math.round(ventanaMs * 1000);
+        this.maxLote = maxLote;
+        this.tamanoLotes = DistributionSummary.builder("productos.stock.combinador.lote")
+                .description("Solicitudes de reducción de stock aplicadas por lote")
+                .register(meterRegistry);
+        this.ejecutor = habilitado ? Executors.newSingleThreadScheduledExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, "stock-combinador");
+            hilo.setDaemon(true);
+            return hilo;
+        }) : null;
+    }
+
+    public CompletableFuture<ResultadoStockDto> reducir(Map<Long, Integer> cambios) {
+        if (!habilitado) {
+            return CompletableFuture.completedFuture(productoService.reduccionStock(cambios));
+        }
+        if (cambios == null || cambios.isEmpty()) {
+            throw new IllegalArgumentException("La lista de productos no puede ser nula o vacía.");
+        }
+        Solicitud solicitud = new Solicitud(new HashMap<>(cambios), new CompletableFuture<>());
+        pendientes.add(solicitud);
+        if (programado.compareAndSet(false, true)) {
+            ejecutor.schedule(this::vaciar, ventanaMicros, TimeUnit.MICROSECONDS);
+        }
+        return solicitud.futuro();
+    }
+
+    private void vaciar() {
+        // Se libera antes de vaciar: lo que llegue desde ahora programa la siguiente ventana
+        programado.set(false);
+        List<Solicitud> lote;
+        while (!(lote = tomarLote()).isEmpty()) {
+            try {
+                procesar(lote);
+            } catch (RuntimeException e) {
+                lote.forEach(solicitud -> solicitud.futuro().completeExceptionally(e));
+            }
+        }
+    }
+
+    private List<Solicitud> tomarLote() {
+        List<Solicitud> lote = new ArrayList<>();
+        Solicitud solicitud;
+        while (lote.size() < maxLote && (solicitud = pendientes.poll()) != null) {
+            lote.add(solicitud);
+        }
+        return lote;
+    }
+
+    void procesar(List<Solicitud> lote) {
+        tamanoLotes.record(lote.size());
+        if (lote.size() == 1) {
+            aplicarIndividual(lote.get(0));
+            return;
+        }
+
+        Set<Long> ids = new TreeSet<>();
+        lote.forEach(solicitud -> ids.addAll(solicitud.cambios().keySet()));
+        Map<Long, Producto> disponible = new HashMap<>();
+        for (ProductoRepository.StockProducto stock : productoRepository.findStockByIdIn(ids)) {
+            Producto producto = new Producto();
+            producto.setId(stock.getId());
+            producto.setCantidad(stock.getCantidad());
+            disponible.put(stock.getId(), producto);
+        }
+
+        // Resultado de cada solicitud en orden de llegada contra el stock que dejan las anteriores
+        Map<Solicitud, ResultadoStockDto> aceptadas = new LinkedHashMap<>();
+        Map<Long, Integer> netos = new TreeMap<>();
+        for (Solicitud solicitud : lote) {
+            ResultadoStockDto resultado = EstrategiaStockBase.validar(disponible, solicitud.cambios(), true);
+            if (!resultado.isAplicado()) {
+                solicitud.futuro().completeExceptionally(EstrategiaStockBase.rechazo(resultado, true));
+                continue;
+            }
+            for (LineaStockDto linea : resultado.getLineas()) {
+                disponible.get(linea.getProductoId()).setCantidad(linea.getStockResultante());
+                netos.merge(linea.getProductoId(), linea.getCantidadSolicitada(), Integer::sum);
+            }
+            aceptadas.put(solicitud, resultado);
+        }
+        if (aceptadas.isEmpty()) {
+            return;
+        }
+
+        ResultadoStockDto neto;
+        try {
+            neto = estrategiaStock.aplicar(netos, true);
+        } catch (StockOperacionException | ConflictoStockException e) {
+            aceptadas.keySet().forEach(this::aplicarIndividual);
+            return;
+        }
+
+        // Las líneas se recalculan desde el stock real al aplicar, que puede diferir de la lectura
+        Map<Long, Integer> corriente = new HashMap<>();
+        neto.getLineas().forEach(linea -> corriente.put(linea.getProductoId(), linea.getStockAnterior()));
+        aceptadas.forEach((solicitud, resultado) -> {
+            for (LineaStockDto linea : resultado.getLineas()) {
+                int anterior = corriente.get(linea.getProductoId());
+                linea.setStockAnterior(anterior);
+                linea.setStockResultante(anterior - linea.getCantidadSolicitada());
+                corriente.put(linea.getProductoId(), linea.getStockResultante());
+            }
+            solicitud.futuro().complete(resultado);
+        });
+    }
+
+    private void aplicarIndividual(Solicitud solicitud) {
+        try {
+            solicitud.futuro().complete(estrategiaStock.aplicar(solicitud.cambios(), true));
+        } catch (RuntimeException e) {
+            solicitud.futuro().completeExceptionally(e);
+        }
+    }
+
+    public boolean habilitado() {
+        return habilitado;
+    }
+
+    @PreDestroy
+    public void detener() throws InterruptedException {
+        if (ejecutor == null) {
+            return;
+        }
+        ejecutor.shutdown();
+        ejecutor.awaitTermination(5, TimeUnit.SECONDS);
+        vaciar();
+    }
+}
@@ -0,0 +1,173 @@
+package com.producto_service.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ * Diario local de reservas, solo de escritura al final. Cada línea es una operación:
+ * <pre>
+ * R &lt;id&gt; &lt;expira-epoch-ms&gt; &lt;producto:cantidad,...&gt; &lt;propietario&gt;
+ * C &lt;id&gt;    (confirmada)
+ * L &lt;id&gt;    (liberada o expirada)
+ * </pre>
+ * Al arrancar se reproduce y se reescribe solo con las reservas vigentes. Una última línea incompleta
+ * (caída a mitad de escritura) se ignora. El propietario va codificado como URL; las líneas sin él son
+ * de diarios anteriores. Cada {@code compactarCada} líneas se vuelve a compactar.
+ * Sin ruta el diario está desactivado: no lee ni escribe nada y las reservas viven solo en memoria.
+ */
+class DiarioReservas {
+
+    private final Path ruta;
+    private final boolean fsync;
+    private final int compactarCada;
+    private final Supplier<Collection<Reserva>> vigentes;
+    private FileChannel canal;
+    private int lineasDesdeCompactacion;
+
+    DiarioReservas(Path ruta, boolean fsync, int compactarCada, Supplier<Collection<Reserva>> vigentes) {
+        this.ruta = ruta;
+        this.fsync = fsync;
+        this.compactarCada = compactarCada;
+        this.vigentes = vigentes;
+    }
+
+    /**
+     * Reservas registradas y no cerradas, en orden de creación. Deben cargarse antes de {@link #abrir()}.
+     */
+    synchronized Map<String, Reserva> reproducir() throws IOException {
+        Map<String, Reserva> abiertas = new LinkedHashMap<>();
+        if (ruta == null || !Files.exists(ruta)) {
+            return abiertas;
+        }
+        try (BufferedReader lector = Files.newBufferedReader(ruta, StandardCharsets.UTF_8)) {
+            String linea;
+            while ((linea = lector.readLine()) != null) {
+                String[] partes = linea.split(" ");
+                try {
+                    switch (partes[0]) {
+                        case "R" -> abiertas.put(partes[1], new Reserva(partes[1], productos(partes[3]), Long.parseLong(partes[2]),
+                                partes.length > 4 ? URLDecoder.decode(partes[4], StandardCharsets.UTF_8) : null));
+                        case "C", "L" -> abiertas.remove(partes[1]);
+                        default -> System.err.println("⚠️ Línea de diario de reservas desconocida: " + linea);
+                    }
+                } catch (RuntimeException e) {
+                    System.err.println("⚠️ Línea de diario de reservas incompleta, se ignora: " + linea);
+                }
+            }
+        }
+        return abiertas;
+    }
+
+    boolean activo() {
+        return ruta != null;
+    }
+
+    synchronized void abrir() throws IOException {
+        if (ruta == null) {
+            return;
+        }
+        if (ruta.getParent() != null) {
+            Files.createDirectories(ruta.getParent());
+        }
+        compactar();
+    }
+
+    synchronized void registrar(Reserva reserva) {
+        escribir(linea(reserva));
+    }
+
+    synchronized void cerrar(Reserva reserva, boolean confirmada) {
+        escribir((confirmada ? "C " : "L ") + reserva.getId());
+    }
+
+    synchronized void detener() throws IOException {
+        if (canal != null) {
+            canal.close();
+            canal = null;
+        }
+    }
+
+    private void escribir(String linea) {
+        if (ruta == null) {
+            return;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap((linea + "\n").getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                canal.write(buffer);
+            }
+            if (fsync) {
+                canal.force(false);
+            }
+            if (++lineasDesdeCompactacion >= compactarCada) {
+                compactar();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo escribir en el diario de reservas", e);
+        }
+    }
+
+    // Se reescribe en un temporal y se reemplaza con un movimiento atómico
+    private void compactar() throws IOException {
+        Path temporal = ruta.resolveSibling(ruta.getFileName() + ".tmp");
+        try (FileChannel nuevo = FileChannel.open(temporal, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            StringBuilder contenido = new StringBuilder();
+            for (Reserva reserva : vigentes.get()) {
+                contenido.append(linea(reserva)).append('\n');
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(contenido.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                nuevo.write(buffer);
+            }
+            nuevo.force(true);
+        }
+        if (canal != null) {
+            canal.close();
+        }
+        Files.move(temporal, ruta, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        canal = FileChannel.open(ruta, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        lineasDesdeCompactacion = 0;
+    }
+
+    private static String linea(Reserva reserva) {
+        String linea = "R " + reserva.getId() + " " + reserva.getExpiraEpochMs() + " " + texto(reserva.getProductos());
+        return reserva.getPropietario() == null ? linea
+                : linea + " " + URLEncoder.encode(reserva.getPropietario(), StandardCharsets.UTF_8);
+    }
+
+    private static String texto(Map<Long, Integer> productos) {
+        StringBuilder texto = new StringBuilder();
+        productos.forEach((id, cantidad) -> {
+            if (!texto.isEmpty()) {
+                texto.append(',');
+            }
+            texto.append(id).append(':').append(cantidad);
+        });
+        return texto.toString();
+    }
+
+    private static Map<Long, Integer> productos(String texto) {
+        Map<Long, Integer> productos = new TreeMap<>();
+        for (String par : texto.split(",")) {
+            String[] partes = par.split(":");
+            productos.put(Long.parseLong(partes[0]), Integer.parseInt(partes[1]));
+        }
+        return productos;
+    }
+}
@@ -0,0 +1,182 @@
+package com.producto_service.Service;
+
+import com.producto_service.Exception.EnlaceInvalidoException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Entrega los reportes por correo.
+ * <p>
+ * En modo {@code enlace} (por defecto) el PDF se guarda una vez en {@link AlmacenamientoReportes} y el
+ * correo solo lleva un enlace a {@code /reporte/descargas/{clave}} firmado con HMAC-SHA256 y con
+ * vencimiento; la descarga verifica la firma sin estado y lee el archivo del almacenamiento, así que
+ * funciona igual con S3 que con el directorio local. En modo {@code adjunto} se envía el PDF completo
+ * como antes.
+ * <p>
+ * La subida y el aviso corren en segundo plano, en un único hilo: quien entrega recibe el futuro al
+ * instante y las entregas simultáneas del mismo reporte no lo suben dos veces. Una clave que ya está
+ * en el almacenamiento no se vuelve a subir; las claves de los reportes a pedido son la huella del
+ * contenido, así que la misma clave es el mismo PDF.
+ */
+@Service
+public class EntregaReportesService {
+
+    private static final String ALGORITMO = "HmacSHA256";
+    private static final String RUTA_DESCARGA = "/reporte/descargas/";
+    private static final String NOMBRE_ADJUNTO = "reporte_inventario_bajo.pdf";
+
+    private final AlmacenamientoReportes almacenamiento;
+    private final NotificacionService notificacionService;
+    private final boolean porEnlace;
+    private final SecretKeySpec clave;
+    private final String urlBase;
+    private final long validezSegundos;
+
+    private final ExecutorService ejecutor = Executors.newSingleThreadExecutor(tarea -> {
+        Thread hilo = new Thread(tarea, "entrega-reportes");
+        hilo.setDaemon(true);
+        return hilo;
+    });
+
+    private final Counter entregasEnlace;
+    private final Counter entregasAdjunto;
+    private final Counter enlacesRechazados;
+    private final Counter reutilizados;
+
+    public EntregaReportesService(AlmacenamientoReportes almacenamiento,
+                                  NotificacionService notificacionService,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${reportes.entrega.modo:enlace}") String modo,
+                                  @Value("${reportes.enlaces.secreto:}") String secreto,
+                                  @Value("${reportes.enlaces.url-base:http://localhost:8083}") String urlBase,
+                                  @Value("${reportes.enlaces.validez-segundos:3600}") long validezSegundos) {
+        this.porEnlace = switch (modo.toLowerCase()) {
+            case "enlace" -> true;
+            case "adjunto" -> false;
+            default -> throw new IllegalArgumentException("Modo de entrega de reportes no soportado: " + modo
+                    + ". Use enlace o adjunto.");
+        };
+        if (porEnlace && (secreto == null || secreto.isBlank())) {
+            throw new IllegalArgumentException("reportes.enlaces.secreto (REPORTES_ENLACES_SECRETO) es obligatorio para"
+                    + " entregar por enlace");
+        }
+        this.almacenamiento = almacenamiento;
+        this.notificacionService = notificacionService;
+        // Base64, igual que jwt.secret en SecurityConfig: el mismo texto da la misma clave en ambos lados
+        this.clave = porEnlace ? new SecretKeySpec(Base64.getDecoder().decode(secreto), ALGORITMO) : null;
+        this.urlBase = urlBase.endsWith("/") ? urlBase.substring(0, urlBase.length() - 1) : urlBase;
+        this.validezSegundos = validezSegundos;
+
+        this.entregasEnlace = Counter.builder("reportes.entregas").tag("modo", "enlace").register(meterRegistry);
+        this.entregasAdjunto = Counter.builder("reportes.entregas").tag("modo", "adjunto").register(meterRegistry);
+        this.enlacesRechazados = Counter.builder("reportes.enlaces.rechazados").register(meterRegistry);
+        this.reutilizados = Counter.builder("reportes.entregas.reutilizados").register(meterRegistry);
+    }
+
+    /**
+     * Guarda el reporte bajo {@code claveReporte} (solo en modo enlace y si no estaba ya) y lo notifica a
+     * {@code destinatario}, todo en segundo plano. {@code archivo} debe existir hasta que el futuro termine.
+     */
+    public CompletableFuture<Void> entregar(String destinatario, String mensaje, String claveReporte, Path archivo) {
+        if (!porEnlace) {
+            return entregarGuardado(destinatario, mensaje, claveReporte, archivo);
+        }
+        return CompletableFuture.runAsync(() -> guardarSiFalta(claveReporte, archivo), ejecutor)
+                .thenCompose(guardado -> entregarGuardado(destinatario, mensaje, claveReporte, archivo));
+    }
+
+    private void guardarSiFalta(String claveReporte, Path archivo) {
+        try {
+            if (almacenamiento.existe(claveReporte)) {
+                reutilizados.increment();
+                return;
+            }
+            almacenamiento.guardar(claveReporte, archivo);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo guardar el reporte " + claveReporte, e);
+        }
+    }
+
+    /**
+     * Igual que {@link #entregar} para un reporte que ya se guardó en el almacenamiento con esa clave.
+     */
+    public CompletableFuture<Void> entregarGuardado(String destinatario, String mensaje, String claveReporte, Path archivo) {
+        if (porEnlace) {
+            entregasEnlace.increment();
+            long expira = Instant.now().getEpochSecond() + validezSegundos;
+            return notificacionService.enviarNotificacion("EMAIL", destinatario,
+                    mensaje + "\nDescarga (válida hasta " + Instant.ofEpochSecond(expira) + "): " + enlace(claveReporte, expira));
+        }
+        entregasAdjunto.increment();
+        return notificacionService.enviarNotificacionConAdjunto("EMAIL", destinatario, mensaje,
+                new FileSystemResource(archivo), NOMBRE_ADJUNTO);
+    }
+
+    String enlace(String claveReporte, long expira) {
+        return urlBase + RUTA_DESCARGA + claveReporte + "?expira=" + expira + "&firma=" + firmar(claveReporte, expira);
+    }
+
+    /**
+     * Verifica un enlace firmado y devuelve el reporte.
+     *
+     * @throws EnlaceInvalidoException si la firma no corresponde o el enlace venció
+     */
+    public Resource abrir(String claveReporte, long expira, String firma) throws IOException {
+        if (!porEnlace) {
+            enlacesRechazados.increment();
+            throw new EnlaceInvalidoException("La entrega por enlace está desactivada");
+        }
+        byte[] esperada = firmar(claveReporte, expira).getBytes(StandardCharsets.US_ASCII);
+        byte[] recibida = firma == null ? new byte[0] : firma.getBytes(StandardCharsets.US_ASCII);
+        // Comparación en tiempo constante para no filtrar cuántos caracteres coinciden
+        if (!MessageDigest.isEqual(esperada, recibida)) {
+            enlacesRechazados.increment();
+            throw new EnlaceInvalidoException("Firma inválida para " + claveReporte);
+        }
+        if (Instant.now().getEpochSecond() > expira) {
+            enlacesRechazados.increment();
+            throw new EnlaceInvalidoException("El enlace de " + claveReporte + " venció");
+        }
+        return almacenamiento.leer(claveReporte);
+    }
+
+    String firmar(String claveReporte, long expira) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITMO);
+            mac.init(clave);
+            byte[] firma = mac.doFinal((claveReporte + "\n" + expira).getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(firma);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("No se pudo firmar el enlace del reporte", e);
+        }
+    }
+
+    @PreDestroy
+    public void detener() {
+        ejecutor.shutdownNow();
+    }
+
+    // Clave de un reporte generado a pedido: la huella del contenido, así el mismo reporte se guarda una vez
+    public static String claveInventarioBajo(ReporteService.Reporte reporte) {
+        return "reportes/inventario-bajo/" + reporte.huella() + ".pdf";
+    }
+}
@@ -0,0 +1,20 @@
+package com.producto_service.Service;
+
+import com.producto_service.DTO.ResultadoStockDto;
+
+import java.util.Map;
+
+/**
+ * Forma de aplicar un lote de cambios de stock de manera segura ante operaciones concurrentes.
+ * Se elige con {@code productos.stock.estrategia} (ver {@code StockConfig}).
+ * <p>
+ * Todas las implementaciones aplican todas las líneas o ninguna: si alguna no puede aplicarse lanzan
+ * {@link com.producto_service.Exception.StockOperacionException}, y si la concurrencia impide terminar
+ * lanzan {@link com.producto_service.Exception.ConflictoStockException}.
+ */
+public interface EstrategiaStock {
+
+    ResultadoStockDto aplicar(Map<Long, Integer> cambios, boolean reducir);
+
+    String nombre();
+}
@@ -0,0 +1,133 @@
+package com.producto_service.Service;
+
+import com.producto_service.DTO.LineaStockDto;
+import com.producto_service.DTO.ResultadoStockDto;
+import com.producto_service.Exception.ConflictoStockException;
+import com.producto_service.Repository.ProductoRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Aplica cada línea con un único {@code UPDATE} condicional ({@code stock >= cantidad}) enviado en un lote
+ * JDBC en orden de id: la base comprueba y modifica el stock en la misma sentencia, sin leerlo antes ni
+ * reintentar. Si alguna línea no actualiza ninguna fila se deshace el lote y se informa el motivo con
+ * el stock vigente.
+ */
+public class EstrategiaStockAtomica extends EstrategiaStockBase {
+
+    // También se incrementa la versión para que las escrituras optimistas concurrentes detecten el cambio
+    private static final String REDUCIR = "UPDATE producto SET stock = stock - ?, version = version + 1 WHERE id = ? AND stock >= ?";
+    private static final String REPONER = "UPDATE producto SET stock = stock + ?, version = version + 1 WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public EstrategiaStockAtomica(ProductoRepository productoRepository,
+                                  HistorialService historialService,
+                                  ApplicationEventPublisher eventPublisher,
+                                  TransactionTemplate transactionTemplate,
+                                  MeterRegistry meterRegistry,
+                                  JdbcTemplate jdbcTemplate) {
+        super(productoRepository, historialService, eventPublisher, transactionTemplate, meterRegistry);
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public String nombre() {
+        return "atomica";
+    }
+
+    @Override
+    public ResultadoStockDto aplicar(Map<Long, Integer> cambios, boolean reducir) {
+        Map<Long, Integer> ordenados = new TreeMap<>(cambios);
+        if (!ordenados.values().stream().allMatch(EstrategiaStockBase::cantidadValida)) {
+            throw rechazo(resultadoConStockVigente(ordenados, reducir, Set.of()), reducir);
+        }
+
+        Set<Long> fallidas = new HashSet<>();
+        ResultadoStockDto resultado;
+        try {
+            resultado = transactionTemplate.execute(status -> {
+                List<Map.Entry<Long, Integer>> lineas = new ArrayList<>(ordenados.entrySet());
+                int[][] filas = jdbcTemplate.batchUpdate(reducir ? REDUCIR : REPONER, lineas, lineas.size(), (ps, linea) -> {
+                    ps.setInt(1, linea.getValue());
+                    ps.setLong(2, linea.getKey());
+                    if (reducir) {
+                        ps.setInt(3, linea.getValue());
+                    }
+                });
+                int indice = 0;
+                for (int[] lote : filas) {
+                    for (int filasLinea : lote) {
+                        if (filasLinea == 0) {
+                            fallidas.add(lineas.get(indice).getKey());
+                        }
+                        indice++;
+                    }
+                }
+                if (!fallidas.isEmpty()) {
+                    status.setRollbackOnly();
+                    return null;
+                }
+
+                // Las filas quedan bloqueadas por los UPDATE: el stock leído es el que dejó esta transacción
+                Map<Long, Integer> stockResultante = new LinkedHashMap<>();
+                Map<Long, Long> versiones = new HashMap<>();
+                productoRepository.findStockByIdIn(ordenados.keySet()).forEach(stock -> {
+                    stockResultante.put(stock.getId(), stock.getCantidad());
+                    versiones.put(stock.getId(), stock.getVersion());
+                });
+                List<LineaStockDto> aplicadas = new ArrayList<>(ordenados.size());
+                Map<Long, Integer> historial = new LinkedHashMap<>();
+                for (Map.Entry<Long, Integer> linea : ordenados.entrySet()) {
+                    int despues = stockResultante.get(linea.getKey());
+                    int antes = reducir ? despues + linea.getValue() : despues - linea.getValue();
+                    aplicadas.add(new LineaStockDto(linea.getKey(), linea.getValue(), antes, despues,
+                            LineaStockDto.Estado.OK, "Stock actualizado"));
+                    historial.put(linea.getKey(), despues);
+                }
+                ResultadoStockDto aplicado = new ResultadoStockDto(true, aplicadas);
+                historialService.agregarHistorialesPorId(historial);
+                publicar(aplicado, versiones);
+                return aplicado;
+            });
+        } catch (PessimisticLockingFailureException e) {
+            conflictos.increment();
+            throw new ConflictoStockException("No se pudo bloquear el stock para aplicar la operación.", e);
+        }
+
+        if (resultado == null) {
+            throw rechazo(resultadoConStockVigente(ordenados, reducir, fallidas), reducir);
+        }
+        return resultado;
+    }
+
+    /**
+     * Explica un rechazo con el stock actual. Si entre el UPDATE fallido y esta lectura el stock se repuso,
+     * las líneas cuyo UPDATE falló se informan igualmente como insuficientes.
+     */
+    private ResultadoStockDto resultadoConStockVigente(Map<Long, Integer> ordenados, boolean reducir, Set<Long> fallidas) {
+        ResultadoStockDto resultado = validar(porId(productoRepository.findAllById(ordenados.keySet())), ordenados, reducir);
+        if (resultado.isAplicado()) {
+            resultado.setAplicado(false);
+            for (LineaStockDto linea : resultado.getLineas()) {
+                if (fallidas.contains(linea.getProductoId())) {
+                    linea.setEstado(LineaStockDto.Estado.STOCK_INSUFICIENTE);
+                    linea.setMensaje("Stock insuficiente al aplicar la operación para el producto con ID: " + linea.getProductoId());
+                }
+            }
+        }
+        return resultado;
+    }
+}
@@ -0,0 +1,147 @@
+package com.producto_service.Service;
+
+import com.producto_service.DTO.LineaStockDto;
+import com.producto_service.DTO.ResultadoStockDto;
+import com.producto_service.Event.StockCambiadoEvent;
+import com.producto_service.Exception.StockOperacionException;
+import com.producto_service.Model.Producto;
+import com.producto_service.Repository.ProductoRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Validación y registro comunes a las estrategias de stock: las líneas se procesan en orden de id,
+ * se valida todo antes de modificar nada y, al aplicar, se escribe el historial y se publica un
+ * {@link StockCambiadoEvent} por línea.
+ */
+abstract class EstrategiaStockBase implements EstrategiaStock {
+
+    protected final ProductoRepository productoRepository;
+    protected final HistorialService historialService;
+    protected final ApplicationEventPublisher eventPublisher;
+    protected final TransactionTemplate transactionTemplate;
+    protected final Counter conflictos;
+
+    protected EstrategiaStockBase(ProductoRepository productoRepository,
+                                  HistorialService historialService,
+                                  ApplicationEventPublisher eventPublisher,
+                                  TransactionTemplate transactionTemplate,
+                                  MeterRegistry meterRegistry) {
+        this.productoRepository = productoRepository;
+        this.historialService = historialService;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = transactionTemplate;
+        this.conflictos = Counter.builder("productos.stock.conflictos")
+                .description("Operaciones de stock abortadas por concurrencia")
+                .tag("estrategia", nombre())
+                .register(meterRegistry);
+    }
+
+    protected static Map<Long, Producto> porId(List<Producto> productos) {
+        Map<Long, Producto> encontrados = new HashMap<>();
+        for (Producto producto : productos) {
+            encontrados.put(producto.getId(), producto);
+        }
+        return encontrados;
+    }
+
+    /**
+     * Evalúa cada línea contra el stock leído sin modificar nada. El resultado queda con
+     * {@code aplicado = false} si alguna línea falla.
+     */
+    protected static ResultadoStockDto validar(Map<Long, Producto> encontrados, Map<Long, Integer> cambios, boolean reducir) {
+        Map<Long, Integer> ordenados = new TreeMap<>(cambios);
+        List<LineaStockDto> lineas = new ArrayList<>(ordenados.size());
+        boolean valido = true;
+
+        for (Map.Entry<Long, Integer> entry : ordenados.entrySet()) {
+            Long productoId = entry.getKey();
+            Integer cantidad = entry.getValue();
+            Producto producto = encontrados.get(productoId);
+            LineaStockDto linea = new LineaStockDto(productoId, cantidad, null, null, LineaStockDto.Estado.OK, null);
+            lineas.add(linea);
+
+            if (producto == null) {
+                linea.setEstado(LineaStockDto.Estado.NO_ENCONTRADO);
+                linea.setMensaje("Producto no encontrado con ID: " + productoId);
+                valido = false;
+                continue;
+            }
+            linea.setStockAnterior(producto.getCantidad());
+
+            if (!cantidadValida(cantidad)) {
+                marcarCantidadInvalida(linea, reducir);
+                valido = false;
+                continue;
+            }
+
+            if (reducir && producto.getCantidad() < cantidad) {
+                linea.setEstado(LineaStockDto.Estado.STOCK_INSUFICIENTE);
+                linea.setMensaje("Stock insuficiente para el producto con ID: " + productoId);
+                valido = false;
+                continue;
+            }
+
+            linea.setStockResultante(reducir ? producto.getCantidad() - cantidad : producto.getCantidad() + cantidad);
+            linea.setMensaje("Stock actualizado");
+        }
+        return new ResultadoStockDto(valido, lineas);
+    }
+
+    protected static boolean cantidadValida(Integer cantidad) {
+        return cantidad != null && cantidad > 0;
+    }
+
+    protected static void marcarCantidadInvalida(LineaStockDto linea, boolean reducir) {
+        linea.setEstado(LineaStockDto.Estado.CANTIDAD_INVALIDA);
+        linea.setMensaje("La cantidad a " + (reducir ? "reducir" : "reponer")
+                + " debe ser mayor que cero para el producto con ID: " + linea.getProductoId());
+    }
+
+    protected static StockOperacionException rechazo(ResultadoStockDto resultado, boolean reducir) {
+        resultado.getLineas().stream()
+                .filter(linea -> linea.getEstado() == LineaStockDto.Estado.OK)
+                .forEach(linea -> {
+                    linea.setStockResultante(linea.getStockAnterior());
+                    linea.setMensaje("No aplicado: otra línea de la operación falló");
+                });
+        return new StockOperacionException("No se pudo " + (reducir ? "reducir" : "reponer")
+                + " el stock: la operación no se aplicó a ningún producto.", resultado);
+    }
+
+    /**
+     * Aplica un resultado ya validado sobre las entidades cargadas en la transacción actual.
+     */
+    protected void aplicarSobreEntidades(Map<Long, Producto> encontrados, ResultadoStockDto resultado) {
+        List<Producto> modificados = new ArrayList<>(resultado.getLineas().size());
+        for (LineaStockDto linea : resultado.getLineas()) {
+            Producto producto = encontrados.get(linea.getProductoId());
+            producto.setCantidad(linea.getStockResultante());
+            modificados.add(producto);
+        }
+        productoRepository.saveAll(modificados);
+        // El volcado incrementa producto.version, que viaja en el evento
+        productoRepository.flush();
+        historialService.agregarHistoriales(modificados);
+        Map<Long, Long> versiones = new HashMap<>();
+        for (Producto producto : modificados) {
+            versiones.put(producto.getId(), producto.getVersion());
+        }
+        publicar(resultado, versiones);
+    }
+
+    protected void publicar(ResultadoStockDto resultado, Map<Long, Long> versiones) {
+        for (LineaStockDto linea : resultado.getLineas()) {
+            eventPublisher.publishEvent(new StockCambiadoEvent(linea.getProductoId(), linea.getStockAnterior(),
+                    linea.getStockResultante(), versiones.get(linea.getProductoId())));
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.producto_service.Service;
+
+import com.producto_service.DTO.ResultadoStockDto;
+import com.producto_service.Exception.ConflictoStockException;
+import com.producto_service.Model.Producto;
+import com.producto_service.Repository.ProductoRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Lee sin bloquear y confirma comprobando {@code @Version}: si otra transacción modificó alguno de los
+ * productos, se descarta el intento y se repite en una transacción nueva, hasta {@code maxReintentos}
+ * veces con espera exponencial con jitter. Dentro de una transacción ajena no se reintenta.
+ */
+public class EstrategiaStockOptimista extends EstrategiaStockBase {
+
+    private final int maxReintentos;
+    private final long esperaBaseMs;
+    private final Counter reintentos;
+
+    public EstrategiaStockOptimista(ProductoRepository productoRepository,
+                                    HistorialService historialService,
+                                    ApplicationEventPublisher eventPublisher,
+                                    TransactionTemplate transactionTemplate,
+                                    MeterRegistry meterRegistry,
+                                    int maxReintentos,
+                                    long esperaBaseMs) {
+        super(productoRepository, historialService, eventPublisher, transactionTemplate, meterRegistry);
+        this.maxReintentos = maxReintentos;
+        this.esperaBaseMs = esperaBaseMs;
+        this.reintentos = Counter.builder("productos.stock.reintentos")
+                .description("Reintentos de operaciones de stock por conflicto de versión")
+                .tag("estrategia", nombre())
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String nombre() {
+        return "optimista";
+    }
+
+    @Override
+    public ResultadoStockDto aplicar(Map<Long, Integer> cambios, boolean reducir) {
+        int intentosMaximos = TransactionSynchronizationManager.isActualTransactionActive() ? 1 : maxReintentos + 1;
+        for (int intento = 1; ; intento++) {
+            try {
+                return transactionTemplate.execute(status -> intentar(cambios, reducir));
+            } catch (OptimisticLockingFailureException e) {
+                conflictos.increment();
+                if (intento >= intentosMaximos) {
+                    throw new ConflictoStockException("El stock cambió durante la operación y se agotaron los "
+                            + maxReintentos + " reintentos.", e);
+                }
+                reintentos.increment();
+                esperar(intento);
+            }
+        }
+    }
+
+    private ResultadoStockDto intentar(Map<Long, Integer> cambios, boolean reducir) {
+        Map<Long, Producto> encontrados = porId(productoRepository.findAllById(cambios.keySet()));
+        ResultadoStockDto resultado = validar(encontrados, cambios, reducir);
+        if (!resultado.isAplicado()) {
+            throw rechazo(resultado, reducir);
+        }
+        // aplicarSobreEntidades vuelca: el conflicto de versión se detecta dentro del intento y no en el commit
+        aplicarSobreEntidades(encontrados, resultado);
+        return resultado;
+    }
+
+    private void esperar(int intento) {
+        long tope = esperaBaseMs << Math.min(intento - 1, 6);
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(tope + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConflictoStockException("Operación de stock interrumpida mientras esperaba para reintentar.", e);
+        }
+    }
+}
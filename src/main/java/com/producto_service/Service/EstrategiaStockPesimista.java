@@ -0,0 +1,74 @@
+package com.producto_service.Service;
+
+import com.producto_service.DTO.ResultadoStockDto;
+import com.producto_service.Exception.ConflictoStockException;
+import com.producto_service.Model.Producto;
+import com.producto_service.Repository.ProductoRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Bloquea los productos con {@code SELECT ... FOR UPDATE} en orden de id antes de leer el stock, así que
+ * dos pedidos con productos en común siempre los bloquean en el mismo orden y no se interbloquean.
+ * Si un bloqueo no se obtiene en {@code lockTimeoutMs}, la operación se aborta sin aplicar nada.
+ */
+public class EstrategiaStockPesimista extends EstrategiaStockBase {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int lockTimeoutMs;
+    private volatile Boolean postgres;
+
+    public EstrategiaStockPesimista(ProductoRepository productoRepository,
+                                    HistorialService historialService,
+                                    ApplicationEventPublisher eventPublisher,
+                                    TransactionTemplate transactionTemplate,
+                                    MeterRegistry meterRegistry,
+                                    JdbcTemplate jdbcTemplate,
+                                    int lockTimeoutMs) {
+        super(productoRepository, historialService, eventPublisher, transactionTemplate, meterRegistry);
+        this.jdbcTemplate = jdbcTemplate;
+        this.lockTimeoutMs = lockTimeoutMs;
+    }
+
+    @Override
+    public String nombre() {
+        return "pesimista";
+    }
+
+    @Override
+    public ResultadoStockDto aplicar(Map<Long, Integer> cambios, boolean reducir) {
+        try {
+            return transactionTemplate.execute(status -> {
+                limitarEsperaDeBloqueo();
+                Map<Long, Producto> encontrados = porId(productoRepository.bloquearPorIds(new TreeSet<>(cambios.keySet()), lockTimeoutMs));
+                ResultadoStockDto resultado = validar(encontrados, cambios, reducir);
+                if (!resultado.isAplicado()) {
+                    throw rechazo(resultado, reducir);
+                }
+                aplicarSobreEntidades(encontrados, resultado);
+                return resultado;
+            });
+        } catch (PessimisticLockingFailureException e) {
+            conflictos.increment();
+            throw new ConflictoStockException("No se pudo bloquear el stock en " + lockTimeoutMs + " ms.", e);
+        }
+    }
+
+    // PostgreSQL ignora el timeout de JPA en FOR UPDATE; se fija para la transacción actual
+    private void limitarEsperaDeBloqueo() {
+        if (postgres == null) {
+            postgres = jdbcTemplate.execute((ConnectionCallback<Boolean>) conexion ->
+                    "PostgreSQL".equalsIgnoreCase(conexion.getMetaData().getDatabaseProductName()));
+        }
+        if (Boolean.TRUE.equals(postgres)) {
+            jdbcTemplate.execute("SET LOCAL lock_timeout = '" + lockTimeoutMs + "ms'");
+        }
+    }
+}
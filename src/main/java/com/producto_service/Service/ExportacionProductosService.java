@@ -0,0 +1,124 @@
+package com.producto_service.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.producto_service.DTO.ProductoResponseDto;
+import com.producto_service.Repository.ProductoRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Exporta el catálogo completo fila a fila. Las filas se leen de un cursor JDBC
+ * ({@link ProductoRepository#streamVistas()}) y se escriben en la salida según llegan,
+ * por lo que la memoria usada no depende del tamaño del catálogo.
+ */
+@Service
+public class ExportacionProductosService {
+
+    public enum Formato {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        Formato(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public static Formato desde(String formato) {
+            return switch (formato.toLowerCase()) {
+                case "ndjson" -> NDJSON;
+                case "csv" -> CSV;
+                default -> throw new IllegalArgumentException("Formato no soportado: " + formato + ". Use ndjson o csv.");
+            };
+        }
+    }
+
+    static final String CABECERA_CSV = "id,nombre,descripcion,cantidad,precio,categoria,marca";
+    private static final int TAMANO_BUFFER = 64 * 1024;
+
+    private final ProductoRepository productoRepository;
+    private final ObjectMapper objectMapper;
+
+    public ExportacionProductosService(ProductoRepository productoRepository, ObjectMapper objectMapper) {
+        this.productoRepository = productoRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Escribe todo el catálogo en {@code salida} y devuelve el número de filas exportadas.
+     * La transacción de solo lectura mantiene abierto el cursor mientras dura la escritura.
+     */
+    @Transactional(readOnly = true)
+    public long exportar(Formato formato, OutputStream salida) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8), TAMANO_BUFFER);
+        if (formato == Formato.CSV) {
+            writer.write(CABECERA_CSV);
+            writer.write('\n');
+        }
+
+        long filas = 0;
+        try (Stream<ProductoResponseDto> productos = productoRepository.streamVistas()) {
+            Iterator<ProductoResponseDto> it = productos.iterator();
+            while (it.hasNext()) {
+                ProductoResponseDto producto = it.next();
+                if (formato == Formato.CSV) {
+                    escribirCsv(writer, producto);
+                } else {
+                    writer.write(objectMapper.writeValueAsString(producto));
+                }
+                writer.write('\n');
+                if (++filas == 1) {
+                    // La primera fila sale de inmediato para que el cliente empiece a recibir datos
+                    writer.flush();
+                }
+            }
+        }
+        writer.flush();
+        return filas;
+    }
+
+    private static void escribirCsv(Writer writer, ProductoResponseDto producto) throws IOException {
+        writer.write(String.valueOf(producto.getId()));
+        writer.write(',');
+        writer.write(campoCsv(producto.getNombre()));
+        writer.write(',');
+        writer.write(campoCsv(producto.getDescripcion()));
+        writer.write(',');
+        writer.write(producto.getCantidad() == null ? "" : producto.getCantidad().toString());
+        writer.write(',');
+        writer.write(producto.getPrecio() == null ? "" : producto.getPrecio().toString());
+        writer.write(',');
+        writer.write(campoCsv(producto.getCategoria() == null ? null : producto.getCategoria().getNombre()));
+        writer.write(',');
+        writer.write(campoCsv(producto.getMarca() == null ? null : producto.getMarca().getNombre()));
+    }
+
+    static String campoCsv(String valor) {
+        if (valor == null) {
+            return "";
+        }
+        if (valor.indexOf(',') < 0 && valor.indexOf('"') < 0 && valor.indexOf('\n') < 0 && valor.indexOf('\r') < 0) {
+            return valor;
+        }
+        return '"' + valor.replace("\"", "\"\"") + '"';
+    }
+}
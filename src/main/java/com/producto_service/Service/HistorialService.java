@@ -1,22 +1,208 @@
 package com.producto_service.Service;
 
-import com.producto_service.DTO.RequestProductoDto;
-import com.producto_service.Model.Historial;
 import com.producto_service.Model.Producto;
-import com.producto_service.Repository.HistorialRepository;
-import lombok.AllArgsConstructor;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registra los cambios de stock en la tabla historial mediante inserciones JDBC por lotes.
+ * <ul>
+ *   <li>Modo {@code durable} (por defecto): los registros de una transacción se acumulan y se insertan
+ *   en un único lote justo antes del commit, dentro de la misma transacción.</li>
+ *   <li>Modo {@code asincrono}: tras el commit los registros pasan a una cola acotada que un hilo escritor
+ *   vacía en lotes. Si la cola está llena, el llamador espera un tiempo acotado y, si sigue llena,
+ *   inserta él mismo sus registros (contrapresión sin pérdida).</li>
+ * </ul>
+ */
 @Service
-@AllArgsConstructor
 public class HistorialService {
 
-    private final HistorialRepository historialRepository;
+    static final String INSERT_HISTORIAL = "INSERT INTO historial (producto_id, stock_cambiado) VALUES (?, ?)";
+
+    record RegistroHistorial(Long productoId, int stockCambiado) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean asincrono;
+    private final int tamanoLote;
+    private final long esperaColaMs;
+    private final long intervaloMs;
+    private final BlockingQueue<RegistroHistorial> cola;
+    private final Thread escritor;
+    private volatile boolean activo = true;
+
+    public HistorialService(JdbcTemplate jdbcTemplate,
+                            @Value("${productos.historial.modo:durable}") String modo,
+                            @Value("${productos.historial.tamano-lote:100}") int tamanoLote,
+                            @Value("${productos.historial.capacidad-cola:10000}") int capacidadCola,
+                            @Value("${productos.historial.espera-cola-ms:50}") long esperaColaMs,
+                            @Value("${productos.historial.intervalo-ms:200}") long intervaloMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.asincrono = switch (modo.toLowerCase()) {
+            case "durable" -> false;
+            case "asincrono" -> true;
+            default -> throw new IllegalArgumentException("Modo de historial no soportado: " + modo + ". Use durable o asincrono.");
+        };
+        this.tamanoLote = tamanoLote;
+        this.esperaColaMs = esperaColaMs;
+        this.intervaloMs = intervaloMs;
+        this.cola = new ArrayBlockingQueue<>(capacidadCola);
+        if (asincrono) {
+            this.escritor = new Thread(this::vaciarCola, "historial-escritor");
+            this.escritor.setDaemon(true);
+            this.escritor.start();
+        } else {
+            this.escritor = null;
+        }
+    }
 
     public void agregarHistorial(Producto producto, Integer nuevaCantidad) {
-        Historial historial = new Historial();
-        historial.setProducto(producto);
-        historial.setStock_cambiado(nuevaCantidad);
-        historialRepository.save(historial);
+        registrar(List.of(new RegistroHistorial(producto.getId(), nuevaCantidad)));
+    }
+
+    public void agregarHistoriales(List<Producto> productos) {
+        List<RegistroHistorial> registros = new ArrayList<>(productos.size());
+        for (Producto producto : productos) {
+            registros.add(new RegistroHistorial(producto.getId(), producto.getCantidad()));
+        }
+        registrar(registros);
+    }
+
+    public void agregarHistorialesPorId(Map<Long, Integer> stockPorProducto) {
+        List<RegistroHistorial> registros = new ArrayList<>(stockPorProducto.size());
+        stockPorProducto.forEach((productoId, stock) -> registros.add(new RegistroHistorial(productoId, stock)));
+        registrar(registros);
+    }
+
+    private void registrar(List<RegistroHistorial> registros) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            if (asincrono) {
+                encolar(registros);
+            } else {
+                insertarLote(registros);
+            }
+            return;
+        }
+
+        @SuppressWarnings("unchecked")
+        List<RegistroHistorial> pendientes = (List<RegistroHistorial>) TransactionSynchronizationManager.getResource(this);
+        if (pendientes == null) {
+            List<RegistroHistorial> nuevos = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, nuevos);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    if (!asincrono) {
+                        insertarLote(nuevos);
+                    }
+                }
+
+                @Override
+                public void afterCommit() {
+                    if (asincrono) {
+                        encolar(nuevos);
+                    }
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(HistorialService.this);
+                }
+            });
+            pendientes = nuevos;
+        }
+        pendientes.addAll(registros);
+    }
+
+    private void encolar(List<RegistroHistorial> registros) {
+        List<RegistroHistorial> rechazados = new ArrayList<>();
+        for (RegistroHistorial registro : registros) {
+            try {
+                if (!cola.offer(registro, esperaColaMs, TimeUnit.MILLISECONDS)) {
+                    rechazados.add(registro);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                rechazados.add(registro);
+            }
+        }
+        if (!rechazados.isEmpty()) {
+            // Cola llena: el llamador escribe sus propios registros en lugar de descartarlos
+            insertarLote(rechazados);
+        }
+    }
+
+    private void vaciarCola() {
+        List<RegistroHistorial> lote = new ArrayList<>(tamanoLote);
+        while (activo || !cola.isEmpty()) {
+            try {
+                RegistroHistorial primero = cola.poll(intervaloMs, TimeUnit.MILLISECONDS);
+                if (primero == null) {
+                    continue;
+                }
+                lote.add(primero);
+                cola.drainTo(lote, tamanoLote - 1);
+                escribirLoteTolerante(lote);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                activo = false;
+            } finally {
+                lote.clear();
+            }
+        }
+    }
+
+    private void escribirLoteTolerante(List<RegistroHistorial> lote) {
+        try {
+            insertarLote(lote);
+        } catch (RuntimeException e) {
+            // Un registro inválido (p. ej. producto eliminado) no debe hacer perder el resto del lote
+            System.err.println("❌ Error escribiendo lote de historial, se reintenta registro a registro: " + e.getMessage());
+            for (RegistroHistorial registro : lote) {
+                try {
+                    insertarLote(List.of(registro));
+                } catch (RuntimeException ex) {
+                    System.err.println("❌ Historial descartado para producto " + registro.productoId() + ": " + ex.getMessage());
+                }
+            }
+        }
+    }
+
+    void insertarLote(List<RegistroHistorial> registros) {
+        if (registros.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_HISTORIAL, registros, tamanoLote, (ps, registro) -> {
+            ps.setLong(1, registro.productoId());
+            ps.setInt(2, registro.stockCambiado());
+        });
+    }
+
+    public int pendientes() {
+        return cola.size();
+    }
+
+    @PreDestroy
+    public void detener() throws InterruptedException {
+        activo = false;
+        if (escritor != null) {
+            escritor.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        List<RegistroHistorial> restantes = new ArrayList<>();
+        cola.drainTo(restantes);
+        if (!restantes.isEmpty()) {
+            escribirLoteTolerante(restantes);
+        }
     }
 }
@@ -0,0 +1,306 @@
+package com.producto_service.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.producto_service.DTO.ResultadoStockDto;
+import com.producto_service.Exception.ConflictoStockException;
+import com.producto_service.Exception.StockOperacionException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Hace idempotentes las operaciones de stock enviadas con la cabecera {@code Idempotency-Key}.
+ * <p>
+ * La primera solicitud con una clave inserta una fila "en curso" en {@code operacion_idempotente} con un
+ * dueño y un plazo: la clave primaria impide que dos réplicas ejecuten la misma operación. La operación y
+ * la respuesta guardada van en la misma transacción, así que el stock cambia si y solo si la clave queda
+ * completada; si entretanto otro reintento tomó la clave, la transacción se deshace. Las repeticiones se
+ * responden desde una caché LRU acotada o, si no está ahí, desde la tabla, sin volver a ejecutar ni leer
+ * productos. Las que llegan mientras la primera sigue ejecutándose en esta instancia esperan su resultado.
+ * <p>
+ * Los rechazos por stock o validación no cambian nada y se guardan aparte. Los errores transitorios
+ * (conflictos de concurrencia, errores de base) no se guardan: se borra la fila y el siguiente reintento
+ * vuelve a ejecutar. Si la instancia cae a mitad de la operación (o falla el commit y no se sabe si se
+ * aplicó), la fila queda en curso: los reintentos reciben 409 hasta que vence su plazo y luego la toman.
+ */
+@Service
+public class IdempotenciaService {
+
+    public static final int LONGITUD_MAXIMA_CLAVE = 100;
+
+    private static final short EN_CURSO = 0;
+    private static final String INSERTAR = "INSERT INTO operacion_idempotente (clave, huella, estado, creada, propietario, vence) "
+            + "VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String TOMAR = "UPDATE operacion_idempotente SET propietario = ?, vence = ? "
+            + "WHERE clave = ? AND estado = 0 AND COALESCE(propietario, '') = ?";
+    private static final String COMPLETAR = "UPDATE operacion_idempotente SET estado = ?, mensaje = ?, resultado = ?, vence = NULL "
+            + "WHERE clave = ? AND estado = 0 AND propietario = ?";
+    private static final String SELECCIONAR = "SELECT huella, estado, mensaje, resultado, creada, propietario, vence "
+            + "FROM operacion_idempotente WHERE clave = ?";
+    private static final String LIBERAR = "DELETE FROM operacion_idempotente WHERE clave = ? AND estado = 0 AND propietario = ?";
+    private static final String PURGAR = "DELETE FROM operacion_idempotente WHERE creada < ?";
+
+    record Respuesta(String huella, int estado, String mensaje, ResultadoStockDto resultado) {
+    }
+
+    // Fila tal como está en la tabla; vence es epoch ms
+    private record Registro(Respuesta respuesta, String propietario, long vence) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Duration retencion;
+    private final Duration plazoEnCurso;
+    private final Cache<String, Respuesta> respuestas;
+    private final Map<String, CompletableFuture<Respuesta>> enCurso = new ConcurrentHashMap<>();
+    private final Counter repetidas;
+
+    public IdempotenciaService(JdbcTemplate jdbcTemplate,
+                               PlatformTransactionManager transactionManager,
+                               ObjectMapper objectMapper,
+                               MeterRegistry meterRegistry,
+                               @Value("${productos.idempotencia.tamano-cache:10000}") long tamanoCache,
+                               @Value("${productos.idempotencia.retencion-horas:24}") long retencionHoras,
+                               @Value("${productos.idempotencia.plazo-en-curso-segundos:30}") long plazoEnCursoSegundos) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.retencion = Duration.ofHours(retencionHoras);
+        this.plazoEnCurso = Duration.ofSeconds(plazoEnCursoSegundos);
+        this.respuestas = Caffeine.newBuilder()
+                .maximumSize(tamanoCache)
+                .expireAfterWrite(retencion)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, respuestas, "productos.idempotencia");
+        this.repetidas = Counter.builder("productos.idempotencia.repetidas")
+                .description("Solicitudes respondidas con el resultado guardado de su clave")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Ejecuta {@code accion} una sola vez por clave. Sin clave se ejecuta directamente. Con clave,
+     * {@code accion} corre dentro de la transacción que guarda la respuesta y debe unirse a ella: nada de
+     * pasar el trabajo a otro hilo.
+     */
+    public ResultadoStockDto ejecutar(String clave, String operacion, Map<Long, Integer> cambios,
+                                      Supplier<ResultadoStockDto> accion) {
+        if (clave == null) {
+            return accion.get();
+        }
+        if (clave.isBlank() || clave.length() > LONGITUD_MAXIMA_CLAVE) {
+            throw new IllegalArgumentException("La clave de idempotencia debe tener entre 1 y "
+                    + LONGITUD_MAXIMA_CLAVE + " caracteres.");
+        }
+        String huella = huella(operacion, cambios);
+
+        Respuesta guardada = respuestas.getIfPresent(clave);
+        if (guardada != null) {
+            repetidas.increment();
+            return reproducir(guardada, huella);
+        }
+
+        CompletableFuture<Respuesta> propia = new CompletableFuture<>();
+        CompletableFuture<Respuesta> existente = enCurso.putIfAbsent(clave, propia);
+        if (existente != null) {
+            repetidas.increment();
+            return reproducir(esperar(existente), huella);
+        }
+        try {
+            Respuesta respuesta = ejecutarUnaVez(clave, huella, accion);
+            propia.complete(respuesta);
+            return reproducir(respuesta, huella);
+        } catch (RuntimeException e) {
+            propia.completeExceptionally(e);
+            throw e;
+        } finally {
+            enCurso.remove(clave, propia);
+        }
+    }
+
+    private Respuesta ejecutarUnaVez(String clave, String huella, Supplier<ResultadoStockDto> accion) {
+        // Pudo terminar otra ejecución entre la consulta a la caché y el registro en curso
+        Respuesta guardada = respuestas.getIfPresent(clave);
+        if (guardada != null) {
+            repetidas.increment();
+            return guardada;
+        }
+        String propietario = UUID.randomUUID().toString();
+        Respuesta registrada = reclamar(clave, huella, propietario);
+        if (registrada != null) {
+            repetidas.increment();
+            respuestas.put(clave, registrada);
+            return registrada;
+        }
+
+        AtomicBoolean enCommit = new AtomicBoolean();
+        Respuesta respuesta;
+        try {
+            respuesta = transactionTemplate.execute(status -> {
+                Respuesta aplicada = new Respuesta(huella, 200, null, accion.get());
+                if (!completar(clave, propietario, aplicada)) {
+                    throw new ConflictoStockException("La clave de idempotencia " + clave
+                            + " la tomó otro reintento; la operación no se aplicó.", null);
+                }
+                enCommit.set(true);
+                return aplicada;
+            });
+        } catch (StockOperacionException e) {
+            respuesta = guardarRechazo(clave, propietario, new Respuesta(huella, 400, e.getMessage(), e.getResultado()));
+        } catch (IllegalArgumentException e) {
+            respuesta = guardarRechazo(clave, propietario, new Respuesta(huella, 400, e.getMessage(), null));
+        } catch (RuntimeException e) {
+            // Si lo que falló fue el commit no se sabe si se aplicó: la fila queda en curso hasta que vence su plazo
+            if (!enCommit.get()) {
+                jdbcTemplate.update(LIBERAR, clave, propietario);
+            }
+            throw e;
+        }
+        respuestas.put(clave, respuesta);
+        return respuesta;
+    }
+
+    /**
+     * Registra la clave en curso a nombre de {@code propietario}. Devuelve la respuesta ya guardada si la
+     * clave terminó antes, o null si esta ejecución quedó como dueña (clave nueva o con el plazo vencido).
+     */
+    private Respuesta reclamar(String clave, String huella, String propietario) {
+        long ahora = System.currentTimeMillis();
+        Timestamp vence = new Timestamp(ahora + plazoEnCurso.toMillis());
+        try {
+            jdbcTemplate.update(INSERTAR, clave, huella, EN_CURSO, new Timestamp(ahora), propietario, vence);
+            return null;
+        } catch (DuplicateKeyException e) {
+            Registro registro = leer(clave);
+            if (registro == null) {
+                throw new ConflictoStockException("La operación con la clave de idempotencia " + clave + " sigue en curso.", e);
+            }
+            if (registro.respuesta().estado() != EN_CURSO) {
+                return registro.respuesta();
+            }
+            if (!registro.respuesta().huella().equals(huella)) {
+                throw new IllegalArgumentException("La clave de idempotencia ya se usó con una solicitud distinta.");
+            }
+            if (registro.vence() > ahora
+                    || jdbcTemplate.update(TOMAR, propietario, vence, clave, registro.propietario()) == 0) {
+                throw new ConflictoStockException("La operación con la clave de idempotencia " + clave + " sigue en curso.", e);
+            }
+            System.out.println("♻️ Clave de idempotencia " + clave + " retomada tras vencer su plazo en curso");
+            return null;
+        }
+    }
+
+    private boolean completar(String clave, String propietario, Respuesta respuesta) {
+        return jdbcTemplate.update(COMPLETAR, respuesta.estado(), respuesta.mensaje(), aJson(respuesta.resultado()),
+                clave, propietario) == 1;
+    }
+
+    // Un rechazo no cambió el stock: si no se puede guardar se responde igual y el reintento vuelve a evaluarlo
+    private Respuesta guardarRechazo(String clave, String propietario, Respuesta respuesta) {
+        try {
+            completar(clave, propietario, respuesta);
+        } catch (RuntimeException e) {
+            System.err.println("⚠️ No se pudo guardar la respuesta de la clave de idempotencia " + clave + ": " + e.getMessage());
+        }
+        return respuesta;
+    }
+
+    @Scheduled(fixedDelayString = "${productos.idempotencia.purga-ms:3600000}")
+    public void purgar() {
+        int borradas = jdbcTemplate.update(PURGAR, new Timestamp(System.currentTimeMillis() - retencion.toMillis()));
+        if (borradas > 0) {
+            System.out.println("🧹 Claves de idempotencia vencidas eliminadas: " + borradas);
+        }
+    }
+
+    private Registro leer(String clave) {
+        List<Registro> filas = jdbcTemplate.query(SELECCIONAR, (rs, i) -> {
+            Respuesta respuesta = new Respuesta(rs.getString("huella"), rs.getShort("estado"), rs.getString("mensaje"),
+                    deJson(rs.getString("resultado")));
+            // Filas anteriores al plazo: vencen a partir de su creación
+            Timestamp vence = rs.getTimestamp("vence");
+            long venceMs = vence != null ? vence.getTime() : rs.getTimestamp("creada").getTime() + plazoEnCurso.toMillis();
+            String propietario = rs.getString("propietario");
+            return new Registro(respuesta, propietario == null ? "" : propietario, venceMs);
+        }, clave);
+        return filas.isEmpty() ? null : filas.get(0);
+    }
+
+    private static ResultadoStockDto reproducir(Respuesta respuesta, String huella) {
+        if (!respuesta.huella().equals(huella)) {
+            throw new IllegalArgumentException("La clave de idempotencia ya se usó con una solicitud distinta.");
+        }
+        if (respuesta.estado() == 200) {
+            return respuesta.resultado();
+        }
+        if (respuesta.resultado() != null) {
+            throw new StockOperacionException(respuesta.mensaje(), respuesta.resultado());
+        }
+        throw new IllegalArgumentException(respuesta.mensaje());
+    }
+
+    private static Respuesta esperar(CompletableFuture<Respuesta> futuro) {
+        try {
+            return futuro.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw e;
+        }
+    }
+
+    // SHA-256 de la operación y sus líneas ordenadas, para detectar una clave reutilizada con otro cuerpo
+    static String huella(String operacion, Map<Long, Integer> cambios) {
+        String contenido = operacion + ":" + (cambios == null ? "" : new TreeMap<>(cambios).toString());
+        try {
+            byte[] resumen = MessageDigest.getInstance("SHA-256").digest(contenido.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(resumen);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String aJson(ResultadoStockDto resultado) {
+        try {
+            return resultado == null ? null : objectMapper.writeValueAsString(resultado);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private ResultadoStockDto deJson(String json) {
+        try {
+            return json == null ? null : objectMapper.readValue(json, ResultadoStockDto.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.producto_service.Service;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Índice en memoria de datos de referencia (marcas, categorías) por ID y por nombre.
+ * Se carga completo con una sola consulta en el primer uso y se descarta tras cada escritura
+ * del servicio dueño; además caduca pasado un tiempo para recoger cambios hechos por otras réplicas.
+ * Mientras está vigente, validar un ID o un nombre no consulta la base de datos.
+ * Una carga que se solapa con una invalidación no se instala: la generación cambia y
+ * la siguiente consulta vuelve a cargar.
+ */
+class IndiceReferencia<T> {
+
+    // Map.copyOf no admite nulos: un elemento sin nombre sigue existiendo por ID
+    private static final String SIN_NOMBRE = "";
+
+    private record Contenido(Map<Long, String> nombrePorId, Map<String, Long> idPorNombre, long cargadoEn) {
+    }
+
+    private final Supplier<List<T>> cargador;
+    private final Function<T, Long> obtenerId;
+    private final Function<T, String> obtenerNombre;
+    private final long vigenciaNanos;
+
+    private final AtomicLong generacion = new AtomicLong();
+    private volatile Contenido contenido;
+
+    IndiceReferencia(Supplier<List<T>> cargador, Function<T, Long> obtenerId, Function<T, String> obtenerNombre,
+                     Duration vigencia) {
+        this.cargador = cargador;
+        this.obtenerId = obtenerId;
+        this.obtenerNombre = obtenerNombre;
+        this.vigenciaNanos = vigencia.toNanos();
+    }
+
+    boolean existeId(Long id) {
+        return id != null && actual().nombrePorId().containsKey(id);
+    }
+
+    boolean existeNombre(String nombre) {
+        return nombre != null && actual().idPorNombre().containsKey(nombre);
+    }
+
+    void invalidar() {
+        generacion.incrementAndGet();
+        contenido = null;
+    }
+
+    private Contenido actual() {
+        Contenido vigente = contenido;
+        if (vigente != null && System.nanoTime() - vigente.cargadoEn() < vigenciaNanos) {
+            return vigente;
+        }
+        synchronized (this) {
+            vigente = contenido;
+            if (vigente == null || System.nanoTime() - vigente.cargadoEn() >= vigenciaNanos) {
+                long generacionInicial = generacion.get();
+                vigente = cargar();
+                contenido = vigente;
+                if (generacion.get() != generacionInicial) {
+                    contenido = null;
+                }
+            }
+            return vigente;
+        }
+    }
+
+    private Contenido cargar() {
+        Map<Long, String> nombrePorId = new HashMap<>();
+        Map<String, Long> idPorNombre = new HashMap<>();
+        for (T elemento : cargador.get()) {
+            Long id = obtenerId.apply(elemento);
+            String nombre = obtenerNombre.apply(elemento);
+            if (id == null) {
+                continue;
+            }
+            nombrePorId.put(id, nombre != null ? nombre : SIN_NOMBRE);
+            if (nombre != null) {
+                idPorNombre.put(nombre, id);
+            }
+        }
+        return new Contenido(Map.copyOf(nombrePorId), Map.copyOf(idPorNombre), System.nanoTime());
+    }
+}
@@ -0,0 +1,214 @@
+package com.producto_service.Service;
+
+import com.producto_service.Event.StockCambiadoEvent;
+import com.producto_service.Repository.ProductoRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Índice en memoria de productos ordenados por stock.
+ * Responde "productos con stock menor a N" en O(log n + k) sin consultar la tabla, y el stock de un
+ * producto desde un {@link MapaLongInt} con lecturas optimistas que no toman el bloqueo.
+ * Se carga al arrancar, se actualiza con cada {@link StockCambiadoEvent} confirmado y se
+ * resincroniza periódicamente para recoger cambios hechos por otras réplicas.
+ * <p>
+ * Cada entrada guarda el {@code producto.version} con el que se escribió y los eventos con una versión
+ * igual o anterior se descartan, así que dos commits sobre el mismo producto entregados en desorden no
+ * dejan el valor viejo. Los eventos que llegan mientras se lee la foto de la recarga se guardan y se
+ * reaplican sobre ella antes de publicarla, con la misma comprobación de versión.
+ */
+@Service
+public class IndiceStockService {
+
+    private record Entrada(int stock, long id) implements Comparable<Entrada> {
+        @Override
+        public int compareTo(Entrada otra) {
+            int comparacion = Integer.compare(stock, otra.stock);
+            return comparacion != 0 ? comparacion : Long.compare(id, otra.id);
+        }
+    }
+
+    // Versión de un producto eliminado: ningún evento posterior lo vuelve a agregar hasta la próxima recarga
+    private static final long ELIMINADO = Long.MAX_VALUE;
+
+    private final ProductoRepository productoRepository;
+    private final boolean habilitado;
+    private final StampedLock lock = new StampedLock();
+
+    private MapaLongInt stockPorId = new MapaLongInt(16);
+    private NavigableSet<Entrada> porStock = new TreeSet<>();
+    private Map<Long, Long> versiones = new HashMap<>();
+    // Eventos recibidos durante una recarga en curso (null si no hay ninguna); protegido por lock
+    private List<StockCambiadoEvent> duranteRecarga;
+    private volatile boolean cargado;
+
+    public IndiceStockService(ProductoRepository productoRepository,
+                              @Value("${productos.indice-stock.habilitado:true}") boolean habilitado) {
+        this.productoRepository = productoRepository;
+        this.habilitado = habilitado;
+    }
+
+    public boolean disponible() {
+        return habilitado && cargado;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${productos.indice-stock.resync-ms:300000}",
+            initialDelayString = "${productos.indice-stock.resync-ms:300000}")
+    public synchronized void recargar() {
+        if (!habilitado) {
+            return;
+        }
+        // Desde aquí todo evento queda guardado: lo que confirme antes de la foto ya está en ella y lo
+        // posterior se reaplica encima
+        long stamp = lock.writeLock();
+        try {
+            duranteRecarga = new ArrayList<>();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+
+        MapaLongInt nuevoStockPorId;
+        NavigableSet<Entrada> nuevoPorStock = new TreeSet<>();
+        Map<Long, Long> nuevasVersiones;
+        try {
+            List<ProductoRepository.StockProducto> filas = productoRepository.findAllStock();
+            nuevoStockPorId = new MapaLongInt(filas.size());
+            nuevasVersiones = new HashMap<>(filas.size() * 2);
+            for (ProductoRepository.StockProducto fila : filas) {
+                nuevoStockPorId.put(fila.getId(), fila.getCantidad());
+                nuevoPorStock.add(new Entrada(fila.getCantidad(), fila.getId()));
+                if (fila.getVersion() != null) {
+                    nuevasVersiones.put(fila.getId(), fila.getVersion());
+                }
+            }
+        } catch (RuntimeException e) {
+            stamp = lock.writeLock();
+            try {
+                duranteRecarga = null;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+            throw e;
+        }
+
+        stamp = lock.writeLock();
+        try {
+            for (StockCambiadoEvent evento : duranteRecarga) {
+                aplicar(nuevoStockPorId, nuevoPorStock, nuevasVersiones, evento);
+            }
+            duranteRecarga = null;
+            stockPorId = nuevoStockPorId;
+            porStock = nuevoPorStock;
+            versiones = nuevasVersiones;
+            cargado = true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockCambiado(StockCambiadoEvent evento) {
+        if (!habilitado) {
+            return;
+        }
+        long stamp = lock.writeLock();
+        try {
+            if (duranteRecarga != null) {
+                duranteRecarga.add(evento);
+            }
+            if (cargado) {
+                aplicar(stockPorId, porStock, versiones, evento);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Aplica el evento si es más nuevo que lo que ya tiene el índice; se llama con el bloqueo de escritura
+    private static void aplicar(MapaLongInt stockPorId, NavigableSet<Entrada> porStock,
+                                Map<Long, Long> versiones, StockCambiadoEvent evento) {
+        Long productoId = evento.productoId();
+        Integer stockNuevo = evento.stockNuevo();
+        Long actual = versiones.get(productoId);
+        if (stockNuevo == null) {
+            versiones.put(productoId, ELIMINADO);
+        } else if (actual != null && (actual == ELIMINADO || evento.version() != null && evento.version() <= actual)) {
+            return;
+        } else if (evento.version() != null) {
+            versiones.put(productoId, evento.version());
+        }
+
+        int anterior = stockNuevo == null
+                ? stockPorId.remove(productoId)
+                : stockPorId.put(productoId, stockNuevo);
+        if (anterior != MapaLongInt.AUSENTE) {
+            porStock.remove(new Entrada(anterior, productoId));
+        }
+        if (stockNuevo != null) {
+            porStock.add(new Entrada(stockNuevo, productoId));
+        }
+    }
+
+    /**
+     * IDs de los productos con stock estrictamente menor al límite, ordenados de menor a mayor stock.
+     */
+    public List<Long> idsConStockMenorA(int limite) {
+        long stamp = lock.readLock();
+        try {
+            NavigableSet<Entrada> rango = porStock.headSet(new Entrada(limite, Long.MIN_VALUE), false);
+            List<Long> ids = new ArrayList<>(rango.size());
+            for (Entrada entrada : rango) {
+                ids.add(entrada.id());
+            }
+            return ids;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public Integer stockDe(Long productoId) {
+        int stock = stocksDe(new long[]{productoId})[0];
+        return stock == MapaLongInt.AUSENTE ? null : stock;
+    }
+
+    /**
+     * Stock de cada id en una misma lectura consistente, o {@link MapaLongInt#AUSENTE} si el producto no existe.
+     * Primero se intenta sin bloqueo; solo si hubo una escritura a la vez se repite con el bloqueo de lectura.
+     */
+    public int[] stocksDe(long[] ids) {
+        int[] stocks = new int[ids.length];
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            leer(stockPorId, ids, stocks);
+            if (lock.validate(stamp)) {
+                return stocks;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            leer(stockPorId, ids, stocks);
+            return stocks;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private static void leer(MapaLongInt mapa, long[] ids, int[] stocks) {
+        for (int i = 0; i < ids.length; i++) {
+            stocks[i] = mapa.get(ids[i]);
+        }
+    }
+}
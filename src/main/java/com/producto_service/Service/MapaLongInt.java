@@ -0,0 +1,175 @@
+package com.producto_service.Service;
+
+import java.util.Arrays;
+
+/**
+ * Mapa {@code long -> int} con direccionamiento abierto y sondeo lineal sobre arreglos primitivos:
+ * sin objetos por entrada ni boxing. Los borrados desplazan hacia atrás las entradas del mismo grupo,
+ * así que no hay lápidas y las búsquedas siguen siendo cortas.
+ * <p>
+ * No es seguro para escrituras concurrentes. Las lecturas pueden hacerse sin bloqueo si luego se
+ * valida que no hubo escrituras (por ejemplo con {@link java.util.concurrent.locks.StampedLock}):
+ * una lectura concurrente con una escritura nunca falla ni se queda en bucle, solo puede devolver
+ * un valor incorrecto que la validación descarta.
+ */
+final class MapaLongInt {
+
+    static final int AUSENTE = Integer.MIN_VALUE;
+
+    private static final long LIBRE = 0L;
+
+    // Claves y valores se reemplazan juntos al crecer, para que un lector nunca mezcle dos tablas
+    private record Tabla(long[] claves, int[] valores) {
+    }
+
+    private Tabla tabla;
+    private int tamano;
+    private boolean tieneCero;
+    private int valorCero;
+
+    MapaLongInt(int capacidadEsperada) {
+        int capacidad = Integer.highestOneBit(Math.max(4, capacidadEsperada * 2 - 1)) << 1;
+        tabla = new Tabla(new long[capacidad], new int[capacidad]);
+    }
+
+    int size() {
+        return tamano + (tieneCero ? 1 : 0);
+    }
+
+    /**
+     * Valor asociado a la clave o {@link #AUSENTE} si no está.
+     */
+    int get(long clave) {
+        if (clave == LIBRE) {
+            return tieneCero ? valorCero : AUSENTE;
+        }
+        Tabla actual = tabla;
+        long[] claves = actual.claves();
+        int mascara = claves.length - 1;
+        int i = indice(clave, mascara);
+        for (int sondeos = 0; sondeos < claves.length; sondeos++) {
+            long existente = claves[i];
+            if (existente == clave) {
+                return actual.valores()[i];
+            }
+            if (existente == LIBRE) {
+                return AUSENTE;
+            }
+            i = (i + 1) & mascara;
+        }
+        return AUSENTE;
+    }
+
+    /**
+     * Asocia el valor a la clave y devuelve el anterior o {@link #AUSENTE}. El valor no puede ser {@link #AUSENTE}.
+     */
+    int put(long clave, int valor) {
+        if (valor == AUSENTE) {
+            throw new IllegalArgumentException("Valor reservado: " + valor);
+        }
+        if (clave == LIBRE) {
+            int anterior = tieneCero ? valorCero : AUSENTE;
+            tieneCero = true;
+            valorCero = valor;
+            return anterior;
+        }
+        long[] claves = tabla.claves();
+        int[] valores = tabla.valores();
+        int mascara = claves.length - 1;
+        int i = indice(clave, mascara);
+        while (claves[i] != LIBRE) {
+            if (claves[i] == clave) {
+                int anterior = valores[i];
+                valores[i] = valor;
+                return anterior;
+            }
+            i = (i + 1) & mascara;
+        }
+        valores[i] = valor;
+        claves[i] = clave;
+        if (++tamano * 2 > claves.length) {
+            crecer();
+        }
+        return AUSENTE;
+    }
+
+    /**
+     * Quita la clave y devuelve su valor o {@link #AUSENTE}.
+     */
+    int remove(long clave) {
+        if (clave == LIBRE) {
+            int anterior = tieneCero ? valorCero : AUSENTE;
+            tieneCero = false;
+            return anterior;
+        }
+        long[] claves = tabla.claves();
+        int[] valores = tabla.valores();
+        int mascara = claves.length - 1;
+        int i = indice(clave, mascara);
+        while (claves[i] != clave) {
+            if (claves[i] == LIBRE) {
+                return AUSENTE;
+            }
+            i = (i + 1) & mascara;
+        }
+        int anterior = valores[i];
+
+        // Desplaza hacia el hueco las entradas siguientes cuya posición ideal no queda entre el hueco y ellas
+        int hueco = i;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mascara;
+            long siguiente = claves[j];
+            if (siguiente == LIBRE) {
+                break;
+            }
+            int ideal = indice(siguiente, mascara);
+            boolean quedaEntre = hueco <= j ? (hueco < ideal && ideal <= j) : (hueco < ideal || ideal <= j);
+            if (!quedaEntre) {
+                claves[hueco] = siguiente;
+                valores[hueco] = valores[j];
+                hueco = j;
+            }
+        }
+        claves[hueco] = LIBRE;
+        tamano--;
+        return anterior;
+    }
+
+    void clear() {
+        Arrays.fill(tabla.claves(), LIBRE);
+        tamano = 0;
+        tieneCero = false;
+    }
+
+    private void crecer() {
+        long[] claves = tabla.claves();
+        int[] valores = tabla.valores();
+        long[] nuevasClaves = new long[claves.length * 2];
+        int[] nuevosValores = new int[claves.length * 2];
+        int mascara = nuevasClaves.length - 1;
+        for (int i = 0; i < claves.length; i++) {
+            long clave = claves[i];
+            if (clave != LIBRE) {
+                int j = indice(clave, mascara);
+                while (nuevasClaves[j] != LIBRE) {
+                    j = (j + 1) & mascara;
+                }
+                nuevasClaves[j] = clave;
+                nuevosValores[j] = valores[i];
+            }
+        }
+        tabla = new Tabla(nuevasClaves, nuevosValores);
+    }
+
+    // Mezcla de MurmurHash3: los ids son secuenciales y sin mezclar se agruparían en la tabla
+    private static int indice(long clave, int mascara) {
+        long h = clave;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h & mascara;
+    }
+}
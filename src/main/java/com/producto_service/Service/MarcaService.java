@@ -6,9 +6,8 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.List;
-import java.util.Optional;
-import java.util.stream.Collectors;
 
 @Service
 @Data
@@ -17,6 +16,9 @@ public class MarcaService {
 
     private final MarcaRepository marcaRepository;
 
+    private final IndiceReferencia<Marca> indiceMarcas =
+            new IndiceReferencia<>(this::cargarMarcas, Marca::getId, Marca::getNombre, Duration.ofMinutes(5));
+
     public List<Marca> obtenerTodasLasMarcas() {
         return marcaRepository.findAll();
     }
@@ -27,33 +29,34 @@ public class MarcaService {
     }
 
     public Marca crearMarca(Marca marca) {
-        return marcaRepository.save(marca);
+        Marca guardada = marcaRepository.save(marca);
+        indiceMarcas.invalidar();
+        return guardada;
     }
 
     public void eliminarMarca(String nombre) {
         Marca marca = obtenerMarcaPorNombre(nombre);
         marcaRepository.delete(marca);
+        indiceMarcas.invalidar();
     }
 
     public Marca actualizarMarca(String nombre, Marca marcaActualizada) {
         Marca marcaExistente = obtenerMarcaPorNombre(nombre);
         marcaExistente.setNombre(marcaActualizada.getNombre());
-        return marcaRepository.save(marcaExistente);
+        Marca guardada = marcaRepository.save(marcaExistente);
+        indiceMarcas.invalidar();
+        return guardada;
     }
 
+    /**
+     * Valida contra el índice en memoria de marcas: no consulta la base de datos mientras el índice esté vigente.
+     */
     public Boolean validarMarca(String nombre) {
-        List<String> nombresMarcas = marcaRepository.findAll()
-                .stream()
-                .map(Marca::getNombre)
-                .collect(Collectors.toList());
-
-        if (nombresMarcas.contains(nombre)) {
-            return true;
-        } else {
-            return false;
-        }
-
+        return indiceMarcas.existeNombre(nombre);
+    }
 
+    private List<Marca> cargarMarcas() {
+        return marcaRepository.findAll();
     }
 
 
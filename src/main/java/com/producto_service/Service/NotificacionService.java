@@ -1,71 +1,218 @@
 package com.producto_service.Service;
 
 import com.producto_service.DTO.NotificacionRequestDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.channel.ChannelOption;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.MediaType;
 import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.stereotype.Service;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.util.retry.Retry;
 
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Cliente no bloqueante del servicio de notificaciones.
+ * <p>
+ * Los envíos devuelven un {@link CompletableFuture} al instante y nunca bloquean al hilo que llama.
+ * Como mucho hay {@code notificaciones.cola} envíos pendientes (en vuelo o esperando conexión); por
+ * encima se rechazan. Cada intento tiene timeout de conexión y de respuesta, los errores transitorios
+ * (5xx, 429, timeouts, errores de conexión) se reintentan con espera exponencial y jitter, y un
+ * {@link CircuitoNotificaciones} deja de llamar al servicio mientras está caído. Las conexiones salen de
+ * un pool propio con tamaño y tiempos de inactividad acotados.
+ */
 @Service
 public class NotificacionService {
 
     private final WebClient webClient;
+    private final ConnectionProvider conexiones;
+    private final Semaphore capacidad;
+    private final int capacidadCola;
+    private final Duration timeout;
+    private final int maxReintentos;
+    private final Duration esperaReintento;
+    private final CircuitoNotificaciones circuito;
+
+    private final Counter enviadas;
+    private final Counter fallidas;
+    private final Counter reintentos;
+    private final Counter rechazadasCola;
+    private final Counter rechazadasCircuito;
+    private final Timer duracion;
 
-    public NotificacionService(WebClient.Builder builder) {
+    public NotificacionService(WebClient.Builder builder,
+                               MeterRegistry meterRegistry,
+                               @Value("${notificaciones.url:http://arka-load-balancer-598161603.us-east-2.elb.amazonaws.com:8085/notificaciones}") String url,
+                               @Value("${notificaciones.conexiones-maximas:20}") int conexionesMaximas,
+                               @Value("${notificaciones.cola:500}") int capacidadCola,
+                               @Value("${notificaciones.connect-timeout-ms:2000}") int connectTimeoutMs,
+                               @Value("${notificaciones.timeout-ms:10000}") long timeoutMs,
+                               @Value("${notificaciones.reintentos:3}") int maxReintentos,
+                               @Value("${notificaciones.espera-reintento-ms:200}") long esperaReintentoMs,
+                               @Value("${notificaciones.circuito.fallos:5}") int fallosParaAbrir,
+                               @Value("${notificaciones.circuito.espera-ms:30000}") long esperaCircuitoMs) {
+        this.timeout = Duration.ofMillis(timeoutMs);
+        this.conexiones = ConnectionProvider.builder("notificaciones")
+                .maxConnections(conexionesMaximas)
+                .pendingAcquireMaxCount(capacidadCola)
+                .pendingAcquireTimeout(timeout)
+                .maxIdleTime(Duration.ofSeconds(30))
+                .evictInBackground(Duration.ofSeconds(60))
+                .build();
+        HttpClient httpClient = HttpClient.create(conexiones)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+                .responseTimeout(timeout);
+        this.webClient = builder
+                .baseUrl(url)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+        this.capacidadCola = capacidadCola;
+        this.capacidad = new Semaphore(capacidadCola);
+        this.maxReintentos = maxReintentos;
+        this.esperaReintento = Duration.ofMillis(esperaReintentoMs);
+        this.circuito = new CircuitoNotificaciones(fallosParaAbrir, esperaCircuitoMs, System::currentTimeMillis);
 
-        this.webClient = builder.baseUrl("http://arka-load-balancer-598161603.us-east-2.elb.amazonaws.com:8085/notificaciones").build();
+        this.enviadas = Counter.builder("notificaciones.enviadas").register(meterRegistry);
+        this.fallidas = Counter.builder("notificaciones.fallidas").register(meterRegistry);
+        this.reintentos = Counter.builder("notificaciones.reintentos").register(meterRegistry);
+        this.rechazadasCola = Counter.builder("notificaciones.rechazadas").tag("motivo", "cola").register(meterRegistry);
+        this.rechazadasCircuito = Counter.builder("notificaciones.rechazadas").tag("motivo", "circuito").register(meterRegistry);
+        this.duracion = Timer.builder("notificaciones.duracion").register(meterRegistry);
+        Gauge.builder("notificaciones.pendientes", capacidad, s -> capacidadCola - s.availablePermits())
+                .register(meterRegistry);
+        Gauge.builder("notificaciones.circuito.abierto", circuito, c -> c.estado() == CircuitoNotificaciones.Estado.CERRADO ? 0 : 1)
+                .register(meterRegistry);
     }
 
-    public void enviarNotificacion(String tipo, String destinatario, String mensaje) {
+    public CompletableFuture<Void> enviarNotificacion(String tipo, String destinatario, String mensaje) {
         NotificacionRequestDto request = new NotificacionRequestDto(tipo, destinatario, mensaje);
 
-        webClient.post()
+        return enviar(() -> webClient.post()
                 .bodyValue(request)
                 .retrieve()
                 .bodyToMono(String.class)
-                .doOnNext(respuesta -> System.out.println("✅ Respuesta del servicio de notificaciones: " + respuesta))
-                .doOnError(error -> System.err.println("❌ Error al enviar notificación: " + error.getMessage()))
-                .block();
+                .defaultIfEmpty(""));
     }
 
-    public void enviarNotificacionConAdjunto(String tipo,
-                                             String destinatario,
-                                             String mensaje,
-                                             byte[] archivo,
-                                             String nombreArchivo) {
-
-        MultipartBodyBuilder builder = new MultipartBodyBuilder();
-        builder.part("tipo", tipo);
-        builder.part("destinatario", destinatario);
-        builder.part("mensaje", mensaje);
-
-        if (archivo != null && archivo.length > 0) {
-            builder.part("archivo", new ByteArrayResource(archivo))
-                    .header("Content-Disposition",
-                            "form-data; name=archivo; filename=" + nombreArchivo);
-        }
+    public CompletableFuture<Void> enviarNotificacionConAdjunto(String tipo,
+                                                                String destinatario,
+                                                                String mensaje,
+                                                                byte[] archivo,
+                                                                String nombreArchivo) {
+        Resource adjunto = archivo != null && archivo.length > 0 ? new ByteArrayResource(archivo) : null;
+        return enviarNotificacionConAdjunto(tipo, destinatario, mensaje, adjunto, nombreArchivo);
+    }
 
-        MultiValueMap<String, HttpEntity<?>> multipartData = builder.build();
+    // El adjunto se lee como flujo al escribir el cuerpo multipart (p. ej. un FileSystemResource),
+    // de nuevo en cada reintento
+    public CompletableFuture<Void> enviarNotificacionConAdjunto(String tipo,
+                                                                String destinatario,
+                                                                String mensaje,
+                                                                Resource archivo,
+                                                                String nombreArchivo) {
+        return enviar(() -> {
+            MultipartBodyBuilder builder = new MultipartBodyBuilder();
+            builder.part("tipo", tipo);
+            builder.part("destinatario", destinatario);
+            builder.part("mensaje", mensaje);
 
-        webClient.post()
-                .uri("/con-adjunto") // tu endpoint con @PostMapping(consumes = "multipart/form-data")
-                .contentType(MediaType.MULTIPART_FORM_DATA)
-                .body(BodyInserters.fromMultipartData(multipartData))
-                .retrieve()
-                .bodyToMono(String.class)
-                .doOnNext(respuesta -> System.out.println("📨 Respuesta del servicio de notificaciones: " + respuesta))
+            if (archivo != null) {
+                builder.part("archivo", archivo)
+                        .header("Content-Disposition",
+                                "form-data; name=archivo; filename=" + nombreArchivo);
+            }
+
+            MultiValueMap<String, HttpEntity<?>> multipartData = builder.build();
+
+            return webClient.post()
+                    .uri("/con-adjunto") // tu endpoint con @PostMapping(consumes = "multipart/form-data")
+                    .contentType(MediaType.MULTIPART_FORM_DATA)
+                    .body(BodyInserters.fromMultipartData(multipartData))
+                    .retrieve()
+                    .bodyToMono(String.class)
+                    .defaultIfEmpty("");
+        });
+    }
+
+    private CompletableFuture<Void> enviar(Supplier<Mono<String>> llamada) {
+        if (!capacidad.tryAcquire()) {
+            rechazadasCola.increment();
+            return CompletableFuture.failedFuture(
+                    new RejectedExecutionException("Cola de notificaciones llena (" + capacidadCola + " pendientes)"));
+        }
+        if (!circuito.permitir()) {
+            capacidad.release();
+            rechazadasCircuito.increment();
+            return CompletableFuture.failedFuture(
+                    new IllegalStateException("Servicio de notificaciones no disponible (circuito abierto)"));
+        }
+
+        Timer.Sample muestra = Timer.start();
+        return Mono.defer(llamada)
+                .timeout(timeout)
+                .retryWhen(Retry.backoff(maxReintentos, esperaReintento)
+                        .maxBackoff(esperaReintento.multipliedBy(10))
+                        .jitter(0.5)
+                        .filter(NotificacionService::transitorio)
+                        .doBeforeRetry(senal -> reintentos.increment())
+                        .onRetryExhaustedThrow((spec, senal) -> senal.failure()))
+                .doOnNext(respuesta -> {
+                    circuito.exito();
+                    enviadas.increment();
+                    System.out.println("✅ Respuesta del servicio de notificaciones: " + respuesta);
+                })
                 .doOnError(error -> {
+                    if (transitorio(error)) {
+                        circuito.fallo();
+                    } else {
+                        circuito.neutro();
+                    }
+                    fallidas.increment();
                     if (error instanceof WebClientResponseException ex) {
                         System.err.println("❌ Error HTTP: " + ex.getStatusCode() + " - " + ex.getResponseBodyAsString());
                     } else {
                         System.err.println("❌ Error al enviar notificación: " + error.getMessage());
                     }
                 })
-                .block();
+                .doFinally(senal -> {
+                    capacidad.release();
+                    muestra.stop(duracion);
+                })
+                .then()
+                .toFuture();
+    }
+
+    // Errores que indican un problema del servicio o de la red, no de la solicitud
+    private static boolean transitorio(Throwable error) {
+        if (error instanceof WebClientResponseException ex) {
+            return ex.getStatusCode().is5xxServerError() || ex.getStatusCode().value() == 429;
+        }
+        return error instanceof TimeoutException || error instanceof WebClientRequestException;
+    }
+
+    @PreDestroy
+    public void detener() {
+        conexiones.dispose();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,164 @@
+package com.producto_service.Service;
+
+import com.producto_service.DTO.EventoOutboxDto;
+import com.producto_service.Event.StockCambiadoEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outbox transaccional de los cambios de stock.
+ * <p>
+ * Cada {@link StockCambiadoEvent} publicado dentro de una transacción se acumula y se inserta en
+ * {@code evento_outbox} en un lote justo antes del commit, en la misma transacción: el evento existe si
+ * y solo si el cambio se confirmó. Los ids se asignan al insertar, no al confirmar: dos transacciones
+ * concurrentes pueden confirmarse en orden inverso a sus ids y el relevo publica cada fila cuando la ve.
+ * <p>
+ * Un relevo periódico toma lotes de filas con {@code FOR UPDATE SKIP LOCKED}, los entrega al
+ * {@link PublicadorEventos} configurado y los borra en la misma transacción. Si la entrega falla la
+ * transacción se deshace y el lote se reintenta: la entrega es al menos una vez. Con varias réplicas
+ * relevando a la vez, cada una toma lotes distintos y los publica en cualquier orden.
+ * <p>
+ * Por eso el orden no es global sino por producto y lo da {@code version} ({@code producto.version} que
+ * dejó el cambio): el consumidor guarda la mayor versión vista de cada producto y descarta los eventos
+ * con una menor, que llegan tarde o repetidos.
+ */
+@Service
+public class OutboxService {
+
+    private static final String INSERTAR = "INSERT INTO evento_outbox (producto_id, stock_anterior, stock_nuevo, version, creado) "
+            + "VALUES (?, ?, ?, ?, ?)";
+    private static final String TOMAR_LOTE = "SELECT id, producto_id, stock_anterior, stock_nuevo, version, creado FROM evento_outbox "
+            + "ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED";
+    private static final String BORRAR = "DELETE FROM evento_outbox WHERE id = ?";
+
+    private static final RowMapper<EventoOutboxDto> MAPEO = (rs, i) -> new EventoOutboxDto(
+            rs.getLong("id"),
+            rs.getLong("producto_id"),
+            (Integer) rs.getObject("stock_anterior"),
+            (Integer) rs.getObject("stock_nuevo"),
+            (Long) rs.getObject("version"),
+            rs.getTimestamp("creado"));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final PublicadorEventos publicador;
+    private final boolean habilitado;
+    private final int tamanoLote;
+    private final Counter publicados;
+    private final Counter fallos;
+
+    public OutboxService(JdbcTemplate jdbcTemplate,
+                         PlatformTransactionManager transactionManager,
+                         PublicadorEventos publicador,
+                         MeterRegistry meterRegistry,
+                         @Value("${productos.outbox.habilitado:false}") boolean habilitado,
+                         @Value("${productos.outbox.tamano-lote:200}") int tamanoLote) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.publicador = publicador;
+        this.habilitado = habilitado;
+        this.tamanoLote = tamanoLote;
+        this.publicados = Counter.builder("productos.outbox.publicados")
+                .tag("publicador", publicador.nombre())
+                .register(meterRegistry);
+        this.fallos = Counter.builder("productos.outbox.fallos")
+                .tag("publicador", publicador.nombre())
+                .register(meterRegistry);
+    }
+
+    @EventListener
+    public void onStockCambiado(StockCambiadoEvent evento) {
+        if (!habilitado) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            insertarLote(List.of(evento));
+            return;
+        }
+
+        @SuppressWarnings("unchecked")
+        List<StockCambiadoEvent> pendientes = (List<StockCambiadoEvent>) TransactionSynchronizationManager.getResource(this);
+        if (pendientes == null) {
+            List<StockCambiadoEvent> nuevos = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, nuevos);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    insertarLote(nuevos);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(OutboxService.this);
+                }
+            });
+            pendientes = nuevos;
+        }
+        pendientes.add(evento);
+    }
+
+    private void insertarLote(List<StockCambiadoEvent> eventos) {
+        if (eventos.isEmpty()) {
+            return;
+        }
+        Timestamp ahora = new Timestamp(System.currentTimeMillis());
+        jdbcTemplate.batchUpdate(INSERTAR, eventos, eventos.size(), (ps, evento) -> {
+            ps.setLong(1, evento.productoId());
+            ps.setObject(2, evento.stockAnterior(), Types.INTEGER);
+            ps.setObject(3, evento.stockNuevo(), Types.INTEGER);
+            ps.setObject(4, evento.version(), Types.BIGINT);
+            ps.setTimestamp(5, ahora);
+        });
+    }
+
+    /**
+     * Publica lotes hasta vaciar el outbox o hasta el primer fallo. Devuelve los eventos publicados.
+     */
+    @Scheduled(fixedDelayString = "${productos.outbox.intervalo-ms:500}")
+    public int relevar() {
+        if (!habilitado) {
+            return 0;
+        }
+        int total = 0;
+        try {
+            int enviados;
+            do {
+                enviados = relevarLote();
+                total += enviados;
+            } while (enviados == tamanoLote);
+        } catch (RuntimeException e) {
+            fallos.increment();
+            System.err.println("❌ Error al publicar eventos del outbox (" + publicador.nombre() + "): " + e.getMessage());
+        }
+        return total;
+    }
+
+    private int relevarLote() {
+        Integer enviados = transactionTemplate.execute(status -> {
+            List<EventoOutboxDto> lote = jdbcTemplate.query(TOMAR_LOTE, MAPEO, tamanoLote);
+            if (lote.isEmpty()) {
+                return 0;
+            }
+            publicador.publicar(lote);
+            jdbcTemplate.batchUpdate(BORRAR, lote, lote.size(), (ps, evento) -> ps.setLong(1, evento.getId()));
+            return lote.size();
+        });
+        publicados.increment(enviados);
+        return enviados;
+    }
+}
@@ -0,0 +1,116 @@
+package com.producto_service.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.producto_service.DTO.ProductoResponseDto;
+import com.producto_service.Event.ProductoActualizadoEvent;
+import com.producto_service.Event.StockCambiadoEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Caché en memoria de la vista de lectura de productos, por ID y por nombre.
+ * Acotada por tamaño y con expiración por tiempo; se invalida por ID tras el commit de cada escritura
+ * en {@code ProductoService}. Las métricas de aciertos, fallos y expulsiones se publican en
+ * /actuator/metrics (cache.gets, cache.evictions) con los nombres productos.por-id y productos.por-nombre.
+ */
+@Service
+public class ProductoCacheService {
+
+    private final Cache<Long, ProductoResponseDto> porId;
+    private final Cache<String, Long> idPorNombre;
+
+    // Cada invalidación incrementa la generación; si cambió mientras se cargaba un valor,
+    // lo recién guardado se descarta para no dejar en caché lo leído antes de una escritura
+    private final AtomicLong generacion = new AtomicLong();
+
+    public ProductoCacheService(MeterRegistry meterRegistry,
+                                @Value("${productos.cache.tamano-maximo:10000}") long tamanoMaximo,
+                                @Value("${productos.cache.ttl-segundos:60}") long ttlSegundos) {
+        this.porId = Caffeine.newBuilder()
+                .maximumSize(tamanoMaximo)
+                .expireAfterWrite(Duration.ofSeconds(ttlSegundos))
+                .recordStats()
+                .build();
+        this.idPorNombre = Caffeine.newBuilder()
+                .maximumSize(tamanoMaximo)
+                .expireAfterWrite(Duration.ofSeconds(ttlSegundos))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, porId, "productos.por-id");
+        CaffeineCacheMetrics.monitor(meterRegistry, idPorNombre, "productos.por-nombre");
+    }
+
+    public ProductoResponseDto obtenerPorNombre(String nombre, Function<String, Optional<ProductoResponseDto>> cargador) {
+        Long id = idPorNombre.getIfPresent(nombre);
+        if (id != null) {
+            ProductoResponseDto cacheado = porId.getIfPresent(id);
+            if (cacheado != null && nombre.equals(cacheado.getNombre())) {
+                return cacheado;
+            }
+            idPorNombre.invalidate(nombre);
+        }
+
+        long generacionInicial = generacion.get();
+        ProductoResponseDto producto = cargador.apply(nombre).orElse(null);
+        if (producto != null) {
+            guardar(producto, generacionInicial);
+        }
+        return producto;
+    }
+
+    /**
+     * Devuelve los productos de los IDs pedidos, ordenados por ID. Los que no están en caché
+     * se cargan con una sola llamada al cargador.
+     */
+    public List<ProductoResponseDto> obtenerPorIds(Collection<Long> ids,
+                                                   Function<Collection<Long>, List<ProductoResponseDto>> cargador) {
+        SortedSet<Long> pedidos = new TreeSet<>(ids);
+        Map<Long, ProductoResponseDto> encontrados = new TreeMap<>(porId.getAllPresent(pedidos));
+        if (encontrados.size() < pedidos.size()) {
+            List<Long> faltantes = pedidos.stream().filter(id -> !encontrados.containsKey(id)).toList();
+            long generacionInicial = generacion.get();
+            for (ProductoResponseDto producto : cargador.apply(faltantes)) {
+                encontrados.put(producto.getId(), producto);
+                guardar(producto, generacionInicial);
+            }
+        }
+        return new ArrayList<>(encontrados.values());
+    }
+
+    private void guardar(ProductoResponseDto producto, long generacionInicial) {
+        porId.put(producto.getId(), producto);
+        idPorNombre.put(producto.getNombre(), producto.getId());
+        if (generacion.get() != generacionInicial) {
+            porId.invalidate(producto.getId());
+            idPorNombre.invalidate(producto.getNombre());
+        }
+    }
+
+    public void invalidar(Long productoId) {
+        generacion.incrementAndGet();
+        ProductoResponseDto anterior = porId.getIfPresent(productoId);
+        porId.invalidate(productoId);
+        if (anterior != null) {
+            idPorNombre.invalidate(anterior.getNombre());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockCambiado(StockCambiadoEvent evento) {
+        invalidar(evento.productoId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductoActualizado(ProductoActualizadoEvent evento) {
+        invalidar(evento.productoId());
+    }
+}
@@ -1,6 +1,14 @@
 package com.producto_service.Service;
+import com.producto_service.DTO.CursorProductoDto;
+import com.producto_service.DTO.DisponibilidadDto;
+import com.producto_service.DTO.LineaStockDto;
+import com.producto_service.DTO.PaginaDto;
+import com.producto_service.DTO.ProductoFiltroDto;
 import com.producto_service.DTO.RequestProductoDto;
 import com.producto_service.DTO.ProductoResponseDto;
+import com.producto_service.DTO.ResultadoStockDto;
+import com.producto_service.Event.ProductoActualizadoEvent;
+import com.producto_service.Event.StockCambiadoEvent;
 import com.producto_service.Mapper.ProductoMapper;
 import com.producto_service.Model.Marca;
 import com.producto_service.Model.Producto;
@@ -9,9 +17,12 @@ import com.producto_service.Repository.ProductoRepository;
 import jakarta.transaction.Transactional;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -25,6 +36,13 @@ public class ProductoService {
     private final CategoriaService categoriaService;
     private final HistorialService historialService;
     private final ProductoMapper productoMapper;
+    private final IndiceStockService indiceStockService;
+    private final ProductoCacheService productoCacheService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final EstrategiaStock estrategiaStock;
+
+    public static final int LIMITE_MAXIMO_PAGINA = 200;
+    public static final int LIMITE_MAXIMO_DISPONIBILIDAD = 1000;
 
 
     public List<Producto> obtenerTodosLosProductos() {
@@ -32,33 +50,50 @@ public class ProductoService {
 
     }
 
-    public List<Producto> obtenerProductosPorCategoria(String categoriaNombre) {
+    public PaginaDto<ProductoResponseDto> obtenerPaginaDeProductos(ProductoFiltroDto filtro, String despuesDe, int limite) {
+        if (limite < 1 || limite > LIMITE_MAXIMO_PAGINA) {
+            throw new IllegalArgumentException("El límite debe estar entre 1 y " + LIMITE_MAXIMO_PAGINA + ".");
+        }
+        if (filtro.getPrecioMin() != null && filtro.getPrecioMax() != null && filtro.getPrecioMin() > filtro.getPrecioMax()) {
+            throw new IllegalArgumentException("El precio mínimo no puede ser mayor que el precio máximo.");
+        }
+        if (filtro.getStockMin() != null && filtro.getStockMax() != null && filtro.getStockMin() > filtro.getStockMax()) {
+            throw new IllegalArgumentException("El stock mínimo no puede ser mayor que el stock máximo.");
+        }
+
+        CursorProductoDto cursor = despuesDe == null || despuesDe.isBlank() ? null
+                : CursorProductoDto.decodificar(despuesDe, filtro.getOrden());
+
+        // Se pide un elemento extra solo para saber si existe una página siguiente
+        List<ProductoResponseDto> productos = productoRepository.buscarPagina(filtro, cursor, limite + 1);
+        boolean hayMas = productos.size() > limite;
+        List<ProductoResponseDto> items = hayMas ? productos.subList(0, limite) : productos;
+        String siguienteCursor = hayMas ? CursorProductoDto.de(items.get(items.size() - 1), filtro.getOrden()).codificar() : null;
+        return new PaginaDto<>(items, siguienteCursor, hayMas, limite);
+    }
+
+    public List<ProductoResponseDto> obtenerProductosPorCategoria(String categoriaNombre) {
         if (categoriaNombre == null || categoriaNombre.isEmpty()) {
             throw new IllegalArgumentException("El nombre de la categoría no puede ser nulo o vacío.");
         }
-        if (categoriaService.obtenerCategoriaPorNombre(categoriaNombre) == null) {
+        if (!categoriaService.existeCategoriaPorNombre(categoriaNombre)) {
             throw new IllegalArgumentException("La categoría con nombre " + categoriaNombre + " no existe.");
         }
 
-        return productoRepository.findByCategoriaNombre(categoriaNombre);
+        return productoRepository.findVistasByCategoriaNombre(categoriaNombre);
     }
 
     public List<String> obtenerProductosPorMarca(String marcaNombre) {
         if (marcaNombre == null || marcaNombre.isEmpty()) {
             throw new IllegalArgumentException("El nombre de la marca no puede ser nulo o vacío.");
         }
-        if (marcaService.obtenerMarcaPorNombre(marcaNombre) == null) {
+        if (!marcaService.validarMarca(marcaNombre)) {
             throw new IllegalArgumentException("La marca con nombre " + marcaNombre + " no existe.");
         }
-        List<Producto> productos = productoRepository.findByMarcaNombre(marcaNombre);
-        List<String> nombresProductos = new ArrayList<>();
-        for (Producto producto : productos) {
-            nombresProductos.add(producto.getNombre());
-        }
-        return nombresProductos;
+        return productoRepository.findNombresByMarcaNombre(marcaNombre);
     }
 
-    public List<Producto> obtenerProductosPorIds(List<Long> ids) {
+    public List<ProductoResponseDto> obtenerProductosPorIds(List<Long> ids) {
         if (ids == null || ids.isEmpty()) {
             throw new IllegalArgumentException("La lista de IDs no puede ser nula o vacía.");
         }
@@ -67,22 +102,30 @@ public class ProductoService {
             throw new IllegalArgumentException("Todos los IDs deben ser números positivos y no nulos.");
         }
 
-        if (productoRepository.findAllById(ids).isEmpty()) {
+        List<ProductoResponseDto> productos = productoCacheService.obtenerPorIds(ids, productoRepository::findVistasByIdIn);
+        if (productos.isEmpty()) {
             throw new IllegalArgumentException("Ningún producto encontrado con los IDs proporcionados.");
         }
-        return productoRepository.findAllById(ids);
+        return productos;
     }
 
     public Producto obtenerProductoPorNombre(String nombre) {
         return productoRepository.findByNombre(nombre).orElse(null);
     }
 
+    public ProductoResponseDto obtenerVistaPorNombre(String nombre) {
+        if (nombre == null) {
+            return null;
+        }
+        return productoCacheService.obtenerPorNombre(nombre, productoRepository::findVistaByNombre);
+    }
+
     @Transactional
     public ProductoResponseDto crearProducto(RequestProductoDto productoDto) {
 
 
         Producto producto = new Producto();
-        if(obtenerProductoPorNombre(productoDto.getNombre()) != null){
+        if(obtenerVistaPorNombre(productoDto.getNombre()) != null){
             throw new IllegalArgumentException("El producto con nombre " + productoDto.getNombre() + " ya existe.");
         }
         producto.setNombre(productoDto.getNombre());
@@ -108,6 +151,7 @@ public class ProductoService {
 
         Producto productoGuardado = productoRepository.save(producto);
         historialService.agregarHistorial(producto, productoDto.getCantidad());
+        eventPublisher.publishEvent(new StockCambiadoEvent(productoGuardado.getId(), null, productoGuardado.getCantidad(), productoGuardado.getVersion()));
         return productoMapper.toDto(productoGuardado)
 
 
@@ -117,22 +161,22 @@ public class ProductoService {
 
 
 
+    @Transactional
     public void eliminarProducto(String nombre) {
         Producto producto = productoRepository.findByNombre(nombre)
                 .orElseThrow(() -> new IllegalArgumentException("Producto no encontrado con nombre: " + nombre));
         productoRepository.delete(producto);
+        eventPublisher.publishEvent(new StockCambiadoEvent(producto.getId(), producto.getCantidad(), null, producto.getVersion()));
     }
 
-    public Producto actualizarProducto(String nombre, RequestProductoDto productoDto) {
+    @Transactional
+    public ProductoResponseDto actualizarProducto(String nombre, RequestProductoDto productoDto) {
         Producto productoExistente = obtenerProductoPorNombre(nombre);
         if (productoExistente == null) {
             throw new IllegalArgumentException("El producto con nombre " + nombre + " no existe.");
         }
 
-        boolean existe = obtenerTodosLosProductos().stream()
-                .anyMatch(producto -> producto.getNombre().equals(productoDto.getNombre()));
-
-        if (existe) {
+        if (obtenerVistaPorNombre(productoDto.getNombre()) != null) {
             throw new IllegalArgumentException("El producto con nombre " + productoDto.getNombre() + " ya existe.");
         }
 
@@ -159,68 +203,122 @@ public class ProductoService {
         if (productoDto.getPrecio() != null) {
             productoExistente.setPrecio(productoDto.getPrecio());
         }
+        Integer cantidadAnterior = productoExistente.getCantidad();
         if (productoDto.getCantidad() != null) {
-            int nuevaCantidad = productoDto.getCantidad();
-            productoExistente.setCantidad(nuevaCantidad);
+            productoExistente.setCantidad(productoDto.getCantidad());
             historialService.agregarHistorial(productoExistente, productoDto.getCantidad());
         }
 
 
 
 
-        return productoRepository.save(productoExistente);
+        Producto productoGuardado = productoRepository.save(productoExistente);
+        if (productoDto.getCantidad() != null) {
+            // Se vuelca para que el evento lleve la versión que deja esta transacción
+            productoRepository.flush();
+            eventPublisher.publishEvent(new StockCambiadoEvent(productoGuardado.getId(), cantidadAnterior,
+                    productoGuardado.getCantidad(), productoGuardado.getVersion()));
+        }
+        eventPublisher.publishEvent(new ProductoActualizadoEvent(productoGuardado.getId()));
+        return productoMapper.toDto(productoGuardado);
 
     }
 
-    public void reduccionStock(Map<Long, Integer> productos) {
-        for (Map.Entry<Long, Integer> entry : productos.entrySet()) {
-            Long productoId = entry.getKey();
-            Integer cantidadAReducir = entry.getValue();
-
-            Producto producto = productoRepository.findById(productoId)
-                    .orElseThrow(() -> new IllegalArgumentException("Producto no encontrado con ID: " + productoId));
-
-            if (cantidadAReducir <= 0) {
-                throw new IllegalArgumentException("La cantidad a reducir debe ser mayor que cero para el producto con ID: " + productoId);
-            }
-
-            if (producto.getCantidad() < cantidadAReducir) {
-                throw new IllegalArgumentException("Stock insuficiente para el producto con ID: " + productoId);
-            }
-
-            producto.setCantidad(producto.getCantidad() - cantidadAReducir);
-            historialService.agregarHistorial(producto, producto.getCantidad());
-            productoRepository.save(producto);
-        }
+    /**
+     * Reduce el stock de varios productos de forma atómica: si alguna línea no puede aplicarse,
+     * no se modifica ninguno. El control de concurrencia lo decide la {@link EstrategiaStock} configurada.
+     */
+    public ResultadoStockDto reduccionStock(Map<Long, Integer> productos) {
+        return aplicarCambiosStock(productos, true);
     }
 
-        public void reposicionStock(Map<Long, Integer> productos) {
-            for (Map.Entry<Long, Integer> entry : productos.entrySet()) {
-                Long productoId = entry.getKey();
-                Integer cantidadAReponer = entry.getValue();
-
-                Producto producto = productoRepository.findById(productoId)
-                        .orElseThrow(() -> new IllegalArgumentException("Producto no encontrado con ID: " + productoId));
-
-                if (cantidadAReponer <= 0) {
-                    throw new IllegalArgumentException("La cantidad a reponer debe ser mayor que cero para el producto con ID: " + productoId);
-                }
+    public ResultadoStockDto reposicionStock(Map<Long, Integer> productos) {
+        return aplicarCambiosStock(productos, false);
+    }
 
-                producto.setCantidad(producto.getCantidad() + cantidadAReponer);
-                historialService.agregarHistorial(producto, producto.getCantidad());
-                productoRepository.save(producto);
-            }
+    private ResultadoStockDto aplicarCambiosStock(Map<Long, Integer> cambios, boolean reducir) {
+        if (cambios == null || cambios.isEmpty()) {
+            throw new IllegalArgumentException("La lista de productos no puede ser nula o vacía.");
+        }
+        return estrategiaStock.aplicar(cambios, reducir);
     }
 
+    /**
+     * Productos con stock menor al límite, ordenados por stock.
+     * Si el índice en memoria está cargado, solo se leen por ID los k productos que cumplen la condición;
+     * si no, se usa la consulta por rango sobre el índice {@code idx_producto_stock}.
+     */
     public List<Producto> obtenerProductosConStockMenorA(int limite) {
-        return productoRepository.findAll()
-                .stream()
+        if (!indiceStockService.disponible()) {
+            return productoRepository.findByCantidadLessThanOrderByCantidadAscIdAsc(limite);
+        }
+        List<Long> ids = indiceStockService.idsConStockMenorA(limite);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        // El índice puede ir ligeramente atrasado respecto a otras réplicas: se filtra con el stock leído
+        return productoRepository.findAllById(ids).stream()
                 .filter(p -> p.getCantidad() < limite)
+                .sorted(Comparator.comparing(Producto::getCantidad).thenComparing(Producto::getId))
                 .toList();
     }
 
+    /**
+     * Indica si cada producto tiene stock para la cantidad pedida, sin modificar nada.
+     * Con el índice cargado se responde desde memoria sin consultar la base; si no, con una sola consulta.
+     */
+    public DisponibilidadDto verificarDisponibilidad(Map<Long, Integer> productos) {
+        if (productos == null || productos.isEmpty()) {
+            throw new IllegalArgumentException("La lista de productos no puede ser nula o vacía.");
+        }
+        if (productos.size() > LIMITE_MAXIMO_DISPONIBILIDAD) {
+            throw new IllegalArgumentException("No se pueden consultar más de " + LIMITE_MAXIMO_DISPONIBILIDAD + " productos a la vez.");
+        }
 
+        long[] ids = new long[productos.size()];
+        int i = 0;
+        for (Long id : productos.keySet()) {
+            if (id == null) {
+                throw new IllegalArgumentException("Todos los IDs deben ser números positivos y no nulos.");
+            }
+            ids[i++] = id;
+        }
+        int[] stocks;
+        if (indiceStockService.disponible()) {
+            stocks = indiceStockService.stocksDe(ids);
+        } else {
+            Map<Long, Integer> leidos = new HashMap<>();
+            productoRepository.findStockByIdIn(productos.keySet()).forEach(fila -> leidos.put(fila.getId(), fila.getCantidad()));
+            stocks = new int[ids.length];
+            for (int j = 0; j < ids.length; j++) {
+                stocks[j] = leidos.getOrDefault(ids[j], MapaLongInt.AUSENTE);
+            }
+        }
 
-
-
+        List<LineaStockDto> lineas = new ArrayList<>(ids.length);
+        boolean disponible = true;
+        for (int j = 0; j < ids.length; j++) {
+            Integer cantidad = productos.get(ids[j]);
+            LineaStockDto linea = new LineaStockDto(ids[j], cantidad, null, null, LineaStockDto.Estado.OK, null);
+            lineas.add(linea);
+            if (stocks[j] == MapaLongInt.AUSENTE) {
+                linea.setEstado(LineaStockDto.Estado.NO_ENCONTRADO);
+                linea.setMensaje("Producto no encontrado con ID: " + ids[j]);
+            } else if (cantidad == null || cantidad <= 0) {
+                linea.setStockAnterior(stocks[j]);
+                linea.setEstado(LineaStockDto.Estado.CANTIDAD_INVALIDA);
+                linea.setMensaje("La cantidad debe ser mayor que cero para el producto con ID: " + ids[j]);
+            } else {
+                linea.setStockAnterior(stocks[j]);
+                if (stocks[j] < cantidad) {
+                    linea.setEstado(LineaStockDto.Estado.STOCK_INSUFICIENTE);
+                    linea.setMensaje("Stock insuficiente para el producto con ID: " + ids[j]);
+                } else {
+                    linea.setStockResultante(stocks[j] - cantidad);
+                }
+            }
+            disponible &= linea.getEstado() == LineaStockDto.Estado.OK;
+        }
+        return new DisponibilidadDto(disponible, lineas);
+    }
 }
@@ -0,0 +1,16 @@
+package com.producto_service.Service;
+
+import com.producto_service.DTO.EventoOutboxDto;
+
+import java.util.List;
+
+/**
+ * Destino de los eventos del outbox. Debe lanzar una excepción si no puede confirmar la entrega del
+ * lote completo: en ese caso el lote se reintenta más tarde.
+ */
+public interface PublicadorEventos {
+
+    void publicar(List<EventoOutboxDto> eventos);
+
+    String nombre();
+}
@@ -0,0 +1,40 @@
+package com.producto_service.Service;
+
+import com.producto_service.DTO.EventoOutboxDto;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Publicador dentro de la JVM para pruebas y desarrollo: guarda los últimos eventos recibidos.
+ */
+public class PublicadorEventosMemoria implements PublicadorEventos {
+
+    private final int capacidad;
+    private final Deque<EventoOutboxDto> recibidos = new ArrayDeque<>();
+
+    public PublicadorEventosMemoria(int capacidad) {
+        this.capacidad = capacidad;
+    }
+
+    @Override
+    public synchronized void publicar(List<EventoOutboxDto> eventos) {
+        for (EventoOutboxDto evento : eventos) {
+            if (recibidos.size() == capacidad) {
+                recibidos.removeFirst();
+            }
+            recibidos.addLast(evento);
+        }
+    }
+
+    @Override
+    public String nombre() {
+        return "memoria";
+    }
+
+    public synchronized List<EventoOutboxDto> recibidos() {
+        return new ArrayList<>(recibidos);
+    }
+}
@@ -0,0 +1,38 @@
+package com.producto_service.Service;
+
+import com.producto_service.DTO.EventoOutboxDto;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Envía cada lote como un arreglo JSON en un POST. Cualquier respuesta que no sea 2xx, o no llegar a
+ * tiempo, deja el lote pendiente para el siguiente ciclo del relevo.
+ */
+public class PublicadorEventosWebhook implements PublicadorEventos {
+
+    private final WebClient webClient;
+    private final Duration timeout;
+
+    public PublicadorEventosWebhook(WebClient.Builder builder, String url, Duration timeout) {
+        this.webClient = builder.baseUrl(url).build();
+        this.timeout = timeout;
+    }
+
+    @Override
+    public void publicar(List<EventoOutboxDto> eventos) {
+        webClient.post()
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(eventos)
+                .retrieve()
+                .toBodilessEntity()
+                .block(timeout);
+    }
+
+    @Override
+    public String nombre() {
+        return "webhook";
+    }
+}
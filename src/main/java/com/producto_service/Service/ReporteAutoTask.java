@@ -2,69 +2,86 @@ package com.producto_service.Service;
 
 import com.producto_service.Config.JwtUtil;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
-import software.amazon.awssdk.core.sync.RequestBody;
-import software.amazon.awssdk.regions.Region;
-import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 
-import java.io.FileOutputStream;
-import java.time.LocalDate;
-import java.time.LocalDateTime;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.concurrent.CompletableFuture;
 
 @Component
 @RequiredArgsConstructor
 public class ReporteAutoTask {
 
+    public static final String TAREA = "reporte-inventario-bajo";
+
     private final ReporteService reporteService;
-    private final NotificacionService notificacionService;
+    private final EntregaReportesService entregaReportesService;
     private final JwtUtil jwtUtil;
+    private final AlertaStockService alertaStockService;
+    private final AlmacenamientoReportes almacenamientoReportes;
+    private final BloqueoTareasService bloqueoTareasService;
+
+    @Value("${productos.alertas.destinatario:}")
+    private String destinatario;
+
+    // Duración del turno: debe cubrir una ejecución completa y ser menor que el periodo del cron
+    @Value("${productos.reporte-auto.turno-ms:600000}")
+    private long turnoMs;
 
-    // Cada 15 minutos (en los minutos 0, 15, 30, 45)
-    @Scheduled(cron = "0 0,15,30,45 * * * *", zone = "America/Bogota")
+    // Las alertas de AlertaStockService cubren los cruces de umbral; el reporte completo
+    // solo se programa si se configura un cron (p. ej. "0 0,15,30,45 * * * *").
+    // Con varias réplicas solo la que toma el turno en bloqueo_tarea lo ejecuta; la ejecución termina
+    // cuando se entrega el correo
+    @Scheduled(cron = "${productos.reporte-auto.cron:-}", zone = "America/Bogota")
     public void generarReporteAutomatico() {
+        bloqueoTareasService.ejecutarAsincrono(TAREA, Duration.ofMillis(turnoMs), this::generarReporte);
+    }
+
+    CompletableFuture<Void> generarReporte(BloqueoTareasService.Turno turno) {
         String correoUsuario = jwtUtil.obtenerCorreoActual();
         String fecha = ZonedDateTime.now(ZoneId.of("America/Bogota"))
                 .format(DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm"));
 
-        try {
-            // Generar PDF
-            byte[] pdf = reporteService.generarReporteInventarioBajo(10);
+        // Generar PDF (o reutilizar el de la versión actual del catálogo)
+        try (ReporteService.Reporte reporte = reporteService.obtenerReporteInventarioBajo(alertaStockService.getUmbralPorDefecto())) {
+            // La huella del último reporte entregado se comparte entre nodos: si el contenido no cambió
+            // no se vuelve a subir ni a enviar
+            if (reporte.huella().equals(bloqueoTareasService.marca(TAREA))) {
+                System.out.println("⏭️ Reporte de inventario bajo sin cambios, se omite la entrega");
+                return CompletableFuture.completedFuture(null);
+            }
 
-            // Subir a S3
-            S3Client s3 = S3Client.builder()
-                    .region(Region.US_EAST_2)
-                    .build();
+            // Fencing: si el turno venció mientras se generaba, otro nodo puede estar entregando
+            if (!bloqueoTareasService.vigente(turno)) {
+                throw new IllegalStateException("El turno " + turno.token() + " venció antes de entregar el reporte");
+            }
 
+            // Archivar (S3 o directorio local según reportes.almacenamiento.tipo)
             String nombreArchivo = "reportes/reporte_inventario_" + fecha + ".pdf";
+            String ubicacion = almacenamientoReportes.guardar(nombreArchivo, reporte.archivo());
 
-            s3.putObject(
-                    PutObjectRequest.builder()
-                            .bucket("arka-reportes")
-                            .key(nombreArchivo)
-                            .contentType("application/pdf")
-                            .build(),
-                    RequestBody.fromBytes(pdf)
-            );
-
-            System.out.println("✅ Reporte guardado: s3://arka-reportes/" + nombreArchivo);
+            System.out.println("✅ Reporte guardado: " + ubicacion);
 
-            // Enviar email
-            notificacionService.enviarNotificacionConAdjunto(
-                    "EMAIL",
-                    "santiagoberriolopez@gmail.com",
-                    "Reporte de inventario bajo generado.\nArchivo: " + nombreArchivo,
-                    pdf,
-                    "reporte_inventario_bajo.pdf"
-            );
+            // Enviar email con el enlace al archivo ya guardado; la entrega cuenta como hecha cuando
+            // el servicio de notificaciones responde y hasta entonces conserva su referencia al archivo
+            ReporteService.Reporte paraEntrega = reporte.retener();
+            String huella = reporte.huella();
+            return entregaReportesService.entregarGuardado(
+                    destinatario,
+                    "Reporte de inventario bajo generado.\nArchivo: " + ubicacion,
+                    nombreArchivo,
+                    paraEntrega.archivo()
+            ).whenComplete((resultado, error) -> paraEntrega.close())
+                    .thenRun(() -> bloqueoTareasService.guardarMarca(turno, huella));
 
-        } catch (Exception e) {
-            System.err.println("❌ Error generando reporte: " + e.getMessage());
-            e.printStackTrace();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error guardando el reporte", e);
         }
     }
 }
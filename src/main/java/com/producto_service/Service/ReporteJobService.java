@@ -0,0 +1,264 @@
+package com.producto_service.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.producto_service.DTO.ReporteJobDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Trabajos asíncronos de generación de reportes.
+ * <p>
+ * Cada solicitud devuelve un id al instante y el reporte se genera (y, si se pide, se envía por correo)
+ * en un pool dedicado con un número fijo de hilos y una cola acotada: cuando la cola está llena la
+ * solicitud se rechaza con {@link RejectedExecutionException} en lugar de acumular trabajo. Las
+ * solicitudes con los mismos parámetros que un trabajo pendiente o en curso reciben ese mismo trabajo.
+ * <p>
+ * El trabajo terminado conserva su propio enlace al archivo del reporte, así que sigue descargable aunque
+ * {@link ReporteService} lo saque de su caché. Los trabajos se olvidan {@code reportes.jobs.retencion-minutos}
+ * después de crearse, o antes si hay más de {@code reportes.jobs.maximo}; su archivo es una
+ * {@link ReporteService.Reporte} contada y se borra cuando terminan las descargas que lo estén leyendo.
+ */
+@Service
+public class ReporteJobService {
+
+    public static final String INVENTARIO_BAJO = "inventario-bajo";
+
+    private record Parametros(String tipo, int limite, String destinatario) {
+    }
+
+    private static final class Trabajo {
+        private final String id = UUID.randomUUID().toString();
+        private final Parametros parametros;
+        private final Date creado = new Date();
+        private volatile ReporteJobDto.Estado estado = ReporteJobDto.Estado.PENDIENTE;
+        private volatile Date terminado;
+        private volatile ReporteService.Reporte reporte;
+        private volatile Long tamano;
+        private volatile boolean notificado;
+        private volatile String error;
+
+        private Trabajo(Parametros parametros) {
+            this.parametros = parametros;
+        }
+
+        private ReporteJobDto aDto() {
+            return new ReporteJobDto(id, parametros.tipo(), parametros.limite(), estado, creado, terminado,
+                    tamano, notificado, error);
+        }
+    }
+
+    private final ReporteService reporteService;
+    private final EntregaReportesService entregaReportesService;
+    private final Path directorio;
+    private final ThreadPoolExecutor ejecutor;
+    private final Cache<String, Trabajo> trabajos;
+    // Trabajos pendientes o en curso por parámetros, para colapsar duplicados
+    private final Map<Parametros, Trabajo> activos = new ConcurrentHashMap<>();
+    private final Counter rechazados;
+    private final Counter colapsados;
+    private final Timer duracion;
+
+    public ReporteJobService(ReporteService reporteService,
+                             EntregaReportesService entregaReportesService,
+                             MeterRegistry meterRegistry,
+                             @Value("${reportes.directorio:${java.io.tmpdir}/producto-service-reportes}") String directorio,
+                             @Value("${reportes.jobs.hilos:2}") int hilos,
+                             @Value("${reportes.jobs.cola:20}") int capacidadCola,
+                             @Value("${reportes.jobs.retencion-minutos:60}") long retencionMinutos,
+                             @Value("${reportes.jobs.maximo:1000}") long maximoTrabajos) throws IOException {
+        this.reporteService = reporteService;
+        this.entregaReportesService = entregaReportesService;
+        this.directorio = Files.createDirectories(Path.of(directorio, "jobs"));
+        AtomicInteger numero = new AtomicInteger();
+        this.ejecutor = new ThreadPoolExecutor(hilos, hilos, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(capacidadCola),
+                tarea -> {
+                    Thread hilo = new Thread(tarea, "reporte-job-" + numero.incrementAndGet());
+                    hilo.setDaemon(true);
+                    return hilo;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.trabajos = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMinutes(retencionMinutos))
+                .maximumSize(maximoTrabajos)
+                .executor(Runnable::run)
+                .removalListener((String id, Trabajo trabajo, RemovalCause causa) -> soltarReporte(trabajo))
+                .build();
+        this.rechazados = Counter.builder("reportes.jobs.rechazados")
+                .description("Trabajos rechazados con la cola llena")
+                .register(meterRegistry);
+        this.colapsados = Counter.builder("reportes.jobs.colapsados")
+                .description("Solicitudes atendidas por un trabajo idéntico en curso")
+                .register(meterRegistry);
+        this.duracion = Timer.builder("reportes.jobs.duracion")
+                .register(meterRegistry);
+        Gauge.builder("reportes.jobs.cola", ejecutor, e -> e.getQueue().size())
+                .register(meterRegistry);
+        Gauge.builder("reportes.jobs.activos", ejecutor, ThreadPoolExecutor::getActiveCount)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Encola un reporte de inventario bajo. Si {@code destinatario} no es nulo se envía por correo al
+     * terminar. Lanza {@link RejectedExecutionException} si la cola está llena.
+     */
+    public ReporteJobDto encolarInventarioBajo(int limite, String destinatario) {
+        if (limite < 0) {
+            throw new IllegalArgumentException("El límite de stock debe ser mayor o igual a 0");
+        }
+        Parametros parametros = new Parametros(INVENTARIO_BAJO, limite, destinatario);
+        Trabajo nuevo = new Trabajo(parametros);
+        Trabajo existente = activos.putIfAbsent(parametros, nuevo);
+        if (existente != null) {
+            colapsados.increment();
+            return existente.aDto();
+        }
+
+        trabajos.put(nuevo.id, nuevo);
+        try {
+            ejecutor.execute(() -> ejecutar(nuevo));
+        } catch (RejectedExecutionException e) {
+            activos.remove(parametros, nuevo);
+            trabajos.invalidate(nuevo.id);
+            rechazados.increment();
+            throw new RejectedExecutionException("Hay demasiados reportes en cola, reintente más tarde", e);
+        }
+        return nuevo.aDto();
+    }
+
+    public ReporteJobDto obtener(String id) {
+        return buscar(id).aDto();
+    }
+
+    /**
+     * Abre el reporte de un trabajo completado, o devuelve {@code null} si todavía no está listo. El flujo
+     * lleva su propia referencia al archivo: aunque el trabajo venza mientras se lee, el archivo no se
+     * borra hasta cerrarlo.
+     */
+    public InputStream abrir(String id) throws IOException {
+        Trabajo trabajo = buscar(id);
+        if (trabajo.estado == ReporteJobDto.Estado.FALLIDO) {
+            throw new IllegalArgumentException("El trabajo " + id + " falló: " + trabajo.error);
+        }
+        if (trabajo.estado != ReporteJobDto.Estado.COMPLETADO) {
+            return null;
+        }
+        try {
+            return trabajo.reporte.abrir();
+        } catch (IllegalStateException e) {
+            // Venció entre la búsqueda y la apertura
+            throw new IllegalArgumentException("El trabajo de reporte " + id + " no existe o ya venció");
+        }
+    }
+
+    private Trabajo buscar(String id) {
+        Trabajo trabajo = trabajos.getIfPresent(id);
+        if (trabajo == null) {
+            throw new IllegalArgumentException("El trabajo de reporte " + id + " no existe o ya venció");
+        }
+        return trabajo;
+    }
+
+    private void ejecutar(Trabajo trabajo) {
+        trabajo.estado = ReporteJobDto.Estado.EN_CURSO;
+        long inicio = System.nanoTime();
+        String claveReporte;
+        // El trabajo se queda con su propio enlace al archivo y suelta enseguida la referencia de la caché
+        try (ReporteService.Reporte reporte = reporteService.obtenerReporteInventarioBajo(trabajo.parametros.limite())) {
+            claveReporte = EntregaReportesService.claveInventarioBajo(reporte);
+            trabajo.reporte = new ReporteService.Reporte(conservar(reporte.archivo(), trabajo.id), reporte.tamano(),
+                    reporte.huella());
+            trabajo.tamano = reporte.tamano();
+        } catch (RuntimeException e) {
+            trabajo.error = e.getMessage();
+            terminar(trabajo, ReporteJobDto.Estado.FALLIDO, inicio);
+            System.err.println("❌ Error en el trabajo de reporte " + trabajo.id + ": " + e.getMessage());
+            return;
+        }
+
+        // El reporte ya se puede descargar aunque falle el correo
+        if (trabajo.parametros.destinatario() != null) {
+            // La entrega lleva su propia referencia por si el trabajo vence mientras se envía
+            try (ReporteService.Reporte paraEntrega = trabajo.reporte.retener()) {
+                entregaReportesService.entregar(
+                        trabajo.parametros.destinatario(),
+                        "Se ha generado el reporte de inventario bajo con límite: " + trabajo.parametros.limite(),
+                        claveReporte,
+                        paraEntrega.archivo()).join();
+                trabajo.notificado = true;
+            } catch (CompletionException e) {
+                trabajo.error = e.getCause() instanceof UncheckedIOException
+                        ? "No se pudo guardar el reporte para el correo: " + e.getCause().getMessage()
+                        : "No se pudo enviar el correo: " + e.getCause().getMessage();
+            } catch (RuntimeException e) {
+                trabajo.error = "No se pudo enviar el correo: " + e.getMessage();
+            }
+        }
+        terminar(trabajo, ReporteJobDto.Estado.COMPLETADO, inicio);
+    }
+
+    private void terminar(Trabajo trabajo, ReporteJobDto.Estado estado, long inicio) {
+        // Primero se libera la clave: quien vea el trabajo terminado ya puede encolar otro
+        activos.remove(trabajo.parametros, trabajo);
+        // Si se desalojó mientras corría, nadie más soltará su archivo
+        if (trabajos.getIfPresent(trabajo.id) != trabajo) {
+            soltarReporte(trabajo);
+        }
+        trabajo.terminado = new Date();
+        trabajo.estado = estado;
+        duracion.record(System.nanoTime() - inicio, TimeUnit.NANOSECONDS);
+    }
+
+    // Enlace duro al archivo de la caché de reportes; si el sistema de archivos no lo admite, copia
+    private Path conservar(Path origen, String id) {
+        Path destino = directorio.resolve(id + ".pdf");
+        try {
+            try {
+                Files.createLink(destino, origen);
+            } catch (UnsupportedOperationException | IOException e) {
+                Files.copy(origen, destino);
+            }
+            return destino;
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo conservar el reporte del trabajo " + id, e);
+        }
+    }
+
+    // El archivo se borra al cerrar la última referencia (la del trabajo o la de una descarga en curso)
+    private static void soltarReporte(Trabajo trabajo) {
+        if (trabajo != null && trabajo.reporte != null) {
+            trabajo.reporte.close();
+        }
+    }
+
+    @PreDestroy
+    public void detener() {
+        ejecutor.shutdownNow();
+        trabajos.invalidateAll();
+        trabajos.cleanUp();
+    }
+}
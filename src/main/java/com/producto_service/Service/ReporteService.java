@@ -1,67 +1,327 @@
 package com.producto_service.Service;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
 import com.itextpdf.text.*;
 import com.itextpdf.text.pdf.PdfPCell;
 import com.itextpdf.text.pdf.PdfPTable;
 import com.itextpdf.text.pdf.PdfWriter;
-import com.producto_service.Model.Producto;
-import lombok.RequiredArgsConstructor;
+import com.producto_service.DTO.ProductoResponseDto;
+import com.producto_service.Repository.ProductoRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
 import java.util.Date;
-import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
+/**
+ * Genera los reportes PDF y los memoriza por (tipo, límite, versión del catálogo): mientras no se
+ * confirme ningún cambio de producto o de stock, las repeticiones devuelven el mismo archivo sin volver a
+ * consultar ni a maquetar. Cada reporte lleva la huella de su contenido (los datos, no el PDF, que incluye
+ * la fecha de generación) para que quien lo entrega pueda omitir envíos idénticos.
+ * <p>
+ * El PDF se escribe en un archivo temporal mientras se recorren los productos con un cursor: la tabla se
+ * vuelca al documento cada {@code reportes.pdf.filas-por-bloque} filas, así que la memoria usada no
+ * crece con el tamaño del reporte. Los consumidores (respuesta HTTP, S3, correo) leen el archivo como
+ * flujo. Cada {@link Reporte} devuelto es una referencia contada al archivo: se borra cuando el reporte
+ * salió de la caché y se cerraron todas las referencias, así que quien lo siga usando (una descarga en
+ * curso, un envío con reintentos) no se queda sin él.
+ * <p>
+ * Los cambios de nombre de una categoría no cambian la versión del catálogo; el TTL de la caché acota
+ * cuánto puede tardar un reporte en reflejarlos.
+ */
 @Service
-@RequiredArgsConstructor
 public class ReporteService {
 
-    private final ProductoService productoService;
+    private static final String INVENTARIO_BAJO = "inventario-bajo";
+    private static final int TAMANO_BUFFER = 64 * 1024;
 
-    public byte[] generarReporteInventarioBajo(int limite) throws Exception {
-        List<Producto> productos = productoService.obtenerProductosConStockMenorA(limite);
+    /**
+     * Referencia a un reporte generado. Hay que cerrarla al terminar de usar el archivo; quien lo use
+     * más allá (un envío asíncrono) toma su propia referencia con {@link #retener()}.
+     */
+    public static final class Reporte implements AutoCloseable {
+
+        private final Generado generado;
+        private final AtomicBoolean cerrado = new AtomicBoolean();
+
+        // Reporte suelto, sin caché: el archivo se borra al cerrarlo
+        Reporte(Path archivo, long tamano, String huella) {
+            this(new Generado(archivo, tamano, huella));
+        }
+
+        private Reporte(Generado generado) {
+            this.generado = generado;
+        }
+
+        public Path archivo() {
+            return generado.archivo;
+        }
+
+        public long tamano() {
+            return generado.tamano;
+        }
+
+        public String huella() {
+            return generado.huella;
+        }
+
+        /**
+         * Otra referencia al mismo archivo, que se cierra por separado.
+         */
+        public Reporte retener() {
+            // Si otro hilo la cierra a la vez, la cuenta puede llegar a cero antes de tomarla
+            if (cerrado.get() || !generado.tomar()) {
+                throw new IllegalStateException("El reporte ya se cerró");
+            }
+            return new Reporte(generado);
+        }
+
+        /**
+         * Abre el archivo para leerlo; el flujo lleva su propia referencia y la suelta al cerrarse.
+         */
+        public InputStream abrir() throws IOException {
+            Reporte propia = retener();
+            try {
+                return new FilterInputStream(Files.newInputStream(propia.archivo())) {
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            propia.close();
+                        }
+                    }
+                };
+            } catch (IOException | RuntimeException e) {
+                propia.close();
+                throw e;
+            }
+        }
+
+        @Override
+        public void close() {
+            if (cerrado.compareAndSet(false, true)) {
+                generado.soltar();
+            }
+        }
+    }
+
+    // Archivo generado y cuántas referencias lo usan; la caché cuenta como una mientras lo tenga
+    private static final class Generado {
+
+        private final Path archivo;
+        private final long tamano;
+        private final String huella;
+        private final AtomicInteger usos = new AtomicInteger(1);
+
+        private Generado(Path archivo, long tamano, String huella) {
+            this.archivo = archivo;
+            this.tamano = tamano;
+            this.huella = huella;
+        }
+
+        // Falla si el archivo ya se soltó del todo (salió de la caché y nadie lo tenía)
+        private boolean tomar() {
+            int actuales;
+            do {
+                actuales = usos.get();
+                if (actuales == 0) {
+                    return false;
+                }
+            } while (!usos.compareAndSet(actuales, actuales + 1));
+            return true;
+        }
+
+        private void soltar() {
+            if (usos.decrementAndGet() == 0) {
+                eliminar(archivo);
+            }
+        }
+    }
+
+    private record Clave(String tipo, int limite, long versionCatalogo) {
+    }
+
+    private final ProductoRepository productoRepository;
+    private final CambiosCatalogoService cambiosCatalogoService;
+    private final TransactionTemplate lectura;
+    private final Path directorio;
+    private final int filasPorBloque;
+    private final Cache<Clave, Generado> reportes;
+
+    public ReporteService(ProductoRepository productoRepository,
+                          CambiosCatalogoService cambiosCatalogoService,
+                          PlatformTransactionManager transactionManager,
+                          MeterRegistry meterRegistry,
+                          @Value("${reportes.directorio:${java.io.tmpdir}/producto-service-reportes}") String directorio,
+                          @Value("${reportes.pdf.filas-por-bloque:200}") int filasPorBloque,
+                          @Value("${reportes.cache.tamano-maximo:32}") long tamanoMaximo,
+                          @Value("${reportes.cache.ttl-minutos:10}") long ttlMinutos) throws IOException {
+        this.productoRepository = productoRepository;
+        this.cambiosCatalogoService = cambiosCatalogoService;
+        this.lectura = new TransactionTemplate(transactionManager);
+        this.lectura.setReadOnly(true);
+        this.directorio = Files.createDirectories(Path.of(directorio));
+        this.filasPorBloque = filasPorBloque;
+        this.reportes = Caffeine.newBuilder()
+                .maximumSize(tamanoMaximo)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutos))
+                .executor(Runnable::run)
+                .removalListener((Clave clave, Generado generado, RemovalCause causa) -> generado.soltar())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, reportes, "reportes");
+    }
+
+    /**
+     * Devuelve el reporte de inventario bajo de la versión actual del catálogo. Las solicitudes
+     * concurrentes de la misma clave esperan a una única generación. Quien lo pide debe cerrarlo.
+     */
+    public Reporte obtenerReporteInventarioBajo(int limite) {
+        // La versión se lee antes que los datos: si entra un cambio mientras se genera, el reporte queda
+        // asociado a la versión anterior y la siguiente solicitud lo regenera
+        Clave clave = new Clave(INVENTARIO_BAJO, limite, cambiosCatalogoService.versionActual());
+        while (true) {
+            Generado generado = reportes.get(clave, c -> construirInventarioBajo(c.limite()));
+            if (generado.tomar()) {
+                return new Reporte(generado);
+            }
+            // Salió de la caché y se borró entre la lectura y la referencia: se vuelve a pedir
+        }
+    }
+
+    private Generado construirInventarioBajo(int limite) {
+        Path archivo = null;
+        try {
+            archivo = Files.createTempFile(directorio, INVENTARIO_BAJO + "-", ".pdf");
+            String huella;
+            try (OutputStream salida = new BufferedOutputStream(Files.newOutputStream(archivo), TAMANO_BUFFER)) {
+                huella = lectura.execute(status -> {
+                    try (Stream<ProductoResponseDto> productos = productoRepository.streamVistasConStockMenorA(limite)) {
+                        return escribirInventarioBajo(productos, limite, salida);
+                    }
+                });
+            }
+            return new Generado(archivo, Files.size(archivo), huella);
+        } catch (IOException e) {
+            eliminar(archivo);
+            throw new UncheckedIOException("No se pudo escribir el reporte de inventario bajo", e);
+        } catch (RuntimeException e) {
+            eliminar(archivo);
+            throw e;
+        }
+    }
+
+    // Escribe el PDF en 'salida' y devuelve la huella de las filas
+    private String escribirInventarioBajo(Stream<ProductoResponseDto> productos, int limite, OutputStream salida) {
+        MessageDigest huella = sha256();
+        huella.update((INVENTARIO_BAJO + ":" + limite + "\n").getBytes(StandardCharsets.UTF_8));
 
         Document document = new Document(PageSize.A4);
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        PdfWriter.getInstance(document, out);
-        document.open();
-
-        // 🔹 Título
-        Font tituloFont = new Font(Font.FontFamily.HELVETICA, 16, Font.BOLD);
-        Paragraph titulo = new Paragraph("Reporte de Inventario Bajo", tituloFont);
-        titulo.setAlignment(Element.ALIGN_CENTER);
-        document.add(titulo);
-        document.add(new Paragraph(" "));
-        document.add(new Paragraph("Fecha de generación: " + new Date()));
-        document.add(new Paragraph("Límite de inventario: " + limite));
-        document.add(new Paragraph(" "));
-
-        // 🔹 Tabla
-        PdfPTable table = new PdfPTable(4);
-        table.setWidthPercentage(100);
-        table.setWidths(new int[]{3, 3, 2, 2});
-
-        // Encabezados
-        Font headFont = new Font(Font.FontFamily.HELVETICA, 12, Font.BOLD);
-        String[] headers = {"Nombre", "Categoría", "Precio", "Cantidad"};
-        for (String h : headers) {
-            PdfPCell header = new PdfPCell(new Phrase(h, headFont));
-            header.setHorizontalAlignment(Element.ALIGN_CENTER);
-            header.setBackgroundColor(BaseColor.LIGHT_GRAY);
-            table.addCell(header);
-        }
-
-        // Filas
-        for (Producto p : productos) {
-            table.addCell(p.getNombre());
-            table.addCell(p.getCategoria().getNombre());
-            table.addCell(String.format("$ %.2f", p.getPrecio()));
-            table.addCell(String.valueOf(p.getCantidad()));
-        }
-
-        document.add(table);
-        document.close();
-
-        return out.toByteArray();
+        try {
+            PdfWriter writer = PdfWriter.getInstance(document, salida);
+            // El documento no cierra la salida: la cierra quien la abrió
+            writer.setCloseStream(false);
+            document.open();
+
+            // 🔹 Título
+            Font tituloFont = new Font(Font.FontFamily.HELVETICA, 16, Font.BOLD);
+            Paragraph titulo = new Paragraph("Reporte de Inventario Bajo", tituloFont);
+            titulo.setAlignment(Element.ALIGN_CENTER);
+            document.add(titulo);
+            document.add(new Paragraph(" "));
+            document.add(new Paragraph("Fecha de generación: " + new Date()));
+            document.add(new Paragraph("Límite de inventario: " + limite));
+            document.add(new Paragraph(" "));
+
+            // 🔹 Tabla incompleta: se vuelca por bloques y el encabezado se repite en cada página
+            PdfPTable table = new PdfPTable(4);
+            table.setWidthPercentage(100);
+            table.setWidths(new int[]{3, 3, 2, 2});
+            table.setComplete(false);
+            table.setHeaderRows(1);
+
+            // Encabezados
+            Font headFont = new Font(Font.FontFamily.HELVETICA, 12, Font.BOLD);
+            String[] headers = {"Nombre", "Categoría", "Precio", "Cantidad"};
+            for (String h : headers) {
+                PdfPCell header = new PdfPCell(new Phrase(h, headFont));
+                header.setHorizontalAlignment(Element.ALIGN_CENTER);
+                header.setBackgroundColor(BaseColor.LIGHT_GRAY);
+                table.addCell(header);
+            }
+
+            // Filas
+            int filas = 0;
+            for (ProductoResponseDto p : (Iterable<ProductoResponseDto>) productos::iterator) {
+                String precio = String.format("$ %.2f", p.getPrecio());
+                table.addCell(p.getNombre());
+                table.addCell(p.getCategoria().getNombre());
+                table.addCell(precio);
+                table.addCell(String.valueOf(p.getCantidad()));
+                huella.update((p.getNombre() + "|" + p.getCategoria().getNombre() + "|" + precio + "|"
+                        + p.getCantidad() + "\n").getBytes(StandardCharsets.UTF_8));
+                if (++filas % filasPorBloque == 0) {
+                    document.add(table);
+                }
+            }
+
+            table.setComplete(true);
+            document.add(table);
+        } catch (DocumentException e) {
+            throw new IllegalStateException("No se pudo generar el reporte de inventario bajo", e);
+        } finally {
+            if (document.isOpen()) {
+                document.close();
+            }
+        }
+        // La huella va en la clave del almacenamiento y en la URL de descarga: sin '/', '+' ni '='
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(huella.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
-}
 
+    private static void eliminar(Path archivo) {
+        if (archivo == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(archivo);
+        } catch (IOException e) {
+            System.err.println("⚠️ No se pudo borrar el reporte temporal " + archivo + ": " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void limpiar() {
+        reportes.invalidateAll();
+        reportes.cleanUp();
+    }
+}
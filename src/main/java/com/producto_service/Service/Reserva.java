@@ -0,0 +1,48 @@
+package com.producto_service.Service;
+
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reserva de stock vigente hasta {@code expiraEpochMs}. Se ordena por vencimiento en la cola de expiración.
+ * {@code propietario} es el sujeto del JWT que la creó (nulo en reservas de diarios anteriores, que solo
+ * puede operar un administrador).
+ */
+@Getter
+class Reserva implements Delayed {
+
+    private final String id;
+    private final Map<Long, Integer> productos;
+    private final long expiraEpochMs;
+    private final String propietario;
+
+    Reserva(String id, Map<Long, Integer> productos, long expiraEpochMs, String propietario) {
+        this.id = id;
+        this.productos = Collections.unmodifiableMap(new TreeMap<>(productos));
+        this.expiraEpochMs = expiraEpochMs;
+        this.propietario = propietario;
+    }
+
+    boolean accesiblePara(String usuario, boolean administrador) {
+        return administrador || (propietario != null && propietario.equals(usuario));
+    }
+
+    boolean vencida() {
+        return System.currentTimeMillis() >= expiraEpochMs;
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+        return unit.convert(expiraEpochMs - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed otra) {
+        return Long.compare(expiraEpochMs, ((Reserva) otra).expiraEpochMs);
+    }
+}
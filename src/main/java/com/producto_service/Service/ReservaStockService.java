@@ -0,0 +1,315 @@
+package com.producto_service.Service;
+
+import com.producto_service.DTO.LineaStockDto;
+import com.producto_service.DTO.ReservaDto;
+import com.producto_service.DTO.ResultadoStockDto;
+import com.producto_service.Exception.StockOperacionException;
+import com.producto_service.Repository.ProductoRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reservas temporales de stock para el checkout.
+ * <p>
+ * El stock reservado por producto se lleva en contadores en memoria que se actualizan con CAS, sin
+ * bloqueos; el disponible para prometer es el stock del {@link IndiceStockService} (o de la base si el
+ * índice no está cargado) menos lo reservado. Una reserva vence a los {@code ttl} segundos y la libera
+ * un hilo que espera sobre una {@link DelayQueue}; confirmarla descuenta el stock con
+ * {@link ProductoService#reduccionStock} y libera lo reservado.
+ * <p>
+ * Cada operación se anota en un {@link DiarioReservas} local que se reproduce al arrancar; sin
+ * {@code productos.reservas.diario} no hay diario y las reservas no sobreviven a un reinicio. Las reservas
+ * son de esta instancia: con varias réplicas cada una lleva sus propias reservas, y las reducciones que
+ * no pasan por una reserva no las respetan.
+ * <p>
+ * Cada reserva guarda el usuario que la creó; solo él o un administrador pueden verla, confirmarla o
+ * liberarla. Para cualquier otro se comporta como inexistente, así no se puede sondear qué ids existen.
+ */
+@Service
+public class ReservaStockService {
+
+    private final ProductoService productoService;
+    private final IndiceStockService indiceStockService;
+    private final ProductoRepository productoRepository;
+    private final Duration ttlPorDefecto;
+    private final Duration ttlMaximo;
+    private final DiarioReservas diario;
+    private final Map<String, Reserva> activas = new ConcurrentHashMap<>();
+    private final Map<Long, AtomicInteger> reservado = new ConcurrentHashMap<>();
+    private final DelayQueue<Reserva> vencimientos = new DelayQueue<>();
+    private Thread expirador;
+
+    public ReservaStockService(ProductoService productoService,
+                               IndiceStockService indiceStockService,
+                               ProductoRepository productoRepository,
+                               MeterRegistry meterRegistry,
+                               @Value("${productos.reservas.diario:}") String rutaDiario,
+                               @Value("${productos.reservas.fsync:false}") boolean fsync,
+                               @Value("${productos.reservas.compactar-cada:10000}") int compactarCada,
+                               @Value("${productos.reservas.ttl-segundos:900}") long ttlSegundos,
+                               @Value("${productos.reservas.ttl-maximo-segundos:3600}") long ttlMaximoSegundos) {
+        this.productoService = productoService;
+        this.indiceStockService = indiceStockService;
+        this.productoRepository = productoRepository;
+        this.ttlPorDefecto = Duration.ofSeconds(ttlSegundos);
+        this.ttlMaximo = Duration.ofSeconds(ttlMaximoSegundos);
+        this.diario = new DiarioReservas(rutaDiario.isBlank() ? null : Path.of(rutaDiario), fsync, compactarCada,
+                activas::values);
+        Gauge.builder("productos.reservas.activas", activas, Map::size)
+                .description("Reservas de stock vigentes")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void iniciar() throws IOException {
+        long ahora = System.currentTimeMillis();
+        int recuperadas = 0;
+        for (Reserva reserva : diario.reproducir().values()) {
+            // Las que vencieron con el servicio detenido se descartan al compactar
+            if (reserva.getExpiraEpochMs() <= ahora) {
+                continue;
+            }
+            reserva.getProductos().forEach((id, cantidad) -> contador(id).addAndGet(cantidad));
+            activas.put(reserva.getId(), reserva);
+            vencimientos.add(reserva);
+            recuperadas++;
+        }
+        diario.abrir();
+        if (diario.activo()) {
+            System.out.println("📦 Reservas de stock recuperadas del diario: " + recuperadas);
+        } else {
+            System.out.println("⚠️ Reservas de stock sin diario (productos.reservas.diario vacío): no se recuperan al reiniciar");
+        }
+
+        expirador = new Thread(this::expirar, "reservas-expiracion");
+        expirador.setDaemon(true);
+        expirador.start();
+    }
+
+    @PreDestroy
+    public void detener() throws IOException {
+        if (expirador != null) {
+            expirador.interrupt();
+        }
+        diario.detener();
+    }
+
+    public ReservaDto reservar(Map<Long, Integer> productos, Integer ttlSegundos, String propietario) {
+        Duration ttl = ttlSegundos == null ? ttlPorDefecto : Duration.ofSeconds(ttlSegundos);
+        if (ttl.isNegative() || ttl.isZero() || ttl.compareTo(ttlMaximo) > 0) {
+            throw new IllegalArgumentException("La duración de la reserva debe estar entre 1 y "
+                    + ttlMaximo.toSeconds() + " segundos.");
+        }
+        return reservar(productos, ttl, propietario);
+    }
+
+    ReservaDto reservar(Map<Long, Integer> productos, Duration ttl, String propietario) {
+        if (productos == null || productos.isEmpty()) {
+            throw new IllegalArgumentException("La lista de productos no puede ser nula o vacía.");
+        }
+        Map<Long, Integer> ordenados = new TreeMap<>(productos);
+        Map<Long, Integer> stock = stockActual(ordenados.keySet());
+
+        // Se toma cada línea en orden; si alguna no alcanza se devuelven las ya tomadas
+        List<LineaStockDto> lineas = new ArrayList<>(ordenados.size());
+        Map<Long, Integer> tomadas = new LinkedHashMap<>();
+        boolean valido = true;
+        for (Map.Entry<Long, Integer> entry : ordenados.entrySet()) {
+            Long productoId = entry.getKey();
+            Integer cantidad = entry.getValue();
+            LineaStockDto linea = new LineaStockDto(productoId, cantidad, null, null, LineaStockDto.Estado.OK, null);
+            lineas.add(linea);
+            Integer existente = stock.get(productoId);
+            if (existente == null) {
+                linea.setEstado(LineaStockDto.Estado.NO_ENCONTRADO);
+                linea.setMensaje("Producto no encontrado con ID: " + productoId);
+                valido = false;
+                continue;
+            }
+            if (!EstrategiaStockBase.cantidadValida(cantidad)) {
+                linea.setEstado(LineaStockDto.Estado.CANTIDAD_INVALIDA);
+                linea.setMensaje("La cantidad a reservar debe ser mayor que cero para el producto con ID: " + productoId);
+                valido = false;
+                continue;
+            }
+            // Tras un fallo ya no se toma nada: solo se informa el disponible
+            int disponible = valido ? tomar(productoId, cantidad, existente) : Math.max(0, existente - reservadoDe(productoId));
+            linea.setStockAnterior(disponible);
+            if (disponible < cantidad) {
+                linea.setEstado(LineaStockDto.Estado.STOCK_INSUFICIENTE);
+                linea.setMensaje("Stock disponible insuficiente para reservar el producto con ID: " + productoId);
+                valido = false;
+                continue;
+            }
+            linea.setStockResultante(disponible - cantidad);
+            linea.setMensaje("Reservado");
+            if (valido) {
+                tomadas.put(productoId, cantidad);
+            }
+        }
+
+        if (!valido) {
+            devolver(tomadas);
+            ResultadoStockDto resultado = new ResultadoStockDto(false, lineas);
+            resultado.getLineas().stream()
+                    .filter(linea -> linea.getEstado() == LineaStockDto.Estado.OK)
+                    .forEach(linea -> linea.setMensaje("No reservado: otra línea de la reserva falló"));
+            throw new StockOperacionException("No se pudo reservar el stock: la reserva no se aplicó a ningún producto.", resultado);
+        }
+
+        Reserva reserva = new Reserva(UUID.randomUUID().toString(), ordenados, System.currentTimeMillis() + ttl.toMillis(),
+                propietario);
+        activas.put(reserva.getId(), reserva);
+        try {
+            diario.registrar(reserva);
+        } catch (RuntimeException e) {
+            activas.remove(reserva.getId());
+            devolver(tomadas);
+            throw e;
+        }
+        vencimientos.add(reserva);
+        return aDto(reserva);
+    }
+
+    /**
+     * Descuenta el stock reservado. La reserva se cierra aunque la reducción falle (por ejemplo, si el
+     * stock se redujo por fuera de las reservas), y el error se propaga.
+     */
+    public ResultadoStockDto confirmar(String id, String usuario, boolean administrador) {
+        Reserva reserva = reclamar(id, usuario, administrador);
+        boolean confirmada = false;
+        try {
+            ResultadoStockDto resultado = productoService.reduccionStock(reserva.getProductos());
+            confirmada = true;
+            return resultado;
+        } finally {
+            // El índice ya refleja la reducción (se actualiza al confirmar la transacción): se libera después
+            devolver(reserva.getProductos());
+            diario.cerrar(reserva, confirmada);
+        }
+    }
+
+    public void liberar(String id, String usuario, boolean administrador) {
+        Reserva reserva = reclamar(id, usuario, administrador);
+        devolver(reserva.getProductos());
+        diario.cerrar(reserva, false);
+    }
+
+    public ReservaDto obtener(String id, String usuario, boolean administrador) {
+        Reserva reserva = activas.get(id);
+        if (reserva == null || reserva.vencida() || !reserva.accesiblePara(usuario, administrador)) {
+            throw new IllegalArgumentException("Reserva no encontrada o vencida: " + id);
+        }
+        return aDto(reserva);
+    }
+
+    /**
+     * Stock disponible para prometer: stock actual menos lo reservado. Los productos inexistentes no se incluyen.
+     */
+    public Map<Long, Integer> disponibilidad(Collection<Long> ids) {
+        Map<Long, Integer> disponible = new LinkedHashMap<>();
+        stockActual(ids).forEach((id, stock) -> disponible.put(id, Math.max(0, stock - reservadoDe(id))));
+        return disponible;
+    }
+
+    public int reservadoDe(Long productoId) {
+        AtomicInteger contador = reservado.get(productoId);
+        return contador == null ? 0 : contador.get();
+    }
+
+    // Quita la reserva de las activas; solo uno de confirmar, liberar o el expirador la obtiene
+    private Reserva reclamar(String id, String usuario, boolean administrador) {
+        Reserva reserva = activas.get(id);
+        // Se comprueba el dueño antes de quitarla: la reserva de otro usuario queda intacta
+        if (reserva == null || !reserva.accesiblePara(usuario, administrador) || !activas.remove(id, reserva)) {
+            throw new IllegalArgumentException("Reserva no encontrada o vencida: " + id);
+        }
+        vencimientos.remove(reserva);
+        if (reserva.vencida()) {
+            devolver(reserva.getProductos());
+            diario.cerrar(reserva, false);
+            throw new IllegalArgumentException("Reserva no encontrada o vencida: " + id);
+        }
+        return reserva;
+    }
+
+    /**
+     * Suma {@code cantidad} a lo reservado si queda disponible y devuelve el disponible previo.
+     */
+    private int tomar(Long productoId, int cantidad, int stock) {
+        AtomicInteger contador = contador(productoId);
+        while (true) {
+            int actual = contador.get();
+            int disponible = stock - actual;
+            if (disponible < cantidad) {
+                return Math.max(0, disponible);
+            }
+            if (contador.compareAndSet(actual, actual + cantidad)) {
+                return disponible;
+            }
+        }
+    }
+
+    private void devolver(Map<Long, Integer> productos) {
+        productos.forEach((id, cantidad) -> contador(id).addAndGet(-cantidad));
+    }
+
+    private AtomicInteger contador(Long productoId) {
+        return reservado.computeIfAbsent(productoId, id -> new AtomicInteger());
+    }
+
+    private Map<Long, Integer> stockActual(Collection<Long> ids) {
+        Map<Long, Integer> stock = new HashMap<>();
+        if (indiceStockService.disponible()) {
+            for (Long id : ids) {
+                Integer cantidad = indiceStockService.stockDe(id);
+                if (cantidad != null) {
+                    stock.put(id, cantidad);
+                }
+            }
+            return stock;
+        }
+        productoRepository.findStockByIdIn(ids).forEach(fila -> stock.put(fila.getId(), fila.getCantidad()));
+        return stock;
+    }
+
+    private void expirar() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Reserva reserva = vencimientos.take();
+                if (activas.remove(reserva.getId(), reserva)) {
+                    devolver(reserva.getProductos());
+                    diario.cerrar(reserva, false);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                System.err.println("❌ Error al expirar una reserva de stock: " + e.getMessage());
+            }
+        }
+    }
+
+    private static ReservaDto aDto(Reserva reserva) {
+        return new ReservaDto(reserva.getId(), reserva.getProductos(), new Date(reserva.getExpiraEpochMs()));
+    }
+}
@@ -0,0 +1,197 @@
+package com.producto_service.Service;
+
+import com.producto_service.DTO.StockEventoDto;
+import com.producto_service.Event.StockCambiadoEvent;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import reactor.core.Disposable;
+import reactor.core.publisher.ConnectableFlux;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Difunde por SSE los cambios de stock registrados en la tabla historial.
+ * <p>
+ * Un único lector sigue la tabla por id ({@code id > última posición}) y publica cada registro en un sink
+ * multicast; los suscriptores no ocupan hilos mientras esperan. Los ids de historial se asignan al insertar
+ * y las transacciones pueden confirmarse fuera de orden, así que el lector no pasa de un hueco en los ids
+ * hasta que se llena o lleva {@code espera-huecos-ms} abierto (la transacción se deshizo). Con eso el id
+ * sirve de cursor: con {@code Last-Event-ID} se reenvía desde la base lo que falte hasta la posición del
+ * lector y luego se continúa en vivo. Al leer la tabla también se reciben los cambios de otras réplicas.
+ */
+@Service
+public class StockEventosService {
+
+    private static final String SELECT_DESDE = "SELECT id, producto_id, stock_cambiado, fecha_cambio FROM historial "
+            + "WHERE id > ? ORDER BY id LIMIT ?";
+    private static final String SELECT_RANGO = "SELECT id, producto_id, stock_cambiado, fecha_cambio FROM historial "
+            + "WHERE id > ? AND id <= ? ORDER BY id LIMIT ?";
+    private static final String SELECT_MAXIMO = "SELECT COALESCE(MAX(id), 0) FROM historial";
+
+    private static final RowMapper<StockEventoDto> MAPEO = (rs, i) -> new StockEventoDto(
+            rs.getLong("id"), rs.getLong("producto_id"), rs.getInt("stock_cambiado"), rs.getTimestamp("fecha_cambio"));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int tamanoLote;
+    private final int bufferSuscriptor;
+    private final Duration heartbeat;
+    private final long esperaHuecosMs;
+    private final Sinks.Many<StockEventoDto> sink = Sinks.many().multicast().directBestEffort();
+    // Un solo sondeo pendiente por ráfaga de commits
+    private final AtomicBoolean sondeoPedido = new AtomicBoolean();
+    private final ExecutorService ejecutor = Executors.newSingleThreadExecutor(tarea -> {
+        Thread hilo = new Thread(tarea, "stock-eventos");
+        hilo.setDaemon(true);
+        return hilo;
+    });
+    private volatile long posicion = -1;
+    // Momento en que se vio por primera vez el hueco tras la posición actual; 0 si no hay
+    private long huecoDesde;
+
+    public StockEventosService(JdbcTemplate jdbcTemplate,
+                               @Value("${productos.stock-eventos.lote:500}") int tamanoLote,
+                               @Value("${productos.stock-eventos.buffer-suscriptor:1000}") int bufferSuscriptor,
+                               @Value("${productos.stock-eventos.heartbeat-segundos:15}") long heartbeatSegundos,
+                               @Value("${productos.stock-eventos.espera-huecos-ms:5000}") long esperaHuecosMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tamanoLote = tamanoLote;
+        this.bufferSuscriptor = bufferSuscriptor;
+        this.heartbeat = Duration.ofSeconds(heartbeatSegundos);
+        this.esperaHuecosMs = esperaHuecosMs;
+    }
+
+    /**
+     * Flujo SSE con comentarios periódicos para que proxies y clientes no cierren la conexión inactiva.
+     */
+    public Flux<ServerSentEvent<StockEventoDto>> flujoSse(Long ultimoId) {
+        Flux<ServerSentEvent<StockEventoDto>> eventos = suscribir(ultimoId)
+                .map(evento -> ServerSentEvent.builder(evento)
+                        .id(String.valueOf(evento.getId()))
+                        .event("stock")
+                        .build());
+        Flux<ServerSentEvent<StockEventoDto>> latidos = Flux.interval(heartbeat)
+                .map(i -> ServerSentEvent.<StockEventoDto>builder().comment("keepalive").build());
+        return Flux.merge(eventos, latidos);
+    }
+
+    /**
+     * Cambios posteriores a {@code ultimoId} (o solo los nuevos si es nulo), en orden de id y sin repetidos.
+     * Un suscriptor que acumula más de {@code buffer-suscriptor} eventos sin consumir recibe un error
+     * y debe reconectarse con su último id.
+     */
+    public Flux<StockEventoDto> suscribir(Long ultimoId) {
+        return Flux.defer(() -> {
+            if (ultimoId == null) {
+                return sink.asFlux().onBackpressureBuffer(bufferSuscriptor);
+            }
+            // El flujo en vivo se conecta antes de leer la base: lo que llegue durante el reenvío
+            // queda retenido y se descarta si el reenvío ya lo incluyó
+            ConnectableFlux<StockEventoDto> enVivo = sink.asFlux().onBackpressureBuffer(bufferSuscriptor).publish();
+            Disposable conexion = enVivo.connect();
+            // El reenvío no pasa de la posición del lector: lo posterior llega en vivo, ya sin huecos
+            long hasta = posicion < 0 ? Long.MAX_VALUE : posicion;
+            AtomicLong ultimo = new AtomicLong(ultimoId);
+            return Flux.mergeSequential(reenviar(ultimoId, hasta), enVivo)
+                    .doFinally(senal -> conexion.dispose())
+                    .filter(evento -> {
+                        if (evento.getId() <= ultimo.get()) {
+                            return false;
+                        }
+                        ultimo.set(evento.getId());
+                        return true;
+                    });
+        }).publishOn(Schedulers.boundedElastic());
+    }
+
+    private Flux<StockEventoDto> reenviar(long desdeId, long hasta) {
+        return leerLote(desdeId, hasta)
+                .expand(lote -> lote.size() < tamanoLote
+                        ? Mono.empty()
+                        : leerLote(lote.get(lote.size() - 1).getId(), hasta))
+                .flatMapIterable(lote -> lote);
+    }
+
+    private Mono<List<StockEventoDto>> leerLote(long desdeId, long hasta) {
+        return Mono.fromCallable(() -> jdbcTemplate.query(SELECT_RANGO, MAPEO, desdeId, hasta, tamanoLote))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void inicializar() {
+        sondear();
+    }
+
+    // Los cambios locales se difunden al confirmar; el sondeo periódico recoge los de otras réplicas.
+    // El hilo que confirma solo pide un sondeo: la consulta y el envío a los suscriptores van en el ejecutor
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStockCambiado(StockCambiadoEvent evento) {
+        if (sink.currentSubscriberCount() > 0 && sondeoPedido.compareAndSet(false, true)) {
+            ejecutor.execute(() -> {
+                sondeoPedido.set(false);
+                sondear();
+            });
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${productos.stock-eventos.intervalo-ms:1000}")
+    public synchronized void sondear() {
+        try {
+            if (posicion < 0) {
+                // Al arrancar se parte del final de la tabla
+                posicion = jdbcTemplate.queryForObject(SELECT_MAXIMO, Long.class);
+                huecoDesde = 0;
+                return;
+            }
+            // Sin suscriptores se avanza igual, con la misma espera en los huecos: quien se conecte después
+            // reenvía desde la base hasta la posición, y lo que falte por debajo aún debe llegarle en vivo
+            List<StockEventoDto> lote;
+            do {
+                lote = jdbcTemplate.query(SELECT_DESDE, MAPEO, posicion, tamanoLote);
+                for (StockEventoDto evento : lote) {
+                    if (evento.getId() != posicion + 1 && !huecoVencido()) {
+                        return;
+                    }
+                    huecoDesde = 0;
+                    sink.tryEmitNext(evento);
+                    posicion = evento.getId();
+                }
+            } while (lote.size() == tamanoLote);
+        } catch (RuntimeException e) {
+            System.err.println("❌ Error leyendo cambios de stock para SSE: " + e.getMessage());
+        }
+    }
+
+    private boolean huecoVencido() {
+        long ahora = System.currentTimeMillis();
+        if (huecoDesde == 0) {
+            huecoDesde = ahora;
+        }
+        return ahora - huecoDesde >= esperaHuecosMs;
+    }
+
+    public int suscriptores() {
+        return sink.currentSubscriberCount();
+    }
+
+    @PreDestroy
+    public void detener() {
+        ejecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,102 @@
+package com.producto_service.Config;
+
+import com.nimbusds.jose.jwk.source.ImmutableSecret;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
+import org.springframework.security.oauth2.jwt.JwsHeader;
+import org.springframework.security.oauth2.jwt.JwtClaimsSet;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compara el costo de decodificar tokens HS256 con {@link NimbusJwtDecoder} directo y con
+ * {@link JwtDecoderConCache}, con un conjunto pequeño de tokens repetidos como los de los clientes
+ * servicio a servicio. Se ejecuta con {@code gradle benchmark}; {@code -Dbenchmark.tokens},
+ * {@code -Dbenchmark.hilos} y {@code -Dbenchmark.segundos} ajustan la carga.
+ */
+@Tag("benchmark")
+class JwtDecoderBenchmarkTest {
+
+    @Test
+    void decodificacionConYSinCache() throws Exception {
+        int tokens = Integer.getInteger("benchmark.tokens", 50);
+        int hilos = Integer.getInteger("benchmark.hilos", 4);
+        int segundos = Integer.getInteger("benchmark.segundos", 5);
+
+        SecretKey clave = new SecretKeySpec(
+                "secreto-de-benchmark-con-al-menos-32-bytes".getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+        NimbusJwtEncoder encoder = new NimbusJwtEncoder(new ImmutableSecret<>(clave));
+        List<String> emitidos = new ArrayList<>();
+        for (int i = 0; i < tokens; i++) {
+            JwtClaimsSet claims = JwtClaimsSet.builder()
+                    .subject("servicio-" + i + "@arka.com")
+                    .claim("rol", "ADMINISTRADOR")
+                    .issuedAt(Instant.now())
+                    .expiresAt(Instant.now().plusSeconds(3600))
+                    .build();
+            emitidos.add(encoder.encode(JwtEncoderParameters.from(JwsHeader.with(MacAlgorithm.HS256).build(), claims))
+                    .getTokenValue());
+        }
+        JwtDecoder nimbus = NimbusJwtDecoder.withSecretKey(clave).build();
+        JwtDecoder conCache = new JwtDecoderConCache(nimbus, 10_000, Duration.ofMinutes(5), null);
+
+        // Calentamiento de ambos caminos antes de medir
+        medir(nimbus, emitidos, hilos, 1);
+        medir(conCache, emitidos, hilos, 1);
+        double sinCache = medir(nimbus, emitidos, hilos, segundos);
+        double cacheados = medir(conCache, emitidos, hilos, segundos);
+
+        System.out.printf("📊 Decodificación JWT: %d tokens distintos, %d hilos, %d s%n", tokens, hilos, segundos);
+        System.out.printf("📊 NimbusJwtDecoder:   %.0f decodificaciones/s (%.2f µs c/u por hilo)%n",
+                sinCache, hilos * 1e6 / sinCache);
+        System.out.printf("📊 JwtDecoderConCache: %.0f decodificaciones/s (%.2f µs c/u por hilo)  x%.1f%n",
+                cacheados, hilos * 1e6 / cacheados, cacheados / sinCache);
+        assertTrue(sinCache > 0 && cacheados > 0);
+    }
+
+    private static double medir(JwtDecoder decoder, List<String> tokens, int hilos, int segundos) throws Exception {
+        AtomicBoolean corriendo = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(hilos);
+        List<Future<Long>> resultados = new ArrayList<>();
+        for (int h = 0; h < hilos; h++) {
+            resultados.add(executor.submit(() -> {
+                long decodificaciones = 0;
+                while (corriendo.get()) {
+                    String token = tokens.get(ThreadLocalRandom.current().nextInt(tokens.size()));
+                    if (decoder.decode(token).getSubject() == null) {
+                        throw new IllegalStateException("Token sin sujeto");
+                    }
+                    decodificaciones++;
+                }
+                return decodificaciones;
+            }));
+        }
+        TimeUnit.SECONDS.sleep(segundos);
+        corriendo.set(false);
+        long total = 0;
+        for (Future<Long> resultado : resultados) {
+            total += resultado.get();
+        }
+        executor.shutdown();
+        return (double) total / segundos;
+    }
+}
@@ -0,0 +1,104 @@
+package com.producto_service.Config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class JwtDecoderConCacheTest {
+
+    @Mock
+    private JwtDecoder nimbus;
+
+    private static Jwt jwt(String token, Instant expira, String rol) {
+        Jwt.Builder builder = Jwt.withTokenValue(token)
+                .header("alg", "HS256")
+                .subject("servicio@test.com")
+                .issuedAt(Instant.now().minusSeconds(1))
+                .expiresAt(expira);
+        if (rol != null) {
+            builder.claim("rol", rol);
+        }
+        return builder.build();
+    }
+
+    private JwtDecoderConCache decoder(long tamanoMaximo) {
+        return new JwtDecoderConCache(nimbus, tamanoMaximo, Duration.ofMinutes(5), new SimpleMeterRegistry());
+    }
+
+    @Test
+    void mismoToken_seVerificaUnaSolaVez() {
+        Jwt valido = jwt("token-a", Instant.now().plusSeconds(600), "ADMINISTRADOR");
+        when(nimbus.decode("token-a")).thenReturn(valido);
+        JwtDecoderConCache decoder = decoder(100);
+
+        assertSame(valido, decoder.decode("token-a"));
+        assertSame(valido, decoder.decode("token-a"));
+
+        verify(nimbus, times(1)).decode("token-a");
+    }
+
+    @Test
+    void laEntradaVenceConElExpDelToken() throws InterruptedException {
+        when(nimbus.decode("token-corto")).thenReturn(jwt("token-corto", Instant.now().plusMillis(300), null));
+        JwtDecoderConCache decoder = decoder(100);
+
+        decoder.decode("token-corto");
+        Thread.sleep(400);
+        decoder.decode("token-corto");
+
+        verify(nimbus, times(2)).decode("token-corto");
+    }
+
+    @Test
+    void tokensInvalidos_noSeGuardan() {
+        when(nimbus.decode("falso")).thenThrow(new BadJwtException("Firma inválida"));
+        JwtDecoderConCache decoder = decoder(100);
+
+        assertThrows(BadJwtException.class, () -> decoder.decode("falso"));
+        assertThrows(BadJwtException.class, () -> decoder.decode("falso"));
+
+        verify(nimbus, times(2)).decode("falso");
+        assertEquals(0, decoder.tamano());
+    }
+
+    @Test
+    void laCacheEstaAcotada() {
+        when(nimbus.decode(anyString())).thenAnswer(invocacion ->
+                jwt(invocacion.getArgument(0), Instant.now().plusSeconds(600), null));
+        JwtDecoderConCache decoder = decoder(10);
+
+        for (int i = 0; i < 100; i++) {
+            decoder.decode("token-" + i);
+        }
+
+        assertTrue(decoder.tamano() <= 10);
+    }
+
+    @Test
+    void autoridades_seReutilizanPorRol() {
+        AutoridadesJwtConverter converter = new AutoridadesJwtConverter();
+        Instant expira = Instant.now().plusSeconds(600);
+
+        Collection<GrantedAuthority> primera = converter.convert(jwt("a", expira, "administrador"));
+        Collection<GrantedAuthority> segunda = converter.convert(jwt("b", expira, "administrador"));
+
+        assertEquals("ROLE_ADMINISTRADOR", primera.iterator().next().getAuthority());
+        assertSame(primera, segunda);
+        assertEquals(List.of(), converter.convert(jwt("c", expira, null)));
+    }
+}
@@ -0,0 +1,203 @@
+package com.producto_service.Repository;
+
+import com.producto_service.DTO.CursorProductoDto;
+import com.producto_service.DTO.ProductoFiltroDto;
+import com.producto_service.DTO.ProductoResponseDto;
+import com.producto_service.Model.Categoria;
+import com.producto_service.Model.Historial;
+import com.producto_service.Model.Marca;
+import com.producto_service.Model.Producto;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class ProductoRepositoryTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    private Categoria electronica;
+    private Categoria hogar;
+    private Marca samsung;
+    private Marca apple;
+
+    @BeforeEach
+    void setUp() {
+        electronica = entityManager.persist(new Categoria(null, "Electrónica", "Productos electrónicos", null));
+        hogar = entityManager.persist(new Categoria(null, "Hogar", "Artículos para el hogar", null));
+        samsung = entityManager.persist(new Marca(null, "Samsung", null));
+        apple = entityManager.persist(new Marca(null, "Apple", null));
+        crearProductos(1, 10);
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    private void crearProductos(int desde, int hasta) {
+        for (int i = desde; i <= hasta; i++) {
+            Producto producto = new Producto();
+            producto.setNombre("Producto " + i);
+            producto.setDescripcion("Descripción " + i);
+            producto.setCantidad(i % 4);
+            producto.setPrecio(100.0 * (11 - i));
+            producto.setCategoria(i % 2 == 0 ? electronica : hogar);
+            producto.setMarca(i <= 5 ? samsung : apple);
+            Producto guardado = entityManager.persist(producto);
+            Historial historial = new Historial();
+            historial.setProducto(guardado);
+            historial.setStock_cambiado(guardado.getCantidad());
+            entityManager.persist(historial);
+        }
+    }
+
+    @Test
+    void buscarPagina_recorreTodoElCatalogoPorId() {
+        ProductoFiltroDto filtro = new ProductoFiltroDto();
+        List<Long> vistos = new ArrayList<>();
+        CursorProductoDto cursor = null;
+        List<ProductoResponseDto> pagina;
+        do {
+            pagina = productoRepository.buscarPagina(filtro, cursor, 3);
+            pagina.forEach(p -> vistos.add(p.getId()));
+            cursor = pagina.isEmpty() ? null : CursorProductoDto.de(pagina.get(pagina.size() - 1), filtro.getOrden());
+        } while (pagina.size() == 3);
+
+        assertEquals(10, vistos.size());
+        assertEquals(vistos.stream().sorted().toList(), vistos);
+    }
+
+    @Test
+    void buscarPagina_ordenaPorStockConDesempatePorId() {
+        ProductoFiltroDto filtro = new ProductoFiltroDto();
+        filtro.setOrden(ProductoFiltroDto.Orden.STOCK);
+
+        List<ProductoResponseDto> primera = productoRepository.buscarPagina(filtro, null, 4);
+        List<ProductoResponseDto> segunda = productoRepository.buscarPagina(filtro,
+                CursorProductoDto.de(primera.get(3), filtro.getOrden()), 4);
+
+        List<Integer> stocks = new ArrayList<>();
+        primera.forEach(p -> stocks.add(p.getCantidad()));
+        segunda.forEach(p -> stocks.add(p.getCantidad()));
+        assertEquals(List.of(0, 0, 1, 1, 1, 2, 2, 2), stocks);
+        List<Long> idsPrimera = primera.stream().map(ProductoResponseDto::getId).toList();
+        assertTrue(segunda.stream().noneMatch(p -> idsPrimera.contains(p.getId())));
+    }
+
+    @Test
+    void buscarPagina_aplicaFiltros() {
+        ProductoFiltroDto filtro = new ProductoFiltroDto();
+        filtro.setCategoria("Electrónica");
+        filtro.setMarca("Apple");
+        filtro.setPrecioMax(400.0);
+        filtro.setOrden(ProductoFiltroDto.Orden.PRECIO);
+        filtro.setDescendente(true);
+
+        List<ProductoResponseDto> resultado = productoRepository.buscarPagina(filtro, null, 10);
+
+        assertEquals(List.of("Producto 8", "Producto 10"), resultado.stream().map(ProductoResponseDto::getNombre).toList());
+        assertEquals("Apple", resultado.get(0).getMarca().getNombre());
+    }
+
+    @Test
+    void buscarPagina_elCursorNoDependeDelValorActualDelProducto() {
+        ProductoFiltroDto filtro = new ProductoFiltroDto();
+        filtro.setOrden(ProductoFiltroDto.Orden.PRECIO);
+        List<ProductoResponseDto> primera = productoRepository.buscarPagina(filtro, null, 3);
+        CursorProductoDto cursor = CursorProductoDto.decodificar(
+                CursorProductoDto.de(primera.get(2), filtro.getOrden()).codificar(), filtro.getOrden());
+
+        // El último producto entregado se encarece entre una página y la siguiente
+        Producto ultimo = entityManager.find(Producto.class, primera.get(2).getId());
+        ultimo.setPrecio(5_000.0);
+        entityManager.flush();
+
+        List<ProductoResponseDto> segunda = productoRepository.buscarPagina(filtro, cursor, 3);
+        assertEquals(List.of(400.0, 500.0, 600.0), segunda.stream().map(ProductoResponseDto::getPrecio).toList());
+    }
+
+    @Test
+    void buscarPagina_losPreciosNulosVanAlFinalYSePuedenRecorrer() {
+        for (long id : List.of(primerId(), primerId() + 1)) {
+            entityManager.find(Producto.class, id).setPrecio(null);
+        }
+        entityManager.flush();
+        for (boolean descendente : List.of(false, true)) {
+            ProductoFiltroDto filtro = new ProductoFiltroDto();
+            filtro.setOrden(ProductoFiltroDto.Orden.PRECIO);
+            filtro.setDescendente(descendente);
+            List<ProductoResponseDto> vistos = new ArrayList<>();
+            CursorProductoDto cursor = null;
+            List<ProductoResponseDto> pagina;
+            do {
+                pagina = productoRepository.buscarPagina(filtro, cursor, 3);
+                vistos.addAll(pagina);
+                cursor = pagina.isEmpty() ? null : CursorProductoDto.decodificar(
+                        CursorProductoDto.de(pagina.get(pagina.size() - 1), filtro.getOrden()).codificar(), filtro.getOrden());
+            } while (pagina.size() == 3);
+
+            assertEquals(10, vistos.size());
+            assertNull(vistos.get(8).getPrecio());
+            assertNull(vistos.get(9).getPrecio());
+            assertTrue(vistos.get(8).getId() < vistos.get(9).getId() != descendente);
+        }
+    }
+
+    @Test
+    void cursorDeOtroOrden_seRechaza() {
+        assertThrows(IllegalArgumentException.class,
+                () -> CursorProductoDto.decodificar("stock:3:12", ProductoFiltroDto.Orden.PRECIO));
+        assertThrows(IllegalArgumentException.class,
+                () -> CursorProductoDto.decodificar("precio:3.0:12", ProductoFiltroDto.Orden.ID));
+    }
+
+    private long primerId() {
+        return productoRepository.buscarPagina(new ProductoFiltroDto(), null, 1).get(0).getId();
+    }
+
+    @Test
+    void vistas_ejecutanUnNumeroConstanteDeSentencias() {
+        long sentenciasCon10 = sentenciasDeListados();
+
+        crearProductos(11, 60);
+        entityManager.flush();
+        entityManager.clear();
+        long sentenciasCon60 = sentenciasDeListados();
+
+        // Página por id + página por precio con cursor + categoría + ids + nombre
+        assertEquals(5, sentenciasCon10);
+        assertEquals(sentenciasCon10, sentenciasCon60);
+    }
+
+    private long sentenciasDeListados() {
+        Statistics estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        estadisticas.clear();
+
+        ProductoFiltroDto porPrecio = new ProductoFiltroDto();
+        porPrecio.setOrden(ProductoFiltroDto.Orden.PRECIO);
+        List<ProductoResponseDto> pagina = productoRepository.buscarPagina(new ProductoFiltroDto(), null, 200);
+        productoRepository.buscarPagina(porPrecio, CursorProductoDto.de(pagina.get(0), porPrecio.getOrden()), 200);
+        productoRepository.findVistasByCategoriaNombre("Electrónica");
+        productoRepository.findVistasByIdIn(pagina.stream().map(ProductoResponseDto::getId).toList());
+        productoRepository.findVistaByNombre("Producto 1");
+
+        assertEquals(0, estadisticas.getEntityLoadCount());
+        assertEquals(0, estadisticas.getCollectionFetchCount());
+        return estadisticas.getPrepareStatementCount();
+    }
+}
@@ -0,0 +1,195 @@
+package com.producto_service.Service;
+
+import com.producto_service.DTO.ProductoResponseDto;
+import com.producto_service.Event.StockCambiadoEvent;
+import com.producto_service.Model.UmbralStock;
+import com.producto_service.Repository.CategoriaRepository;
+import com.producto_service.Repository.ProductoRepository;
+import com.producto_service.Repository.UmbralStockRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AlertaStockServiceTest {
+
+    @Mock
+    private UmbralStockRepository umbralStockRepository;
+
+    @Mock
+    private ProductoRepository productoRepository;
+
+    @Mock
+    private CategoriaRepository categoriaRepository;
+
+    @Mock
+    private NotificacionService notificacionService;
+
+    private AlertaStockService alertas;
+
+    @AfterEach
+    void tearDown() {
+        if (alertas != null) {
+            alertas.detener();
+        }
+    }
+
+    private AlertaStockService alertas(long ventanaMs) {
+        alertas = new AlertaStockService(umbralStockRepository, productoRepository, categoriaRepository,
+                notificacionService, new SimpleMeterRegistry(), true, 10, ventanaMs, "inventario@test.com");
+        return alertas;
+    }
+
+    private static ProductoResponseDto vista(Long id, String nombre, int cantidad) {
+        return new ProductoResponseDto(id, nombre, null, cantidad, 1.0, null, null);
+    }
+
+    @Test
+    void umbral_productoTienePrioridadSobreCategoriaYDefecto() {
+        when(umbralStockRepository.findAll()).thenReturn(List.of(
+                new UmbralStock(1L, UmbralStock.Tipo.PRODUCTO, 1L, 3),
+                new UmbralStock(2L, UmbralStock.Tipo.CATEGORIA, 7L, 50)));
+        when(productoRepository.findCategoriaIdById(2L)).thenReturn(Optional.of(7L));
+        when(productoRepository.findCategoriaIdById(3L)).thenReturn(Optional.of(8L));
+        AlertaStockService servicio = alertas(60_000);
+        servicio.recargarUmbrales();
+
+        assertEquals(3, servicio.umbralDe(1L));
+        assertEquals(50, servicio.umbralDe(2L));
+        assertEquals(10, servicio.umbralDe(3L));
+        // La categoría queda en caché
+        servicio.umbralDe(2L);
+        verify(productoRepository, times(1)).findCategoriaIdById(2L);
+    }
+
+    @Test
+    void sinUmbralesPorCategoria_noConsultaLaCategoria() {
+        when(umbralStockRepository.findAll()).thenReturn(List.of());
+        AlertaStockService servicio = alertas(60_000);
+        servicio.recargarUmbrales();
+
+        assertEquals(10, servicio.umbralDe(1L));
+        verify(productoRepository, never()).findCategoriaIdById(any());
+    }
+
+    @Test
+    void soloLosCrucesHaciaAbajoGeneranAlerta() {
+        when(productoRepository.findVistasByIdIn(anyCollection())).thenAnswer(invocacion -> {
+            Collection<Long> ids = invocacion.getArgument(0);
+            return ids.stream().sorted().map(id -> vista(id, "Producto " + id, 4)).toList();
+        });
+        when(notificacionService.enviarNotificacion(any(), any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        AlertaStockService servicio = alertas(60_000);
+
+        servicio.onStockCambiado(new StockCambiadoEvent(1L, 12, 9));   // cruza
+        servicio.onStockCambiado(new StockCambiadoEvent(2L, 8, 5));    // ya estaba por debajo
+        servicio.onStockCambiado(new StockCambiadoEvent(3L, 20, 15));  // sigue por encima
+        servicio.onStockCambiado(new StockCambiadoEvent(4L, null, 4)); // creado por debajo
+        servicio.onStockCambiado(new StockCambiadoEvent(5L, 10, 9));   // cruza desde el umbral exacto
+        servicio.enviarResumen();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<Long>> ids = ArgumentCaptor.forClass(Collection.class);
+        verify(productoRepository).findVistasByIdIn(ids.capture());
+        assertEquals(List.of(1L, 4L, 5L), ids.getValue().stream().sorted().toList());
+    }
+
+    @Test
+    void lasAlertasDeLaVentanaSeEnvianEnUnSoloResumen() {
+        when(productoRepository.findVistasByIdIn(anyCollection())).thenReturn(List.of(
+                vista(1L, "Teclado", 2), vista(2L, "Mouse", 0)));
+        when(notificacionService.enviarNotificacion(any(), any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        AlertaStockService servicio = alertas(100);
+
+        servicio.onStockCambiado(new StockCambiadoEvent(1L, 15, 2));
+        servicio.onStockCambiado(new StockCambiadoEvent(2L, 11, 0));
+
+        ArgumentCaptor<String> mensaje = ArgumentCaptor.forClass(String.class);
+        verify(notificacionService, timeout(2000)).enviarNotificacion(eq("EMAIL"), eq("inventario@test.com"), mensaje.capture());
+        assertTrue(mensaje.getValue().contains("(2)"));
+        // El más crítico primero
+        assertTrue(mensaje.getValue().indexOf("Mouse") < mensaje.getValue().indexOf("Teclado"));
+        verify(notificacionService, times(1)).enviarNotificacion(any(), any(), any());
+    }
+
+    @Test
+    void productosRepuestosDentroDeLaVentana_noSeNotifican() {
+        when(productoRepository.findVistasByIdIn(anyCollection())).thenReturn(List.of(vista(1L, "Teclado", 30)));
+        AlertaStockService servicio = alertas(60_000);
+
+        servicio.onStockCambiado(new StockCambiadoEvent(1L, 15, 2));
+        servicio.enviarResumen();
+
+        verifyNoInteractions(notificacionService);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void siElEnvioFalla_lasAlertasQuedanParaElSiguienteResumen() {
+        when(productoRepository.findVistasByIdIn(anyCollection())).thenReturn(List.of(vista(1L, "Teclado", 2)));
+        when(notificacionService.enviarNotificacion(any(), any(), any())).thenReturn(
+                CompletableFuture.failedFuture(new IllegalStateException("Servicio caído")),
+                CompletableFuture.completedFuture(null));
+        AlertaStockService servicio = alertas(60_000);
+
+        servicio.onStockCambiado(new StockCambiadoEvent(1L, 15, 2));
+        servicio.enviarResumen();
+        servicio.enviarResumen();
+
+        verify(notificacionService, times(2)).enviarNotificacion(any(), any(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void siElEnvioFalla_seReprogramaElResumenSinNuevosCruces() {
+        when(productoRepository.findVistasByIdIn(anyCollection())).thenReturn(List.of(vista(1L, "Teclado", 2)));
+        when(notificacionService.enviarNotificacion(any(), any(), any())).thenReturn(
+                CompletableFuture.failedFuture(new IllegalStateException("Servicio caído")),
+                CompletableFuture.completedFuture(null));
+        AlertaStockService servicio = alertas(100);
+
+        servicio.onStockCambiado(new StockCambiadoEvent(1L, 15, 2));
+
+        // Un cruce, un fallo y el reintento programado por el propio fallo
+        verify(notificacionService, timeout(3000).times(2)).enviarNotificacion(eq("EMAIL"), eq("inventario@test.com"), contains("Teclado"));
+    }
+
+    @Test
+    void guardarUmbral_validaValorYReferencia() {
+        AlertaStockService servicio = alertas(60_000);
+        when(productoRepository.existsById(99L)).thenReturn(false);
+
+        assertThrows(IllegalArgumentException.class, () -> servicio.guardarUmbral(UmbralStock.Tipo.PRODUCTO, 1L, -1));
+        assertThrows(IllegalArgumentException.class, () -> servicio.guardarUmbral(UmbralStock.Tipo.PRODUCTO, 99L, 5));
+        verify(umbralStockRepository, never()).save(any());
+    }
+
+    @Test
+    void guardarUmbral_reemplazaElExistenteYRecarga() {
+        UmbralStock existente = new UmbralStock(4L, UmbralStock.Tipo.CATEGORIA, 7L, 20);
+        when(categoriaRepository.existsById(7L)).thenReturn(true);
+        when(umbralStockRepository.findByTipoAndReferenciaId(UmbralStock.Tipo.CATEGORIA, 7L)).thenReturn(Optional.of(existente));
+        when(umbralStockRepository.findAll()).thenReturn(List.of(existente));
+        when(productoRepository.findCategoriaIdById(1L)).thenReturn(Optional.of(7L));
+        AlertaStockService servicio = alertas(60_000);
+
+        servicio.guardarUmbral(UmbralStock.Tipo.CATEGORIA, 7L, 25);
+
+        verify(umbralStockRepository).save(existente);
+        assertEquals(25, existente.getUmbral());
+        assertEquals(25, servicio.umbralDe(1L));
+    }
+}
@@ -0,0 +1,139 @@
+package com.producto_service.Service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class AlmacenamientoReportesTest {
+
+    private static final int PARTE = AlmacenamientoReportesS3.TAMANO_MINIMO_PARTE;
+
+    @TempDir
+    Path directorio;
+
+    private Path archivo(int tamano) throws IOException {
+        byte[] contenido = new byte[tamano];
+        for (int i = 0; i < tamano; i++) {
+            contenido[i] = (byte) i;
+        }
+        return Files.write(directorio.resolve("reporte-" + tamano + ".pdf"), contenido);
+    }
+
+    private static S3Client s3ConMultipart() {
+        S3Client s3 = mock(S3Client.class);
+        when(s3.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("subida-1").build());
+        return s3;
+    }
+
+    @Test
+    void local_copiaElArchivoBajoLaClave() throws IOException {
+        Path origen = archivo(1024);
+        AlmacenamientoReportesLocal local = new AlmacenamientoReportesLocal(directorio.resolve("archivo"));
+
+        String ubicacion = local.guardar("reportes/reporte_1.pdf", origen);
+
+        Path destino = directorio.resolve("archivo/reportes/reporte_1.pdf");
+        assertArrayEquals(Files.readAllBytes(origen), Files.readAllBytes(destino));
+        assertEquals(destino.toUri().toString(), ubicacion);
+    }
+
+    @Test
+    void local_rechazaClavesFueraDelDirectorio() throws IOException {
+        Path origen = archivo(16);
+        AlmacenamientoReportesLocal local = new AlmacenamientoReportesLocal(directorio.resolve("archivo"));
+
+        assertThrows(IllegalArgumentException.class, () -> local.guardar("../fuera.pdf", origen));
+        assertFalse(Files.exists(directorio.resolve("fuera.pdf")));
+    }
+
+    @Test
+    void s3_archivosPequenos_unSoloPut() throws IOException {
+        S3Client s3 = mock(S3Client.class);
+        AlmacenamientoReportesS3 almacenamiento = new AlmacenamientoReportesS3(s3, "bucket", PARTE, PARTE);
+
+        String ubicacion = almacenamiento.guardar("reportes/r.pdf", archivo(1024));
+
+        assertEquals("s3://bucket/reportes/r.pdf", ubicacion);
+        verify(s3).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        verify(s3, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+    }
+
+    @Test
+    void s3_archivosGrandes_seSubenPorPartes() throws IOException {
+        S3Client s3 = s3ConMultipart();
+        when(s3.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                .thenAnswer(invocacion -> UploadPartResponse.builder()
+                        .eTag("etag-" + invocacion.<UploadPartRequest>getArgument(0).partNumber()).build());
+        AlmacenamientoReportesS3 almacenamiento = new AlmacenamientoReportesS3(s3, "bucket", PARTE, PARTE);
+
+        almacenamiento.guardar("reportes/grande.pdf", archivo(2 * PARTE + 100));
+
+        ArgumentCaptor<UploadPartRequest> partes = ArgumentCaptor.forClass(UploadPartRequest.class);
+        verify(s3, times(3)).uploadPart(partes.capture(), any(RequestBody.class));
+        assertEquals(List.of((long) PARTE, (long) PARTE, 100L),
+                partes.getAllValues().stream().map(UploadPartRequest::contentLength).toList());
+        ArgumentCaptor<CompleteMultipartUploadRequest> completar = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(s3).completeMultipartUpload(completar.capture());
+        assertEquals("subida-1", completar.getValue().uploadId());
+        assertEquals(List.of("etag-1", "etag-2", "etag-3"),
+                completar.getValue().multipartUpload().parts().stream().map(p -> p.eTag()).toList());
+        verify(s3, never()).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+    }
+
+    @Test
+    void s3_siUnaParteFalla_seAbortaLaSubida() throws IOException {
+        S3Client s3 = s3ConMultipart();
+        when(s3.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                .thenReturn(UploadPartResponse.builder().eTag("etag-1").build())
+                .thenThrow(S3Exception.builder().message("Conexión reiniciada").build());
+        AlmacenamientoReportesS3 almacenamiento = new AlmacenamientoReportesS3(s3, "bucket", PARTE, PARTE);
+        Path grande = archivo(2 * PARTE + 100);
+
+        assertThrows(S3Exception.class, () -> almacenamiento.guardar("reportes/grande.pdf", grande));
+
+        ArgumentCaptor<AbortMultipartUploadRequest> abortar = ArgumentCaptor.forClass(AbortMultipartUploadRequest.class);
+        verify(s3).abortMultipartUpload(abortar.capture());
+        assertEquals("subida-1", abortar.getValue().uploadId());
+        verify(s3, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    @Test
+    void s3_partesMenoresAlMinimo_seRechazan() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new AlmacenamientoReportesS3(mock(S3Client.class), "bucket", PARTE, 1024));
+    }
+
+    @Test
+    void medido_registraLatenciaYBytesPorAlmacenamiento() throws IOException {
+        SimpleMeterRegistry registro = new SimpleMeterRegistry();
+        AlmacenamientoReportes medido = new AlmacenamientoReportesMedido(
+                new AlmacenamientoReportesLocal(directorio.resolve("archivo")), registro);
+
+        medido.guardar("r.pdf", archivo(2048));
+
+        assertEquals(1, registro.get("reportes.almacenamiento.subida").tag("almacenamiento", "local").timer().count());
+        assertEquals(2048, registro.get("reportes.almacenamiento.bytes").summary().totalAmount());
+        assertEquals(1, registro.get("reportes.almacenamiento.caudal").summary().count());
+    }
+}
@@ -0,0 +1,151 @@
+package com.producto_service.Service;
+
+import com.producto_service.DTO.TareaProgramadaDto;
+import com.producto_service.ProductoServiceApplication;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Dos contextos completos (dos "réplicas") sobre la misma base H2 en memoria.
+ */
+class BloqueoTareasServiceTest {
+
+    private static ConfigurableApplicationContext nodoA;
+    private static ConfigurableApplicationContext nodoB;
+
+    @BeforeAll
+    static void arrancarNodos() {
+        nodoA = nodo("nodo-a");
+        nodoB = nodo("nodo-b");
+    }
+
+    @AfterAll
+    static void detenerNodos() {
+        nodoB.close();
+        nodoA.close();
+    }
+
+    private static ConfigurableApplicationContext nodo(String id) {
+        String directorio = System.getProperty("java.io.tmpdir") + "/producto-service-test/" + id;
+        return new SpringApplicationBuilder(ProductoServiceApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:bloqueo-tareas;DB_CLOSE_DELAY=-1",
+                        "spring.jpa.hibernate.ddl-auto=update",
+                        "productos.nodo.id=" + id,
+                        "productos.reservas.diario=" + directorio + "/reservas.log",
+                        "reportes.directorio=" + directorio + "/reportes",
+                        "reportes.almacenamiento.directorio=" + directorio + "/archivo")
+                .run();
+    }
+
+    private static BloqueoTareasService bloqueos(ConfigurableApplicationContext nodo) {
+        return nodo.getBean(BloqueoTareasService.class);
+    }
+
+    @Test
+    void soloUnNodoTomaElTurno() throws Exception {
+        CountDownLatch salida = new CountDownLatch(1);
+        CompletableFuture<Optional<BloqueoTareasService.Turno>> turnoA = CompletableFuture.supplyAsync(() -> {
+            await(salida);
+            return bloqueos(nodoA).adquirir("concurrente", Duration.ofMinutes(1));
+        });
+        CompletableFuture<Optional<BloqueoTareasService.Turno>> turnoB = CompletableFuture.supplyAsync(() -> {
+            await(salida);
+            return bloqueos(nodoB).adquirir("concurrente", Duration.ofMinutes(1));
+        });
+        salida.countDown();
+
+        assertEquals(1, (turnoA.get().isPresent() ? 1 : 0) + (turnoB.get().isPresent() ? 1 : 0));
+    }
+
+    @Test
+    void turnoVencido_loTomaOtroNodoYElAnteriorQuedaCercado() throws Exception {
+        BloqueoTareasService.Turno turnoA = bloqueos(nodoA).adquirir("vencida", Duration.ofSeconds(1)).orElseThrow();
+        assertTrue(bloqueos(nodoB).adquirir("vencida", Duration.ofMinutes(1)).isEmpty());
+
+        Thread.sleep(1_200);
+        BloqueoTareasService.Turno turnoB = bloqueos(nodoB).adquirir("vencida", Duration.ofMinutes(1)).orElseThrow();
+
+        assertTrue(turnoB.token() > turnoA.token());
+        assertFalse(bloqueos(nodoA).vigente(turnoA));
+        assertTrue(bloqueos(nodoB).vigente(turnoB));
+        // El nodo A ya no puede registrar nada ni liberar el turno de B
+        assertFalse(bloqueos(nodoA).guardarMarca(turnoA, "huella-a"));
+        bloqueos(nodoA).terminar(turnoA, "OK");
+        assertTrue(bloqueos(nodoA).adquirir("vencida", Duration.ofMinutes(1)).isEmpty());
+        assertTrue(bloqueos(nodoB).guardarMarca(turnoB, "huella-b"));
+        assertEquals("huella-b", bloqueos(nodoA).marca("vencida"));
+    }
+
+    @Test
+    void ejecutar_omiteEnElOtroNodoYRegistraLaEjecucion() {
+        AtomicBoolean ejecutoB = new AtomicBoolean();
+
+        boolean ejecutoA = bloqueos(nodoA).ejecutar("reporte", Duration.ofMinutes(1), turno ->
+                ejecutoB.set(bloqueos(nodoB).ejecutar("reporte", Duration.ofMinutes(1), otro -> fail("Dos nodos a la vez"))));
+
+        assertTrue(ejecutoA);
+        assertFalse(ejecutoB.get());
+        TareaProgramadaDto tarea = bloqueos(nodoB).listar().stream()
+                .filter(t -> t.getNombre().equals("reporte")).findFirst().orElseThrow();
+        assertEquals("nodo-a", tarea.getNodo());
+        assertEquals("OK", tarea.getUltimoResultado());
+        assertFalse(tarea.isEnCurso());
+        assertNotNull(tarea.getUltimaDuracionMs());
+        // Aunque A ya terminó, un disparo tardío del mismo tick en B no repite la ejecución
+        assertFalse(bloqueos(nodoB).ejecutar("reporte", Duration.ofMinutes(1), turno -> fail("Mismo tick dos veces")));
+    }
+
+    @Test
+    void ejecucionAsincrona_registraElResultadoAlCompletarse() {
+        CompletableFuture<Void> entrega = new CompletableFuture<>();
+
+        assertTrue(bloqueos(nodoA).ejecutarAsincrono("asincrona", Duration.ofMinutes(1), turno -> entrega));
+        TareaProgramadaDto enCurso = tarea("asincrona");
+        assertTrue(enCurso.isEnCurso());
+        assertNull(enCurso.getUltimoResultado());
+
+        entrega.completeExceptionally(new IllegalStateException("circuito abierto"));
+        TareaProgramadaDto terminada = tarea("asincrona");
+        assertFalse(terminada.isEnCurso());
+        assertEquals("ERROR: circuito abierto", terminada.getUltimoResultado());
+        assertTrue(bloqueos(nodoB).adquirir("asincrona", Duration.ofMinutes(1)).isEmpty());
+    }
+
+    @Test
+    void ejecucionFallida_registraElErrorYConservaElTurno() {
+        bloqueos(nodoA).ejecutar("fallida", Duration.ofMinutes(1), turno -> {
+            throw new IllegalStateException("Base no disponible");
+        });
+
+        List<TareaProgramadaDto> tareas = bloqueos(nodoB).listar();
+        TareaProgramadaDto tarea = tareas.stream().filter(t -> t.getNombre().equals("fallida")).findFirst().orElseThrow();
+        assertEquals("ERROR: Base no disponible", tarea.getUltimoResultado());
+        assertTrue(bloqueos(nodoB).adquirir("fallida", Duration.ofMinutes(1)).isEmpty());
+    }
+
+    private static TareaProgramadaDto tarea(String nombre) {
+        return bloqueos(nodoB).listar().stream().filter(t -> t.getNombre().equals(nombre)).findFirst().orElseThrow();
+    }
+
+    private static void await(CountDownLatch salida) {
+        try {
+            salida.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
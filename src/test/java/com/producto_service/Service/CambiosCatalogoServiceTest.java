@@ -0,0 +1,232 @@
+package com.producto_service.Service;
+
+import com.producto_service.DTO.CambioProductoDto;
+import com.producto_service.DTO.PaginaCambiosDto;
+import com.producto_service.Event.ProductoActualizadoEvent;
+import com.producto_service.Event.StockCambiadoEvent;
+import com.producto_service.Model.Categoria;
+import com.producto_service.Model.Marca;
+import com.producto_service.Model.Producto;
+import com.producto_service.Repository.CategoriaRepository;
+import com.producto_service.Repository.MarcaRepository;
+import com.producto_service.Repository.ProductoRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@Import(CambiosCatalogoService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CambiosCatalogoServiceTest {
+
+    @Autowired
+    private CambiosCatalogoService cambiosCatalogoService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private CategoriaRepository categoriaRepository;
+
+    @Autowired
+    private MarcaRepository marcaRepository;
+
+    private TransactionTemplate transactionTemplate;
+    private List<Producto> productos;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        Categoria categoria = categoriaRepository.save(new Categoria(null, "Electrónica", "Productos electrónicos", null));
+        Marca marca = marcaRepository.save(new Marca(null, "Samsung", null));
+        productos = new ArrayList<>();
+        for (int i = 1; i <= 4; i++) {
+            Producto producto = new Producto();
+            producto.setNombre("Producto " + i);
+            producto.setCantidad(i);
+            producto.setPrecio(10.0 * i);
+            producto.setCategoria(categoria);
+            producto.setMarca(marca);
+            productos.add(productoRepository.save(producto));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM producto_eliminado");
+        jdbcTemplate.update("DELETE FROM version_catalogo_confirmada");
+        jdbcTemplate.update("DELETE FROM version_catalogo");
+        jdbcTemplate.execute("ALTER SEQUENCE version_catalogo_seq RESTART WITH 1");
+        jdbcTemplate.update("DELETE FROM producto");
+        jdbcTemplate.update("DELETE FROM categoria");
+        jdbcTemplate.update("DELETE FROM marca");
+    }
+
+    @Test
+    void cadaTransaccionObtieneUnaVersionYLasEliminacionesDejanMarca() {
+        Long p1 = productos.get(0).getId();
+        Long p2 = productos.get(1).getId();
+        Long p3 = productos.get(2).getId();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            eventPublisher.publishEvent(new ProductoActualizadoEvent(p2));
+            eventPublisher.publishEvent(new StockCambiadoEvent(p1, 1, 5));
+        });
+        transactionTemplate.executeWithoutResult(status -> {
+            productoRepository.deleteById(p3);
+            eventPublisher.publishEvent(new StockCambiadoEvent(p3, 3, null));
+        });
+
+        cambiosCatalogoService.avanzarMarca();
+        PaginaCambiosDto pagina = cambiosCatalogoService.obtenerCambios(0L, null, 100);
+
+        assertEquals(2, pagina.getVersionActual());
+        assertFalse(pagina.isHayMas());
+        assertEquals(3, pagina.getCambios().size());
+        assertCambio(pagina.getCambios().get(0), 1, p1, CambioProductoDto.Tipo.ACTUALIZADO);
+        assertCambio(pagina.getCambios().get(1), 1, p2, CambioProductoDto.Tipo.ACTUALIZADO);
+        assertCambio(pagina.getCambios().get(2), 2, p3, CambioProductoDto.Tipo.ELIMINADO);
+        assertEquals("Producto 1", pagina.getCambios().get(0).getProducto().getNombre());
+        assertNull(pagina.getCambios().get(2).getProducto());
+        assertEquals(2, pagina.getSiguienteVersion());
+        assertEquals(p3, pagina.getSiguienteId());
+
+        PaginaCambiosDto sinCambios = cambiosCatalogoService.obtenerCambios(2L, p3, 100);
+        assertTrue(sinCambios.getCambios().isEmpty());
+        assertEquals(2, sinCambios.getSiguienteVersion());
+    }
+
+    @Test
+    void paginaPorVersionEIdSinRepetirNiSaltarCambios() {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (Producto producto : productos) {
+                eventPublisher.publishEvent(new ProductoActualizadoEvent(producto.getId()));
+            }
+        });
+        Long eliminado = productos.get(3).getId();
+        transactionTemplate.executeWithoutResult(status -> {
+            productoRepository.deleteById(eliminado);
+            eventPublisher.publishEvent(new StockCambiadoEvent(eliminado, 4, null));
+        });
+
+        cambiosCatalogoService.avanzarMarca();
+        List<Long> vistos = new ArrayList<>();
+        Long since = 0L;
+        Long despuesDe = null;
+        PaginaCambiosDto pagina;
+        do {
+            pagina = cambiosCatalogoService.obtenerCambios(since, despuesDe, 2);
+            pagina.getCambios().forEach(cambio -> vistos.add(cambio.getProductoId()));
+            since = pagina.getSiguienteVersion();
+            despuesDe = pagina.getSiguienteId();
+        } while (pagina.isHayMas());
+
+        // El producto 4 aparece solo como eliminado: la actualización previa ya no existe en la tabla
+        assertEquals(List.of(productos.get(0).getId(), productos.get(1).getId(), productos.get(2).getId(), eliminado), vistos);
+    }
+
+    @Test
+    void sinVersionDevuelveTodoElCatalogoYElRollbackNoVersiona() {
+        transactionTemplate.executeWithoutResult(status -> {
+            eventPublisher.publishEvent(new ProductoActualizadoEvent(productos.get(0).getId()));
+            status.setRollbackOnly();
+        });
+
+        cambiosCatalogoService.avanzarMarca();
+        PaginaCambiosDto pagina = cambiosCatalogoService.obtenerCambios(null, null, 100);
+
+        assertEquals(0, pagina.getVersionActual());
+        assertEquals(4, pagina.getCambios().size());
+        pagina.getCambios().forEach(cambio -> assertEquals(0L, cambio.getVersion()));
+        assertThrows(IllegalArgumentException.class, () -> cambiosCatalogoService.obtenerCambios(0L, null, 0));
+    }
+
+    @Test
+    void unaVersionSinConfirmar_frenaLaMarcaHastaQueSeConfirma() {
+        Long p1 = productos.get(0).getId();
+        // Otra transacción tomó la versión 1 y aún no confirmó
+        long enCurso = tomarVersion();
+        transactionTemplate.executeWithoutResult(status ->
+                eventPublisher.publishEvent(new ProductoActualizadoEvent(p1)));
+
+        cambiosCatalogoService.avanzarMarca();
+        PaginaCambiosDto pagina = cambiosCatalogoService.obtenerCambios(0L, null, 100);
+        assertEquals(0, pagina.getVersionActual());
+        assertTrue(pagina.getCambios().isEmpty());
+
+        confirmar(enCurso);
+
+        cambiosCatalogoService.avanzarMarca();
+        pagina = cambiosCatalogoService.obtenerCambios(0L, null, 100);
+        assertEquals(2, pagina.getVersionActual());
+        assertEquals(1, pagina.getCambios().size());
+        assertCambio(pagina.getCambios().get(0), 2, p1, CambioProductoDto.Tipo.ACTUALIZADO);
+    }
+
+    @Test
+    void leerElFeed_noAvanzaLaMarca() {
+        transactionTemplate.executeWithoutResult(status ->
+                eventPublisher.publishEvent(new ProductoActualizadoEvent(productos.get(0).getId())));
+
+        assertEquals(0, cambiosCatalogoService.obtenerCambios(0L, null, 100).getVersionActual());
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM version_catalogo_confirmada WHERE version = 1", Long.class));
+
+        cambiosCatalogoService.avanzarMarca();
+        assertEquals(1, cambiosCatalogoService.obtenerCambios(0L, null, 100).getVersionActual());
+    }
+
+    @Test
+    void unHuecoVencido_seSaltaComoTransaccionDeshecha() {
+        Long p1 = productos.get(0).getId();
+        tomarVersion();
+        transactionTemplate.executeWithoutResult(status ->
+                eventPublisher.publishEvent(new ProductoActualizadoEvent(p1)));
+        cambiosCatalogoService.avanzarMarca();
+        assertEquals(0, cambiosCatalogoService.versionActual());
+
+        // La versión siguiente al hueco lleva confirmada más que la espera, según el reloj de la base
+        jdbcTemplate.update("UPDATE version_catalogo_confirmada SET confirmada_en = DATEADD(MINUTE, -1, CURRENT_TIMESTAMP)");
+
+        cambiosCatalogoService.avanzarMarca();
+        assertEquals(2, cambiosCatalogoService.versionActual());
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT valor FROM version_catalogo WHERE id = 1", Long.class));
+    }
+
+    private long tomarVersion() {
+        return jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR version_catalogo_seq", Long.class);
+    }
+
+    private void confirmar(long version) {
+        jdbcTemplate.update("INSERT INTO version_catalogo_confirmada (version, confirmada_en) VALUES (?, CURRENT_TIMESTAMP)",
+                version);
+    }
+
+    private static void assertCambio(CambioProductoDto cambio, long version, Long productoId, CambioProductoDto.Tipo tipo) {
+        assertEquals(version, cambio.getVersion());
+        assertEquals(productoId, cambio.getProductoId());
+        assertEquals(tipo, cambio.getTipo());
+    }
+}
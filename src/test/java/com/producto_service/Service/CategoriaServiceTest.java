@@ -86,11 +86,40 @@ class CategoriaServiceTestSimple {
 
     @Test
     void test5_existeCategoria_retornaTrue() {
-        when(categoriaRepository.existsById(1L)).thenReturn(true);
+        when(categoriaRepository.findAll()).thenReturn(List.of(categoria));
 
         boolean resultado = categoriaService.existeCategoria(1L);
 
         assertTrue(resultado);
-        verify(categoriaRepository).existsById(1L);
+        verify(categoriaRepository, never()).existsById(any());
+    }
+
+    @Test
+    void test6_validaciones_usanIndiceSinConsultarDeNuevo() {
+        when(categoriaRepository.findAll()).thenReturn(List.of(categoria));
+
+        assertTrue(categoriaService.existeCategoria(1L));
+        assertFalse(categoriaService.existeCategoria(2L));
+        assertTrue(categoriaService.existeCategoriaPorNombre("Electrónica"));
+        assertTrue(categoriaService.validarCategoria(categoria));
+
+        verify(categoriaRepository, times(1)).findAll();
+        verify(categoriaRepository, never()).findByNombre(any());
+    }
+
+    @Test
+    void test7_crearCategoria_recargaElIndice() {
+        Categoria hogar = new Categoria();
+        hogar.setId(2L);
+        hogar.setNombre("Hogar");
+        CategoriaDto hogarDto = new CategoriaDto("Hogar", "Artículos para el hogar", null);
+        when(categoriaRepository.findAll()).thenReturn(List.of(categoria)).thenReturn(List.of(categoria, hogar));
+        when(categoriaRepository.save(any(Categoria.class))).thenReturn(hogar);
+
+        assertFalse(categoriaService.existeCategoriaPorNombre("Hogar"));
+        categoriaService.crearCategoria(hogarDto);
+
+        assertTrue(categoriaService.existeCategoriaPorNombre("Hogar"));
+        verify(categoriaRepository, times(2)).findAll();
     }
 }
\ No newline at end of file
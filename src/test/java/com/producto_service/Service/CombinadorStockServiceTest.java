@@ -0,0 +1,130 @@
+package com.producto_service.Service;
+
+import com.producto_service.DTO.LineaStockDto;
+import com.producto_service.DTO.ResultadoStockDto;
+import com.producto_service.Exception.StockOperacionException;
+import com.producto_service.Repository.ProductoRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CombinadorStockServiceTest {
+
+    @Mock
+    private ProductoService productoService;
+
+    @Mock
+    private EstrategiaStock estrategiaStock;
+
+    @Mock
+    private ProductoRepository productoRepository;
+
+    private CombinadorStockService combinador;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (combinador != null) {
+            combinador.detener();
+        }
+    }
+
+    private CombinadorStockService combinador(boolean habilitado) {
+        // Ventana amplia para que todos los pedidos del test caigan en el mismo lote
+        combinador = new CombinadorStockService(productoService, estrategiaStock, productoRepository,
+                new SimpleMeterRegistry(), habilitado, 200, 256);
+        return combinador;
+    }
+
+    private static ProductoRepository.StockProducto stock(Long id, int cantidad) {
+        return new ProductoRepository.StockProducto() {
+            public Long getId() {
+                return id;
+            }
+
+            public Integer getCantidad() {
+                return cantidad;
+            }
+
+            public Long getVersion() {
+                return 0L;
+            }
+        };
+    }
+
+    private static ResultadoStockDto aplicado(Long id, int cantidad, int anterior) {
+        return new ResultadoStockDto(true, List.of(new LineaStockDto(id, cantidad, anterior, anterior - cantidad,
+                LineaStockDto.Estado.OK, "Stock actualizado")));
+    }
+
+    @Test
+    void deshabilitado_delegaEnProductoService() {
+        ResultadoStockDto esperado = aplicado(1L, 1, 5);
+        when(productoService.reduccionStock(Map.of(1L, 1))).thenReturn(esperado);
+
+        assertSame(esperado, combinador(false).reducir(Map.of(1L, 1)).join());
+        verifyNoInteractions(estrategiaStock);
+    }
+
+    @Test
+    void pedidosDelMismoLote_seAplicanEnUnaEscrituraYSeAsignanEnOrdenDeLlegada() {
+        when(productoRepository.findStockByIdIn(anyCollection())).thenReturn(List.of(stock(1L, 5)));
+        when(estrategiaStock.aplicar(Map.of(1L, 5), true)).thenReturn(aplicado(1L, 5, 5));
+        CombinadorStockService combinador = combinador(true);
+
+        List<CompletableFuture<ResultadoStockDto>> futuros = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futuros.add(combinador.reducir(Map.of(1L, 1)));
+        }
+
+        for (int i = 0; i < 5; i++) {
+            LineaStockDto linea = futuros.get(i).join().getLineas().get(0);
+            assertEquals(5 - i, linea.getStockAnterior());
+            assertEquals(4 - i, linea.getStockResultante());
+        }
+        for (int i = 5; i < 8; i++) {
+            CompletionException ex = assertThrows(CompletionException.class, futuros.get(i)::join);
+            StockOperacionException rechazo = assertInstanceOf(StockOperacionException.class, ex.getCause());
+            assertEquals(LineaStockDto.Estado.STOCK_INSUFICIENTE, rechazo.getResultado().getLineas().get(0).getEstado());
+        }
+        verify(estrategiaStock, times(1)).aplicar(anyMap(), anyBoolean());
+    }
+
+    @Test
+    void siFallaLaAplicacionNeta_seAplicaCadaPedidoPorSeparado() {
+        when(productoRepository.findStockByIdIn(anyCollection())).thenReturn(List.of(stock(1L, 5)));
+        when(estrategiaStock.aplicar(Map.of(1L, 2), true))
+                .thenThrow(new StockOperacionException("Stock insuficiente", new ResultadoStockDto(false, List.of())));
+        when(estrategiaStock.aplicar(Map.of(1L, 1), true))
+                .thenReturn(aplicado(1L, 1, 1))
+                .thenThrow(new StockOperacionException("Stock insuficiente", new ResultadoStockDto(false, List.of())));
+        CombinadorStockService combinador = combinador(true);
+
+        CompletableFuture<ResultadoStockDto> primero = combinador.reducir(Map.of(1L, 1));
+        CompletableFuture<ResultadoStockDto> segundo = combinador.reducir(Map.of(1L, 1));
+
+        assertTrue(primero.join().isAplicado());
+        CompletionException ex = assertThrows(CompletionException.class, segundo::join);
+        assertInstanceOf(StockOperacionException.class, ex.getCause());
+        verify(estrategiaStock, times(2)).aplicar(Map.of(1L, 1), true);
+    }
+
+    @Test
+    void pedidoVacio_lanzaExcepcionSinEncolar() {
+        assertThrows(IllegalArgumentException.class, () -> combinador(true).reducir(Map.of()));
+        verifyNoInteractions(estrategiaStock, productoRepository);
+    }
+}
@@ -0,0 +1,231 @@
+package com.producto_service.Service;
+
+import com.producto_service.Config.StockConfig;
+import com.producto_service.Exception.ConflictoStockException;
+import com.producto_service.Exception.StockOperacionException;
+import com.producto_service.Model.Categoria;
+import com.producto_service.Model.Marca;
+import com.producto_service.Model.Producto;
+import com.producto_service.Repository.CategoriaRepository;
+import com.producto_service.Repository.MarcaRepository;
+import com.producto_service.Repository.ProductoRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compara las estrategias de stock con un SKU muy demandado: cada pedido descuenta 1 unidad del
+ * producto caliente y de uno o dos productos al azar, con los productos en orden aleatorio.
+ * Se ejecuta con {@code gradle benchmark}; {@code -Dbenchmark.hilos} y {@code -Dbenchmark.pedidos}
+ * ajustan la carga (pedidos por hilo). {@code combinacionEnSkuCaliente} compara la estrategia atómica
+ * directa con el {@link CombinadorStockService} cuando todos los pedidos son del mismo SKU.
+ */
+@Tag("benchmark")
+@DataJpaTest
+@Import(HistorialService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ContencionStockBenchmarkTest {
+
+    private static final int PRODUCTOS_FRIOS = 50;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private CategoriaRepository categoriaRepository;
+
+    @Autowired
+    private MarcaRepository marcaRepository;
+
+    @Autowired
+    private HistorialService historialService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void contencionEnSkuCaliente() throws Exception {
+        int hilos = Integer.getInteger("benchmark.hilos", 16);
+        int pedidosPorHilo = Integer.getInteger("benchmark.pedidos", 300);
+        Categoria categoria = categoriaRepository.save(new Categoria(null, "Electrónica", "Productos electrónicos", null));
+        Marca marca = marcaRepository.save(new Marca(null, "Samsung", null));
+
+        System.out.printf("📊 Contención de stock: %d hilos x %d pedidos, 1 SKU caliente + %d SKU fríos%n",
+                hilos, pedidosPorHilo, PRODUCTOS_FRIOS);
+        System.out.println("📊 estrategia        pedidos/s  aplicados  abortados  tasa-aborto  reintentos  p50-ms  p99-ms");
+        for (String[] variante : new String[][]{{"atomica", "0"}, {"pesimista", "0"}, {"optimista", "0"}, {"optimista", "10"}}) {
+            jdbcTemplate.update("DELETE FROM historial");
+            jdbcTemplate.update("DELETE FROM producto");
+            long inicialCaliente = (long) hilos * pedidosPorHilo;
+            Long caliente = guardar("Caliente", (int) inicialCaliente, categoria, marca);
+            List<Long> frios = new ArrayList<>();
+            for (int i = 0; i < PRODUCTOS_FRIOS; i++) {
+                frios.add(guardar("Frio " + i, (int) inicialCaliente, categoria, marca));
+            }
+
+            int maxReintentos = Integer.parseInt(variante[1]);
+            SimpleMeterRegistry registro = new SimpleMeterRegistry();
+            EstrategiaStock estrategia = new StockConfig().estrategiaStock(variante[0], maxReintentos, 1, 2000,
+                    productoRepository, historialService, eventPublisher, transactionManager, jdbcTemplate, registro);
+            Resultado resultado = ejecutar(pedido -> estrategia.aplicar(pedido, true), hilos, pedidosPorHilo, caliente, frios);
+            Counter reintentos = registro.find("productos.stock.reintentos").counter();
+
+            String nombre = variante[0] + (variante[0].equals("optimista") ? "(r=" + maxReintentos + ")" : "");
+            System.out.printf("📊 %-16s %10.0f %10d %10d %11.1f%% %11.0f %7.2f %7.2f%n",
+                    nombre, resultado.pedidosPorSegundo(), resultado.aplicados, resultado.abortados,
+                    100.0 * resultado.abortados / resultado.total, reintentos == null ? 0 : reintentos.count(),
+                    resultado.percentil(0.50), resultado.percentil(0.99));
+
+            int stockCaliente = jdbcTemplate.queryForObject("SELECT stock FROM producto WHERE id = ?", Integer.class, caliente);
+            assertEquals(inicialCaliente - resultado.aplicados, stockCaliente, "Actualizaciones perdidas con " + nombre);
+        }
+    }
+
+    @Test
+    void combinacionEnSkuCaliente() throws Exception {
+        int hilos = Integer.getInteger("benchmark.hilos", 64);
+        int pedidosPorHilo = Integer.getInteger("benchmark.pedidos", 300);
+        double ventanaMs = Double.parseDouble(System.getProperty("benchmark.ventana-ms", "2"));
+        Categoria categoria = categoriaRepository.save(new Categoria(null, "Hogar", "Productos del hogar", null));
+        Marca marca = marcaRepository.save(new Marca(null, "LG", null));
+
+        System.out.printf("📊 Combinación de pedidos: %d hilos x %d pedidos de 1 unidad sobre un SKU, ventana %.1f ms%n",
+                hilos, pedidosPorHilo, ventanaMs);
+        System.out.println("📊 variante         pedidos/s  aplicados  abortados  p50-ms  p99-ms");
+        for (boolean combinar : new boolean[]{false, true}) {
+            jdbcTemplate.update("DELETE FROM historial");
+            jdbcTemplate.update("DELETE FROM producto");
+            // Un 10 % menos de stock que pedidos para ejercitar también los rechazos
+            int inicial = hilos * pedidosPorHilo * 9 / 10;
+            Long caliente = guardar("Caliente", inicial, categoria, marca);
+
+            SimpleMeterRegistry registro = new SimpleMeterRegistry();
+            EstrategiaStock estrategia = new StockConfig().estrategiaStock("atomica", 0, 1, 2000,
+                    productoRepository, historialService, eventPublisher, transactionManager, jdbcTemplate, registro);
+            CombinadorStockService combinador = new CombinadorStockService(null, estrategia, productoRepository,
+                    registro, true, ventanaMs, 256);
+            Resultado resultado = ejecutar(pedido -> {
+                if (combinar) {
+                    combinador.reducir(pedido).join();
+                } else {
+                    estrategia.aplicar(pedido, true);
+                }
+            }, hilos, pedidosPorHilo, caliente, List.of());
+            combinador.detener();
+
+            System.out.printf("📊 %-16s %10.0f %10d %10d %7.2f %7.2f%n",
+                    combinar ? "combinada" : "directa", resultado.pedidosPorSegundo(), resultado.aplicados,
+                    resultado.abortados, resultado.percentil(0.50), resultado.percentil(0.99));
+
+            int stockCaliente = jdbcTemplate.queryForObject("SELECT stock FROM producto WHERE id = ?", Integer.class, caliente);
+            assertEquals(inicial - resultado.aplicados, stockCaliente);
+            assertEquals(inicial, resultado.aplicados);
+        }
+    }
+
+    private Long guardar(String nombre, int cantidad, Categoria categoria, Marca marca) {
+        Producto producto = new Producto();
+        producto.setNombre(nombre);
+        producto.setCantidad(cantidad);
+        producto.setPrecio(10.0);
+        producto.setCategoria(categoria);
+        producto.setMarca(marca);
+        return productoRepository.save(producto).getId();
+    }
+
+    private Resultado ejecutar(Consumer<Map<Long, Integer>> operacion, int hilos, int pedidosPorHilo, Long caliente, List<Long> frios)
+            throws Exception {
+        Resultado resultado = new Resultado(hilos * pedidosPorHilo);
+        AtomicInteger siguiente = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(hilos);
+        List<Future<?>> tareas = new ArrayList<>();
+        long inicio = System.nanoTime();
+        for (int hilo = 0; hilo < hilos; hilo++) {
+            tareas.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < pedidosPorHilo; i++) {
+                    Map<Long, Integer> pedido = new HashMap<>();
+                    pedido.put(caliente, 1);
+                    if (!frios.isEmpty()) {
+                        pedido.put(frios.get(random.nextInt(frios.size())), 1);
+                        if (random.nextBoolean()) {
+                            pedido.put(frios.get(random.nextInt(frios.size())), 1);
+                        }
+                    }
+                    long t0 = System.nanoTime();
+                    try {
+                        operacion.accept(pedido);
+                        synchronized (resultado) {
+                            resultado.aplicados++;
+                        }
+                    } catch (ConflictoStockException | StockOperacionException | CompletionException e) {
+                        synchronized (resultado) {
+                            resultado.abortados++;
+                        }
+                    }
+                    resultado.latenciasNs[siguiente.getAndIncrement()] = System.nanoTime() - t0;
+                }
+            }));
+        }
+        for (Future<?> tarea : tareas) {
+            tarea.get(10, TimeUnit.MINUTES);
+        }
+        resultado.duracionNs = System.nanoTime() - inicio;
+        executor.shutdown();
+        return resultado;
+    }
+
+    private static class Resultado {
+        private final int total;
+        private final long[] latenciasNs;
+        private int aplicados;
+        private int abortados;
+        private long duracionNs;
+
+        Resultado(int total) {
+            this.total = total;
+            this.latenciasNs = new long[total];
+        }
+
+        double pedidosPorSegundo() {
+            return total * 1e9 / duracionNs;
+        }
+
+        double percentil(double p) {
+            long[] ordenadas = latenciasNs.clone();
+            Arrays.sort(ordenadas);
+            return ordenadas[(int) Math.min(ordenadas.length - 1, Math.round(p * (ordenadas.length - 1)))] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.producto_service.Service;
+
+import com.producto_service.Exception.EnlaceInvalidoException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.Resource;
+import org.springframework.web.util.UriComponents;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EntregaReportesServiceTest {
+
+    private static final String CLAVE = "reportes/inventario-bajo/abc.pdf";
+    private static final String SECRETO = "c2VjcmV0by1kZS1wcnVlYmEtcGFyYS1lbmxhY2VzLWRlLXJlcG9ydGVz";
+
+    @Mock
+    private NotificacionService notificacionService;
+
+    @TempDir
+    private Path directorio;
+
+    private EntregaReportesService creada;
+
+    private EntregaReportesService entrega(String modo) throws IOException {
+        return entrega(modo, new AlmacenamientoReportesLocal(directorio.resolve("archivo")));
+    }
+
+    private EntregaReportesService entrega(String modo, AlmacenamientoReportes almacenamiento) {
+        return entrega(modo, almacenamiento, SECRETO);
+    }
+
+    private EntregaReportesService entrega(String modo, AlmacenamientoReportes almacenamiento, String secreto) {
+        creada = new EntregaReportesService(almacenamiento,
+                notificacionService, new SimpleMeterRegistry(), modo, secreto, "http://reportes.test/", 3600);
+        return creada;
+    }
+
+    @AfterEach
+    void detener() {
+        if (creada != null) {
+            creada.detener();
+        }
+    }
+
+    private Path reporte() throws IOException {
+        return Files.writeString(directorio.resolve("reporte.pdf"), "%PDF-1.4 contenido");
+    }
+
+    // Envía el reporte y devuelve el enlace que llegó en el correo
+    private UriComponents entregarYCapturarEnlace(EntregaReportesService entrega) throws IOException {
+        when(notificacionService.enviarNotificacion(any(), any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        entrega.entregar("admin@test.com", "Reporte listo", CLAVE, reporte()).join();
+
+        ArgumentCaptor<String> mensaje = ArgumentCaptor.forClass(String.class);
+        verify(notificacionService).enviarNotificacion(eq("EMAIL"), eq("admin@test.com"), mensaje.capture());
+        String url = mensaje.getValue().substring(mensaje.getValue().indexOf("http://"));
+        return UriComponentsBuilder.fromUriString(url).build();
+    }
+
+    @Test
+    void modoEnlace_guardaUnaVezYEnviaSoloElEnlace() throws IOException {
+        UriComponents enlace = entregarYCapturarEnlace(entrega("enlace"));
+
+        assertEquals("/reporte/descargas/" + CLAVE, enlace.getPath());
+        assertTrue(Files.exists(directorio.resolve("archivo").resolve(CLAVE)));
+        verify(notificacionService, never()).enviarNotificacionConAdjunto(any(), any(), any(), any(Resource.class), any());
+    }
+
+    @Test
+    void claveYaGuardada_noSeVuelveASubir() throws IOException {
+        AlmacenamientoReportes almacenamiento = spy(new AlmacenamientoReportesLocal(directorio.resolve("archivo")));
+        EntregaReportesService entrega = entrega("enlace", almacenamiento);
+        when(notificacionService.enviarNotificacion(any(), any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        Path reporte = reporte();
+
+        CompletableFuture<Void> primera = entrega.entregar("admin@test.com", "Reporte listo", CLAVE, reporte);
+        CompletableFuture<Void> segunda = entrega.entregar("otro@test.com", "Reporte listo", CLAVE, reporte);
+        CompletableFuture.allOf(primera, segunda).join();
+
+        verify(almacenamiento, times(1)).guardar(CLAVE, reporte);
+        verify(notificacionService, times(2)).enviarNotificacion(eq("EMAIL"), anyString(), anyString());
+    }
+
+    @Test
+    void siFallaLaSubida_elFuturoFallaSinEnviarCorreo() throws IOException {
+        AlmacenamientoReportes almacenamiento = mock(AlmacenamientoReportes.class);
+        when(almacenamiento.existe(CLAVE)).thenReturn(false);
+        when(almacenamiento.guardar(eq(CLAVE), any())).thenThrow(new IOException("bucket no disponible"));
+        EntregaReportesService entrega = entrega("enlace", almacenamiento);
+
+        CompletableFuture<Void> resultado = entrega.entregar("admin@test.com", "Reporte listo", CLAVE, reporte());
+
+        CompletionException error = assertThrows(CompletionException.class, resultado::join);
+        assertInstanceOf(UncheckedIOException.class, error.getCause());
+        verifyNoInteractions(notificacionService);
+    }
+
+    @Test
+    void enlaceValido_devuelveElReporte() throws IOException {
+        EntregaReportesService entrega = entrega("enlace");
+        UriComponents enlace = entregarYCapturarEnlace(entrega);
+
+        Resource reporte = entrega.abrir(CLAVE, Long.parseLong(enlace.getQueryParams().getFirst("expira")),
+                enlace.getQueryParams().getFirst("firma"));
+
+        assertEquals("%PDF-1.4 contenido", reporte.getContentAsString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void enlaceAlterado_seRechaza() throws IOException {
+        EntregaReportesService entrega = entrega("enlace");
+        UriComponents enlace = entregarYCapturarEnlace(entrega);
+        long expira = Long.parseLong(enlace.getQueryParams().getFirst("expira"));
+        String firma = enlace.getQueryParams().getFirst("firma");
+
+        assertThrows(EnlaceInvalidoException.class, () -> entrega.abrir("reportes/otro.pdf", expira, firma));
+        assertThrows(EnlaceInvalidoException.class, () -> entrega.abrir(CLAVE, expira + 3600, firma));
+        assertThrows(EnlaceInvalidoException.class, () -> entrega.abrir(CLAVE, expira, "x" + firma));
+    }
+
+    @Test
+    void enlaceVencido_seRechaza() throws IOException {
+        EntregaReportesService entrega = entrega("enlace");
+        long vencido = Instant.now().getEpochSecond() - 1;
+
+        assertThrows(EnlaceInvalidoException.class,
+                () -> entrega.abrir(CLAVE, vencido, entrega.firmar(CLAVE, vencido)));
+    }
+
+    @Test
+    void modoAdjunto_enviaElPdfSinGuardarlo() throws IOException {
+        when(notificacionService.enviarNotificacionConAdjunto(any(), any(), any(), any(Resource.class), any()))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        entrega("adjunto").entregar("admin@test.com", "Reporte listo", CLAVE, reporte()).join();
+
+        verify(notificacionService).enviarNotificacionConAdjunto(eq("EMAIL"), eq("admin@test.com"), eq("Reporte listo"),
+                any(Resource.class), eq("reporte_inventario_bajo.pdf"));
+        assertFalse(Files.exists(directorio.resolve("archivo").resolve(CLAVE)));
+    }
+
+    @Test
+    void modoDesconocido_fallaAlArrancar() {
+        assertThrows(IllegalArgumentException.class, () -> entrega("paloma"));
+    }
+
+    @Test
+    void modoEnlaceSinSecretoPropio_fallaAlArrancar() throws IOException {
+        AlmacenamientoReportes almacenamiento = new AlmacenamientoReportesLocal(directorio.resolve("archivo"));
+
+        assertThrows(IllegalArgumentException.class, () -> entrega("enlace", almacenamiento, ""));
+        assertNotNull(entrega("adjunto", almacenamiento, ""));
+    }
+
+    @Test
+    void elSecretoSeDecodificaEnBase64ComoElDelJwt() throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(Base64.getDecoder().decode(SECRETO), "HmacSHA256"));
+        String esperada = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(mac.doFinal((CLAVE + "\n" + 1L).getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(esperada, entrega("enlace").firmar(CLAVE, 1L));
+    }
+}
@@ -0,0 +1,163 @@
+package com.producto_service.Service;
+
+import com.producto_service.Config.StockConfig;
+import com.producto_service.DTO.LineaStockDto;
+import com.producto_service.Exception.ConflictoStockException;
+import com.producto_service.Exception.StockOperacionException;
+import com.producto_service.Model.Categoria;
+import com.producto_service.Model.Marca;
+import com.producto_service.Model.Producto;
+import com.producto_service.Repository.CategoriaRepository;
+import com.producto_service.Repository.MarcaRepository;
+import com.producto_service.Repository.ProductoRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@Import(HistorialService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class EstrategiaStockTest {
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private CategoriaRepository categoriaRepository;
+
+    @Autowired
+    private MarcaRepository marcaRepository;
+
+    @Autowired
+    private HistorialService historialService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long caliente;
+    private Long secundario;
+
+    @BeforeEach
+    void setUp() {
+        Categoria categoria = categoriaRepository.save(new Categoria(null, "Electrónica", "Productos electrónicos", null));
+        Marca marca = marcaRepository.save(new Marca(null, "Samsung", null));
+        caliente = guardar("Consola", 100, categoria, marca);
+        secundario = guardar("Control", 1000, categoria, marca);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM historial");
+        jdbcTemplate.update("DELETE FROM producto");
+        jdbcTemplate.update("DELETE FROM categoria");
+        jdbcTemplate.update("DELETE FROM marca");
+    }
+
+    private Long guardar(String nombre, int cantidad, Categoria categoria, Marca marca) {
+        Producto producto = new Producto();
+        producto.setNombre(nombre);
+        producto.setCantidad(cantidad);
+        producto.setPrecio(10.0);
+        producto.setCategoria(categoria);
+        producto.setMarca(marca);
+        return productoRepository.save(producto).getId();
+    }
+
+    private EstrategiaStock estrategia(String nombre) {
+        return new StockConfig().estrategiaStock(nombre, 10, 1, 2000, productoRepository, historialService,
+                eventPublisher, transactionManager, jdbcTemplate, new SimpleMeterRegistry());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"atomica", "optimista", "pesimista"})
+    void pedidosConcurrentes_noPierdenActualizacionesNiVendenDeMas(String nombre) throws Exception {
+        EstrategiaStock estrategia = estrategia(nombre);
+        AtomicInteger aplicados = new AtomicInteger();
+        AtomicInteger rechazados = new AtomicInteger();
+        AtomicInteger conflictos = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> tareas = new ArrayList<>();
+        for (int hilo = 0; hilo < 8; hilo++) {
+            tareas.add(executor.submit(() -> {
+                for (int i = 0; i < 20; i++) {
+                    try {
+                        estrategia.aplicar(Map.of(secundario, 1, caliente, 1), true);
+                        aplicados.incrementAndGet();
+                    } catch (StockOperacionException e) {
+                        rechazados.incrementAndGet();
+                    } catch (ConflictoStockException e) {
+                        conflictos.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Future<?> tarea : tareas) {
+            tarea.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // 160 pedidos sobre 100 unidades: nunca se aplican más de 100 y el stock cuadra con lo aplicado
+        assertEquals(160, aplicados.get() + rechazados.get() + conflictos.get());
+        assertTrue(aplicados.get() <= 100);
+        assertEquals(100 - aplicados.get(), stock(caliente));
+        assertEquals(1000 - aplicados.get(), stock(secundario));
+        assertEquals(2 * aplicados.get(), jdbcTemplate.queryForObject("SELECT COUNT(*) FROM historial", Integer.class));
+    }
+
+    @Test
+    void atomica_rechazaSinAplicarNingunaLineaEInformaElMotivo() {
+        EstrategiaStock estrategia = estrategia("atomica");
+
+        StockOperacionException ex = assertThrows(StockOperacionException.class,
+                () -> estrategia.aplicar(Map.of(caliente, 101, secundario, 5, 999_999L, 1), true));
+
+        List<LineaStockDto> lineas = ex.getResultado().getLineas();
+        assertEquals(LineaStockDto.Estado.STOCK_INSUFICIENTE, lineas.get(0).getEstado());
+        assertEquals(LineaStockDto.Estado.OK, lineas.get(1).getEstado());
+        assertEquals(LineaStockDto.Estado.NO_ENCONTRADO, lineas.get(2).getEstado());
+        assertEquals(100, stock(caliente));
+        assertEquals(1000, stock(secundario));
+    }
+
+    @Test
+    void atomica_reposicionDevuelveStockAnteriorYResultante() {
+        LineaStockDto linea = estrategia("atomica").aplicar(Map.of(caliente, 5), false).getLineas().get(0);
+
+        assertEquals(100, linea.getStockAnterior());
+        assertEquals(105, linea.getStockResultante());
+        assertEquals(105, stock(caliente));
+        assertEquals(1L, jdbcTemplate.queryForObject("SELECT version FROM producto WHERE id = ?", Long.class, caliente));
+    }
+
+    private int stock(Long id) {
+        return jdbcTemplate.queryForObject("SELECT stock FROM producto WHERE id = ?", Integer.class, id);
+    }
+}
@@ -0,0 +1,119 @@
+package com.producto_service.Service;
+
+import com.producto_service.Model.Categoria;
+import com.producto_service.Model.Marca;
+import com.producto_service.Repository.CategoriaRepository;
+import com.producto_service.Repository.MarcaRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Exporta un catálogo grande (por defecto 1.000.000 de productos, {@code -Dbenchmark.filas=N}) y mide
+ * el heap retenido tras cada bloque de datos escritos. Se ejecuta con {@code gradle benchmark}, con un
+ * heap limitado a 512 MB; la base H2 es de archivo para que los datos no ocupen el heap medido.
+ */
+@Tag("benchmark")
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:file:./build/benchmark/exportacion;LAZY_QUERY_EXECUTION=1",
+        "spring.jpa.hibernate.ddl-auto=create"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(ExportacionProductosService.class)
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ExportacionProductosBenchmarkTest {
+
+    private static final long MUESTREO_BYTES = 32L * 1024 * 1024;
+    private static final long CRECIMIENTO_MAXIMO_BYTES = 32L * 1024 * 1024;
+
+    @Autowired
+    private ExportacionProductosService exportacionProductosService;
+
+    @Autowired
+    private CategoriaRepository categoriaRepository;
+
+    @Autowired
+    private MarcaRepository marcaRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void exportacion_memoriaPlanaConCatalogoGrande() throws Exception {
+        long filas = Long.getLong("benchmark.filas", 1_000_000L);
+        Categoria categoria = categoriaRepository.save(new Categoria(null, "Electrónica", "Productos electrónicos", null));
+        Marca marca = marcaRepository.save(new Marca(null, "Samsung", null));
+        jdbcTemplate.update("INSERT INTO producto (nombre, descripcion, stock, precio, categoria_id, marca_id) "
+                        + "SELECT 'Producto ' || X, 'Descripcion del producto ' || X, MOD(X, 500), X * 0.01, ?, ? "
+                        + "FROM SYSTEM_RANGE(1, ?)",
+                categoria.getId(), marca.getId(), filas);
+
+        for (ExportacionProductosService.Formato formato : ExportacionProductosService.Formato.values()) {
+            SalidaMedida salida = new SalidaMedida();
+            long base = heapRetenido();
+            long inicio = System.nanoTime();
+
+            long exportadas = exportacionProductosService.exportar(formato, salida);
+
+            long ms = (System.nanoTime() - inicio) / 1_000_000;
+            long pico = salida.muestras.stream().mapToLong(Long::longValue).max().orElse(base);
+            System.out.printf("📊 Exportación %s: %d filas, %d MB en %d ms (%.0f filas/s); heap base %d MB, pico retenido %d MB, muestras %s%n",
+                    formato, exportadas, salida.bytes / (1024 * 1024), ms, exportadas * 1000.0 / Math.max(ms, 1),
+                    base / (1024 * 1024), pico / (1024 * 1024), enMegas(salida.muestras));
+
+            assertEquals(filas, exportadas);
+            assertTrue(pico - base < CRECIMIENTO_MAXIMO_BYTES,
+                    "El heap retenido creció " + (pico - base) / (1024 * 1024) + " MB durante la exportación " + formato);
+        }
+    }
+
+    private static long heapRetenido() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static List<Long> enMegas(List<Long> muestras) {
+        return muestras.stream().map(m -> m / (1024 * 1024)).toList();
+    }
+
+    /** Descarta lo escrito y toma una muestra del heap retenido cada {@link #MUESTREO_BYTES}. */
+    private static class SalidaMedida extends OutputStream {
+        private final List<Long> muestras = new ArrayList<>();
+        private long bytes;
+        private long siguienteMuestra = MUESTREO_BYTES;
+
+        @Override
+        public void write(int b) {
+            contar(1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            contar(len);
+        }
+
+        private void contar(int len) {
+            bytes += len;
+            if (bytes >= siguienteMuestra) {
+                muestras.add(heapRetenido());
+                siguienteMuestra += MUESTREO_BYTES;
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.producto_service.Service;
+
+import com.producto_service.Model.Categoria;
+import com.producto_service.Model.Marca;
+import com.producto_service.Model.Producto;
+import com.producto_service.Repository.CategoriaRepository;
+import com.producto_service.Repository.MarcaRepository;
+import com.producto_service.Repository.ProductoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@Import(ExportacionProductosService.class)
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+class ExportacionProductosServiceTest {
+
+    @Autowired
+    private ExportacionProductosService exportacionProductosService;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private CategoriaRepository categoriaRepository;
+
+    @Autowired
+    private MarcaRepository marcaRepository;
+
+    @BeforeEach
+    void setUp() {
+        Categoria categoria = categoriaRepository.save(new Categoria(null, "Electrónica", "Productos electrónicos", null));
+        Marca marca = marcaRepository.save(new Marca(null, "Samsung", null));
+        guardar("Televisor", "Pantalla 55\", 4K", 10, 1500.0, categoria, marca);
+        guardar("Parlante", "Bluetooth, resistente al agua", 3, 80.5, categoria, marca);
+    }
+
+    private void guardar(String nombre, String descripcion, int cantidad, double precio, Categoria categoria, Marca marca) {
+        Producto producto = new Producto();
+        producto.setNombre(nombre);
+        producto.setDescripcion(descripcion);
+        producto.setCantidad(cantidad);
+        producto.setPrecio(precio);
+        producto.setCategoria(categoria);
+        producto.setMarca(marca);
+        productoRepository.save(producto);
+    }
+
+    @Test
+    void exportarCsv_escribeCabeceraYEscapaCampos() throws Exception {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+
+        long filas = exportacionProductosService.exportar(ExportacionProductosService.Formato.CSV, salida);
+
+        String[] lineas = salida.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, filas);
+        assertEquals(3, lineas.length);
+        assertEquals(ExportacionProductosService.CABECERA_CSV, lineas[0]);
+        assertTrue(lineas[1].endsWith(",Televisor,\"Pantalla 55\"\", 4K\",10,1500.0,Electrónica,Samsung"));
+        assertTrue(lineas[2].endsWith(",Parlante,\"Bluetooth, resistente al agua\",3,80.5,Electrónica,Samsung"));
+    }
+
+    @Test
+    void exportarNdjson_unObjetoPorLineaOrdenadoPorId() throws Exception {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+
+        long filas = exportacionProductosService.exportar(ExportacionProductosService.Formato.NDJSON, salida);
+
+        String[] lineas = salida.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, filas);
+        assertEquals(2, lineas.length);
+        assertTrue(lineas[0].startsWith("{") && lineas[0].contains("\"nombre\":\"Televisor\""));
+        assertTrue(lineas[1].contains("\"nombre\":\"Parlante\"") && lineas[1].contains("\"marca\":{"));
+    }
+
+    @Test
+    void formatoNoSoportado_lanzaExcepcion() {
+        assertThrows(IllegalArgumentException.class, () -> ExportacionProductosService.Formato.desde("xml"));
+    }
+}
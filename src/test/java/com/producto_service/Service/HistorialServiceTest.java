@@ -0,0 +1,124 @@
+package com.producto_service.Service;
+
+import com.producto_service.Model.Categoria;
+import com.producto_service.Model.Marca;
+import com.producto_service.Model.Producto;
+import com.producto_service.Repository.CategoriaRepository;
+import com.producto_service.Repository.MarcaRepository;
+import com.producto_service.Repository.ProductoRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@Import(HistorialService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class HistorialServiceTest {
+
+    @Autowired
+    private HistorialService historialService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private CategoriaRepository categoriaRepository;
+
+    @Autowired
+    private MarcaRepository marcaRepository;
+
+    private TransactionTemplate transactionTemplate;
+    private List<Producto> productos;
+
+    @BeforeEach
+    void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        Categoria categoria = categoriaRepository.save(new Categoria(null, "Electrónica", "Productos electrónicos", null));
+        Marca marca = marcaRepository.save(new Marca(null, "Samsung", null));
+        productos = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            Producto producto = new Producto();
+            producto.setNombre("Producto " + i);
+            producto.setCantidad(i);
+            producto.setPrecio(10.0 * i);
+            producto.setCategoria(categoria);
+            producto.setMarca(marca);
+            productos.add(productoRepository.save(producto));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM historial");
+        jdbcTemplate.update("DELETE FROM producto");
+        jdbcTemplate.update("DELETE FROM categoria");
+        jdbcTemplate.update("DELETE FROM marca");
+    }
+
+    @Test
+    void durable_insertaLosRegistrosDeLaTransaccionAlConfirmar() {
+        transactionTemplate.executeWithoutResult(status -> {
+            historialService.agregarHistoriales(productos.subList(0, 3));
+            historialService.agregarHistorial(productos.get(3), 40);
+            assertEquals(0, contarHistorial());
+        });
+
+        assertEquals(4, contarHistorial());
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM historial WHERE producto_id = ? AND stock_cambiado = 40", Integer.class,
+                productos.get(3).getId()));
+    }
+
+    @Test
+    void durable_rollbackNoDejaRegistros() {
+        transactionTemplate.executeWithoutResult(status -> {
+            historialService.agregarHistoriales(productos);
+            status.setRollbackOnly();
+        });
+
+        assertEquals(0, contarHistorial());
+    }
+
+    @Test
+    void asincrono_colaLlenaAplicaContrapresionSinPerderRegistros() throws InterruptedException {
+        HistorialService asincrono = new HistorialService(jdbcTemplate, "asincrono", 2, 2, 1, 20);
+        try {
+            for (int i = 0; i < 20; i++) {
+                asincrono.agregarHistoriales(productos);
+            }
+            transactionTemplate.executeWithoutResult(status -> asincrono.agregarHistoriales(productos));
+            transactionTemplate.executeWithoutResult(status -> {
+                asincrono.agregarHistoriales(productos);
+                status.setRollbackOnly();
+            });
+        } finally {
+            asincrono.detener();
+        }
+
+        assertEquals(0, asincrono.pendientes());
+        assertEquals(105, contarHistorial());
+    }
+
+    private int contarHistorial() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM historial", Integer.class);
+    }
+}
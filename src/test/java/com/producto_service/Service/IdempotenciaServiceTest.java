@@ -0,0 +1,235 @@
+package com.producto_service.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.producto_service.DTO.LineaStockDto;
+import com.producto_service.DTO.ResultadoStockDto;
+import com.producto_service.Exception.ConflictoStockException;
+import com.producto_service.Exception.StockOperacionException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class IdempotenciaServiceTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final AtomicInteger ejecuciones = new AtomicInteger();
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM operacion_idempotente");
+        jdbcTemplate.update("DELETE FROM marca");
+    }
+
+    private IdempotenciaService servicio() {
+        return new IdempotenciaService(jdbcTemplate, transactionManager, new ObjectMapper(), new SimpleMeterRegistry(), 100, 24, 30);
+    }
+
+    private ResultadoStockDto aplicar() {
+        ejecuciones.incrementAndGet();
+        return new ResultadoStockDto(true, List.of(new LineaStockDto(1L, 2, 10, 8, LineaStockDto.Estado.OK, "Stock actualizado")));
+    }
+
+    @Test
+    void mismaClave_seEjecutaUnaVezYRepiteElResultado() {
+        IdempotenciaService servicio = servicio();
+
+        ResultadoStockDto primero = servicio.ejecutar("pedido-1", "reducir-stock", Map.of(1L, 2), this::aplicar);
+        ResultadoStockDto repetido = servicio.ejecutar("pedido-1", "reducir-stock", Map.of(1L, 2), this::aplicar);
+
+        assertEquals(1, ejecuciones.get());
+        assertEquals(8, repetido.getLineas().get(0).getStockResultante());
+        assertSame(primero, repetido);
+    }
+
+    @Test
+    void sinCacheLocal_repiteDesdeLaTabla() {
+        servicio().ejecutar("pedido-2", "reducir-stock", Map.of(1L, 2), this::aplicar);
+
+        // Otra instancia (o la misma tras reiniciar) no tiene la respuesta en caché
+        ResultadoStockDto repetido = servicio().ejecutar("pedido-2", "reducir-stock", Map.of(1L, 2), this::aplicar);
+
+        assertEquals(1, ejecuciones.get());
+        assertTrue(repetido.isAplicado());
+        assertEquals(8, repetido.getLineas().get(0).getStockResultante());
+    }
+
+    @Test
+    void duplicadosConcurrentes_seColapsanEnUnaEjecucion() throws Exception {
+        IdempotenciaService servicio = servicio();
+        CountDownLatch liberar = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<ResultadoStockDto>> respuestas = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            respuestas.add(executor.submit(() -> servicio.ejecutar("pedido-3", "reducir-stock", Map.of(1L, 2), () -> {
+                try {
+                    liberar.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return aplicar();
+            })));
+        }
+        Thread.sleep(200);
+        liberar.countDown();
+
+        for (Future<ResultadoStockDto> respuesta : respuestas) {
+            assertTrue(respuesta.get(10, TimeUnit.SECONDS).isAplicado());
+        }
+        executor.shutdown();
+        assertEquals(1, ejecuciones.get());
+    }
+
+    @Test
+    void rechazoPorStock_seGuardaYSeRepite() {
+        IdempotenciaService servicio = servicio();
+        ResultadoStockDto rechazo = new ResultadoStockDto(false, List.of(
+                new LineaStockDto(1L, 20, 10, 10, LineaStockDto.Estado.STOCK_INSUFICIENTE, "Stock insuficiente")));
+
+        assertThrows(StockOperacionException.class, () -> servicio.ejecutar("pedido-4", "reducir-stock", Map.of(1L, 20), () -> {
+            ejecuciones.incrementAndGet();
+            throw new StockOperacionException("No se pudo reducir el stock", rechazo);
+        }));
+        StockOperacionException repetido = assertThrows(StockOperacionException.class,
+                () -> servicio().ejecutar("pedido-4", "reducir-stock", Map.of(1L, 20), this::aplicar));
+
+        assertEquals(1, ejecuciones.get());
+        assertEquals(LineaStockDto.Estado.STOCK_INSUFICIENTE, repetido.getResultado().getLineas().get(0).getEstado());
+    }
+
+    @Test
+    void claveReutilizadaConOtroCuerpo_lanzaExcepcion() {
+        IdempotenciaService servicio = servicio();
+        servicio.ejecutar("pedido-5", "reducir-stock", Map.of(1L, 2), this::aplicar);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> servicio.ejecutar("pedido-5", "reducir-stock", Map.of(1L, 3), this::aplicar));
+        assertThrows(IllegalArgumentException.class,
+                () -> servicio.ejecutar("pedido-5", "reposicion-stock", Map.of(1L, 2), this::aplicar));
+        assertEquals(1, ejecuciones.get());
+    }
+
+    @Test
+    void errorTransitorio_noSeGuardaYElReintentoVuelveAEjecutar() {
+        IdempotenciaService servicio = servicio();
+
+        assertThrows(ConflictoStockException.class, () -> servicio.ejecutar("pedido-6", "reducir-stock", Map.of(1L, 2), () -> {
+            throw new ConflictoStockException("Conflicto", null);
+        }));
+        servicio.ejecutar("pedido-6", "reducir-stock", Map.of(1L, 2), this::aplicar);
+
+        assertEquals(1, ejecuciones.get());
+    }
+
+    @Test
+    void claveEnCursoEnOtraInstancia_respondeConflicto() throws Exception {
+        IdempotenciaService otra = servicio();
+        CountDownLatch enCurso = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<ResultadoStockDto> primera = executor.submit(() -> otra.ejecutar("pedido-7", "reducir-stock", Map.of(1L, 2), () -> {
+            enCurso.countDown();
+            try {
+                liberar.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return aplicar();
+        }));
+        try {
+            assertTrue(enCurso.await(5, TimeUnit.SECONDS));
+            assertThrows(ConflictoStockException.class,
+                    () -> servicio().ejecutar("pedido-7", "reducir-stock", Map.of(1L, 2), this::aplicar));
+        } finally {
+            liberar.countDown();
+            executor.shutdown();
+        }
+        assertDoesNotThrow(() -> primera.get(5, TimeUnit.SECONDS));
+        assertEquals(1, ejecuciones.get());
+    }
+
+    @Test
+    void claveEnCursoConPlazoVencido_laTomaElReintento() {
+        ejecutarEnCursoYAbandonar("pedido-9");
+        jdbcTemplate.update("UPDATE operacion_idempotente SET vence = ?", new Timestamp(System.currentTimeMillis() - 1000));
+
+        ResultadoStockDto resultado = servicio().ejecutar("pedido-9", "reducir-stock", Map.of(1L, 2), this::aplicar);
+
+        assertTrue(resultado.isAplicado());
+        assertEquals(1, ejecuciones.get());
+        assertEquals(200, jdbcTemplate.queryForObject("SELECT estado FROM operacion_idempotente WHERE clave = 'pedido-9'", Integer.class));
+    }
+
+    @Test
+    void siOtroReintentoTomaLaClave_laOperacionSeDeshace() {
+        IdempotenciaService servicio = servicio();
+
+        assertThrows(ConflictoStockException.class, () -> servicio.ejecutar("pedido-10", "reducir-stock", Map.of(1L, 2), () -> {
+            jdbcTemplate.update("INSERT INTO marca (nombre) VALUES ('Aplicada')");
+            // Mientras tanto venció el plazo y otro reintento tomó la clave (en su propia conexión)
+            CompletableFuture.runAsync(() -> jdbcTemplate.update(
+                    "UPDATE operacion_idempotente SET propietario = 'otro' WHERE clave = 'pedido-10'")).join();
+            return aplicar();
+        }));
+
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM marca", Integer.class));
+        assertEquals("otro", jdbcTemplate.queryForObject("SELECT propietario FROM operacion_idempotente WHERE clave = 'pedido-10'", String.class));
+    }
+
+    @Test
+    void operacionAplicada_seGuardaEnSuMismaTransaccion() {
+        servicio().ejecutar("pedido-11", "reducir-stock", Map.of(1L, 2), () -> {
+            jdbcTemplate.update("INSERT INTO marca (nombre) VALUES ('Aplicada')");
+            // Dentro de la operación la clave todavía figura en curso
+            assertEquals(0, jdbcTemplate.queryForObject("SELECT estado FROM operacion_idempotente WHERE clave = 'pedido-11'", Integer.class));
+            return aplicar();
+        });
+
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM marca", Integer.class));
+        assertEquals(200, jdbcTemplate.queryForObject("SELECT estado FROM operacion_idempotente WHERE clave = 'pedido-11'", Integer.class));
+    }
+
+    // Simula una réplica que registró la clave y cayó antes de terminar
+    private void ejecutarEnCursoYAbandonar(String clave) {
+        jdbcTemplate.update("INSERT INTO operacion_idempotente (clave, huella, estado, creada, propietario, vence) VALUES (?, ?, 0, ?, ?, ?)",
+                clave, IdempotenciaService.huella("reducir-stock", Map.of(1L, 2)), new Timestamp(System.currentTimeMillis()), "caida",
+                new Timestamp(System.currentTimeMillis() + 30_000));
+    }
+
+    @Test
+    void purgar_eliminaLasClavesVencidas() {
+        servicio().ejecutar("pedido-8", "reducir-stock", Map.of(1L, 2), this::aplicar);
+        jdbcTemplate.update("UPDATE operacion_idempotente SET creada = ?",
+                new Timestamp(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(25)));
+
+        servicio().purgar();
+
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM operacion_idempotente", Integer.class));
+    }
+}
@@ -0,0 +1,66 @@
+package com.producto_service.Service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndiceReferenciaTest {
+
+    private record Item(Long id, String nombre) {
+    }
+
+    @Test
+    void invalidarDuranteUnaCarga_noInstalaLaFotoVieja() {
+        // Given: la primera carga lee "Vieja" y, mientras tanto, se escribe "Nueva" y se invalida
+        AtomicReference<IndiceReferencia<Item>> indice = new AtomicReference<>();
+        AtomicInteger cargas = new AtomicInteger();
+        indice.set(new IndiceReferencia<>(() -> {
+            if (cargas.incrementAndGet() == 1) {
+                List<Item> leidos = List.of(new Item(1L, "Vieja"));
+                indice.get().invalidar();
+                return leidos;
+            }
+            return List.of(new Item(1L, "Nueva"));
+        }, Item::id, Item::nombre, Duration.ofMinutes(5)));
+
+        // When
+        indice.get().existeNombre("Vieja");
+
+        // Then: la siguiente consulta recarga y ve el cambio
+        assertTrue(indice.get().existeNombre("Nueva"));
+        assertFalse(indice.get().existeNombre("Vieja"));
+        assertEquals(2, cargas.get());
+    }
+
+    @Test
+    void unElementoSinNombre_noRompeElIndice() {
+        // Given
+        IndiceReferencia<Item> indice = new IndiceReferencia<>(
+                () -> List.of(new Item(1L, null), new Item(2L, "Samsung")), Item::id, Item::nombre, Duration.ofMinutes(5));
+
+        // When & Then: el de nombre nulo existe por ID y no se encuentra por nombre
+        assertTrue(indice.existeId(1L));
+        assertTrue(indice.existeNombre("Samsung"));
+        assertFalse(indice.existeNombre(""));
+    }
+
+    @Test
+    void sinInvalidar_reutilizaLaCarga() {
+        // Given
+        AtomicInteger cargas = new AtomicInteger();
+        IndiceReferencia<Item> indice = new IndiceReferencia<>(() -> {
+            cargas.incrementAndGet();
+            return List.of(new Item(1L, "Samsung"));
+        }, Item::id, Item::nombre, Duration.ofMinutes(5));
+
+        // When & Then
+        assertTrue(indice.existeId(1L));
+        assertTrue(indice.existeNombre("Samsung"));
+        assertEquals(1, cargas.get());
+    }
+}
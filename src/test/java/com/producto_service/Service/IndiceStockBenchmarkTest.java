@@ -0,0 +1,91 @@
+package com.producto_service.Service;
+
+import com.producto_service.Event.StockCambiadoEvent;
+import com.producto_service.Repository.ProductoRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Mide consultas de disponibilidad de 30 ids contra el índice en memoria mientras un hilo aplica
+ * cambios de stock. Se ejecuta con {@code gradle benchmark}; {@code -Dbenchmark.productos},
+ * {@code -Dbenchmark.hilos} y {@code -Dbenchmark.segundos} ajustan la carga.
+ */
+@Tag("benchmark")
+class IndiceStockBenchmarkTest {
+
+    private record Fila(Long getId, Integer getCantidad, Long getVersion) implements ProductoRepository.StockProducto {
+    }
+
+    @Test
+    void consultasDeDisponibilidad() throws Exception {
+        int productos = Integer.getInteger("benchmark.productos", 200_000);
+        int hilos = Integer.getInteger("benchmark.hilos", 8);
+        int segundos = Integer.getInteger("benchmark.segundos", 5);
+
+        List<ProductoRepository.StockProducto> filas = new ArrayList<>(productos);
+        for (long id = 1; id <= productos; id++) {
+            filas.add(new Fila(id, (int) (id % 500), 0L));
+        }
+        ProductoRepository productoRepository = mock(ProductoRepository.class);
+        when(productoRepository.findAllStock()).thenReturn(filas);
+        IndiceStockService indice = new IndiceStockService(productoRepository, true);
+        indice.recargar();
+
+        AtomicBoolean corriendo = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(hilos + 1);
+        Future<Long> escrituras = executor.submit(() -> {
+            long total = 0;
+            while (corriendo.get()) {
+                long id = ThreadLocalRandom.current().nextLong(1, productos + 1);
+                indice.onStockCambiado(new StockCambiadoEvent(id, null, ThreadLocalRandom.current().nextInt(500)));
+                total++;
+                TimeUnit.MICROSECONDS.sleep(100);
+            }
+            return total;
+        });
+        List<Future<Long>> lectores = new ArrayList<>();
+        for (int h = 0; h < hilos; h++) {
+            lectores.add(executor.submit(() -> {
+                long consultas = 0;
+                long[] ids = new long[30];
+                while (corriendo.get()) {
+                    for (int i = 0; i < ids.length; i++) {
+                        ids[i] = ThreadLocalRandom.current().nextLong(1, productos + 1);
+                    }
+                    int[] stocks = indice.stocksDe(ids);
+                    if (stocks[0] == MapaLongInt.AUSENTE) {
+                        throw new IllegalStateException("Producto ausente: " + ids[0]);
+                    }
+                    consultas++;
+                }
+                return consultas;
+            }));
+        }
+
+        TimeUnit.SECONDS.sleep(segundos);
+        corriendo.set(false);
+        long consultas = 0;
+        for (Future<Long> lector : lectores) {
+            consultas += lector.get();
+        }
+        long cambios = escrituras.get();
+        executor.shutdown();
+
+        System.out.printf("📊 Disponibilidad desde el índice: %d productos, %d hilos, %d s%n", productos, hilos, segundos);
+        System.out.printf("📊 consultas de 30 ids/s: %.0f  (cambios de stock aplicados: %d)%n",
+                (double) consultas / segundos, cambios);
+        assertTrue(consultas > 0);
+    }
+}
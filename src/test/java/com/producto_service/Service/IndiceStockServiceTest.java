@@ -0,0 +1,121 @@
+package com.producto_service.Service;
+
+import com.producto_service.Event.StockCambiadoEvent;
+import com.producto_service.Repository.ProductoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IndiceStockServiceTest {
+
+    @Mock
+    private ProductoRepository productoRepository;
+
+    private IndiceStockService indiceStockService;
+
+    @BeforeEach
+    void setUp() {
+        indiceStockService = new IndiceStockService(productoRepository, true);
+        when(productoRepository.findAllStock()).thenReturn(List.of(
+                fila(1L, 15),
+                fila(2L, 3),
+                fila(3L, 9),
+                fila(4L, 3)
+        ));
+        indiceStockService.recargar();
+    }
+
+    @Test
+    void idsConStockMenorA_retornaOrdenadosPorStock() {
+        assertTrue(indiceStockService.disponible());
+        assertEquals(List.of(2L, 4L, 3L), indiceStockService.idsConStockMenorA(10));
+        assertEquals(List.of(), indiceStockService.idsConStockMenorA(3));
+    }
+
+    @Test
+    void onStockCambiado_actualizaElIndice() {
+        indiceStockService.onStockCambiado(new StockCambiadoEvent(1L, 15, 1));
+        indiceStockService.onStockCambiado(new StockCambiadoEvent(2L, 3, 20));
+        indiceStockService.onStockCambiado(new StockCambiadoEvent(4L, 3, null));
+        indiceStockService.onStockCambiado(new StockCambiadoEvent(5L, null, 5));
+
+        assertEquals(List.of(1L, 5L, 3L), indiceStockService.idsConStockMenorA(10));
+        assertNull(indiceStockService.stockDe(4L));
+        assertEquals(20, indiceStockService.stockDe(2L));
+        verify(productoRepository, times(1)).findAllStock();
+    }
+
+    @Test
+    void stocksDe_leeVariosIdsEnUnaSolaLectura() {
+        indiceStockService.onStockCambiado(new StockCambiadoEvent(3L, 9, null));
+
+        int[] stocks = indiceStockService.stocksDe(new long[]{1L, 3L, 4L, 99L});
+
+        assertArrayEquals(new int[]{15, MapaLongInt.AUSENTE, 3, MapaLongInt.AUSENTE}, stocks);
+    }
+
+    @Test
+    void eventosEnDesorden_seDescartanLosMasViejos() {
+        indiceStockService.onStockCambiado(new StockCambiadoEvent(1L, 15, 4, 3L));
+        indiceStockService.onStockCambiado(new StockCambiadoEvent(1L, 15, 12, 2L));
+        indiceStockService.onStockCambiado(new StockCambiadoEvent(3L, 9, 7, 1L)); // igual a la versión cargada
+
+        assertEquals(4, indiceStockService.stockDe(1L));
+        assertEquals(9, indiceStockService.stockDe(3L));
+    }
+
+    @Test
+    void eventosDuranteLaRecarga_seReaplicanSobreLaFoto() {
+        when(productoRepository.findAllStock()).thenAnswer(invocacion -> {
+            // Confirmados mientras se lee la foto: uno posterior a ella y otro anterior entregado tarde
+            indiceStockService.onStockCambiado(new StockCambiadoEvent(1L, 15, 2, 6L));
+            indiceStockService.onStockCambiado(new StockCambiadoEvent(2L, 3, 30, 4L));
+            return List.of(fila(1L, 15, 5L), fila(2L, 8, 5L), fila(3L, 9, 1L));
+        });
+
+        indiceStockService.recargar();
+
+        assertEquals(2, indiceStockService.stockDe(1L));
+        assertEquals(8, indiceStockService.stockDe(2L));
+        assertNull(indiceStockService.stockDe(4L));
+    }
+
+    @Test
+    void productoEliminado_noReapareceConUnEventoAtrasado() {
+        indiceStockService.onStockCambiado(new StockCambiadoEvent(2L, 3, null, 2L));
+        indiceStockService.onStockCambiado(new StockCambiadoEvent(2L, 3, 1, 2L));
+
+        assertNull(indiceStockService.stockDe(2L));
+    }
+
+    private static ProductoRepository.StockProducto fila(Long id, Integer cantidad) {
+        return fila(id, cantidad, 1L);
+    }
+
+    private static ProductoRepository.StockProducto fila(Long id, Integer cantidad, Long version) {
+        return new ProductoRepository.StockProducto() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public Integer getCantidad() {
+                return cantidad;
+            }
+
+            @Override
+            public Long getVersion() {
+                return version;
+            }
+        };
+    }
+}
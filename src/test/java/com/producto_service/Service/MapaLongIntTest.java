@@ -0,0 +1,56 @@
+package com.producto_service.Service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MapaLongIntTest {
+
+    @Test
+    void putGetRemove_basico() {
+        MapaLongInt mapa = new MapaLongInt(4);
+
+        assertEquals(MapaLongInt.AUSENTE, mapa.put(7L, 3));
+        assertEquals(3, mapa.put(7L, 5));
+        assertEquals(MapaLongInt.AUSENTE, mapa.put(0L, 1));
+        assertEquals(5, mapa.get(7L));
+        assertEquals(1, mapa.get(0L));
+        assertEquals(2, mapa.size());
+
+        assertEquals(5, mapa.remove(7L));
+        assertEquals(MapaLongInt.AUSENTE, mapa.get(7L));
+        assertEquals(MapaLongInt.AUSENTE, mapa.remove(7L));
+        assertEquals(1, mapa.size());
+        assertThrows(IllegalArgumentException.class, () -> mapa.put(1L, MapaLongInt.AUSENTE));
+    }
+
+    @Test
+    void operacionesAleatorias_coincidenConHashMap() {
+        MapaLongInt mapa = new MapaLongInt(8);
+        Map<Long, Integer> referencia = new HashMap<>();
+        Random random = new Random(42);
+
+        // Claves en un rango chico para forzar colisiones, borrados con desplazamiento y crecimiento
+        for (int i = 0; i < 200_000; i++) {
+            long clave = random.nextInt(5_000) - 100;
+            int valor = random.nextInt(1_000);
+            switch (random.nextInt(3)) {
+                case 0 -> {
+                    Integer anterior = referencia.put(clave, valor);
+                    assertEquals(anterior == null ? MapaLongInt.AUSENTE : anterior, mapa.put(clave, valor));
+                }
+                case 1 -> {
+                    Integer anterior = referencia.remove(clave);
+                    assertEquals(anterior == null ? MapaLongInt.AUSENTE : anterior, mapa.remove(clave));
+                }
+                default -> assertEquals(referencia.getOrDefault(clave, MapaLongInt.AUSENTE), mapa.get(clave));
+            }
+            assertEquals(referencia.size(), mapa.size());
+        }
+        referencia.forEach((clave, valor) -> assertEquals(valor, mapa.get(clave)));
+    }
+}
@@ -136,6 +136,19 @@ class MarcaServiceTest {
         // Then
         assertFalse(result);
     }
-}
 
+    @Test
+    void validarMarca_ConsultasRepetidas_CargaUnaSolaVez() {
+        // Given
+        when(marcaRepository.findAll()).thenReturn(List.of(marca));
 
+        // When
+        marcaService.validarMarca("Samsung");
+        marcaService.validarMarca("Apple");
+        Boolean result = marcaService.validarMarca("Samsung");
+
+        // Then
+        assertTrue(result);
+        verify(marcaRepository, times(1)).findAll();
+    }
+}
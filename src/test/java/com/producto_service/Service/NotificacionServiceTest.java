@@ -0,0 +1,174 @@
+package com.producto_service.Service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntUnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Prueba el cliente contra un servidor HTTP local que simula el servicio de notificaciones.
+ */
+class NotificacionServiceTest {
+
+    private HttpServer servidor;
+    private ExecutorService hilosServidor;
+    private final AtomicInteger solicitudes = new AtomicInteger();
+    private final List<String> cuerpos = new CopyOnWriteArrayList<>();
+    private final List<String> tiposContenido = new CopyOnWriteArrayList<>();
+    private final CountDownLatch liberar = new CountDownLatch(1);
+    // Código HTTP según el número de solicitud (1, 2, ...)
+    private volatile IntUnaryOperator respuesta = n -> 200;
+    private volatile long demoraMs;
+    private volatile boolean bloquear;
+
+    private NotificacionService servicio;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        servidor = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        hilosServidor = Executors.newCachedThreadPool();
+        servidor.setExecutor(hilosServidor);
+        servidor.createContext("/notificaciones", this::atender);
+        servidor.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        liberar.countDown();
+        if (servicio != null) {
+            servicio.detener();
+        }
+        servidor.stop(0);
+        hilosServidor.shutdownNow();
+    }
+
+    private void atender(HttpExchange intercambio) throws IOException {
+        int numero = solicitudes.incrementAndGet();
+        cuerpos.add(new String(intercambio.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+        tiposContenido.add(intercambio.getRequestHeaders().getFirst("Content-Type"));
+        try {
+            if (bloquear) {
+                liberar.await(10, TimeUnit.SECONDS);
+            }
+            if (demoraMs > 0) {
+                Thread.sleep(demoraMs);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        byte[] cuerpo = "ok".getBytes(StandardCharsets.UTF_8);
+        intercambio.sendResponseHeaders(respuesta.applyAsInt(numero), cuerpo.length);
+        try (OutputStream salida = intercambio.getResponseBody()) {
+            salida.write(cuerpo);
+        }
+    }
+
+    private NotificacionService servicio(int cola, long timeoutMs, int reintentos, int fallosParaAbrir) {
+        String url = "http://127.0.0.1:" + servidor.getAddress().getPort() + "/notificaciones";
+        servicio = new NotificacionService(WebClient.builder(), new SimpleMeterRegistry(), url,
+                4, cola, 1000, timeoutMs, reintentos, 10, fallosParaAbrir, 60_000);
+        return servicio;
+    }
+
+    private static Throwable causa(CompletableFuture<Void> envio) {
+        ExecutionException error = assertThrows(ExecutionException.class, () -> envio.get(10, TimeUnit.SECONDS));
+        return error.getCause();
+    }
+
+    @Test
+    void envioExitoso() throws Exception {
+        servicio(10, 2000, 3, 5).enviarNotificacion("EMAIL", "admin@test.com", "Hola").get(10, TimeUnit.SECONDS);
+
+        assertEquals(1, solicitudes.get());
+        assertTrue(cuerpos.get(0).contains("admin@test.com"));
+    }
+
+    @Test
+    void erroresTransitorios_seReintentan() throws Exception {
+        respuesta = n -> n <= 2 ? 503 : 200;
+
+        servicio(10, 2000, 3, 5).enviarNotificacion("EMAIL", "admin@test.com", "Hola").get(10, TimeUnit.SECONDS);
+
+        assertEquals(3, solicitudes.get());
+    }
+
+    @Test
+    void erroresDeLaSolicitud_noSeReintentan() {
+        respuesta = n -> 400;
+
+        causa(servicio(10, 2000, 3, 5).enviarNotificacion("EMAIL", "admin@test.com", "Hola"));
+
+        assertEquals(1, solicitudes.get());
+    }
+
+    @Test
+    void respuestaLenta_fallaPorTimeout() {
+        demoraMs = 1_000;
+
+        Throwable error = causa(servicio(10, 200, 0, 5).enviarNotificacion("EMAIL", "admin@test.com", "Hola"));
+
+        assertTrue(error instanceof TimeoutException
+                || error.getCause() != null && error.getCause().getClass().getSimpleName().contains("Timeout"),
+                "Se esperaba un timeout y se obtuvo " + error);
+    }
+
+    @Test
+    void conElServicioCaido_elCircuitoSeAbreYNoSeLlama() {
+        respuesta = n -> 500;
+        NotificacionService servicio = servicio(10, 2000, 0, 2);
+
+        causa(servicio.enviarNotificacion("EMAIL", "a@test.com", "1"));
+        causa(servicio.enviarNotificacion("EMAIL", "a@test.com", "2"));
+        Throwable rechazo = causa(servicio.enviarNotificacion("EMAIL", "a@test.com", "3"));
+
+        assertInstanceOf(IllegalStateException.class, rechazo);
+        assertEquals(2, solicitudes.get());
+    }
+
+    @Test
+    void conLaColaLlena_seRechazaSinBloquear() throws Exception {
+        bloquear = true;
+        NotificacionService servicio = servicio(1, 5000, 0, 5);
+
+        CompletableFuture<Void> enCurso = servicio.enviarNotificacion("EMAIL", "a@test.com", "1");
+        long inicio = System.nanoTime();
+        Throwable rechazo = causa(servicio.enviarNotificacion("EMAIL", "a@test.com", "2"));
+
+        assertInstanceOf(RejectedExecutionException.class, rechazo);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio) < 1000);
+        liberar.countDown();
+        enCurso.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void adjunto_seEnviaComoMultipart() throws Exception {
+        servicio(10, 2000, 3, 5).enviarNotificacionConAdjunto("EMAIL", "a@test.com", "Reporte",
+                "%PDF-contenido".getBytes(StandardCharsets.UTF_8), "reporte.pdf").get(10, TimeUnit.SECONDS);
+
+        assertTrue(tiposContenido.get(0).startsWith("multipart/form-data"));
+        assertTrue(cuerpos.get(0).contains("filename=reporte.pdf"));
+        assertTrue(cuerpos.get(0).contains("%PDF-contenido"));
+    }
+}
@@ -0,0 +1,137 @@
+package com.producto_service.Service;
+
+import com.producto_service.DTO.EventoOutboxDto;
+import com.producto_service.Event.StockCambiadoEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OutboxServiceTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final PublicadorEventosMemoria publicador = new PublicadorEventosMemoria(100);
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM evento_outbox");
+    }
+
+    private OutboxService outbox(int tamanoLote, PublicadorEventos publicador) {
+        return new OutboxService(jdbcTemplate, transactionManager, publicador, new SimpleMeterRegistry(), true, tamanoLote);
+    }
+
+    private int pendientes() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM evento_outbox", Integer.class);
+    }
+
+    @Test
+    void losEventosSeEscribenSoloSiLaTransaccionConfirma() {
+        OutboxService outbox = outbox(10, publicador);
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        tx.executeWithoutResult(status -> {
+            outbox.onStockCambiado(new StockCambiadoEvent(1L, 10, 8));
+            outbox.onStockCambiado(new StockCambiadoEvent(2L, 5, 4));
+            assertEquals(0, pendientes());
+        });
+        tx.executeWithoutResult(status -> {
+            outbox.onStockCambiado(new StockCambiadoEvent(3L, 7, 6));
+            status.setRollbackOnly();
+        });
+
+        assertEquals(2, pendientes());
+    }
+
+    @Test
+    void relevar_publicaEnOrdenPorLotesYBorra() {
+        OutboxService outbox = outbox(2, publicador);
+        for (long id = 1; id <= 5; id++) {
+            outbox.onStockCambiado(new StockCambiadoEvent(id, 10, (int) id, id + 1));
+        }
+        outbox.onStockCambiado(new StockCambiadoEvent(6L, 3, null));
+
+        assertEquals(6, outbox.relevar());
+
+        List<EventoOutboxDto> recibidos = publicador.recibidos();
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L), recibidos.stream().map(EventoOutboxDto::getProductoId).toList());
+        assertNull(recibidos.get(5).getStockNuevo());
+        assertEquals(List.of(2L, 3L, 4L, 5L, 6L), recibidos.subList(0, 5).stream().map(EventoOutboxDto::getVersion).toList());
+        assertNull(recibidos.get(5).getVersion());
+        assertEquals(0, pendientes());
+    }
+
+    @Test
+    void siElPublicadorFalla_elLoteQuedaPendienteYSeReintenta() {
+        OutboxService fallido = outbox(10, new PublicadorEventos() {
+            @Override
+            public void publicar(List<EventoOutboxDto> eventos) {
+                throw new IllegalStateException("Destino no disponible");
+            }
+
+            @Override
+            public String nombre() {
+                return "fallido";
+            }
+        });
+        fallido.onStockCambiado(new StockCambiadoEvent(1L, 10, 9));
+
+        assertEquals(0, fallido.relevar());
+        assertEquals(1, pendientes());
+
+        assertEquals(1, outbox(10, publicador).relevar());
+        assertEquals(0, pendientes());
+    }
+
+    @Test
+    void relevosConcurrentes_seSaltanLasFilasBloqueadas() throws Exception {
+        OutboxService outbox = outbox(10, publicador);
+        for (long id = 1; id <= 4; id++) {
+            outbox.onStockCambiado(new StockCambiadoEvent(id, 10, 9));
+        }
+        CountDownLatch bloqueadas = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        // Otro relevo mantiene bloqueadas las dos primeras filas
+        Future<?> otroRelevo = executor.submit(() -> new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            jdbcTemplate.queryForList("SELECT id FROM evento_outbox ORDER BY id LIMIT 2 FOR UPDATE");
+            bloqueadas.countDown();
+            try {
+                liberar.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        assertTrue(bloqueadas.await(10, TimeUnit.SECONDS));
+
+        assertEquals(2, outbox.relevar());
+        liberar.countDown();
+        otroRelevo.get(10, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        assertEquals(List.of(3L, 4L), publicador.recibidos().stream().map(EventoOutboxDto::getProductoId).toList());
+        assertEquals(2, pendientes());
+    }
+}
@@ -1,17 +1,30 @@
 package com.producto_service.Service;
 
+import com.producto_service.DTO.DisponibilidadDto;
+import com.producto_service.DTO.LineaStockDto;
+import com.producto_service.DTO.ProductoResponseDto;
+import com.producto_service.DTO.ResultadoStockDto;
+import com.producto_service.Event.StockCambiadoEvent;
+import com.producto_service.Exception.ConflictoStockException;
+import com.producto_service.Exception.StockOperacionException;
 import com.producto_service.Model.*;
 import com.producto_service.Repository.ProductoRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -20,13 +33,29 @@ class ProductoServiceTestSimple {
     @Mock
     private ProductoRepository productoRepository;
 
-    @InjectMocks
+    @Mock
+    private HistorialService historialService;
+
+    @Mock
+    private IndiceStockService indiceStockService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Spy
+    private ProductoCacheService productoCacheService = new ProductoCacheService(new SimpleMeterRegistry(), 100, 60);
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
     private ProductoService productoService;
 
     private Producto producto;
 
     @BeforeEach
     void setUp() {
+        productoService = new ProductoService(productoRepository, null, null, historialService, null,
+                indiceStockService, productoCacheService, eventPublisher, estrategiaOptimista(0));
         producto = new Producto();
         producto.setId(1L);
         producto.setNombre("iPhone 15");
@@ -100,23 +129,184 @@ class ProductoServiceTestSimple {
         producto2.setNombre("Producto B");
         producto2.setCantidad(20);
 
-        when(productoRepository.findAll()).thenReturn(List.of(producto1, producto2));
+        when(productoRepository.findByCantidadLessThanOrderByCantidadAscIdAsc(10)).thenReturn(List.of(producto1));
 
         List<Producto> resultado = productoService.obtenerProductosConStockMenorA(10);
 
         assertEquals(1, resultado.size());
         assertEquals("Producto A", resultado.get(0).getNombre());
+        verify(productoRepository, never()).findAll();
+    }
+
+    @Test
+    void test9b_obtenerProductosConStockBajo_desdeIndice() {
+        Producto producto1 = new Producto();
+        producto1.setId(5L);
+        producto1.setNombre("Producto A");
+        producto1.setCantidad(3);
+
+        when(indiceStockService.disponible()).thenReturn(true);
+        when(indiceStockService.idsConStockMenorA(10)).thenReturn(List.of(5L));
+        when(productoRepository.findAllById(List.of(5L))).thenReturn(List.of(producto1));
+
+        List<Producto> resultado = productoService.obtenerProductosConStockMenorA(10);
+
+        assertEquals(List.of(producto1), resultado);
+        verify(productoRepository, never()).findAll();
+        verify(productoRepository, never()).findByCantidadLessThanOrderByCantidadAscIdAsc(anyInt());
     }
 
     @Test
     void test10_obtenerProductosPorIds() {
         List<Long> ids = List.of(1L);
-        when(productoRepository.findAllById(ids)).thenReturn(List.of(producto));
+        ProductoResponseDto vista = new ProductoResponseDto(1L, "iPhone 15", null, 10, 999.99, null, null);
+        when(productoRepository.findVistasByIdIn(ids)).thenReturn(List.of(vista));
 
-        List<Producto> resultado = productoService.obtenerProductosPorIds(ids);
+        List<ProductoResponseDto> resultado = productoService.obtenerProductosPorIds(ids);
 
         assertNotNull(resultado);
         assertEquals(1, resultado.size());
         assertEquals("iPhone 15", resultado.get(0).getNombre());
+        verify(productoRepository, times(1)).findVistasByIdIn(ids);
+        verify(productoRepository, never()).findAllById(any());
+    }
+
+    @Test
+    void test10b_obtenerProductosPorIds_usaCacheYSoloCargaFaltantes() {
+        ProductoResponseDto vista1 = new ProductoResponseDto(1L, "iPhone 15", null, 10, 999.99, null, null);
+        ProductoResponseDto vista2 = new ProductoResponseDto(2L, "AirPods", null, 4, 199.0, null, null);
+        when(productoRepository.findVistasByIdIn(List.of(1L))).thenReturn(List.of(vista1));
+        when(productoRepository.findVistasByIdIn(List.of(2L))).thenReturn(List.of(vista2));
+
+        productoService.obtenerProductosPorIds(List.of(1L));
+        List<ProductoResponseDto> resultado = productoService.obtenerProductosPorIds(List.of(2L, 1L));
+
+        assertEquals(List.of(vista1, vista2), resultado);
+        assertSame(vista1, productoService.obtenerVistaPorNombre("iPhone 15"));
+        verify(productoRepository, never()).findVistaByNombre(any());
+    }
+
+    @Test
+    void test10c_cacheSeInvalidaTrasCambioDeStock() {
+        ProductoResponseDto vista = new ProductoResponseDto(1L, "iPhone 15", null, 10, 999.99, null, null);
+        ProductoResponseDto actualizada = new ProductoResponseDto(1L, "iPhone 15", null, 7, 999.99, null, null);
+        when(productoRepository.findVistaByNombre("iPhone 15"))
+                .thenReturn(Optional.of(vista))
+                .thenReturn(Optional.of(actualizada));
+
+        assertEquals(10, productoService.obtenerVistaPorNombre("iPhone 15").getCantidad());
+        assertEquals(10, productoService.obtenerVistaPorNombre("iPhone 15").getCantidad());
+        productoCacheService.onStockCambiado(new StockCambiadoEvent(1L, 10, 7));
+
+        assertEquals(7, productoService.obtenerVistaPorNombre("iPhone 15").getCantidad());
+        verify(productoRepository, times(2)).findVistaByNombre("iPhone 15");
+    }
+
+    @Test
+    void test11_reduccionStock_aplicaTodasLasLineas() {
+        Producto producto2 = new Producto();
+        producto2.setId(2L);
+        producto2.setNombre("AirPods");
+        producto2.setCantidad(4);
+        when(productoRepository.findAllById(any())).thenReturn(List.of(producto, producto2));
+
+        ResultadoStockDto resultado = productoService.reduccionStock(Map.of(1L, 3, 2L, 4));
+
+        assertTrue(resultado.isAplicado());
+        assertEquals(2, resultado.getLineas().size());
+        assertEquals(7, producto.getCantidad());
+        assertEquals(0, producto2.getCantidad());
+        verify(productoRepository, times(1)).findAllById(any());
+        verify(productoRepository, never()).findById(any());
+        verify(productoRepository).saveAll(anyList());
+        verify(historialService).agregarHistoriales(anyList());
+        verify(eventPublisher).publishEvent(new StockCambiadoEvent(1L, 10, 7));
+        verify(eventPublisher).publishEvent(new StockCambiadoEvent(2L, 4, 0));
+    }
+
+    @Test
+    void test12_reduccionStock_stockInsuficiente_noAplicaNinguna() {
+        Producto producto2 = new Producto();
+        producto2.setId(2L);
+        producto2.setNombre("AirPods");
+        producto2.setCantidad(1);
+        when(productoRepository.findAllById(any())).thenReturn(List.of(producto, producto2));
+
+        StockOperacionException ex = assertThrows(StockOperacionException.class,
+                () -> productoService.reduccionStock(Map.of(1L, 3, 2L, 5, 99L, 1)));
+
+        List<LineaStockDto> lineas = ex.getResultado().getLineas();
+        assertFalse(ex.getResultado().isAplicado());
+        assertEquals(LineaStockDto.Estado.OK, lineas.get(0).getEstado());
+        assertEquals(LineaStockDto.Estado.STOCK_INSUFICIENTE, lineas.get(1).getEstado());
+        assertEquals(LineaStockDto.Estado.NO_ENCONTRADO, lineas.get(2).getEstado());
+        assertEquals(10, producto.getCantidad());
+        verify(productoRepository, never()).saveAll(any());
+        verifyNoInteractions(historialService, eventPublisher);
+    }
+
+    @Test
+    void test13_reduccionStock_optimista_reintentaTrasConflictoDeVersion() {
+        productoService = new ProductoService(productoRepository, null, null, historialService, null,
+                indiceStockService, productoCacheService, eventPublisher, estrategiaOptimista(2));
+        // Cada intento lee entidades nuevas, como haría una transacción nueva
+        when(productoRepository.findAllById(any())).thenAnswer(invocacion -> List.of(productoConStock(1L, 10)));
+        doThrow(new ObjectOptimisticLockingFailureException(Producto.class, 1L))
+                .doNothing()
+                .when(productoRepository).flush();
+
+        ResultadoStockDto resultado = productoService.reduccionStock(Map.of(1L, 3));
+
+        assertTrue(resultado.isAplicado());
+        assertEquals(7, resultado.getLineas().get(0).getStockResultante());
+        verify(productoRepository, times(2)).findAllById(any());
+        verify(transactionManager, times(1)).rollback(any());
+        verify(transactionManager, times(1)).commit(any());
+    }
+
+    @Test
+    void test14_reduccionStock_optimista_reintentosAgotados_lanzaConflicto() {
+        productoService = new ProductoService(productoRepository, null, null, historialService, null,
+                indiceStockService, productoCacheService, eventPublisher, estrategiaOptimista(1));
+        when(productoRepository.findAllById(any())).thenAnswer(invocacion -> List.of(productoConStock(1L, 10)));
+        doThrow(new ObjectOptimisticLockingFailureException(Producto.class, 1L)).when(productoRepository).flush();
+
+        assertThrows(ConflictoStockException.class, () -> productoService.reduccionStock(Map.of(1L, 3)));
+        verify(productoRepository, times(2)).findAllById(any());
+        verify(transactionManager, never()).commit(any());
+    }
+
+    @Test
+    void test15_verificarDisponibilidad_respondeDesdeElIndiceSinConsultarLaBase() {
+        when(indiceStockService.disponible()).thenReturn(true);
+        when(indiceStockService.stocksDe(any())).thenAnswer(invocacion -> {
+            long[] ids = invocacion.getArgument(0);
+            int[] stocks = new int[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                stocks[i] = ids[i] == 1L ? 10 : ids[i] == 2L ? 2 : MapaLongInt.AUSENTE;
+            }
+            return stocks;
+        });
+
+        DisponibilidadDto resultado = productoService.verificarDisponibilidad(new TreeMap<>(Map.of(1L, 4, 2L, 3, 3L, 1)));
+
+        assertFalse(resultado.isDisponible());
+        assertEquals(LineaStockDto.Estado.OK, resultado.getLineas().get(0).getEstado());
+        assertEquals(6, resultado.getLineas().get(0).getStockResultante());
+        assertEquals(LineaStockDto.Estado.STOCK_INSUFICIENTE, resultado.getLineas().get(1).getEstado());
+        assertEquals(LineaStockDto.Estado.NO_ENCONTRADO, resultado.getLineas().get(2).getEstado());
+        verifyNoInteractions(productoRepository);
+    }
+
+    private EstrategiaStock estrategiaOptimista(int maxReintentos) {
+        return new EstrategiaStockOptimista(productoRepository, historialService, eventPublisher,
+                new TransactionTemplate(transactionManager), new SimpleMeterRegistry(), maxReintentos, 0);
+    }
+
+    private static Producto productoConStock(Long id, int cantidad) {
+        Producto nuevo = new Producto();
+        nuevo.setId(id);
+        nuevo.setCantidad(cantidad);
+        return nuevo;
     }
 }
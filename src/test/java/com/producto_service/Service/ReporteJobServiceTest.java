@@ -0,0 +1,207 @@
+package com.producto_service.Service;
+
+import com.producto_service.DTO.ReporteJobDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReporteJobServiceTest {
+
+    @Mock
+    private ReporteService reporteService;
+
+    @Mock
+    private EntregaReportesService entregaReportesService;
+
+    @TempDir
+    private Path directorio;
+
+    private ReporteJobService jobs;
+
+    @AfterEach
+    void tearDown() {
+        if (jobs != null) {
+            jobs.detener();
+        }
+    }
+
+    private ReporteJobService jobs(int hilos, int cola) throws Exception {
+        return jobs(hilos, cola, 1000);
+    }
+
+    private ReporteJobService jobs(int hilos, int cola, long maximo) throws Exception {
+        jobs = new ReporteJobService(reporteService, entregaReportesService, new SimpleMeterRegistry(),
+                directorio.toString(), hilos, cola, 60, maximo);
+        return jobs;
+    }
+
+    private static String leer(InputStream flujo) throws IOException {
+        try (flujo) {
+            return new String(flujo.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private ReporteService.Reporte reporte() throws Exception {
+        Path archivo = Files.createTempFile(directorio, "reporte-", ".pdf");
+        Files.writeString(archivo, "%PDF-1.4 contenido");
+        // La referencia original queda abierta, como la que conserva la caché de reportes
+        return new ReporteService.Reporte(archivo, Files.size(archivo), "huella").retener();
+    }
+
+    private ReporteJobDto esperar(ReporteJobService jobs, String id) throws InterruptedException {
+        long limite = System.currentTimeMillis() + 5_000;
+        ReporteJobDto estado = jobs.obtener(id);
+        while (estado.getEstado() != ReporteJobDto.Estado.COMPLETADO
+                && estado.getEstado() != ReporteJobDto.Estado.FALLIDO
+                && System.currentTimeMillis() < limite) {
+            Thread.sleep(10);
+            estado = jobs.obtener(id);
+        }
+        return estado;
+    }
+
+    @Test
+    void trabajo_seCompletaEnSegundoPlanYEnviaElCorreo() throws Exception {
+        when(reporteService.obtenerReporteInventarioBajo(10)).thenReturn(reporte());
+        when(entregaReportesService.entregar(any(), any(), any(), any()))
+                .thenReturn(CompletableFuture.completedFuture(null));
+        ReporteJobService jobs = jobs(1, 5);
+
+        ReporteJobDto encolado = jobs.encolarInventarioBajo(10, "admin@test.com");
+        ReporteJobDto terminado = esperar(jobs, encolado.getId());
+
+        assertEquals(ReporteJobDto.Estado.COMPLETADO, terminado.getEstado());
+        assertTrue(terminado.isNotificado());
+        verify(entregaReportesService).entregar(eq("admin@test.com"), anyString(),
+                eq("reportes/inventario-bajo/huella.pdf"), any(Path.class));
+        assertEquals("%PDF-1.4 contenido", leer(jobs.abrir(encolado.getId())));
+    }
+
+    @Test
+    void elArchivoDelTrabajoSobreviveAlBorradoDeLaCacheDeReportes() throws Exception {
+        ReporteService.Reporte reporte = reporte();
+        when(reporteService.obtenerReporteInventarioBajo(10)).thenReturn(reporte);
+        ReporteJobService jobs = jobs(1, 5);
+
+        String id = jobs.encolarInventarioBajo(10, null).getId();
+        esperar(jobs, id);
+        Files.delete(reporte.archivo());
+
+        assertEquals("%PDF-1.4 contenido", leer(jobs.abrir(id)));
+        verifyNoInteractions(entregaReportesService);
+    }
+
+    @Test
+    void unaDescargaEnCurso_conservaElArchivoAunqueElTrabajoSeOlvide() throws Exception {
+        when(reporteService.obtenerReporteInventarioBajo(anyInt())).thenAnswer(invocacion -> reporte());
+        ReporteJobService jobs = jobs(1, 5, 1);
+
+        String id = jobs.encolarInventarioBajo(10, null).getId();
+        esperar(jobs, id);
+        InputStream descarga = jobs.abrir(id);
+        // Con un máximo de un trabajo, el segundo desaloja al primero y suelta su referencia
+        esperar(jobs, jobs.encolarInventarioBajo(20, null).getId());
+
+        assertThrows(IllegalArgumentException.class, () -> jobs.obtener(id));
+        Path archivo = directorio.resolve("jobs").resolve(id + ".pdf");
+        assertTrue(Files.exists(archivo));
+        assertEquals("%PDF-1.4 contenido", leer(descarga));
+        assertFalse(Files.exists(archivo));
+    }
+
+    @Test
+    void trabajosIdenticosEnCurso_seColapsan() throws Exception {
+        CountDownLatch liberar = new CountDownLatch(1);
+        ReporteService.Reporte reporte = reporte();
+        when(reporteService.obtenerReporteInventarioBajo(10)).thenAnswer(invocacion -> {
+            liberar.await(5, TimeUnit.SECONDS);
+            return reporte;
+        });
+        ReporteJobService jobs = jobs(2, 5);
+
+        ReporteJobDto primero = jobs.encolarInventarioBajo(10, null);
+        ReporteJobDto duplicado = jobs.encolarInventarioBajo(10, null);
+        ReporteJobDto otroDestinatario = jobs.encolarInventarioBajo(10, "admin@test.com");
+        liberar.countDown();
+
+        assertEquals(primero.getId(), duplicado.getId());
+        assertNotEquals(primero.getId(), otroDestinatario.getId());
+        esperar(jobs, primero.getId());
+        // Terminado el trabajo, una nueva solicitud crea otro
+        assertNotEquals(primero.getId(), jobs.encolarInventarioBajo(10, null).getId());
+    }
+
+    @Test
+    void conLaColaLlena_seRechaza() throws Exception {
+        CountDownLatch iniciado = new CountDownLatch(1);
+        CountDownLatch liberar = new CountDownLatch(1);
+        ReporteService.Reporte reporte = reporte();
+        when(reporteService.obtenerReporteInventarioBajo(anyInt())).thenAnswer(invocacion -> {
+            iniciado.countDown();
+            liberar.await(5, TimeUnit.SECONDS);
+            return reporte;
+        });
+        ReporteJobService jobs = jobs(1, 1);
+
+        jobs.encolarInventarioBajo(1, null);
+        assertTrue(iniciado.await(5, TimeUnit.SECONDS)); // el primero ocupa el hilo
+        jobs.encolarInventarioBajo(2, null);
+
+        assertThrows(RejectedExecutionException.class, () -> jobs.encolarInventarioBajo(3, null));
+        liberar.countDown();
+    }
+
+    @Test
+    void siFallaElCorreo_elReporteSigueDisponible() throws Exception {
+        when(reporteService.obtenerReporteInventarioBajo(10)).thenReturn(reporte());
+        when(entregaReportesService.entregar(any(), any(), any(), any()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("circuito abierto")));
+        ReporteJobService jobs = jobs(1, 5);
+
+        String id = jobs.encolarInventarioBajo(10, "admin@test.com").getId();
+        ReporteJobDto terminado = esperar(jobs, id);
+
+        assertEquals(ReporteJobDto.Estado.COMPLETADO, terminado.getEstado());
+        assertFalse(terminado.isNotificado());
+        assertTrue(terminado.getError().contains("circuito abierto"));
+        assertNotNull(leer(jobs.abrir(id)));
+    }
+
+    @Test
+    void trabajoFallido_informaElErrorYNoSePuedeDescargar() throws Exception {
+        when(reporteService.obtenerReporteInventarioBajo(10)).thenThrow(new IllegalStateException("Base no disponible"));
+        ReporteJobService jobs = jobs(1, 5);
+
+        String id = jobs.encolarInventarioBajo(10, "admin@test.com").getId();
+        ReporteJobDto terminado = esperar(jobs, id);
+
+        assertEquals(ReporteJobDto.Estado.FALLIDO, terminado.getEstado());
+        assertEquals("Base no disponible", terminado.getError());
+        assertThrows(IllegalArgumentException.class, () -> jobs.abrir(id));
+        verifyNoInteractions(entregaReportesService);
+    }
+
+    @Test
+    void trabajoInexistente_lanzaExcepcion() throws Exception {
+        assertThrows(IllegalArgumentException.class, () -> jobs(1, 1).obtener("no-existe"));
+    }
+}
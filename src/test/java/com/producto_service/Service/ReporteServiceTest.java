@@ -0,0 +1,185 @@
+package com.producto_service.Service;
+
+import com.itextpdf.text.pdf.PdfReader;
+import com.itextpdf.text.pdf.parser.PdfTextExtractor;
+import com.producto_service.DTO.ProductoResponseDto;
+import com.producto_service.Model.Categoria;
+import com.producto_service.Model.Marca;
+import com.producto_service.Repository.ProductoRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReporteServiceTest {
+
+    @Mock
+    private ProductoRepository productoRepository;
+
+    @Mock
+    private CambiosCatalogoService cambiosCatalogoService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @TempDir
+    private Path directorio;
+
+    private ReporteService reporteService(int filasPorBloque) throws Exception {
+        return new ReporteService(productoRepository, cambiosCatalogoService, transactionManager,
+                new SimpleMeterRegistry(), directorio.toString(), filasPorBloque, 32, 10);
+    }
+
+    private static ProductoResponseDto producto(Long id, String nombre, int cantidad) {
+        return new ProductoResponseDto(id, nombre, null, cantidad, 100.0,
+                new Categoria(1L, "Periféricos", "Accesorios", null), new Marca(1L, "Logi", null));
+    }
+
+    private void devolver(int limite, List<ProductoResponseDto> productos) {
+        when(productoRepository.streamVistasConStockMenorA(limite)).thenAnswer(invocacion -> productos.stream());
+    }
+
+    @Test
+    void mismaVersionDelCatalogo_devuelveElMismoArchivoSinRegenerar() throws Exception {
+        ReporteService reporteService = reporteService(200);
+        when(cambiosCatalogoService.versionActual()).thenReturn(5L);
+        devolver(10, List.of(producto(1L, "Mouse", 3)));
+
+        ReporteService.Reporte primero = reporteService.obtenerReporteInventarioBajo(10);
+        ReporteService.Reporte segundo = reporteService.obtenerReporteInventarioBajo(10);
+
+        assertEquals(primero.archivo(), segundo.archivo());
+        assertEquals(Files.size(primero.archivo()), primero.tamano());
+        assertEquals("%PDF", new String(Files.readAllBytes(primero.archivo()), 0, 4));
+        verify(productoRepository, times(1)).streamVistasConStockMenorA(10);
+    }
+
+    @Test
+    void otroLimiteUOtraVersion_regenera() throws Exception {
+        ReporteService reporteService = reporteService(200);
+        when(cambiosCatalogoService.versionActual()).thenReturn(5L, 5L, 6L);
+        devolver(10, List.of(producto(1L, "Mouse", 3)));
+        devolver(20, List.of(producto(1L, "Mouse", 3)));
+
+        reporteService.obtenerReporteInventarioBajo(10);
+        reporteService.obtenerReporteInventarioBajo(20);
+        reporteService.obtenerReporteInventarioBajo(10);
+
+        verify(productoRepository, times(2)).streamVistasConStockMenorA(10);
+        verify(productoRepository, times(1)).streamVistasConStockMenorA(20);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void huella_dependeDelContenidoYNoDeLaVersion() throws Exception {
+        ReporteService reporteService = reporteService(200);
+        when(cambiosCatalogoService.versionActual()).thenReturn(1L, 2L, 3L);
+        when(productoRepository.streamVistasConStockMenorA(10)).thenReturn(
+                Stream.of(producto(1L, "Mouse", 3)),
+                Stream.of(producto(1L, "Mouse", 3)),
+                Stream.of(producto(1L, "Mouse", 2)));
+
+        ReporteService.Reporte primero = reporteService.obtenerReporteInventarioBajo(10);
+        ReporteService.Reporte mismoContenido = reporteService.obtenerReporteInventarioBajo(10);
+        ReporteService.Reporte otroContenido = reporteService.obtenerReporteInventarioBajo(10);
+
+        assertEquals(primero.huella(), mismoContenido.huella());
+        assertNotEquals(primero.huella(), otroContenido.huella());
+        // Va en la clave del almacenamiento y en la URL: Base64 URL-safe, sin relleno
+        assertTrue(primero.huella().matches("[A-Za-z0-9_-]{43}"));
+    }
+
+    @Test
+    void reporteGrande_seEscribePorBloquesConTodasLasFilas() throws Exception {
+        ReporteService reporteService = reporteService(50);
+        when(cambiosCatalogoService.versionActual()).thenReturn(1L);
+        devolver(10, LongStream.rangeClosed(1, 2_000).mapToObj(id -> producto(id, "Producto-" + id, 1)).toList());
+
+        ReporteService.Reporte reporte = reporteService.obtenerReporteInventarioBajo(10);
+
+        PdfReader lector = new PdfReader(reporte.archivo().toString());
+        try {
+            assertTrue(lector.getNumberOfPages() > 10);
+            String ultimaPagina = PdfTextExtractor.getTextFromPage(lector, lector.getNumberOfPages());
+            assertTrue(ultimaPagina.contains("Producto-2000"));
+            // El encabezado se repite en cada página
+            assertTrue(ultimaPagina.contains("Categoría"));
+        } finally {
+            lector.close();
+        }
+    }
+
+    @Test
+    void alSalirDeLaCache_seBorraElArchivo() throws Exception {
+        ReporteService reporteService = reporteService(200);
+        when(cambiosCatalogoService.versionActual()).thenReturn(1L);
+        devolver(10, List.of(producto(1L, "Mouse", 3)));
+        ReporteService.Reporte reporte = reporteService.obtenerReporteInventarioBajo(10);
+        reporte.close();
+
+        reporteService.limpiar();
+
+        assertFalse(Files.exists(reporte.archivo()));
+    }
+
+    @Test
+    void alSalirDeLaCache_elArchivoSigueMientrasAlguienLoUse() throws Exception {
+        ReporteService reporteService = reporteService(200);
+        when(cambiosCatalogoService.versionActual()).thenReturn(1L);
+        devolver(10, List.of(producto(1L, "Mouse", 3)));
+        ReporteService.Reporte reporte = reporteService.obtenerReporteInventarioBajo(10);
+        ReporteService.Reporte paraEntrega = reporte.retener();
+        InputStream descarga = reporte.abrir();
+        reporte.close();
+
+        reporteService.limpiar();
+        assertTrue(Files.exists(reporte.archivo()));
+
+        paraEntrega.close();
+        assertTrue(Files.exists(reporte.archivo()));
+        try (descarga) {
+            assertEquals("%PDF", new String(descarga.readNBytes(4)));
+        }
+        assertFalse(Files.exists(reporte.archivo()));
+    }
+
+    @Test
+    void reporteBorrado_seRegeneraAlPedirloOtraVez() throws Exception {
+        ReporteService reporteService = reporteService(200);
+        when(cambiosCatalogoService.versionActual()).thenReturn(1L);
+        devolver(10, List.of(producto(1L, "Mouse", 3)));
+        reporteService.obtenerReporteInventarioBajo(10).close();
+        reporteService.limpiar();
+
+        try (ReporteService.Reporte reporte = reporteService.obtenerReporteInventarioBajo(10)) {
+            assertTrue(Files.exists(reporte.archivo()));
+        }
+        verify(productoRepository, times(2)).streamVistasConStockMenorA(10);
+    }
+
+    @Test
+    void siFallaLaConsulta_noQuedaArchivoTemporal() throws Exception {
+        ReporteService reporteService = reporteService(200);
+        when(cambiosCatalogoService.versionActual()).thenReturn(1L);
+        when(productoRepository.streamVistasConStockMenorA(10)).thenThrow(new IllegalStateException("Base no disponible"));
+
+        assertThrows(IllegalStateException.class, () -> reporteService.obtenerReporteInventarioBajo(10));
+        try (Stream<Path> archivos = Files.list(directorio)) {
+            assertEquals(0, archivos.count());
+        }
+    }
+}
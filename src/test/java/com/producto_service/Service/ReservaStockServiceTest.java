@@ -0,0 +1,192 @@
+package com.producto_service.Service;
+
+import com.producto_service.DTO.LineaStockDto;
+import com.producto_service.DTO.ReservaDto;
+import com.producto_service.DTO.ResultadoStockDto;
+import com.producto_service.Exception.StockOperacionException;
+import com.producto_service.Repository.ProductoRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class ReservaStockServiceTest {
+
+    @Mock
+    private ProductoService productoService;
+
+    @Mock
+    private IndiceStockService indiceStockService;
+
+    @Mock
+    private ProductoRepository productoRepository;
+
+    @TempDir
+    Path directorio;
+
+    private static final String USUARIO = "cliente@arka.test";
+
+    private ReservaStockService reservaStockService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(indiceStockService.disponible()).thenReturn(true);
+        when(indiceStockService.stockDe(1L)).thenReturn(10);
+        when(indiceStockService.stockDe(2L)).thenReturn(3);
+        when(indiceStockService.stockDe(99L)).thenReturn(null);
+        reservaStockService = nuevoServicio();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        reservaStockService.detener();
+    }
+
+    private ReservaStockService nuevoServicio() throws Exception {
+        ReservaStockService servicio = new ReservaStockService(productoService, indiceStockService, productoRepository,
+                new SimpleMeterRegistry(), directorio.resolve("reservas.log").toString(), false, 10_000, 900, 3600);
+        servicio.iniciar();
+        return servicio;
+    }
+
+    @Test
+    void reservar_descuentaDelDisponibleSinTocarElStock() {
+        ReservaDto reserva = reservaStockService.reservar(Map.of(1L, 4, 2L, 1), 60, USUARIO);
+
+        assertNotNull(reserva.getId());
+        assertEquals(Map.of(1L, 6, 2L, 2), reservaStockService.disponibilidad(List.of(1L, 2L)));
+        verifyNoInteractions(productoService);
+    }
+
+    @Test
+    void reservar_sinDisponibleSuficiente_noReservaNingunaLinea() {
+        reservaStockService.reservar(Map.of(2L, 2), 60, USUARIO);
+
+        StockOperacionException ex = assertThrows(StockOperacionException.class,
+                () -> reservaStockService.reservar(Map.of(1L, 5, 2L, 2, 99L, 1), 60, USUARIO));
+
+        List<LineaStockDto> lineas = ex.getResultado().getLineas();
+        assertEquals(LineaStockDto.Estado.OK, lineas.get(0).getEstado());
+        assertEquals(LineaStockDto.Estado.STOCK_INSUFICIENTE, lineas.get(1).getEstado());
+        assertEquals(1, lineas.get(1).getStockAnterior());
+        assertEquals(LineaStockDto.Estado.NO_ENCONTRADO, lineas.get(2).getEstado());
+        assertEquals(0, reservaStockService.reservadoDe(1L));
+        assertEquals(2, reservaStockService.reservadoDe(2L));
+    }
+
+    @Test
+    void confirmar_reduceElStockYLiberaLoReservado() {
+        ResultadoStockDto esperado = new ResultadoStockDto(true, List.of());
+        when(productoService.reduccionStock(Map.of(1L, 4))).thenReturn(esperado);
+        ReservaDto reserva = reservaStockService.reservar(Map.of(1L, 4), 60, USUARIO);
+
+        assertSame(esperado, reservaStockService.confirmar(reserva.getId(), USUARIO, false));
+        assertEquals(0, reservaStockService.reservadoDe(1L));
+        assertThrows(IllegalArgumentException.class, () -> reservaStockService.confirmar(reserva.getId(), USUARIO, false));
+        verify(productoService, times(1)).reduccionStock(anyMap());
+    }
+
+    @Test
+    void liberar_devuelveElDisponible() {
+        ReservaDto reserva = reservaStockService.reservar(Map.of(1L, 4), 60, USUARIO);
+
+        reservaStockService.liberar(reserva.getId(), USUARIO, false);
+
+        assertEquals(0, reservaStockService.reservadoDe(1L));
+        assertThrows(IllegalArgumentException.class, () -> reservaStockService.obtener(reserva.getId(), USUARIO, false));
+    }
+
+    @Test
+    void otroUsuario_noVeNiConfirmaNiLiberaLaReserva() {
+        ReservaDto reserva = reservaStockService.reservar(Map.of(1L, 4), 60, USUARIO);
+
+        assertThrows(IllegalArgumentException.class, () -> reservaStockService.obtener(reserva.getId(), "otro@arka.test", false));
+        assertThrows(IllegalArgumentException.class, () -> reservaStockService.confirmar(reserva.getId(), "otro@arka.test", false));
+        assertThrows(IllegalArgumentException.class, () -> reservaStockService.liberar(reserva.getId(), null, false));
+
+        // La reserva sigue intacta para su dueño y un administrador puede cerrarla
+        assertEquals(4, reservaStockService.reservadoDe(1L));
+        assertEquals(Map.of(1L, 4), reservaStockService.obtener(reserva.getId(), USUARIO, false).getProductos());
+        reservaStockService.liberar(reserva.getId(), "admin@arka.test", true);
+        assertEquals(0, reservaStockService.reservadoDe(1L));
+        verifyNoInteractions(productoService);
+    }
+
+    @Test
+    void reservaVencida_seLiberaSola() throws Exception {
+        ReservaDto reserva = reservaStockService.reservar(Map.of(1L, 4), Duration.ofMillis(50), USUARIO);
+
+        long limite = System.currentTimeMillis() + 5_000;
+        while (reservaStockService.reservadoDe(1L) != 0 && System.currentTimeMillis() < limite) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(0, reservaStockService.reservadoDe(1L));
+        assertThrows(IllegalArgumentException.class, () -> reservaStockService.confirmar(reserva.getId(), USUARIO, false));
+        verifyNoInteractions(productoService);
+    }
+
+    @Test
+    void alReiniciar_seRecuperanLasReservasVigentesDelDiario() throws Exception {
+        ReservaDto vigente = reservaStockService.reservar(Map.of(1L, 4, 2L, 1), 60, USUARIO);
+        ReservaDto liberada = reservaStockService.reservar(Map.of(1L, 2), 60, USUARIO);
+        reservaStockService.liberar(liberada.getId(), USUARIO, false);
+        reservaStockService.detener();
+        // Última línea cortada por una caída a mitad de escritura
+        Files.writeString(directorio.resolve("reservas.log"), "R incompleta 99",
+                StandardOpenOption.APPEND);
+
+        reservaStockService = nuevoServicio();
+
+        assertEquals(4, reservaStockService.reservadoDe(1L));
+        assertEquals(1, reservaStockService.reservadoDe(2L));
+        // El dueño se conserva en el diario
+        assertEquals(Map.of(1L, 4, 2L, 1), reservaStockService.obtener(vigente.getId(), USUARIO, false).getProductos());
+        assertThrows(IllegalArgumentException.class, () -> reservaStockService.obtener(vigente.getId(), "otro@arka.test", false));
+        assertEquals(1, Files.readAllLines(directorio.resolve("reservas.log")).size());
+    }
+
+    @Test
+    void sinRutaDeDiario_arrancaYReservaSoloEnMemoria() throws Exception {
+        ReservaStockService sinDiario = new ReservaStockService(productoService, indiceStockService, productoRepository,
+                new SimpleMeterRegistry(), "", false, 10_000, 900, 3600);
+        sinDiario.iniciar();
+        try {
+            ReservaDto reserva = sinDiario.reservar(Map.of(1L, 4), 60, USUARIO);
+            sinDiario.liberar(reserva.getId(), USUARIO, false);
+
+            assertEquals(0, sinDiario.reservadoDe(1L));
+        } finally {
+            sinDiario.detener();
+        }
+    }
+
+    @Test
+    void sinIndiceCargado_consultaElStockEnLaBase() {
+        when(indiceStockService.disponible()).thenReturn(false);
+        ProductoRepository.StockProducto fila = mock(ProductoRepository.StockProducto.class);
+        when(fila.getId()).thenReturn(1L);
+        when(fila.getCantidad()).thenReturn(7);
+        when(productoRepository.findStockByIdIn(List.of(1L))).thenReturn(List.of(fila));
+
+        assertEquals(Map.of(1L, 7), reservaStockService.disponibilidad(List.of(1L)));
+    }
+}
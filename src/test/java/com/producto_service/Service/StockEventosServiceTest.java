@@ -0,0 +1,193 @@
+package com.producto_service.Service;
+
+import com.producto_service.DTO.StockEventoDto;
+import com.producto_service.Event.StockCambiadoEvent;
+import com.producto_service.Model.Categoria;
+import com.producto_service.Model.Marca;
+import com.producto_service.Model.Producto;
+import com.producto_service.Repository.CategoriaRepository;
+import com.producto_service.Repository.MarcaRepository;
+import com.producto_service.Repository.ProductoRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@Import(StockEventosService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class StockEventosServiceTest {
+
+    @Autowired
+    private StockEventosService stockEventosService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ProductoRepository productoRepository;
+
+    @Autowired
+    private CategoriaRepository categoriaRepository;
+
+    @Autowired
+    private MarcaRepository marcaRepository;
+
+    private Long productoId;
+
+    @BeforeEach
+    void setUp() {
+        Categoria categoria = categoriaRepository.save(new Categoria(null, "Electrónica", "Productos electrónicos", null));
+        Marca marca = marcaRepository.save(new Marca(null, "Samsung", null));
+        Producto producto = new Producto();
+        producto.setNombre("Televisor");
+        producto.setCantidad(10);
+        producto.setPrecio(1500.0);
+        producto.setCategoria(categoria);
+        producto.setMarca(marca);
+        productoId = productoRepository.save(producto).getId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM historial");
+        jdbcTemplate.update("DELETE FROM producto");
+        jdbcTemplate.update("DELETE FROM categoria");
+        jdbcTemplate.update("DELETE FROM marca");
+    }
+
+    @Test
+    void enVivo_recibeLosCambiosPosterioresALaSuscripcion() throws Exception {
+        insertarHistorial(7);
+        stockEventosService.sondear();
+
+        CompletableFuture<List<StockEventoDto>> recibidos = stockEventosService.suscribir(null)
+                .take(2).collectList().toFuture();
+        insertarHistorial(6);
+        insertarHistorial(5);
+        stockEventosService.sondear();
+
+        List<StockEventoDto> eventos = recibidos.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(6, 5), eventos.stream().map(StockEventoDto::getStock).toList());
+        assertTrue(eventos.stream().allMatch(evento -> productoId.equals(evento.getProductoId())));
+    }
+
+    @Test
+    void conUltimoId_reenviaDesdeLaBaseYContinuaEnVivoSinRepetidos() throws Exception {
+        long primero = insertarHistorial(9);
+        long segundo = insertarHistorial(8);
+        long tercero = insertarHistorial(7);
+        stockEventosService.sondear();
+
+        CompletableFuture<List<ServerSentEvent<StockEventoDto>>> recibidos = stockEventosService.flujoSse(primero)
+                .filter(evento -> evento.data() != null)
+                .take(3).collectList().toFuture();
+        long cuarto = insertarHistorial(6);
+        stockEventosService.sondear();
+
+        List<ServerSentEvent<StockEventoDto>> eventos = recibidos.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(String.valueOf(segundo), String.valueOf(tercero), String.valueOf(cuarto)),
+                eventos.stream().map(ServerSentEvent::id).toList());
+        assertEquals("stock", eventos.get(0).event());
+        // La cancelación llega al sink desde otro hilo, poco después de completarse el take
+        long limite = System.currentTimeMillis() + 5_000;
+        while (stockEventosService.suscriptores() > 0 && System.currentTimeMillis() < limite) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, stockEventosService.suscriptores());
+    }
+
+    @Test
+    void unHuecoEnLosIds_seEsperaHastaQueLlegaLaFilaQueFalta() throws Exception {
+        insertarHistorial(9);
+        stockEventosService.sondear();
+
+        CompletableFuture<List<StockEventoDto>> recibidos = stockEventosService.suscribir(null)
+                .take(2).collectList().toFuture();
+        // Una transacción tomó el id siguiente y todavía no confirmó; otra posterior ya lo hizo
+        long enCurso = siguienteIdHistorial();
+        insertarHistorial(7);
+        stockEventosService.sondear();
+        assertFalse(recibidos.isDone());
+
+        jdbcTemplate.update("INSERT INTO historial (id, producto_id, stock_cambiado) VALUES (?, ?, ?)", enCurso, productoId, 8);
+        stockEventosService.sondear();
+
+        assertEquals(List.of(8, 7), recibidos.get(5, TimeUnit.SECONDS).stream().map(StockEventoDto::getStock).toList());
+    }
+
+    @Test
+    void sinSuscriptores_tampocoSePasaDeUnHueco() throws Exception {
+        long primero = insertarHistorial(9);
+        stockEventosService.sondear();
+        long enCurso = siguienteIdHistorial();
+        insertarHistorial(7);
+        stockEventosService.sondear();
+
+        // Quien se conecta ahora reenvía hasta la posición; la fila que falta debe llegarle en vivo
+        CompletableFuture<List<StockEventoDto>> recibidos = stockEventosService.suscribir(primero)
+                .take(2).collectList().toFuture();
+        jdbcTemplate.update("INSERT INTO historial (id, producto_id, stock_cambiado) VALUES (?, ?, ?)", enCurso, productoId, 8);
+        stockEventosService.sondear();
+
+        assertEquals(List.of(8, 7), recibidos.get(5, TimeUnit.SECONDS).stream().map(StockEventoDto::getStock).toList());
+    }
+
+    @Test
+    void alConfirmar_soloPideElSondeoSinBloquearAlQueConfirma() throws Exception {
+        insertarHistorial(9);
+        stockEventosService.sondear();
+        CompletableFuture<List<StockEventoDto>> recibidos = stockEventosService.suscribir(null)
+                .take(1).collectList().toFuture();
+        insertarHistorial(4);
+
+        // Un sondeo en curso retiene el monitor: si el listener sondeara en este hilo, se quedaría esperando
+        CountDownLatch retenido = new CountDownLatch(1);
+        CountDownLatch soltar = new CountDownLatch(1);
+        Thread sondeoLento = new Thread(() -> {
+            synchronized (stockEventosService) {
+                retenido.countDown();
+                try {
+                    soltar.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        sondeoLento.start();
+        retenido.await();
+        try {
+            assertTimeoutPreemptively(Duration.ofSeconds(1),
+                    () -> stockEventosService.onStockCambiado(new StockCambiadoEvent(productoId, 9, 4)));
+        } finally {
+            soltar.countDown();
+        }
+
+        assertEquals(List.of(4), recibidos.get(5, TimeUnit.SECONDS).stream().map(StockEventoDto::getStock).toList());
+    }
+
+    private long siguienteIdHistorial() {
+        long id = insertarHistorial(0);
+        jdbcTemplate.update("DELETE FROM historial WHERE id = ?", id);
+        return id;
+    }
+
+    private long insertarHistorial(int stock) {
+        jdbcTemplate.update(HistorialService.INSERT_HISTORIAL, productoId, stock);
+        return jdbcTemplate.queryForObject("SELECT MAX(id) FROM historial", Long.class);
+    }
+}